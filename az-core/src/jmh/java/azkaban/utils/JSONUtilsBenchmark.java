@@ -0,0 +1,190 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package azkaban.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link JSONUtils} with the previous implementation, which created an ObjectMapper per
+ * call and parsed through a JsonNode tree, on payloads shaped like ExecutableFlow.toObject().
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JSONUtilsBenchmark {
+
+  @Param({"10", "500"})
+  private int numNodes;
+
+  private Map<String, Object> flowObject;
+  private String flowJson;
+
+  @Setup
+  public void setUp() {
+    this.flowObject = createFlowObject(this.numNodes);
+    this.flowJson = JSONUtils.toJSON(this.flowObject);
+  }
+
+  @Benchmark
+  public String toJSON() {
+    return JSONUtils.toJSON(this.flowObject);
+  }
+
+  @Benchmark
+  public String toJSONWithNewMapper() throws IOException {
+    return new ObjectMapper().writeValueAsString(this.flowObject);
+  }
+
+  @Benchmark
+  public byte[] gzipJSONStreaming() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (final GZIPOutputStream gzipStream = new GZIPOutputStream(out)) {
+      JSONUtils.writeJSON(this.flowObject, gzipStream);
+    }
+    return out.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] gzipJSONString() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (final GZIPOutputStream gzipStream = new GZIPOutputStream(out)) {
+      gzipStream.write(
+          new ObjectMapper().writeValueAsString(this.flowObject).getBytes(StandardCharsets.UTF_8));
+    }
+    return out.toByteArray();
+  }
+
+  @Benchmark
+  public Object parseJSON() throws IOException {
+    return JSONUtils.parseJSONFromString(this.flowJson);
+  }
+
+  @Benchmark
+  public Object parseJSONThroughTree() throws IOException {
+    final ObjectMapper mapper = new ObjectMapper();
+    return toObject(mapper.readTree(mapper.getJsonFactory().createJsonParser(this.flowJson)));
+  }
+
+  private static Object toObject(final JsonNode node) {
+    if (node.isObject()) {
+      final HashMap<String, Object> obj = new HashMap<>();
+      final Iterator<String> iter = node.getFieldNames();
+      while (iter.hasNext()) {
+        final String fieldName = iter.next();
+        obj.put(fieldName, toObject(node.get(fieldName)));
+      }
+      return obj;
+    } else if (node.isArray()) {
+      final ArrayList<Object> array = new ArrayList<>();
+      final Iterator<JsonNode> iter = node.getElements();
+      while (iter.hasNext()) {
+        array.add(toObject(iter.next()));
+      }
+      return array;
+    } else if (node.isTextual()) {
+      return node.asText();
+    } else if (node.isInt()) {
+      return node.asInt();
+    } else if (node.isLong()) {
+      return node.asLong();
+    } else if (node.isDouble()) {
+      return node.asDouble();
+    } else if (node.isBoolean()) {
+      return node.asBoolean();
+    }
+    return null;
+  }
+
+  private static Map<String, Object> createFlowObject(final int numNodes) {
+    final Map<String, Object> flow = new HashMap<>();
+    flow.put("id", "benchmark-flow");
+    flow.put("type", "flow");
+    flow.put("executionId", 123456);
+    flow.put("projectId", 42);
+    flow.put("projectName", "benchmark-project");
+    flow.put("version", 17);
+    flow.put("submitUser", "azkaban");
+    flow.put("submitTime", 1612345678901L);
+    flow.put("startTime", 1612345679901L);
+    flow.put("endTime", -1L);
+    flow.put("updateTime", 1612345689901L);
+    flow.put("status", "RUNNING");
+    flow.put("executionPath", "executions/123456");
+    flow.put("proxyUsers", new ArrayList<>());
+
+    final Map<String, Object> flowParameters = new HashMap<>();
+    flowParameters.put("flow.num.job.threads", "10");
+    flowParameters.put("failure.emails", "owner@example.com");
+    final Map<String, Object> executionOptions = new HashMap<>();
+    executionOptions.put("flowParameters", flowParameters);
+    executionOptions.put("failureAction", "FINISH_CURRENTLY_RUNNING");
+    executionOptions.put("notifyOnFirstFailure", true);
+    executionOptions.put("concurrentOption", "skip");
+    flow.put("executionOptions", executionOptions);
+
+    final List<Object> nodes = new ArrayList<>(numNodes);
+    for (int i = 0; i < numNodes; i++) {
+      final Map<String, Object> node = new HashMap<>();
+      node.put("id", "job-" + i);
+      node.put("type", "command");
+      node.put("status", i % 3 == 0 ? "SUCCEEDED" : "READY");
+      node.put("startTime", 1612345679901L + i);
+      node.put("endTime", i % 3 == 0 ? 1612345689901L + i : -1L);
+      node.put("updateTime", 1612345689901L + i);
+      node.put("attempt", 0);
+      node.put("jobSource", "job-" + i + ".job");
+      node.put("propSource", "common.properties");
+      final List<Object> inNodes = new ArrayList<>();
+      if (i > 0) {
+        inNodes.add("job-" + (i - 1));
+      }
+      node.put("inNodes", inNodes);
+      final List<Object> outNodes = new ArrayList<>();
+      if (i < numNodes - 1) {
+        outNodes.add("job-" + (i + 1));
+      }
+      node.put("outNodes", outNodes);
+      nodes.add(node);
+    }
+    flow.put("nodes", nodes);
+    return flow;
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link PropsUtils#resolveProps(Props)} on prop sets shaped like the ones the flow
+ * runner resolves for every job: mostly plain values inherited from flow and server props, some
+ * ${...} references and a few $(...) expressions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PropsUtilsBenchmark {
+
+  private static final int NUM_PLAIN_PROPS = 200;
+  private static final int NUM_REPLACEMENT_PROPS = 40;
+  private static final int NUM_EXPRESSION_PROPS = 10;
+
+  private Props plainProps;
+  private Props typicalJobProps;
+  private Props expressionProps;
+
+  @Setup
+  public void setUp() {
+    final Props serverProps = new Props();
+    for (int i = 0; i < NUM_PLAIN_PROPS; i++) {
+      serverProps.put("azkaban.server.prop." + i, "value-" + i);
+    }
+    this.plainProps = new Props(serverProps);
+    this.plainProps.put("type", "command");
+    this.plainProps.put("command", "echo hello");
+
+    this.typicalJobProps = new Props(serverProps);
+    this.typicalJobProps.put("type", "command");
+    this.typicalJobProps.put("command", "echo ${azkaban.server.prop.0}");
+    for (int i = 0; i < NUM_REPLACEMENT_PROPS; i++) {
+      this.typicalJobProps.put("job.ref." + i, "${azkaban.server.prop." + i + "}/path");
+    }
+    for (int i = 0; i < NUM_EXPRESSION_PROPS; i++) {
+      this.typicalJobProps.put("job.expr." + i, "$(" + i + " * 1024)");
+    }
+
+    this.expressionProps = new Props();
+    for (int i = 0; i < NUM_PLAIN_PROPS; i++) {
+      this.expressionProps.put("job.expr." + i, "$(" + (i % 10) + " + 1)-$(2 * 3)");
+    }
+  }
+
+  @Benchmark
+  public Props resolvePlainProps() {
+    return PropsUtils.resolveProps(this.plainProps);
+  }
+
+  @Benchmark
+  public Props resolveTypicalJobProps() {
+    return PropsUtils.resolveProps(this.typicalJobProps);
+  }
+
+  @Benchmark
+  public Props resolveExpressionProps() {
+    return PropsUtils.resolveProps(this.expressionProps);
+  }
+}
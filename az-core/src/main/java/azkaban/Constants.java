@@ -105,6 +105,10 @@ public class Constants {
   // How often executors will poll new executions in Poll Dispatch model
   public static final int DEFAULT_AZKABAN_POLLING_INTERVAL_MS = 1000;
 
+  // Max number of executions an executor claims in one poll, if it has the free flow threads.
+  // Executors polling on free memory or cpu load claim one at a time.
+  public static final int DEFAULT_AZKABAN_POLLING_BATCH_SIZE = 10;
+
   // Executors can use cpu load calculated from this period to take/skip polling turns
   public static final int DEFAULT_AZKABAN_POLLING_CRITERIA_CPU_LOAD_PERIOD_SEC = 60;
 
@@ -122,6 +126,28 @@ public class Constants {
   public static final boolean DEFAULT_AZKABAN_RAMP_STATUS_POOLING_ENABLED = false;
   // How often executors will poll ramp status in Poll Dispatch model
   public static final int DEFAULT_AZKABAN_RAMP_STATUS_POLLING_INTERVAL = 10;
+  // Number of delta updates a flow runner appends before the flow data is compacted again
+  public static final int DEFAULT_AZKABAN_EXECUTION_FLOW_UPDATES_COMPACTION_INTERVAL = 50;
+  // Limits of the connection pool used for calls from the web server to executors
+  public static final int DEFAULT_EXECUTOR_CONNECTION_POOL_MAX_TOTAL = 200;
+  public static final int DEFAULT_EXECUTOR_CONNECTION_POOL_MAX_PER_ROUTE = 20;
+  public static final int DEFAULT_EXECUTOR_CONNECTION_POOL_IDLE_TIMEOUT_SECONDS = 30;
+  // Execution log uploads: max chunk size, and number of threads compressing chunks in parallel
+  public static final int DEFAULT_EXECUTION_LOGS_UPLOAD_MAX_CHUNK_BYTES = 1024 * 1024;
+  public static final int DEFAULT_EXECUTION_LOGS_UPLOAD_THREADS = 4;
+  // Max total size of the encoded flows cached by the web server
+  public static final long DEFAULT_EXECUTABLE_FLOW_CACHE_MAX_SIZE_MB = 100;
+  // Execution status push: how long a request waits for a change, and the share of the jetty
+  // threads that may wait at once unless the max number of waiters is configured
+  public static final long DEFAULT_EXECUTION_STATUS_PUSH_TIMEOUT_MS = 20000;
+  public static final int DEFAULT_EXECUTION_STATUS_PUSH_MAX_WAITERS_PERCENT = 25;
+  // Number of threads hard linking the files of projects into execution dirs
+  public static final int DEFAULT_EXECUTION_DIR_HARDLINK_THREADS = 4;
+  // Number of queued flows the web server dispatches to executors at the same time
+  public static final int DEFAULT_WEBSERVER_DISPATCH_THREADS = 1;
+  // Status refresh of running executions: executors polled in parallel, and the time to wait
+  public static final int DEFAULT_EXECUTOR_STATUS_REFRESH_THREADS = 10;
+  public static final long DEFAULT_EXECUTOR_STATUS_REFRESH_TIMEOUT_MS = 30000;
   // Username to be sent to UserManager when OAuth is in use, and real username is not available:
   public static final String OAUTH_USERNAME_PLACEHOLDER = "<OAuth>";
   // Used by UserManager for password validation (to tell apart real passwords from auth codes).
@@ -156,6 +182,10 @@ public class Constants {
     // Configures Azkaban to use new polling model for dispatching
     public static final String AZKABAN_POLLING_INTERVAL_MS = "azkaban.polling.interval.ms";
     public static final String AZKABAN_POLLING_LOCK_ENABLED = "azkaban.polling.lock.enabled";
+    public static final String AZKABAN_POLLING_BATCH_SIZE = "azkaban.polling.batch.size";
+    // Claim polled executions with SELECT ... FOR UPDATE SKIP LOCKED, requires MySQL 8
+    public static final String AZKABAN_POLLING_SKIP_LOCKED_ENABLED =
+        "azkaban.polling.skip_locked.enabled";
     public static final String AZKABAN_POLLING_CRITERIA_FLOW_THREADS_AVAILABLE =
         "azkaban.polling_criteria.flow_threads_available";
     public static final String AZKABAN_POLLING_CRITERIA_MIN_FREE_MEMORY_GB =
@@ -248,6 +278,10 @@ public class Constants {
     // To set a fixed port for executor-server. Otherwise some available port is used.
     public static final String EXECUTOR_PORT = "executor.port";
 
+    // Number of threads progressing the DAGs of the new DAG engine. Defaults to the number of
+    // cores.
+    public static final String DAG_SERVICE_THREADS = "azkaban.dag.service.threads";
+
     public static final String DEFAULT_TIMEZONE_ID = "default.timezone.id";
 
     // Boolean config set on the Web server to prevent users from creating projects. When set to
@@ -309,6 +343,18 @@ public class Constants {
      **/
     public static final String AZKABAN_STORAGE_ARTIFACT_MAX_RETENTION = "azkaban.storage.artifact.max.retention";
 
+    // Store the files of uploaded project archives as deduplicated blobs with a manifest per
+    // version, instead of whole archives. Not supported by the database storage.
+    public static final String AZKABAN_STORAGE_CONTENT_ADDRESSED_ENABLED =
+        "azkaban.storage.content.addressed.enabled";
+
+    // Local cache of the project file blobs fetched from storage
+    public static final String AZKABAN_STORAGE_BLOB_CACHE_DIR = "azkaban.storage.blob.cache.dir";
+
+    // Max size of the local blob cache, in MB. The least recently used blobs are evicted above it.
+    public static final String AZKABAN_STORAGE_BLOB_CACHE_MAX_SIZE_MB =
+        "azkaban.storage.blob.cache.max.size.mb";
+
     // enable quartz scheduler and flow trigger if true.
     public static final String ENABLE_QUARTZ = "azkaban.server.schedule.enable_quartz";
 
@@ -332,12 +378,23 @@ public class Constants {
         "azkaban.concurrent.runs.oneflow.whitelist";
 
     public static final String WEBSERVER_QUEUE_SIZE = "azkaban.webserver.queue.size";
+    // Shares the queue fairly between the flows of each project or user: none, project or user
+    public static final String WEBSERVER_QUEUE_FAIR_SHARE_KEY =
+        "azkaban.webserver.queue.fair_share.key";
+    // Relative share of a project or user, e.g. azkaban.webserver.queue.fair_share.weight.foo=2
+    public static final String WEBSERVER_QUEUE_FAIR_SHARE_WEIGHT_PREFIX =
+        "azkaban.webserver.queue.fair_share.weight.";
+    public static final String WEBSERVER_DISPATCH_THREADS = "azkaban.webserver.dispatch.threads";
     public static final String ACTIVE_EXECUTOR_REFRESH_IN_MS =
         "azkaban.activeexecutor.refresh.milisecinterval";
     public static final String ACTIVE_EXECUTOR_REFRESH_IN_NUM_FLOW =
         "azkaban.activeexecutor.refresh.flowinterval";
     public static final String EXECUTORINFO_REFRESH_MAX_THREADS =
         "azkaban.executorinfo.refresh.maxThreads";
+    public static final String EXECUTOR_STATUS_REFRESH_THREADS =
+        "azkaban.executor.status.refresh.threads";
+    public static final String EXECUTOR_STATUS_REFRESH_TIMEOUT_MS =
+        "azkaban.executor.status.refresh.timeout.ms";
     public static final String MAX_DISPATCHING_ERRORS_PERMITTED = "azkaban.maxDispatchingErrors";
     public static final String EXECUTOR_SELECTOR_FILTERS = "azkaban.executorselector.filters";
     public static final String EXECUTOR_SELECTOR_COMPARATOR_PREFIX =
@@ -358,6 +415,15 @@ public class Constants {
     public static final String PROJECT_CACHE_THROTTLE_PERCENTAGE =
         "azkaban.project_cache_throttle_percentage";
 
+    // Execution dirs are hard-linked from the project cache by a pool of this many threads,
+    // shared by all the executions being set up. With the manifest enabled, the files of a
+    // cached project are listed once and kept in a manifest in the project dir, so later
+    // executions link them without walking the project dir.
+    public static final String EXECUTION_DIR_HARDLINK_THREADS =
+        "azkaban.execution_dir.hardlink.threads";
+    public static final String EXECUTION_DIR_HARDLINK_MANIFEST_ENABLED =
+        "azkaban.execution_dir.hardlink.manifest.enabled";
+
     // how many older versions of project files are kept in DB before deleting them
     public static final String PROJECT_VERSION_RETENTION = "project.version.retention";
 
@@ -385,11 +451,49 @@ public class Constants {
     public static final String AZKABAN_RAMP_STATUS_POLLING_CPU_MAX = "azkaban.ramp.status.polling.cpu.max";
     public static final String AZKABAN_RAMP_STATUS_POLLING_MEMORY_MIN = "azkaban.ramp.status.polling.memory.min";
 
+    // If enabled, flow runners persist only the nodes which changed since the previous write and
+    // rewrite the full flow data every N writes, where N is the compaction interval.
+    public static final String AZKABAN_EXECUTION_FLOW_DELTA_UPDATES_ENABLED =
+        "azkaban.execution.flow.delta.updates.enabled";
+    public static final String AZKABAN_EXECUTION_FLOW_UPDATES_COMPACTION_INTERVAL =
+        "azkaban.execution.flow.updates.compaction.interval";
+
     public static final String EXECUTION_LOGS_RETENTION_MS = "execution.logs.retention.ms";
     public static final String EXECUTION_LOGS_CLEANUP_INTERVAL_SECONDS =
         "execution.logs.cleanup.interval.seconds";
+    // Old logs are deleted by ranges of execution ids, on this many threads. The ranges are sized
+    // so that a delete takes about the target time, and deletes at most about the record limit of
+    // rows if one is set.
     public static final String EXECUTION_LOGS_CLEANUP_RECORD_LIMIT =
         "execution.logs.cleanup.record.limit";
+    public static final String EXECUTION_LOGS_CLEANUP_THREADS = "execution.logs.cleanup.threads";
+    public static final String EXECUTION_LOGS_CLEANUP_TARGET_BATCH_MS =
+        "execution.logs.cleanup.target.batch.ms";
+    // Drop the old partitions of an execution_logs table partitioned by range of upload_time
+    public static final String EXECUTION_LOGS_CLEANUP_DROP_PARTITIONS =
+        "execution.logs.cleanup.drop.partitions";
+
+    // Encoding of uploaded execution logs, GZIP (default), DEFLATE, DEFLATE_BLOCKS or PLAIN.
+    // DEFLATE compresses several times faster, and DEFLATE_BLOCKS also lets reads of a range of
+    // the log only inflate the blocks it needs. Both can only be read by servers of this version
+    // or later.
+    public static final String EXECUTION_LOGS_ENCODING_TYPE = "execution.logs.encoding.type";
+    public static final String EXECUTION_LOGS_UPLOAD_MAX_CHUNK_BYTES =
+        "execution.logs.upload.max.chunk.bytes";
+    public static final String EXECUTION_LOGS_UPLOAD_THREADS = "execution.logs.upload.threads";
+
+    // Size of the web server cache of executable flows, in MB of encoded flow data. 0 disables
+    // the cache.
+    public static final String EXECUTABLE_FLOW_CACHE_MAX_SIZE_MB =
+        "azkaban.executableflow.cache.max.size.mb";
+
+    // Long-poll requests for execution status changes each hold a web server thread while they
+    // wait, so their number is capped, by default to a quarter of jetty.maxThreads. 0 disables
+    // the push and the flow page polls instead.
+    public static final String EXECUTION_STATUS_PUSH_TIMEOUT_MS =
+        "azkaban.execution.status.push.timeout.ms";
+    public static final String EXECUTION_STATUS_PUSH_MAX_WAITERS =
+        "azkaban.execution.status.push.max.waiters";
 
     // Oauth2.0 configuration keys. If missing, no OAuth will be attempted, and the old
     // username/password{+2FA} prompt will be given for interactive login:
@@ -414,6 +518,16 @@ public class Constants {
 
     public static final String EXECUTOR_CONNECTION_TLS_ENABLED = "executor.connection.tls.enabled";
 
+    // Keep-alive connection pool used by the web server for calls to executors.
+    public static final String EXECUTOR_CONNECTION_POOL_ENABLED =
+        "executor.connection.pool.enabled";
+    public static final String EXECUTOR_CONNECTION_POOL_MAX_TOTAL =
+        "executor.connection.pool.max.total";
+    public static final String EXECUTOR_CONNECTION_POOL_MAX_PER_ROUTE =
+        "executor.connection.pool.max.per.route";
+    public static final String EXECUTOR_CONNECTION_POOL_IDLE_TIMEOUT_SECONDS =
+        "executor.connection.pool.idle.timeout.seconds";
+
     public static final String AZKABAN_EXECUTOR_REVERSE_PROXY_ENABLED =
         "azkaban.executor.reverse.proxy.enabled";
     public static final String AZKABAN_EXECUTOR_REVERSE_PROXY_HOSTNAME =
@@ -25,16 +25,24 @@ import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
+import org.codehaus.jackson.JsonEncoding;
 import org.codehaus.jackson.JsonFactory;
-import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.ObjectWriter;
 
 public class JSONUtils {
 
+  // ObjectMapper, ObjectWriter and JsonFactory are thread safe once configured, and expensive to
+  // create, so they are shared.
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final ObjectWriter PRETTY_WRITER = MAPPER.writerWithDefaultPrettyPrinter();
+  private static final JsonFactory FACTORY = MAPPER.getJsonFactory();
+
   /**
    * The constructor. Cannot construct this class.
    */
@@ -46,14 +54,11 @@ public class JSONUtils {
   }
 
   public static String toJSON(final Object obj, final boolean prettyPrint) {
-    final ObjectMapper mapper = new ObjectMapper();
-
     try {
       if (prettyPrint) {
-        final ObjectWriter writer = mapper.writerWithDefaultPrettyPrinter();
-        return writer.writeValueAsString(obj);
+        return PRETTY_WRITER.writeValueAsString(obj);
       }
-      return mapper.writeValueAsString(obj);
+      return MAPPER.writeValueAsString(obj);
     } catch (final Exception e) {
       throw new RuntimeException(e);
     }
@@ -65,19 +70,30 @@ public class JSONUtils {
 
   public static void toJSON(final Object obj, final OutputStream stream,
       final boolean prettyPrint) {
-    final ObjectMapper mapper = new ObjectMapper();
     try {
       if (prettyPrint) {
-        final ObjectWriter writer = mapper.writerWithDefaultPrettyPrinter();
-        writer.writeValue(stream, obj);
+        PRETTY_WRITER.writeValue(stream, obj);
         return;
       }
-      mapper.writeValue(stream, obj);
+      MAPPER.writeValue(stream, obj);
     } catch (final Exception e) {
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * Writes the object as UTF-8 JSON to the stream as it is serialized, without building the JSON
+   * string first. The stream is not closed.
+   */
+  public static void writeJSON(final Object obj, final OutputStream stream) throws IOException {
+    final JsonGenerator generator = FACTORY.createJsonGenerator(stream, JsonEncoding.UTF8);
+    try {
+      MAPPER.writeValue(generator, obj);
+    } finally {
+      generator.close();
+    }
+  }
+
   public static void toJSON(final Object obj, final File file) throws IOException {
     toJSON(obj, file, false);
   }
@@ -103,70 +119,77 @@ public class JSONUtils {
   }
 
   public static Object parseJSONFromString(final String json) throws IOException {
-    final ObjectMapper mapper = new ObjectMapper();
-    final JsonFactory factory = new JsonFactory();
-    final JsonParser parser = factory.createJsonParser(json);
-    final JsonNode node = mapper.readTree(parser);
-
-    return toObjectFromJSONNode(node);
+    return parseJSON(FACTORY.createJsonParser(json));
   }
 
   public static Object parseJSONFromFile(final File file) throws IOException {
-    final ObjectMapper mapper = new ObjectMapper();
-    final JsonFactory factory = new JsonFactory();
-    final JsonParser parser = factory.createJsonParser(file);
-    final JsonNode node = mapper.readTree(parser);
-
-    return toObjectFromJSONNode(node);
+    return parseJSON(FACTORY.createJsonParser(file));
   }
 
   public static Object parseJSONFromReader(final Reader reader) throws IOException {
-    final ObjectMapper mapper = new ObjectMapper();
-    final JsonFactory factory = new JsonFactory();
-    final JsonParser parser = factory.createJsonParser(reader);
-    final JsonNode node = mapper.readTree(parser);
-
-    return toObjectFromJSONNode(node);
+    return parseJSON(FACTORY.createJsonParser(reader));
   }
 
-  private static Object toObjectFromJSONNode(final JsonNode node) {
-    if (node.isObject()) {
-      final HashMap<String, Object> obj = new HashMap<>();
-      final Iterator<String> iter = node.getFieldNames();
-      while (iter.hasNext()) {
-        final String fieldName = iter.next();
-        final JsonNode subNode = node.get(fieldName);
-        final Object subObj = toObjectFromJSONNode(subNode);
-        obj.put(fieldName, subObj);
+  /**
+   * Reads the first JSON value from the parser straight into HashMaps, ArrayLists and boxed
+   * primitives, without building a JsonNode tree first.
+   */
+  private static Object parseJSON(final JsonParser parser) throws IOException {
+    try {
+      final JsonToken token = parser.nextToken();
+      if (token == null) {
+        return null;
       }
+      return readValue(parser, token);
+    } finally {
+      parser.close();
+    }
+  }
 
-      return obj;
-    } else if (node.isArray()) {
-      final ArrayList<Object> array = new ArrayList<>();
-      final Iterator<JsonNode> iter = node.getElements();
-      while (iter.hasNext()) {
-        final JsonNode element = iter.next();
-        final Object subObject = toObjectFromJSONNode(element);
-        array.add(subObject);
-      }
-      return array;
-    } else if (node.isTextual()) {
-      return node.asText();
-    } else if (node.isNumber()) {
-      if (node.isInt()) {
-        return node.asInt();
-      } else if (node.isLong()) {
-        return node.asLong();
-      } else if (node.isDouble()) {
-        return node.asDouble();
-      } else {
-        System.err.println("ERROR What is this!? " + node.getNumberType());
+  private static Object readValue(final JsonParser parser, final JsonToken token)
+      throws IOException {
+    if (token == null) {
+      throw new JsonParseException("Unexpected end of input", parser.getCurrentLocation());
+    }
+    switch (token) {
+      case START_OBJECT:
+        final HashMap<String, Object> obj = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          final String fieldName = parser.getCurrentName();
+          obj.put(fieldName, readValue(parser, parser.nextToken()));
+        }
+        return obj;
+      case START_ARRAY:
+        final ArrayList<Object> array = new ArrayList<>();
+        JsonToken element = parser.nextToken();
+        while (element != JsonToken.END_ARRAY) {
+          array.add(readValue(parser, element));
+          element = parser.nextToken();
+        }
+        return array;
+      case VALUE_STRING:
+        return parser.getText();
+      case VALUE_NUMBER_INT:
+        switch (parser.getNumberType()) {
+          case INT:
+            return parser.getIntValue();
+          case LONG:
+            return parser.getLongValue();
+          default:
+            throw new JsonParseException("Unsupported number type " + parser.getNumberType(),
+                parser.getCurrentLocation());
+        }
+      case VALUE_NUMBER_FLOAT:
+        return parser.getDoubleValue();
+      case VALUE_TRUE:
+        return Boolean.TRUE;
+      case VALUE_FALSE:
+        return Boolean.FALSE;
+      case VALUE_NULL:
         return null;
-      }
-    } else if (node.isBoolean()) {
-      return node.asBoolean();
-    } else {
-      return null;
+      default:
+        throw new JsonParseException("Unexpected token " + token,
+            parser.getCurrentLocation());
     }
   }
 
@@ -44,6 +44,13 @@ public class PropsUtils {
   private static final Logger LOGGER = LoggerFactory.getLogger(PropsUtils.class);
   private static final Pattern VARIABLE_REPLACEMENT_PATTERN = Pattern
       .compile("\\$\\{([a-zA-Z_.0-9]+)\\}");
+  private static final String VARIABLE_REPLACEMENT_PREFIX = "${";
+  private static final String VARIABLE_EXPRESSION_PREFIX = "$(";
+  // Maximum number of parsed expressions kept by the shared JEXL engine.
+  private static final int JEXL_EXPRESSION_CACHE_SIZE = 1024;
+  // JexlEngine is thread safe once configured, so one engine and its parsed expression cache is
+  // shared by all prop resolutions.
+  private static final JexlEngine JEXL_ENGINE = createJexlEngine();
 
   /**
    * Private constructor.
@@ -52,6 +59,12 @@ public class PropsUtils {
   }
 
 
+  private static JexlEngine createJexlEngine() {
+    final JexlEngine jexl = new JexlEngine();
+    jexl.setCache(JEXL_EXPRESSION_CACHE_SIZE);
+    return jexl;
+  }
+
   /**
    * Load job schedules from the given directories
    *
@@ -228,6 +241,12 @@ public class PropsUtils {
         value = "";
       }
 
+      // Most values are plain strings, so skip the regex matching for them.
+      if (!value.contains(VARIABLE_REPLACEMENT_PREFIX)) {
+        resolvedProps.put(key, value);
+        continue;
+      }
+
       visitedVariables.add(key);
       final String replacedValue =
           resolveVariableReplacement(value, props, visitedVariables);
@@ -238,6 +257,9 @@ public class PropsUtils {
 
     for (final String key : resolvedProps.getKeySet()) {
       final String value = resolvedProps.get(key);
+      if (!value.contains(VARIABLE_EXPRESSION_PREFIX)) {
+        continue;
+      }
       final String expressedValue = resolveVariableExpression(value);
       resolvedProps.put(key, expressedValue);
     }
@@ -322,8 +344,7 @@ public class PropsUtils {
   }
 
   private static String resolveVariableExpression(final String value) {
-    final JexlEngine jexl = new JexlEngine();
-    return resolveVariableExpression(value, value.length(), jexl);
+    return resolveVariableExpression(value, value.length(), JEXL_ENGINE);
   }
 
   /**
@@ -332,7 +353,7 @@ public class PropsUtils {
    */
   private static String resolveVariableExpression(final String value, final int last,
       final JexlEngine jexl) {
-    final int lastIndex = value.lastIndexOf("$(", last);
+    final int lastIndex = value.lastIndexOf(VARIABLE_EXPRESSION_PREFIX, last);
     if (lastIndex == -1) {
       return value;
     }
@@ -15,9 +15,13 @@
  */
 package azkaban.utils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.junit.Assert;
 import org.junit.Test;
@@ -68,4 +72,45 @@ public class JSONUtilsTest {
         (Map<String, String>) JSONUtils.parseJSONFromString(jsonStr);
     checkInAndOut(test, result);
   }
+
+  @Test
+  public void parseJSONValueTypes() throws IOException {
+    final Map<String, Object> result = (Map<String, Object>) JSONUtils.parseJSONFromString(
+        "{\"int\": 1, \"long\": 12345678901, \"double\": 1.5, \"bool\": true, "
+            + "\"null\": null, \"list\": [\"a\", {\"b\": []}], \"map\": {}}");
+
+    Assert.assertEquals(1, result.get("int"));
+    Assert.assertEquals(12345678901L, result.get("long"));
+    Assert.assertEquals(1.5, result.get("double"));
+    Assert.assertEquals(true, result.get("bool"));
+    Assert.assertTrue(result.containsKey("null"));
+    Assert.assertNull(result.get("null"));
+    final List<Object> list = (List<Object>) result.get("list");
+    Assert.assertEquals("a", list.get(0));
+    Assert.assertEquals(Collections.emptyList(), ((Map<String, Object>) list.get(1)).get("b"));
+    Assert.assertEquals(new HashMap<>(), result.get("map"));
+  }
+
+  @Test(expected = IOException.class)
+  public void parseTruncatedJSON() throws IOException {
+    JSONUtils.parseJSONFromString("{\"a\": [1, 2");
+  }
+
+  @Test(expected = IOException.class)
+  public void parseUnsupportedNumberType() throws IOException {
+    JSONUtils.parseJSONFromString("{\"a\": 123456789012345678901234567890}");
+  }
+
+  @Test
+  public void writeJSONToStream() throws IOException {
+    final Map<String, Object> obj = new HashMap<>();
+    obj.put("list", Arrays.asList(1, 2, 3));
+    obj.put("name", "\u00e9t\u00e9");
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JSONUtils.writeJSON(obj, out);
+
+    Assert.assertEquals(JSONUtils.toJSON(obj), out.toString("UTF-8"));
+    Assert.assertEquals(obj, JSONUtils.parseJSONFromString(out.toString("UTF-8")));
+  }
 }
@@ -65,6 +65,19 @@ public class PropsUtilsTest {
     Assert.assertEquals("name ears", resolved.get("res7"));
   }
 
+  @Test
+  public void testResolvePropsWithoutVariables() throws Exception {
+    final Props props = new Props();
+    props.put("plain", "value");
+    props.put("dollar", "$HOME/$1 costs $5");
+    props.put("mixed", "$HOME ${plain} $(1 + 1)");
+
+    final Props resolved = PropsUtils.resolveProps(props);
+    Assert.assertEquals("value", resolved.get("plain"));
+    Assert.assertEquals("$HOME/$1 costs $5", resolved.get("dollar"));
+    Assert.assertEquals("$HOME value 2", resolved.get("mixed"));
+  }
+
   @Test
   public void testInvalidSyntax() throws Exception {
     final Props propsGrandParent = new Props();
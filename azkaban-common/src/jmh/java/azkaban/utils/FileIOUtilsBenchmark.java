@@ -0,0 +1,148 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package azkaban.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link FileIOUtils#createDeepHardlink} with the previous implementation, which listed
+ * every dir twice and linked the files one by one, on synthetic project dirs shaped like a
+ * virtualenv or a tree of jars: a few levels of dirs with many small files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileIOUtilsBenchmark {
+
+  private static final int FILES_PER_DIR = 50;
+  private static final int DIRS_PER_PACKAGE = 20;
+
+  @Param({"4000", "40000"})
+  private int numFiles;
+
+  @Param({"1", "8"})
+  private int numThreads;
+
+  private File rootDir;
+  private File sourceDir;
+  private File manifestFile;
+  private File destDir;
+  private ExecutorService linkService;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() throws IOException {
+    this.rootDir = Files.createTempDirectory("hardlink-benchmark").toFile();
+    this.sourceDir = new File(this.rootDir, "project");
+    for (int i = 0; i < this.numFiles; i++) {
+      final int dirIndex = i / FILES_PER_DIR;
+      final File dir = new File(this.sourceDir, "package" + dirIndex / DIRS_PER_PACKAGE
+          + "/module" + dirIndex % DIRS_PER_PACKAGE);
+      dir.mkdirs();
+      Files.write(new File(dir, "file" + i + ".py").toPath(), new byte[]{(byte) i});
+    }
+    this.manifestFile = new File(this.rootDir, "manifest");
+    final File manifestDestDir = new File(this.rootDir, "manifest-dest");
+    manifestDestDir.mkdir();
+    FileIOUtils.createDeepHardlink(this.sourceDir, manifestDestDir, null, 1, this.manifestFile);
+    FileUtils.deleteDirectory(manifestDestDir);
+    this.linkService = this.numThreads > 1 ? Executors.newFixedThreadPool(this.numThreads) : null;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownTrial() throws IOException {
+    if (this.linkService != null) {
+      this.linkService.shutdown();
+    }
+    FileUtils.deleteDirectory(this.rootDir);
+  }
+
+  @Setup(Level.Invocation)
+  public void setUpInvocation() {
+    this.destDir = new File(this.rootDir, "dest");
+    this.destDir.mkdir();
+  }
+
+  @TearDown(Level.Invocation)
+  public void tearDownInvocation() throws IOException {
+    FileUtils.deleteDirectory(this.destDir);
+  }
+
+  @Benchmark
+  public int hardlinkFileByFile() throws IOException {
+    final Set<String> paths = new HashSet<>();
+    createDirsFindFiles(this.sourceDir, this.sourceDir, this.destDir, paths);
+    int linkCount = 0;
+    for (final String path : paths) {
+      final File sourceLink = new File(this.sourceDir, path);
+      for (final File targetFile : sourceLink.listFiles()) {
+        if (targetFile.isFile()) {
+          final File linkFile = new File(this.destDir + path, targetFile.getName());
+          Files.createLink(linkFile.toPath(), targetFile.getAbsoluteFile().toPath());
+          linkCount++;
+        }
+      }
+    }
+    return linkCount;
+  }
+
+  @Benchmark
+  public int hardlinkWalking() throws IOException {
+    return FileIOUtils.createDeepHardlink(this.sourceDir, this.destDir, this.linkService,
+        this.numThreads, null);
+  }
+
+  @Benchmark
+  public int hardlinkFromManifest() throws IOException {
+    return FileIOUtils.createDeepHardlink(this.sourceDir, this.destDir, this.linkService,
+        this.numThreads, this.manifestFile);
+  }
+
+  private static void createDirsFindFiles(final File baseDir, final File sourceDir,
+      final File destDir, final Set<String> paths) {
+    paths.add(sourceDir.getPath().substring(baseDir.getPath().length()));
+    for (final File file : sourceDir.listFiles()) {
+      if (file.isDirectory()) {
+        final File newDestDir = new File(destDir, file.getName());
+        newDestDir.mkdirs();
+        createDirsFindFiles(baseDir, file, newDestDir, paths);
+      }
+    }
+  }
+}
@@ -55,6 +55,8 @@ public abstract class AbstractExecutorManagerAdapter extends EventHandler implem
   protected final ExecutorLoader executorLoader;
   protected final CommonMetrics commonMetrics;
   protected final ExecutorApiGateway apiGateway;
+  protected final ExecutableFlowCache executableFlowCache;
+  protected final ExecutionStatusFeed executionStatusFeed;
   private final AlerterHolder alerterHolder;
   private final int maxConcurrentRunsOneFlow;
   private final Map<Pair<String, String>, Integer> maxConcurrentRunsPerFlowMap;
@@ -64,25 +66,30 @@ public abstract class AbstractExecutorManagerAdapter extends EventHandler implem
       final ExecutorLoader executorLoader,
       final CommonMetrics commonMetrics,
       final ExecutorApiGateway apiGateway,
-      final AlerterHolder alerterHolder) {
+      final AlerterHolder alerterHolder,
+      final ExecutableFlowCache executableFlowCache,
+      final ExecutionStatusFeed executionStatusFeed) {
     this.azkProps = azkProps;
     this.executorLoader = executorLoader;
     this.commonMetrics = commonMetrics;
     this.apiGateway = apiGateway;
     this.alerterHolder = alerterHolder;
+    this.executableFlowCache = executableFlowCache;
+    this.executionStatusFeed = executionStatusFeed;
     this.maxConcurrentRunsOneFlow = ExecutorUtils.getMaxConcurrentRunsOneFlow(azkProps);
     this.maxConcurrentRunsPerFlowMap = ExecutorUtils.getMaxConcurentRunsPerFlowMap(azkProps);
   }
 
   /**
-   * Fetch ExecutableFlow from database {@inheritDoc}
+   * Fetch ExecutableFlow from database, or from the cache if it is unchanged since it was cached.
+   * {@inheritDoc}
    *
    * @see azkaban.executor.ExecutorManagerAdapter#getExecutableFlow(int)
    */
   @Override
   public ExecutableFlow getExecutableFlow(final int execId)
       throws ExecutorManagerException {
-    return this.executorLoader.fetchExecutableFlow(execId);
+    return this.executableFlowCache.get(execId);
   }
 
   /**
@@ -383,6 +390,11 @@ public abstract class AbstractExecutorManagerAdapter extends EventHandler implem
     return flows;
   }
 
+  @Override
+  public int getNumRunningFlows() {
+    return getRunningFlows().size();
+  }
+
   protected LogData getFlowLogData(final ExecutableFlow exFlow, final int offset, final int length,
       final Pair<ExecutionReference, ExecutableFlow> pair) throws ExecutorManagerException {
     if (pair != null) {
@@ -492,7 +504,8 @@ public abstract class AbstractExecutorManagerAdapter extends EventHandler implem
               .callWithReferenceByUser(pair.getFirst(), ConnectorParams.CANCEL_ACTION, userId);
         } else {
           // Flow is still queued, need to finalize it and update the status in DB.
-          ExecutionControllerUtils.finalizeFlow(this.executorLoader, this.alerterHolder, exFlow,
+          ExecutionControllerUtils.finalizeFlow(this.executorLoader, this.alerterHolder,
+              this.executableFlowCache, this.executionStatusFeed, exFlow,
               "Cancelled before dispatching to executor", null);
         }
       } else {
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package azkaban.executor;
+
+import azkaban.db.EncodingType;
+import azkaban.utils.GZIPUtils;
+import azkaban.utils.Pair;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The flow data of an execution as stored in the DB, along with the updates appended to it since
+ * its last compaction. Nothing is decoded until {@link #decode()}.
+ */
+public class EncodedExecutableFlow {
+
+  private final int execId;
+  private final EncodingType encType;
+  private final byte[] flowData;
+  // The status column, which takes precedence over the status in the flow data
+  private final Status status;
+  private final long updateTime;
+  private final List<Pair<EncodingType, byte[]>> updates;
+
+  public EncodedExecutableFlow(final int execId, final EncodingType encType,
+      final byte[] flowData, final Status status, final long updateTime,
+      final List<Pair<EncodingType, byte[]>> updates) {
+    this.execId = execId;
+    this.encType = encType;
+    this.flowData = flowData;
+    this.status = status;
+    this.updateTime = updateTime;
+    this.updates = Collections.unmodifiableList(updates);
+  }
+
+  public int getExecId() {
+    return this.execId;
+  }
+
+  /**
+   * @return the update_time of the execution the flow data was fetched with
+   */
+  public long getUpdateTime() {
+    return this.updateTime;
+  }
+
+  public Status getStatus() {
+    return this.status;
+  }
+
+  /**
+   * @return a copy of this flow with the given updates
+   */
+  EncodedExecutableFlow withUpdates(final List<Pair<EncodingType, byte[]>> updates) {
+    return new EncodedExecutableFlow(this.execId, this.encType, this.flowData, this.status,
+        this.updateTime, updates);
+  }
+
+  /**
+   * @return the number of bytes of the flow data and the updates
+   */
+  public int getSize() {
+    int size = this.flowData.length;
+    for (final Pair<EncodingType, byte[]> update : this.updates) {
+      size += update.getSecond().length;
+    }
+    return size;
+  }
+
+  /**
+   * Decodes a new flow and applies the updates to it, in order.
+   */
+  @SuppressWarnings("unchecked")
+  public ExecutableFlow decode() throws IOException {
+    final ExecutableFlow flow = ExecutableFlow.createExecutableFlow(
+        GZIPUtils.transformBytesToObject(this.flowData, this.encType), this.status);
+    for (final Pair<EncodingType, byte[]> update : this.updates) {
+      flow.applyUpdateObject((Map<String, Object>) GZIPUtils.transformBytesToObject(
+          update.getSecond(), update.getFirst()));
+    }
+    return flow;
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package azkaban.executor;
+
+import azkaban.Constants;
+import azkaban.Constants.ConfigurationKeys;
+import azkaban.metrics.CommonMetrics;
+import azkaban.utils.Props;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Read-through cache of executable flows, used by the web server to serve flow pages and their
+ * status polls without fetching the flow data on every request.
+ *
+ * <p>Flows are cached as fetched: the encoded flow_data of the execution and the updates appended
+ * to it, along with the update_time they were fetched with. A cached flow is only used while the
+ * update_time in the DB is unchanged, so a hit still costs that one query, which is much cheaper
+ * than fetching the flow. The cache is bounded by the total size of the cached bytes.
+ *
+ * <p>Every call gets its own flow decoded from the cached bytes, so callers can modify the
+ * returned flows. A hit saves the transfer of the flow data, not its decoding.
+ */
+@Singleton
+public class ExecutableFlowCache {
+
+  // Flows nobody looked at for this long are dropped, finished flows are rarely polled for long
+  private static final long EXPIRE_AFTER_ACCESS_MINUTES = 10;
+
+  private final ExecutorLoader executorLoader;
+  private final CommonMetrics commonMetrics;
+  private final Cache<Integer, EncodedExecutableFlow> cache;
+
+  @Inject
+  public ExecutableFlowCache(final Props azkProps, final ExecutorLoader executorLoader,
+      final CommonMetrics commonMetrics) {
+    this.executorLoader = executorLoader;
+    this.commonMetrics = commonMetrics;
+    final long maxSizeBytes = azkProps.getLong(
+        ConfigurationKeys.EXECUTABLE_FLOW_CACHE_MAX_SIZE_MB,
+        Constants.DEFAULT_EXECUTABLE_FLOW_CACHE_MAX_SIZE_MB) * 1024 * 1024;
+    if (maxSizeBytes > 0) {
+      this.cache = CacheBuilder.newBuilder()
+          .maximumWeight(maxSizeBytes)
+          .<Integer, EncodedExecutableFlow>weigher((execId, flow) -> flow.getSize())
+          .expireAfterAccess(EXPIRE_AFTER_ACCESS_MINUTES, TimeUnit.MINUTES)
+          .removalListener(notification -> {
+            if (notification.getCause() == RemovalCause.SIZE) {
+              commonMetrics.markExecutableFlowCacheEviction();
+            }
+          })
+          .build();
+    } else {
+      this.cache = null;
+    }
+  }
+
+  /**
+   * Returns the flow of the execution, from the cache if it is up to date or else from the DB.
+   *
+   * @return the flow, or null if the execution doesn't exist
+   */
+  public ExecutableFlow get(final int execId) throws ExecutorManagerException {
+    if (this.cache == null) {
+      return this.executorLoader.fetchExecutableFlow(execId);
+    }
+
+    EncodedExecutableFlow flow = this.cache.getIfPresent(execId);
+    if (flow != null
+        && flow.getUpdateTime() == this.executorLoader.fetchExecutableFlowUpdateTime(execId)) {
+      this.commonMetrics.markExecutableFlowCacheHit();
+    } else {
+      this.commonMetrics.markExecutableFlowCacheMiss();
+      flow = this.executorLoader.fetchEncodedExecutableFlow(execId);
+      if (flow == null) {
+        this.cache.invalidate(execId);
+        return null;
+      }
+      this.cache.put(execId, flow);
+    }
+
+    try {
+      return flow.decode();
+    } catch (final IOException e) {
+      throw new ExecutorManagerException("Error decoding flow " + execId, e);
+    }
+  }
+
+  /**
+   * Drops the cached flow of the execution, e.g. when its status is known to have changed.
+   */
+  public void invalidate(final int execId) {
+    if (this.cache != null) {
+      this.cache.invalidate(execId);
+    }
+  }
+
+  public long size() {
+    return this.cache == null ? 0 : this.cache.size();
+  }
+}
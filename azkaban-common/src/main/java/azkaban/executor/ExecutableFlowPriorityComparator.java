@@ -21,7 +21,8 @@ import java.util.Comparator;
 import org.apache.log4j.Logger;
 
 /**
- * Comparator implicitly used in priority queue for QueuedExecutions.
+ * Priority order of queued flows, see {@link QueuedExecution#PRIORITY_ORDER} for the order of
+ * the queue itself.
  */
 public final class ExecutableFlowPriorityComparator implements
     Comparator<Pair<ExecutionReference, ExecutableFlow>> {
@@ -73,7 +74,7 @@ public final class ExecutableFlowPriorityComparator implements
   }
 
   /* Helper method to fetch flow priority from flow props */
-  private int getPriority(final ExecutableFlow exflow) {
+  static int getPriority(final ExecutableFlow exflow) {
     final ExecutionOptions options = exflow.getExecutionOptions();
     int priority = ExecutionOptions.DEFAULT_FLOW_PRIORITY;
     if (options != null
@@ -48,8 +48,10 @@ public class ExecutionController extends AbstractExecutorManagerAdapter {
   protected ExecutionController(final Props azkProps, final ExecutorLoader executorLoader,
       final CommonMetrics commonMetrics,
       final ExecutorApiGateway apiGateway, final AlerterHolder alerterHolder, final
-  ExecutorHealthChecker executorHealthChecker) {
-    super(azkProps, executorLoader, commonMetrics, apiGateway, alerterHolder);
+  ExecutorHealthChecker executorHealthChecker, final ExecutableFlowCache executableFlowCache,
+      final ExecutionStatusFeed executionStatusFeed) {
+    super(azkProps, executorLoader, commonMetrics, apiGateway, alerterHolder,
+        executableFlowCache, executionStatusFeed);
     this.executorHealthChecker = executorHealthChecker;
   }
 
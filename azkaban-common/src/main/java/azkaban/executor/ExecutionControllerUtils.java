@@ -60,17 +60,20 @@ public class ExecutionControllerUtils {
 
   /**
    * If the current status of the execution is not one of the finished statuses, mark the execution
-   * as failed in the DB.
+   * as failed in the DB. The execution is dropped from the flow cache and the status feed.
    *
    * @param executorLoader the executor loader
    * @param alerterHolder the alerter holder
+   * @param executableFlowCache the cache of the flows served to the web pages
+   * @param executionStatusFeed the feed pushing status updates to the web pages
    * @param flow the execution
    * @param reason reason for finalizing the execution
    * @param originalError the cause, if execution is being finalized because of an error
    */
   public static void finalizeFlow(final ExecutorLoader executorLoader, final AlerterHolder
-      alerterHolder, final ExecutableFlow flow, final String reason,
-      @Nullable final Throwable originalError) {
+      alerterHolder, final ExecutableFlowCache executableFlowCache,
+      final ExecutionStatusFeed executionStatusFeed, final ExecutableFlow flow,
+      final String reason, @Nullable final Throwable originalError) {
     boolean alertUser = true;
 
     // First check if the execution in the datastore is finished.
@@ -91,12 +94,16 @@ public class ExecutionControllerUtils {
 
       if (flow.getEndTime() == -1) {
         flow.setEndTime(System.currentTimeMillis());
+        dsFlow.setUpdateTime(System.currentTimeMillis());
         executorLoader.updateExecutableFlow(dsFlow);
       }
     } catch (final ExecutorManagerException e) {
       // If failed due to azkaban internal error, do not alert user.
       alertUser = false;
       logger.error("Failed to finalize flow " + flow.getExecutionId() + ", do not alert user.", e);
+    } finally {
+      executableFlowCache.invalidate(flow.getExecutionId());
+      executionStatusFeed.remove(flow.getExecutionId());
     }
 
     if (alertUser) {
@@ -250,6 +257,8 @@ public class ExecutionControllerUtils {
     }
 
     exFlow.setStatus(Status.FAILED);
+    // Readers that cache the flow by its update time must see the change
+    exFlow.setUpdateTime(time);
   }
 
   /**
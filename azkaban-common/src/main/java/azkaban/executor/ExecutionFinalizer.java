@@ -31,15 +31,21 @@ public class ExecutionFinalizer {
   private final ExecutorManagerUpdaterStage updaterStage;
   private final AlerterHolder alerterHolder;
   private final RunningExecutions runningExecutions;
+  private final ExecutableFlowCache executableFlowCache;
+  private final ExecutionStatusFeed executionStatusFeed;
 
   @Inject
   public ExecutionFinalizer(final ExecutorLoader executorLoader,
       final ExecutorManagerUpdaterStage updaterStage,
-      final AlerterHolder alerterHolder, final RunningExecutions runningExecutions) {
+      final AlerterHolder alerterHolder, final RunningExecutions runningExecutions,
+      final ExecutableFlowCache executableFlowCache,
+      final ExecutionStatusFeed executionStatusFeed) {
     this.executorLoader = executorLoader;
     this.updaterStage = updaterStage;
     this.alerterHolder = alerterHolder;
     this.runningExecutions = runningExecutions;
+    this.executableFlowCache = executableFlowCache;
+    this.executionStatusFeed = executionStatusFeed;
   }
 
   /**
@@ -79,6 +85,7 @@ public class ExecutionFinalizer {
       // Delete the executing reference.
       if (flow.getEndTime() == -1) {
         flow.setEndTime(System.currentTimeMillis());
+        dsFlow.setUpdateTime(System.currentTimeMillis());
         this.executorLoader.updateExecutableFlow(dsFlow);
       }
       this.executorLoader.removeActiveExecutableReference(execId);
@@ -88,6 +95,9 @@ public class ExecutionFinalizer {
     } catch (final ExecutorManagerException e) {
       alertUser = false; // failed due to azkaban internal error, not to alert user
       logger.error(e);
+    } finally {
+      this.executableFlowCache.invalidate(execId);
+      this.executionStatusFeed.remove(execId);
     }
 
     // TODO append to the flow log that we marked this flow as failed + the extraReasons
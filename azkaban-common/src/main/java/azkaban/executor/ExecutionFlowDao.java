@@ -28,9 +28,12 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
@@ -50,6 +53,12 @@ public class ExecutionFlowDao {
 
   private static final String POLLING_LOCK_NAME = "execution_flows_polling";
   private static final int GET_LOCK_TIMEOUT_IN_SECONDS = 5;
+  // Max number of executions whose appended updates are fetched in one query
+  private static final int FLOW_UPDATES_BATCH_SIZE = 500;
+  private static final String UPDATE_EXECUTABLE_FLOW_DATA =
+      "UPDATE execution_flows "
+          + "SET status=?,update_time=?,start_time=?,end_time=?,enc_type=?,flow_data=? "
+          + "WHERE exec_id=?";
 
   @Inject
   public ExecutionFlowDao(final DatabaseOperator dbOperator, final MysqlNamedLock mysqlNamedLock) {
@@ -102,8 +111,8 @@ public class ExecutionFlowDao {
   List<ExecutableFlow> fetchFlowHistory(final int skip, final int num)
       throws ExecutorManagerException {
     try {
-      return this.dbOperator.query(FetchExecutableFlows.FETCH_ALL_EXECUTABLE_FLOW_HISTORY,
-          new FetchExecutableFlows(), skip, num);
+      return queryExecutableFlows(FetchExecutableFlows.FETCH_ALL_EXECUTABLE_FLOW_HISTORY, skip,
+          num);
     } catch (final SQLException e) {
       throw new ExecutorManagerException("Error fetching flow History", e);
     }
@@ -113,8 +122,8 @@ public class ExecutionFlowDao {
       final int skip, final int num)
       throws ExecutorManagerException {
     try {
-      return this.dbOperator.query(FetchExecutableFlows.FETCH_EXECUTABLE_FLOW_HISTORY,
-          new FetchExecutableFlows(), projectId, flowId, skip, num);
+      return queryExecutableFlows(FetchExecutableFlows.FETCH_EXECUTABLE_FLOW_HISTORY, projectId,
+          flowId, skip, num);
     } catch (final SQLException e) {
       throw new ExecutorManagerException("Error fetching flow history", e);
     }
@@ -123,8 +132,8 @@ public class ExecutionFlowDao {
   public List<ExecutableFlow> fetchAgedQueuedFlows(final Duration minAge)
       throws ExecutorManagerException {
     try {
-      return this.dbOperator.query(FetchExecutableFlows.FETCH_FLOWS_QUEUED_FOR_LONG_TIME,
-          new FetchExecutableFlows(), System.currentTimeMillis() - minAge.toMillis());
+      return queryExecutableFlows(FetchExecutableFlows.FETCH_FLOWS_QUEUED_FOR_LONG_TIME,
+          System.currentTimeMillis() - minAge.toMillis());
     } catch (final SQLException e) {
       throw new ExecutorManagerException("Error fetching aged queued flows", e);
     }
@@ -133,13 +142,31 @@ public class ExecutionFlowDao {
   public List<Pair<ExecutionReference, ExecutableFlow>> fetchQueuedFlows(final Status status)
       throws ExecutorManagerException {
     try {
-      return this.dbOperator.query(FetchQueuedExecutableFlows.FETCH_QUEUED_EXECUTABLE_FLOW,
+      final List<Pair<ExecutionReference, ExecutableFlow>> queuedFlows = this.dbOperator.query(
+          FetchQueuedExecutableFlows.FETCH_QUEUED_EXECUTABLE_FLOW,
           new FetchQueuedExecutableFlows(), status.getNumVal());
+      applyExecutableFlowUpdates(this.dbOperator,
+          queuedFlows.stream().map(Pair::getSecond).collect(Collectors.toList()));
+      return queuedFlows;
     } catch (final SQLException e) {
       throw new ExecutorManagerException("Error fetching active flows", e);
     }
   }
 
+  /**
+   * Fetches a page of the queued executions without decoding their flows, in order of execution
+   * id.
+   */
+  public List<QueuedExecution> fetchQueuedExecutions(final int afterExecId, final int limit)
+      throws ExecutorManagerException {
+    try {
+      return this.dbOperator.query(FetchQueuedExecutions.FETCH_QUEUED_EXECUTIONS,
+          new FetchQueuedExecutions(), Status.PREPARING.getNumVal(), afterExecId, limit);
+    } catch (final SQLException e) {
+      throw new ExecutorManagerException("Error fetching queued executions", e);
+    }
+  }
+
   public List<ExecutableFlow> fetchStaleFlows(final long beforeInMillis)
       throws ExecutorManagerException {
     // Sample query created by the string builder:
@@ -154,7 +181,7 @@ public class ExecutionFlowDao {
     query.append(")");
 
     try {
-      return this.dbOperator.query(query.toString(), new FetchExecutableFlows(), beforeInMillis);
+      return queryExecutableFlows(query.toString(), beforeInMillis);
     } catch (final SQLException e) {
       throw new ExecutorManagerException("Error fetching stale flows", e);
     }
@@ -174,8 +201,8 @@ public class ExecutionFlowDao {
   public List<ExecutableFlow> fetchFlowHistory(final int projectId, final String flowId, final
   long startTime) throws ExecutorManagerException {
     try {
-      return this.dbOperator.query(FetchExecutableFlows.FETCH_EXECUTABLE_FLOW_BY_START_TIME,
-          new FetchExecutableFlows(), projectId, flowId, startTime);
+      return queryExecutableFlows(FetchExecutableFlows.FETCH_EXECUTABLE_FLOW_BY_START_TIME,
+          projectId, flowId, startTime);
     } catch (final SQLException e) {
       throw new ExecutorManagerException("Error fetching historic flows", e);
     }
@@ -185,8 +212,8 @@ public class ExecutionFlowDao {
       final int skip, final int num, final Status status)
       throws ExecutorManagerException {
     try {
-      return this.dbOperator.query(FetchExecutableFlows.FETCH_EXECUTABLE_FLOW_BY_STATUS,
-          new FetchExecutableFlows(), projectId, flowId, status.getNumVal(), skip, num);
+      return queryExecutableFlows(FetchExecutableFlows.FETCH_EXECUTABLE_FLOW_BY_STATUS, projectId,
+          flowId, status.getNumVal(), skip, num);
     } catch (final SQLException e) {
       throw new ExecutorManagerException("Error fetching active flows", e);
     }
@@ -195,10 +222,13 @@ public class ExecutionFlowDao {
   List<ExecutableFlow> fetchRecentlyFinishedFlows(final Duration maxAge)
       throws ExecutorManagerException {
     try {
-      return this.dbOperator.query(FetchRecentlyFinishedFlows.FETCH_RECENTLY_FINISHED_FLOW,
+      final List<ExecutableFlow> flows = this.dbOperator.query(
+          FetchRecentlyFinishedFlows.FETCH_RECENTLY_FINISHED_FLOW,
           new FetchRecentlyFinishedFlows(), System.currentTimeMillis() - maxAge.toMillis(),
           Status.SUCCEEDED.getNumVal(), Status.KILLED.getNumVal(),
           Status.FAILED.getNumVal());
+      applyExecutableFlowUpdates(this.dbOperator, flows);
+      return flows;
     } catch (final SQLException e) {
       throw new ExecutorManagerException("Error fetching recently finished flows", e);
     }
@@ -281,7 +311,7 @@ public class ExecutionFlowDao {
     }
 
     try {
-      return this.dbOperator.query(query, new FetchExecutableFlows(), params.toArray());
+      return queryExecutableFlows(query, params.toArray());
     } catch (final SQLException e) {
       throw new ExecutorManagerException("Error fetching active flows", e);
     }
@@ -291,22 +321,87 @@ public class ExecutionFlowDao {
     updateExecutableFlow(flow, EncodingType.GZIP);
   }
 
+  /**
+   * Rewrites the flow_data blob of the execution. The updates appended by {@link
+   * #appendExecutableFlowUpdate(ExecutableFlow, long)} are dropped in the same transaction, since
+   * the flow they were applied to is now stored in full. This keeps executions finalized by the
+   * web server, which rewrite flow_data directly, from leaving stale updates behind.
+   */
   private void updateExecutableFlow(final ExecutableFlow flow, final EncodingType encType)
       throws ExecutorManagerException {
-    final String UPDATE_EXECUTABLE_FLOW_DATA =
+    final String DELETE_EXECUTABLE_FLOW_UPDATES =
+        "DELETE FROM execution_flow_updates WHERE exec_id=?";
+
+    final byte[] data = encodeExecutableFlow(flow, encType);
+
+    final SQLTransaction<Integer> update = transOperator -> {
+      transOperator.update(UPDATE_EXECUTABLE_FLOW_DATA, flow.getStatus().getNumVal(),
+          flow.getUpdateTime(), flow.getStartTime(), flow.getEndTime(), encType.getNumVal(),
+          data, flow.getExecutionId());
+      return transOperator.update(DELETE_EXECUTABLE_FLOW_UPDATES, flow.getExecutionId());
+    };
+
+    try {
+      this.dbOperator.transaction(update);
+    } catch (final SQLException e) {
+      throw new ExecutorManagerException("Error updating flow.", e);
+    }
+  }
+
+  /**
+   * Appends the nodes of the flow which changed after {@code lastUpdateTime} to
+   * execution_flow_updates and refreshes the status columns of execution_flows. Unlike {@link
+   * #updateExecutableFlow(ExecutableFlow)} the flow_data blob is not rewritten, so the amount of
+   * data written scales with the number of changed nodes instead of with the size of the flow.
+   */
+  void appendExecutableFlowUpdate(final ExecutableFlow flow, final long lastUpdateTime)
+      throws ExecutorManagerException {
+    final String INSERT_EXECUTABLE_FLOW_UPDATE = "INSERT INTO execution_flow_updates "
+        + "(exec_id, update_time, enc_type, update_data) values (?,?,?,?)";
+    final String UPDATE_EXECUTABLE_FLOW_STATUS =
         "UPDATE execution_flows "
-            + "SET status=?,update_time=?,start_time=?,end_time=?,enc_type=?,flow_data=? "
+            + "SET status=?,update_time=?,start_time=?,end_time=? "
             + "WHERE exec_id=?";
 
+    final byte[] data;
+    try {
+      data = GZIPUtils.gzipJSON(flow.toUpdateObject(lastUpdateTime));
+    } catch (final IOException e) {
+      throw new ExecutorManagerException("Error encoding the execution flow update. Execution "
+          + "Id  = " + flow.getExecutionId(), e);
+    }
+
+    final SQLTransaction<Integer> appendUpdate = transOperator -> {
+      transOperator.update(INSERT_EXECUTABLE_FLOW_UPDATE, flow.getExecutionId(),
+          flow.getUpdateTime(), EncodingType.GZIP.getNumVal(), data);
+      return transOperator.update(UPDATE_EXECUTABLE_FLOW_STATUS, flow.getStatus().getNumVal(),
+          flow.getUpdateTime(), flow.getStartTime(), flow.getEndTime(), flow.getExecutionId());
+    };
+
+    try {
+      this.dbOperator.transaction(appendUpdate);
+    } catch (final SQLException e) {
+      throw new ExecutorManagerException("Error appending update of flow.", e);
+    }
+  }
+
+  /**
+   * Rewrites the flow_data blob of the execution and drops the updates appended by {@link
+   * #appendExecutableFlowUpdate(ExecutableFlow, long)}, which are all contained in the new blob.
+   */
+  void compactExecutableFlow(final ExecutableFlow flow) throws ExecutorManagerException {
+    updateExecutableFlow(flow, EncodingType.GZIP);
+  }
+
+  private byte[] encodeExecutableFlow(final ExecutableFlow flow, final EncodingType encType)
+      throws ExecutorManagerException {
     byte[] data = null;
     try {
       // If this action fails, the execution must be failed.
-      final String json = JSONUtils.toJSON(flow.toObject());
-      final byte[] stringData = json.getBytes("UTF-8");
-      data = stringData;
-      // Todo kunkun-tang: use a common method to transform stringData to data.
       if (encType == EncodingType.GZIP) {
-        data = GZIPUtils.gzipBytes(stringData);
+        data = GZIPUtils.gzipJSON(flow.toObject());
+      } else {
+        data = JSONUtils.toJSON(flow.toObject()).getBytes("UTF-8");
       }
     } catch (final IOException e) {
       flow.setStatus(Status.FAILED);
@@ -324,14 +419,7 @@ public class ExecutionFlowDao {
       throw new ExecutorManagerException("Error encoding the execution flow due to "
           + "RuntimeException. Execution Id  = " + flow.getExecutionId(), re);
     }
-
-    try {
-      this.dbOperator.update(UPDATE_EXECUTABLE_FLOW_DATA, flow.getStatus()
-          .getNumVal(), flow.getUpdateTime(), flow.getStartTime(), flow
-          .getEndTime(), encType.getNumVal(), data, flow.getExecutionId());
-    } catch (final SQLException e) {
-      throw new ExecutorManagerException("Error updating flow.", e);
-    }
+    return data;
   }
 
   private void updateExecutableFlowStatusInDB(final ExecutableFlow flow)
@@ -348,66 +436,142 @@ public class ExecutionFlowDao {
   }
 
   public ExecutableFlow fetchExecutableFlow(final int execId) throws ExecutorManagerException {
-    final FetchExecutableFlows flowHandler = new FetchExecutableFlows();
     try {
-      final List<ExecutableFlow> properties = this.dbOperator
-          .query(FetchExecutableFlows.FETCH_EXECUTABLE_FLOW, flowHandler, execId);
-      if (properties.isEmpty()) {
-        return null;
-      } else {
-        return properties.get(0);
-      }
+      final List<ExecutableFlow> properties =
+          queryExecutableFlows(FetchExecutableFlows.FETCH_EXECUTABLE_FLOW, execId);
+      return properties.isEmpty() ? null : properties.get(0);
     } catch (final SQLException e) {
       throw new ExecutorManagerException("Error fetching flow id " + execId, e);
     }
   }
 
   /**
-   * set executor id to null for the execution id
+   * Fetches the flow data of an execution and the updates appended to it, without decoding them.
+   *
+   * @return the encoded flow, or null if the execution doesn't exist or has no flow data
    */
-  public void unsetExecutorIdForExecution(final int executionId) throws ExecutorManagerException {
-    final String UNSET_EXECUTOR = "UPDATE execution_flows SET executor_id = null, update_time = ? where exec_id = ?";
-
-    final SQLTransaction<Integer> unsetExecutor =
-        transOperator -> transOperator.update(UNSET_EXECUTOR, System.currentTimeMillis(),
-            executionId);
+  public EncodedExecutableFlow fetchEncodedExecutableFlow(final int execId)
+      throws ExecutorManagerException {
+    final String FETCH_ENCODED_EXECUTABLE_FLOW =
+        "SELECT enc_type, flow_data, status, update_time FROM execution_flows WHERE exec_id=?";
+    final String FETCH_ENCODED_EXECUTABLE_FLOW_UPDATES =
+        "SELECT enc_type, update_data FROM execution_flow_updates WHERE exec_id=? "
+            + "AND update_data IS NOT NULL ORDER BY update_id ASC";
+    try {
+      final EncodedExecutableFlow flow = this.dbOperator.query(FETCH_ENCODED_EXECUTABLE_FLOW,
+          rs -> {
+            if (!rs.next() || rs.getBytes(2) == null) {
+              return null;
+            }
+            return new EncodedExecutableFlow(execId, EncodingType.fromInteger(rs.getInt(1)),
+                rs.getBytes(2), Status.fromInteger(rs.getInt(3)), rs.getLong(4),
+                Collections.emptyList());
+          }, execId);
+      // Finished flows are always compacted
+      if (flow == null || Status.isStatusFinished(flow.getStatus())) {
+        return flow;
+      }
+      final List<Pair<EncodingType, byte[]>> updates = this.dbOperator.query(
+          FETCH_ENCODED_EXECUTABLE_FLOW_UPDATES, rs -> {
+            final List<Pair<EncodingType, byte[]>> result = new ArrayList<>();
+            while (rs.next()) {
+              result.add(new Pair<>(EncodingType.fromInteger(rs.getInt(1)), rs.getBytes(2)));
+            }
+            return result;
+          }, execId);
+      return updates.isEmpty() ? flow : flow.withUpdates(updates);
+    } catch (final SQLException e) {
+      throw new ExecutorManagerException("Error fetching flow data of flow id " + execId, e);
+    }
+  }
 
+  /**
+   * Fetches the update time of a flow without reading its flow data.
+   *
+   * @return the update time, or -1 if the execution doesn't exist
+   */
+  public long fetchExecutableFlowUpdateTime(final int execId) throws ExecutorManagerException {
+    final String FETCH_UPDATE_TIME = "SELECT update_time FROM execution_flows WHERE exec_id=?";
     try {
-      this.dbOperator.transaction(unsetExecutor);
+      return this.dbOperator.query(FETCH_UPDATE_TIME, rs -> rs.next() ? rs.getLong(1) : -1L,
+          execId);
     } catch (final SQLException e) {
-      throw new ExecutorManagerException("Error unsetting executor id for execution " + executionId,
-          e);
+      throw new ExecutorManagerException("Error fetching update time of flow id " + execId, e);
     }
   }
 
-  public int selectAndUpdateExecution(final int executorId, final boolean isActive)
-      throws ExecutorManagerException {
-    final String UPDATE_EXECUTION = "UPDATE execution_flows SET executor_id = ?, update_time = ? "
-        + "where exec_id = ?";
-    final String selectExecutionForUpdate = isActive ?
-        SelectFromExecutionFlows.SELECT_EXECUTION_FOR_UPDATE_ACTIVE :
-        SelectFromExecutionFlows.SELECT_EXECUTION_FOR_UPDATE_INACTIVE;
+  /**
+   * Fetches flows with {@link FetchExecutableFlows} and applies their appended updates.
+   */
+  private List<ExecutableFlow> queryExecutableFlows(final String query, final Object... params)
+      throws SQLException {
+    final List<ExecutableFlow> flows =
+        this.dbOperator.query(query, new FetchExecutableFlows(), params);
+    applyExecutableFlowUpdates(this.dbOperator, flows);
+    return flows;
+  }
 
-    final SQLTransaction<Integer> selectAndUpdateExecution = transOperator -> {
-      transOperator.getConnection().setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+  /**
+   * Decodes the flow_data blob of an execution. Readers of flow_data must also call {@link
+   * #applyExecutableFlowUpdates(DatabaseOperator, Collection)} on the decoded flows, which may not
+   * include the updates appended since the last compaction.
+   *
+   * @param status the status column, which takes precedence over the status in the flow data
+   */
+  static ExecutableFlow decodeExecutableFlow(final int execId, final int encodingType,
+      final byte[] data, final Status status) throws SQLException {
+    final EncodingType encType = EncodingType.fromInteger(encodingType);
+    try {
+      return ExecutableFlow.createExecutableFlow(
+          GZIPUtils.transformBytesToObject(data, encType), status);
+    } catch (final IOException e) {
+      throw new SQLException("Error retrieving flow data " + execId, e);
+    }
+  }
 
-      final List<Integer> execIds = transOperator.query(selectExecutionForUpdate,
-          new SelectFromExecutionFlows(), Status.PREPARING.getNumVal(), executorId);
+  /**
+   * Applies the updates appended since the last compaction of the flows, in insertion order.
+   * Finished flows are always compacted, so only the updates of unfinished flows are fetched, with
+   * one query per {@value #FLOW_UPDATES_BATCH_SIZE} flows.
+   */
+  static void applyExecutableFlowUpdates(final DatabaseOperator dbOperator,
+      final Collection<ExecutableFlow> flows) throws SQLException {
+    final Map<Integer, ExecutableFlow> unfinishedFlows = new HashMap<>();
+    for (final ExecutableFlow flow : flows) {
+      if (!Status.isStatusFinished(flow.getStatus())) {
+        unfinishedFlows.put(flow.getExecutionId(), flow);
+      }
+    }
 
-      int execId = -1;
-      if (!execIds.isEmpty()) {
-        execId = execIds.get(0);
-        transOperator.update(UPDATE_EXECUTION, executorId, System.currentTimeMillis(), execId);
+    final List<Integer> execIds = new ArrayList<>(unfinishedFlows.keySet());
+    for (int i = 0; i < execIds.size(); i += FLOW_UPDATES_BATCH_SIZE) {
+      final List<Integer> batch =
+          execIds.subList(i, Math.min(i + FLOW_UPDATES_BATCH_SIZE, execIds.size()));
+      final String query = String.format(FetchExecutableFlowUpdates.FETCH_EXECUTABLE_FLOW_UPDATES,
+          String.join(",", Collections.nCopies(batch.size(), "?")));
+      final List<Pair<Integer, Map<String, Object>>> updates =
+          dbOperator.query(query, new FetchExecutableFlowUpdates(), batch.toArray());
+      for (final Pair<Integer, Map<String, Object>> update : updates) {
+        unfinishedFlows.get(update.getFirst()).applyUpdateObject(update.getSecond());
       }
-      transOperator.getConnection().commit();
-      return execId;
-    };
+    }
+  }
+
+  /**
+   * set executor id to null for the execution id
+   */
+  public void unsetExecutorIdForExecution(final int executionId) throws ExecutorManagerException {
+    final String UNSET_EXECUTOR = "UPDATE execution_flows SET executor_id = null, update_time = ? where exec_id = ?";
+
+    final SQLTransaction<Integer> unsetExecutor =
+        transOperator -> transOperator.update(UNSET_EXECUTOR, System.currentTimeMillis(),
+            executionId);
 
     try {
-      return this.dbOperator.transaction(selectAndUpdateExecution);
+      this.dbOperator.transaction(unsetExecutor);
     } catch (final SQLException e) {
-      throw new ExecutorManagerException("Error selecting and updating execution with executor "
-          + executorId, e);
+      throw new ExecutorManagerException("Error unsetting executor id for execution " + executionId,
+          e);
     }
   }
 
@@ -449,6 +613,56 @@ public class ExecutionFlowDao {
     }
   }
 
+  /**
+   * Claims up to limit queued executions for the executor in one transaction, in dispatch order.
+   *
+   * <p>Unlike {@link #selectAndUpdateExecutionWithLocking(int, boolean)} this doesn't serialize
+   * the executors on the polling lock. The selected rows are locked for update instead, and with
+   * skipLocked rows that another executor is claiming at the same time are skipped rather than
+   * waited for. SKIP LOCKED needs MySQL 8.
+   *
+   * @param executorId id of the executor claiming the executions
+   * @param isActive   if the executor is active, it also claims executions not pinned to any
+   *                   executor
+   * @param limit      max number of executions to claim
+   * @param skipLocked if true, skip rows locked by concurrent claims
+   * @return ids of the claimed executions, in dispatch order
+   */
+  public List<Integer> selectAndUpdateExecutions(final int executorId, final boolean isActive,
+      final int limit, final boolean skipLocked) throws ExecutorManagerException {
+    final String UPDATE_EXECUTION = "UPDATE execution_flows SET executor_id = ?, update_time = ? "
+        + "where exec_id = ? and executor_id is NULL";
+    final String selectExecutionsForUpdate = String.format(isActive ?
+            SelectFromExecutionFlows.SELECT_EXECUTIONS_FOR_UPDATE_ACTIVE :
+            SelectFromExecutionFlows.SELECT_EXECUTIONS_FOR_UPDATE_INACTIVE,
+        skipLocked ? " SKIP LOCKED" : "");
+
+    final SQLTransaction<List<Integer>> selectAndUpdateExecutions = transOperator -> {
+      transOperator.getConnection().setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+
+      final List<Integer> execIds = transOperator.query(selectExecutionsForUpdate,
+          new SelectFromExecutionFlows(), Status.PREPARING.getNumVal(), executorId, limit);
+
+      final List<Integer> claimedExecIds = new ArrayList<>(execIds.size());
+      final long updateTime = System.currentTimeMillis();
+      for (final Integer execId : execIds) {
+        // Without SKIP LOCKED a row may have been claimed while this transaction waited for it
+        if (transOperator.update(UPDATE_EXECUTION, executorId, updateTime, execId) == 1) {
+          claimedExecIds.add(execId);
+        }
+      }
+      transOperator.getConnection().commit();
+      return claimedExecIds;
+    };
+
+    try {
+      return this.dbOperator.transaction(selectAndUpdateExecutions);
+    } catch (final SQLException e) {
+      throw new ExecutorManagerException("Error selecting and updating executions with executor "
+          + executorId, e);
+    }
+  }
+
   /**
    * This method is used to select executions in batch. It will apply lock and fetch executions.
    * It will also update the status of those executions as mentioned in updatedStatus field.
@@ -534,6 +748,12 @@ public class ExecutionFlowDao {
             + " ORDER BY flow_priority DESC, update_time ASC, exec_id ASC "
             + " LIMIT ? FOR UPDATE";
 
+    // The second %s is for the SKIP LOCKED option of the active/inactive variants below
+    private static final String SELECT_EXECUTIONS_FOR_UPDATE_FORMAT =
+        "SELECT exec_id from execution_flows WHERE status = ?"
+            + " and executor_id is NULL and flow_data is NOT NULL %s"
+            + " ORDER BY flow_priority DESC, update_time ASC, exec_id ASC LIMIT ? FOR UPDATE%%s";
+
     public static final String SELECT_EXECUTION_FOR_UPDATE_ACTIVE =
         String.format(SELECT_EXECUTION_FOR_UPDATE_FORMAT,
             "and (use_executor is NULL or use_executor = ?)");
@@ -541,6 +761,13 @@ public class ExecutionFlowDao {
     public static final String SELECT_EXECUTION_FOR_UPDATE_INACTIVE =
         String.format(SELECT_EXECUTION_FOR_UPDATE_FORMAT, "and use_executor = ?");
 
+    static final String SELECT_EXECUTIONS_FOR_UPDATE_ACTIVE =
+        String.format(SELECT_EXECUTIONS_FOR_UPDATE_FORMAT,
+            "and (use_executor is NULL or use_executor = ?)");
+
+    static final String SELECT_EXECUTIONS_FOR_UPDATE_INACTIVE =
+        String.format(SELECT_EXECUTIONS_FOR_UPDATE_FORMAT, "and use_executor = ?");
+
     @Override
     public List<Integer> handle(final ResultSet rs) throws SQLException {
       if (!rs.next()) {
@@ -599,16 +826,8 @@ public class ExecutionFlowDao {
         final byte[] data = rs.getBytes(3);
 
         if (data != null) {
-          final EncodingType encType = EncodingType.fromInteger(encodingType);
-          final Status status = Status.fromInteger(rs.getInt(4));
-          try {
-            final ExecutableFlow exFlow =
-                ExecutableFlow.createExecutableFlow(
-                    GZIPUtils.transformBytesToObject(data, encType), status);
-            execFlows.add(exFlow);
-          } catch (final IOException e) {
-            throw new SQLException("Error retrieving flow data " + id, e);
-          }
+          execFlows.add(decodeExecutableFlow(id, encodingType, data,
+              Status.fromInteger(rs.getInt(4))));
         }
       } while (rs.next());
 
@@ -644,21 +863,80 @@ public class ExecutionFlowDao {
         if (data == null) {
           ExecutionFlowDao.logger.error("Found a flow with empty data blob exec_id: " + id);
         } else {
+          final ExecutableFlow exFlow = decodeExecutableFlow(id, encodingType, data,
+              Status.fromInteger(rs.getInt(4)));
+          execFlows.add(new Pair<>(new ExecutionReference(id), exFlow));
+        }
+      } while (rs.next());
+
+      return execFlows;
+    }
+  }
+
+  /**
+   * JDBC ResultSetHandler to fetch the descriptors of queued executions
+   */
+  private static class FetchQueuedExecutions implements
+      ResultSetHandler<List<QueuedExecution>> {
+
+    // Select a page of queued unassigned flows, with the name of their project
+    private static final String FETCH_QUEUED_EXECUTIONS =
+        "SELECT ef.exec_id, ef.project_id, p.name, ef.flow_id, ef.submit_user, ef.submit_time, "
+            + "ef.update_time, ef.flow_priority, ef.use_executor FROM execution_flows ef "
+            + "LEFT JOIN projects p ON p.id = ef.project_id "
+            + "WHERE ef.executor_id is NULL AND ef.status = ? AND ef.exec_id > ? "
+            + "ORDER BY ef.exec_id LIMIT ?";
+
+    @Override
+    public List<QueuedExecution> handle(final ResultSet rs) throws SQLException {
+      final List<QueuedExecution> executions = new ArrayList<>();
+      while (rs.next()) {
+        final int useExecutor = rs.getInt(9);
+        executions.add(new QueuedExecution(new ExecutionReference(rs.getInt(1)), rs.getInt(2),
+            rs.getString(3), rs.getString(4), rs.getString(5), rs.getLong(6), rs.getLong(7),
+            rs.getInt(8), rs.wasNull() ? null : useExecutor));
+      }
+      return executions;
+    }
+  }
+
+  /**
+   * JDBC ResultSetHandler to fetch the node updates appended for executions, by execution id
+   */
+  private static class FetchExecutableFlowUpdates implements
+      ResultSetHandler<List<Pair<Integer, Map<String, Object>>>> {
+
+    // %s is the list of placeholders of the execution ids
+    private static final String FETCH_EXECUTABLE_FLOW_UPDATES =
+        "SELECT exec_id, update_id, enc_type, update_data FROM execution_flow_updates "
+            + "WHERE exec_id IN (%s) ORDER BY update_id ASC";
+
+    @Override
+    public List<Pair<Integer, Map<String, Object>>> handle(final ResultSet rs)
+        throws SQLException {
+      if (!rs.next()) {
+        return Collections.emptyList();
+      }
+
+      final List<Pair<Integer, Map<String, Object>>> updates = new ArrayList<>();
+      do {
+        final int execId = rs.getInt(1);
+        final long id = rs.getLong(2);
+        final int encodingType = rs.getInt(3);
+        final byte[] data = rs.getBytes(4);
+
+        if (data != null) {
           final EncodingType encType = EncodingType.fromInteger(encodingType);
-          final Status status = Status.fromInteger(rs.getInt(4));
           try {
-            final ExecutableFlow exFlow =
-                ExecutableFlow.createExecutableFlow(
-                    GZIPUtils.transformBytesToObject(data, encType), status);
-            final ExecutionReference ref = new ExecutionReference(id);
-            execFlows.add(new Pair<>(ref, exFlow));
+            updates.add(new Pair<>(execId,
+                (Map<String, Object>) GZIPUtils.transformBytesToObject(data, encType)));
           } catch (final IOException e) {
-            throw new SQLException("Error retrieving flow data " + id, e);
+            throw new SQLException("Error retrieving flow update " + id, e);
           }
         }
       } while (rs.next());
 
-      return execFlows;
+      return updates;
     }
   }
 
@@ -684,16 +962,8 @@ public class ExecutionFlowDao {
         final byte[] data = rs.getBytes(3);
 
         if (data != null) {
-          final EncodingType encType = EncodingType.fromInteger(encodingType);
-          final Status status = Status.fromInteger(rs.getInt(4));
-          try {
-            final ExecutableFlow exFlow =
-                ExecutableFlow.createExecutableFlow(
-                    GZIPUtils.transformBytesToObject(data, encType), status);
-            execFlows.add(exFlow);
-          } catch (final IOException e) {
-            throw new SQLException("Error retrieving flow data " + id, e);
-          }
+          execFlows.add(decodeExecutableFlow(id, encodingType, data,
+              Status.fromInteger(rs.getInt(4))));
         }
       } while (rs.next());
       return execFlows;
@@ -56,9 +56,7 @@ public class ExecutionJobDao {
     byte[] inputParam = null;
     if (inputProps != null) {
       try {
-        final String jsonString =
-            JSONUtils.toJSON(PropsUtils.toHierarchicalMap(inputProps));
-        inputParam = GZIPUtils.gzipString(jsonString, "UTF-8");
+        inputParam = GZIPUtils.gzipJSON(PropsUtils.toHierarchicalMap(inputProps));
       } catch (final IOException e) {
         throw new ExecutorManagerException("Error encoding input params");
       }
@@ -86,9 +84,7 @@ public class ExecutionJobDao {
     final Props outputProps = node.getOutputProps();
     if (outputProps != null) {
       try {
-        final String jsonString =
-            JSONUtils.toJSON(PropsUtils.toHierarchicalMap(outputProps));
-        outputParam = GZIPUtils.gzipString(jsonString, "UTF-8");
+        outputParam = GZIPUtils.gzipJSON(PropsUtils.toHierarchicalMap(outputProps));
       } catch (final IOException e) {
         throw new ExecutorManagerException("Error encoding input params");
       }
@@ -16,23 +16,43 @@
 
 package azkaban.executor;
 
+import azkaban.Constants;
+import azkaban.Constants.ConfigurationKeys;
 import azkaban.db.DatabaseOperator;
 import azkaban.db.DatabaseTransOperator;
 import azkaban.db.EncodingType;
 import azkaban.db.SQLTransaction;
+import azkaban.utils.BlockCompressionUtils;
 import azkaban.utils.FileIOUtils;
 import azkaban.utils.FileIOUtils.LogData;
 import azkaban.utils.GZIPUtils;
 import azkaban.utils.Pair;
+import azkaban.utils.Props;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import org.apache.commons.dbutils.ResultSetHandler;
@@ -45,12 +65,42 @@ import org.joda.time.DateTime;
 public class ExecutionLogsDao {
 
   private static final Logger logger = Logger.getLogger(ExecutionLogsDao.class);
+  private static final String INSERT_EXECUTION_LOGS = "INSERT INTO execution_logs "
+      + "(exec_id, name, attempt, enc_type, start_byte, end_byte, "
+      + "log, upload_time) VALUES (?,?,?,?,?,?,?,?)";
+  // Logs are chunked in parts of at least 50K. Larger logs get larger parts, up to the
+  // configured max, so that they are split in about TARGET_NUM_CHUNKS parts.
+  private static final int MIN_CHUNK_BYTES = 50 * 1024;
+  private static final int TARGET_NUM_CHUNKS = 64;
+  // Number of log parts inserted per batch statement
+  private static final int INSERT_BATCH_SIZE = 16;
+
   private final DatabaseOperator dbOperator;
-  private final EncodingType defaultEncodingType = EncodingType.GZIP;
+  private final EncodingType defaultEncodingType;
+  private final int maxChunkBytes;
+  // Number of threads compressing log parts in parallel for all uploads. 0 if parts are
+  // compressed by the uploading thread.
+  private final int uploadThreads;
+  private final int maxChunksInFlight;
+  // Created on the first upload, so that processes which only read logs don't start its threads
+  private ExecutorService compressionExecutor;
 
   @Inject
-  ExecutionLogsDao(final DatabaseOperator dbOperator) {
+  ExecutionLogsDao(final DatabaseOperator dbOperator, final Props props) {
     this.dbOperator = dbOperator;
+    this.defaultEncodingType = EncodingType.valueOf(props
+        .getString(ConfigurationKeys.EXECUTION_LOGS_ENCODING_TYPE, EncodingType.GZIP.name())
+        .toUpperCase());
+    this.maxChunkBytes = Math.max(MIN_CHUNK_BYTES,
+        props.getInt(ConfigurationKeys.EXECUTION_LOGS_UPLOAD_MAX_CHUNK_BYTES,
+            Constants.DEFAULT_EXECUTION_LOGS_UPLOAD_MAX_CHUNK_BYTES));
+    this.uploadThreads = props.getInt(ConfigurationKeys.EXECUTION_LOGS_UPLOAD_THREADS,
+        Constants.DEFAULT_EXECUTION_LOGS_UPLOAD_THREADS);
+    this.maxChunksInFlight = Math.max(1, 2 * this.uploadThreads);
+  }
+
+  ExecutionLogsDao(final DatabaseOperator dbOperator) {
+    this(dbOperator, new Props());
   }
 
   // TODO kunkun-tang: the interface's parameter is called endByte, but actually is length.
@@ -82,111 +132,216 @@ public class ExecutionLogsDao {
     }
   }
 
+  /**
+   * Uploads the files as one log, in parts. Reading the files and inserting the parts happens on
+   * the calling thread, while parts are compressed in parallel on the shared compression pool.
+   * Parts are inserted in batches, in the given transaction.
+   */
   private void uploadLogFile(final DatabaseTransOperator transOperator, final int execId,
       final String name,
       final int attempt, final File[] files, final EncodingType encType)
       throws SQLException {
-    // 50K buffer... if logs are greater than this, we chunk.
-    // However, we better prevent large log files from being uploaded somehow
-    final byte[] buffer = new byte[50 * 1024];
+    final int chunkSize = getChunkSize(files);
+    final Deque<Future<Object[]>> pendingParts = new ArrayDeque<>();
+    final List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+    byte[] buffer = new byte[chunkSize];
     int pos = 0;
-    int length = buffer.length;
     int startByte = 0;
     try {
-      for (int i = 0; i < files.length; ++i) {
-        final File file = files[i];
-
-        final BufferedInputStream bufferedStream =
-            new BufferedInputStream(new FileInputStream(file));
-        try {
-          int size = bufferedStream.read(buffer, pos, length);
+      for (final File file : files) {
+        try (final InputStream inputStream =
+            new BufferedInputStream(new FileInputStream(file))) {
+          int size = inputStream.read(buffer, pos, buffer.length - pos);
           while (size >= 0) {
-            if (pos + size == buffer.length) {
-              // Flush here.
-              uploadLogPart(transOperator, execId, name, attempt, startByte,
-                  startByte + buffer.length, encType, buffer, buffer.length);
-
+            pos += size;
+            if (pos == buffer.length) {
+              pendingParts.add(
+                  submitLogPart(execId, name, attempt, startByte, encType, buffer, pos));
+              startByte += pos;
+              buffer = new byte[chunkSize];
               pos = 0;
-              length = buffer.length;
-              startByte += buffer.length;
-            } else {
-              // Usually end of file.
-              pos += size;
-              length = buffer.length - pos;
+              // Bound the memory used by parts waiting to be compressed or inserted
+              while (pendingParts.size() > this.maxChunksInFlight) {
+                addToBatch(transOperator, batch, pendingParts.poll().get());
+              }
             }
-            size = bufferedStream.read(buffer, pos, length);
+            size = inputStream.read(buffer, pos, buffer.length - pos);
           }
-        } finally {
-          IOUtils.closeQuietly(bufferedStream);
         }
       }
 
-      // Final commit of buffer.
+      // Final part of the buffer.
       if (pos > 0) {
-        uploadLogPart(transOperator, execId, name, attempt, startByte, startByte
-            + pos, encType, buffer, pos);
+        pendingParts.add(submitLogPart(execId, name, attempt, startByte, encType, buffer, pos));
+      }
+      while (!pendingParts.isEmpty()) {
+        addToBatch(transOperator, batch, pendingParts.poll().get());
+      }
+      if (!batch.isEmpty()) {
+        transOperator.batch(INSERT_EXECUTION_LOGS, batch.toArray(new Object[0][]));
       }
     } catch (final SQLException e) {
       logger.error("Error writing log part.", e);
       throw new SQLException("Error writing log part", e);
-    } catch (final IOException e) {
+    } catch (final IOException | ExecutionException e) {
       logger.error("Error chunking.", e);
       throw new SQLException("Error chunking", e);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while uploading logs", e);
+    } finally {
+      for (final Future<Object[]> part : pendingParts) {
+        part.cancel(true);
+      }
     }
   }
 
-  int removeExecutionLogsByTime(final long millis, final int recordCleanupLimit)
+  private int getChunkSize(final File[] files) {
+    long totalBytes = 0;
+    for (final File file : files) {
+      totalBytes += file.length();
+    }
+    return (int) Math.min(this.maxChunkBytes,
+        Math.max(MIN_CHUNK_BYTES, totalBytes / TARGET_NUM_CHUNKS));
+  }
+
+  private void addToBatch(final DatabaseTransOperator transOperator, final List<Object[]> batch,
+      final Object[] logPart) throws SQLException {
+    batch.add(logPart);
+    if (batch.size() >= INSERT_BATCH_SIZE) {
+      transOperator.batch(INSERT_EXECUTION_LOGS, batch.toArray(new Object[0][]));
+      batch.clear();
+    }
+  }
+
+  /**
+   * Returns the lowest and highest execution id with logs uploaded before millis, or null if there
+   * are no such logs.
+   */
+  Pair<Integer, Integer> fetchExecutionLogsExecIdRange(final long millis)
       throws ExecutorManagerException {
-    int totalRecordsRemoved = 0;
-    int removedRecords;
-    do {
-      removedRecords = removeExecutionLogsBatch(millis, recordCleanupLimit);
-      logger.debug("Removed batch of execution logs. Count of records removed in this batch: "
-          + removedRecords);
-      totalRecordsRemoved = totalRecordsRemoved + removedRecords;
-      // Adding sleep of 1 second
-      try {
-        Thread.sleep(1000L);
-      } catch (InterruptedException e) {
-        logger.error("Execution logs cleanup thread's sleep was interrupted.", e);
+    final String FETCH_EXEC_ID_RANGE =
+        "SELECT MIN(exec_id), MAX(exec_id) FROM execution_logs WHERE upload_time < ?";
+    final ResultSetHandler<Pair<Integer, Integer>> handler = rs -> {
+      if (!rs.next() || rs.getObject(1) == null) {
+        return null;
       }
-    } while (removedRecords == recordCleanupLimit);
-    return totalRecordsRemoved;
+      return new Pair<>(rs.getInt(1), rs.getInt(2));
+    };
+    try {
+      return this.dbOperator.query(FETCH_EXEC_ID_RANGE, handler, millis);
+    } catch (final SQLException e) {
+      throw new ExecutorManagerException(
+          "Error fetching execution ids of execution_logs before " + millis, e);
+    }
   }
 
-  int removeExecutionLogsBatch(final long millis, final int recordCleanupLimit)
-      throws ExecutorManagerException {
-    final String DELETE_BY_TIME =
-        "DELETE FROM execution_logs WHERE upload_time < ? LIMIT ?";
+  /**
+   * Deletes the logs of the executions in [fromExecId, toExecId) uploaded before millis. The
+   * delete locks a range of the primary key only, so it doesn't block the uploads of new logs.
+   *
+   * @return the number of rows and of (uncompressed) log bytes deleted
+   */
+  Pair<Integer, Long> removeExecutionLogsByRange(final int fromExecId, final int toExecId,
+      final long millis) throws ExecutorManagerException {
+    final String RANGE_CONDITION = " FROM execution_logs "
+        + "WHERE exec_id >= ? AND exec_id < ? AND upload_time < ?";
+    final ResultSetHandler<Long> bytesHandler = rs -> rs.next() ? rs.getLong(1) : 0L;
+    final SQLTransaction<Pair<Integer, Long>> transaction = transOperator -> {
+      // Sums the lengths of the log parts, which doesn't read their (off-page) log blobs
+      final long bytes = transOperator.query(
+          "SELECT COALESCE(SUM(end_byte - start_byte), 0)" + RANGE_CONDITION, bytesHandler,
+          fromExecId, toExecId, millis);
+      final int rows = transOperator.update("DELETE" + RANGE_CONDITION,
+          fromExecId, toExecId, millis);
+      transOperator.getConnection().commit();
+      return new Pair<>(rows, bytes);
+    };
     try {
-      return this.dbOperator.update(DELETE_BY_TIME, millis, recordCleanupLimit);
+      return this.dbOperator.transaction(transaction);
     } catch (final SQLException e) {
       logger.error("delete execution logs failed", e);
+      throw new ExecutorManagerException("Error deleting old execution_logs of executions "
+          + fromExecId + " to " + toExecId + " before " + millis, e);
+    }
+  }
+
+  /**
+   * Drops the partitions of execution_logs that only hold logs uploaded before millis. Only
+   * applies to a MySQL execution_logs table partitioned by range of upload_time.
+   *
+   * @return the (estimated) number of rows and bytes dropped
+   */
+  Pair<Long, Long> dropExecutionLogsPartitions(final long millis)
+      throws ExecutorManagerException {
+    final String FETCH_PARTITIONS =
+        "SELECT PARTITION_NAME, PARTITION_DESCRIPTION, TABLE_ROWS, DATA_LENGTH "
+            + "FROM information_schema.PARTITIONS "
+            + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'execution_logs' "
+            + "AND PARTITION_METHOD LIKE 'RANGE%' ORDER BY PARTITION_ORDINAL_POSITION";
+    final ResultSetHandler<List<Object[]>> handler = rs -> {
+      final List<Object[]> partitions = new ArrayList<>();
+      while (rs.next()) {
+        // The description of a range partition is its exclusive upper bound
+        final String bound = rs.getString(2);
+        if (bound != null && bound.matches("\\d+") && Long.parseLong(bound) <= millis) {
+          partitions.add(new Object[]{rs.getString(1), rs.getLong(3), rs.getLong(4)});
+        }
+      }
+      return partitions;
+    };
+    long rows = 0;
+    long bytes = 0;
+    try {
+      for (final Object[] partition : this.dbOperator.query(FETCH_PARTITIONS, handler)) {
+        this.dbOperator.update("ALTER TABLE execution_logs DROP PARTITION `" + partition[0] + "`");
+        logger.info("Dropped partition " + partition[0] + " of execution_logs");
+        rows += (Long) partition[1];
+        bytes += (Long) partition[2];
+      }
+    } catch (final SQLException e) {
       throw new ExecutorManagerException(
-          "Error deleting old execution_logs before " + millis, e);
+          "Error dropping partitions of execution_logs before " + millis, e);
     }
+    return new Pair<>(rows, bytes);
   }
 
-  private void uploadLogPart(final DatabaseTransOperator transOperator, final int execId,
-      final String name,
-      final int attempt, final int startByte, final int endByte,
-      final EncodingType encType,
-      final byte[] buffer, final int length)
-      throws SQLException, IOException {
-    final String INSERT_EXECUTION_LOGS = "INSERT INTO execution_logs "
-        + "(exec_id, name, attempt, enc_type, start_byte, end_byte, "
-        + "log, upload_time) VALUES (?,?,?,?,?,?,?,?)";
-
-    byte[] buf = buffer;
-    if (encType == EncodingType.GZIP) {
-      buf = GZIPUtils.gzipBytes(buf, 0, length);
-    } else if (length < buf.length) {
-      buf = Arrays.copyOf(buffer, length);
+  private Future<Object[]> submitLogPart(final int execId, final String name,
+      final int attempt, final int startByte, final EncodingType encType, final byte[] buffer,
+      final int length) {
+    final Callable<Object[]> logPart = () -> new Object[]{execId, name, attempt,
+        encType.getNumVal(), startByte, startByte + length,
+        encodeLogPart(encType, buffer, length), DateTime.now().getMillis()};
+    if (this.uploadThreads <= 0) {
+      final FutureTask<Object[]> task = new FutureTask<>(logPart);
+      task.run();
+      return task;
     }
+    return getCompressionExecutor().submit(logPart);
+  }
+
+  private synchronized ExecutorService getCompressionExecutor() {
+    if (this.compressionExecutor == null) {
+      this.compressionExecutor = Executors.newFixedThreadPool(this.uploadThreads,
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("azk-log-upload-%d").build());
+    }
+    return this.compressionExecutor;
+  }
 
-    transOperator.update(INSERT_EXECUTION_LOGS, execId, name, attempt,
-        encType.getNumVal(), startByte, startByte + length, buf, DateTime.now()
-            .getMillis());
+  private static byte[] encodeLogPart(final EncodingType encType, final byte[] buffer,
+      final int length) throws IOException {
+    switch (encType) {
+      case GZIP:
+        return GZIPUtils.gzipBytes(buffer, 0, length);
+      case DEFLATE:
+        return GZIPUtils.deflateBytes(buffer, 0, length);
+      case DEFLATE_BLOCKS:
+        // Log parts are block compressed so that reads only inflate the blocks they need
+        return BlockCompressionUtils.compress(buffer, 0, length,
+            BlockCompressionUtils.DEFAULT_BLOCK_SIZE);
+      default:
+        return length < buffer.length ? Arrays.copyOf(buffer, length) : buffer;
+    }
   }
 
   private static class FetchLogsHandler implements ResultSetHandler<LogData> {
@@ -229,12 +384,7 @@ public class ExecutionLogsDao {
             this.endByte < endByte ? this.endByte - startByte - offset
                 : endByte - startByte - offset;
         try {
-          byte[] buffer = data;
-          if (encType == EncodingType.GZIP) {
-            buffer = GZIPUtils.unGzipBytes(data);
-          }
-
-          byteStream.write(buffer, offset, length);
+          decodeRange(encType, data, offset, length, byteStream);
         } catch (final IOException e) {
           throw new SQLException(e);
         }
@@ -247,5 +397,33 @@ public class ExecutionLogsDao {
       return new LogData(this.startByte + result.getFirst(), result.getSecond(),
           new String(buffer, result.getFirst(), result.getSecond(), StandardCharsets.UTF_8));
     }
+
+    /**
+     * Writes [offset, offset + length) of a decoded log part to the output stream, without
+     * decoding more of the part than needed.
+     */
+    private static void decodeRange(final EncodingType encType, final byte[] data,
+        final int offset, final int length, final OutputStream out) throws IOException {
+      switch (encType) {
+        case GZIP:
+          // Stop inflating at the end of the range
+          try (final GZIPInputStream gzipStream =
+              new GZIPInputStream(new ByteArrayInputStream(data))) {
+            IOUtils.copyLarge(gzipStream, out, offset, length);
+          }
+          break;
+        case DEFLATE:
+          try (final InflaterInputStream inflaterStream =
+              new InflaterInputStream(new ByteArrayInputStream(data))) {
+            IOUtils.copyLarge(inflaterStream, out, offset, length);
+          }
+          break;
+        case DEFLATE_BLOCKS:
+          BlockCompressionUtils.decompressRange(data, offset, length, out);
+          break;
+        default:
+          out.write(data, offset, length);
+      }
+    }
   }
 }
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package azkaban.executor;
+
+import azkaban.Constants;
+import azkaban.Constants.ConfigurationKeys;
+import azkaban.utils.Props;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Feed of the status changes of the running executions, from which the web server pushes updates
+ * to the flow pages that wait for them.
+ *
+ * <p>{@link RunningExecutionsUpdater} publishes each update it applies to a running flow. The
+ * changed nodes are computed once per update, in the format of the fetchexecflowupdate API, and
+ * kept for a while, so any number of viewers of an execution share the same updates. The feed
+ * also knows the project of each tracked execution, so waiting for updates doesn't need the flow.
+ */
+@Singleton
+public class ExecutionStatusFeed {
+
+  private static final int MAX_UPDATES_PER_EXECUTION = 50;
+
+  private final Map<Integer, ExecutionUpdates> executions = new ConcurrentHashMap<>();
+  private final long timeoutMs;
+  private final Semaphore waiters;
+
+  @Inject
+  public ExecutionStatusFeed(final Props azkProps) {
+    this.timeoutMs = azkProps.getLong(ConfigurationKeys.EXECUTION_STATUS_PUSH_TIMEOUT_MS,
+        Constants.DEFAULT_EXECUTION_STATUS_PUSH_TIMEOUT_MS);
+    this.waiters = new Semaphore(getMaxWaiters(azkProps));
+  }
+
+  /**
+   * Waiting requests hold jetty threads, so by default only a share of them may wait and the
+   * others are left to serve the rest of the web server.
+   */
+  static int getMaxWaiters(final Props azkProps) {
+    if (azkProps.containsKey(ConfigurationKeys.EXECUTION_STATUS_PUSH_MAX_WAITERS)) {
+      return azkProps.getInt(ConfigurationKeys.EXECUTION_STATUS_PUSH_MAX_WAITERS);
+    }
+    final int jettyMaxThreads = azkProps.getInt("jetty.maxThreads",
+        Constants.DEFAULT_JETTY_MAX_THREAD_COUNT);
+    return Math.max(1,
+        jettyMaxThreads * Constants.DEFAULT_EXECUTION_STATUS_PUSH_MAX_WAITERS_PERCENT / 100);
+  }
+
+  /**
+   * Returns the nodes of the flow updated after lastUpdateTime, nested like the flow. The map is
+   * empty if nothing changed.
+   */
+  public static Map<String, Object> getUpdateInfo(final ExecutableNode node,
+      final long lastUpdateTime) {
+    final HashMap<String, Object> nodeObj = new HashMap<>();
+    if (node instanceof ExecutableFlowBase) {
+      final ExecutableFlowBase base = (ExecutableFlowBase) node;
+      final ArrayList<Map<String, Object>> nodeList =
+          new ArrayList<>();
+
+      for (final ExecutableNode subNode : base.getExecutableNodes()) {
+        final Map<String, Object> subNodeObj =
+            getUpdateInfo(subNode, lastUpdateTime);
+        if (!subNodeObj.isEmpty()) {
+          nodeList.add(subNodeObj);
+        }
+      }
+
+      if (!nodeList.isEmpty()) {
+        nodeObj.put("flow", base.getFlowId());
+        nodeObj.put("nodes", nodeList);
+      }
+    }
+
+    if (node.getUpdateTime() > lastUpdateTime || !nodeObj.isEmpty()) {
+      nodeObj.put("id", node.getId());
+      nodeObj.put("status", node.getStatus());
+      nodeObj.put("startTime", node.getStartTime());
+      nodeObj.put("endTime", node.getEndTime());
+      nodeObj.put("updateTime", node.getUpdateTime());
+
+      nodeObj.put("attempt", node.getAttempt());
+      if (node.getAttempt() > 0) {
+        nodeObj.put("pastAttempts", node.getAttemptObjects());
+      }
+    }
+
+    return nodeObj;
+  }
+
+  /**
+   * Returns the update of the flow after lastUpdateTime in the format of the fetchexecflowupdate
+   * API: the changed nodes and the status and times of the flow.
+   */
+  public static Map<String, Object> getFlowUpdate(final ExecutableFlow flow,
+      final long lastUpdateTime) {
+    final Map<String, Object> update = getUpdateInfo(flow, lastUpdateTime);
+    update.put("status", flow.getStatus());
+    update.put("startTime", flow.getStartTime());
+    update.put("endTime", flow.getEndTime());
+    update.put("updateTime", flow.getUpdateTime());
+    return update;
+  }
+
+  /**
+   * Records an update of a running flow.
+   *
+   * @param flow           the flow, with the update applied
+   * @param lastUpdateTime the update time of the flow before the update
+   */
+  public void publish(final ExecutableFlow flow, final long lastUpdateTime) {
+    final ExecutionUpdates updates = this.executions.computeIfAbsent(flow.getExecutionId(),
+        execId -> new ExecutionUpdates(flow.getProjectId(), lastUpdateTime));
+    if (flow.getUpdateTime() > lastUpdateTime) {
+      updates.add(new StatusUpdate(lastUpdateTime, flow.getUpdateTime(),
+          getFlowUpdate(flow, lastUpdateTime)));
+    }
+  }
+
+  /**
+   * @return the project id of the execution, empty if the execution isn't tracked
+   */
+  public OptionalInt getProjectId(final int execId) {
+    final ExecutionUpdates updates = this.executions.get(execId);
+    return updates == null ? OptionalInt.empty() : OptionalInt.of(updates.projectId);
+  }
+
+  /**
+   * Stops tracking a finalized execution. Requests waiting for its updates return right away.
+   */
+  public void remove(final int execId) {
+    final ExecutionUpdates updates = this.executions.remove(execId);
+    if (updates != null) {
+      updates.close();
+    }
+  }
+
+  /**
+   * Waits until the execution has updates after lastUpdateTime, at most the configured timeout.
+   *
+   * @return the updates in order, or an empty list if there were none before the timeout. Empty
+   * if the feed can't tell, because the execution isn't tracked (any more), the updates since
+   * lastUpdateTime were dropped or too many requests are waiting. The caller has to fetch the
+   * flow status instead then.
+   */
+  public Optional<List<Map<String, Object>>> waitForUpdates(final int execId,
+      final long lastUpdateTime) throws InterruptedException {
+    final ExecutionUpdates updates = this.executions.get(execId);
+    if (updates == null || !this.waiters.tryAcquire()) {
+      return Optional.empty();
+    }
+    try {
+      return updates.waitForUpdates(lastUpdateTime,
+          System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.timeoutMs));
+    } finally {
+      this.waiters.release();
+    }
+  }
+
+  private static class StatusUpdate {
+
+    private final long fromTime;
+    private final long toTime;
+    private final Map<String, Object> update;
+
+    StatusUpdate(final long fromTime, final long toTime, final Map<String, Object> update) {
+      this.fromTime = fromTime;
+      this.toTime = toTime;
+      this.update = update;
+    }
+  }
+
+  private static class ExecutionUpdates {
+
+    private final int projectId;
+    private final ArrayDeque<StatusUpdate> updates = new ArrayDeque<>();
+    // Changes after this time are all in the updates
+    private long coveredSince;
+    private boolean closed = false;
+
+    ExecutionUpdates(final int projectId, final long coveredSince) {
+      this.projectId = projectId;
+      this.coveredSince = coveredSince;
+    }
+
+    synchronized void add(final StatusUpdate update) {
+      if (this.updates.isEmpty()) {
+        this.coveredSince = Math.min(this.coveredSince, update.fromTime);
+      }
+      this.updates.addLast(update);
+      if (this.updates.size() > MAX_UPDATES_PER_EXECUTION) {
+        this.coveredSince = this.updates.removeFirst().toTime;
+      }
+      notifyAll();
+    }
+
+    synchronized void close() {
+      this.closed = true;
+      notifyAll();
+    }
+
+    synchronized Optional<List<Map<String, Object>>> waitForUpdates(final long lastUpdateTime,
+        final long deadlineNanos) throws InterruptedException {
+      while (true) {
+        if (this.closed || lastUpdateTime < this.coveredSince) {
+          return Optional.empty();
+        }
+        final List<Map<String, Object>> newUpdates = new ArrayList<>();
+        for (final StatusUpdate update : this.updates) {
+          if (update.toTime > lastUpdateTime) {
+            newUpdates.add(update.update);
+          }
+        }
+        final long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+        if (!newUpdates.isEmpty() || remainingMs <= 0) {
+          return Optional.of(newUpdates);
+        }
+        wait(remainingMs);
+      }
+    }
+  }
+}
@@ -21,10 +21,12 @@ import static com.google.common.base.Preconditions.checkState;
 
 import azkaban.Constants;
 import azkaban.Constants.ConfigurationKeys;
+import azkaban.metrics.MetricsManager;
 import azkaban.utils.Pair;
 import azkaban.utils.Props;
 import azkaban.utils.RestfulApiClient;
 import azkaban.utils.UndefinedPropertyException;
+import com.codahale.metrics.Histogram;
 import com.google.common.annotations.VisibleForTesting;
 import java.io.File;
 import java.io.IOException;
@@ -33,19 +35,28 @@ import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.net.ssl.SSLContext;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
 import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.ssl.SSLContexts;
 import org.apache.http.util.EntityUtils;
@@ -71,9 +82,29 @@ public class ExecutorApiClient extends RestfulApiClient<String> {
   private final String truststorePassword;
   private SSLConnectionSocketFactory tlsSocketFactory;
 
-  @Inject
+  private static final String LEASED_CONNECTIONS_GAUGE_NAME = "executor-api-leased-connections";
+  private static final String AVAILABLE_CONNECTIONS_GAUGE_NAME =
+      "executor-api-available-connections";
+  private static final String PENDING_CONNECTIONS_GAUGE_NAME = "executor-api-pending-connections";
+  private static final String REQUEST_LATENCY_HISTOGRAM_PREFIX = "executor-api-latency-";
+
+  private final MetricsManager metricsManager;
+  private final Map<String, Histogram> requestLatencyHistograms = new ConcurrentHashMap<>();
+  private PoolingHttpClientConnectionManager connectionManager;
+  private CloseableHttpClient pooledHttpClient;
+
   public ExecutorApiClient(final Props azkProps) {
+    this(azkProps, null);
+  }
+
+  /**
+   * @param metricsManager used to report connection pool usage and per executor request latency,
+   * metrics are not reported if null.
+   */
+  @Inject
+  public ExecutorApiClient(final Props azkProps, final MetricsManager metricsManager) {
     super();
+    this.metricsManager = metricsManager;
     isReverseProxyEnabled =
         azkProps.getBoolean(ConfigurationKeys.AZKABAN_EXECUTOR_REVERSE_PROXY_ENABLED,
         false);
@@ -110,6 +141,9 @@ public class ExecutorApiClient extends RestfulApiClient<String> {
     if (this.isTlsEnabled) {
       setupTlsSocketFactory();
     }
+    if (azkProps.getBoolean(ConfigurationKeys.EXECUTOR_CONNECTION_POOL_ENABLED, true)) {
+      setupConnectionPool(azkProps);
+    }
   }
 
   /**
@@ -151,6 +185,50 @@ public class ExecutorApiClient extends RestfulApiClient<String> {
     this.tlsSocketFactory = new SSLConnectionSocketFactory(sslContext, new NoopHostnameVerifier());
   }
 
+  /**
+   * Creates the keep-alive connection pool shared by all requests to executors, so that polling
+   * executors doesn't pay a new TCP connection (and TLS handshake) per request.
+   */
+  private void setupConnectionPool(final Props azkProps) {
+    final Registry<ConnectionSocketFactory> socketFactoryRegistry =
+        RegistryBuilder.<ConnectionSocketFactory>create()
+            .register("http", PlainConnectionSocketFactory.getSocketFactory())
+            .register("https", this.isTlsEnabled ? this.tlsSocketFactory
+                : SSLConnectionSocketFactory.getSocketFactory())
+            .build();
+    this.connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+    this.connectionManager.setMaxTotal(
+        azkProps.getInt(ConfigurationKeys.EXECUTOR_CONNECTION_POOL_MAX_TOTAL,
+            Constants.DEFAULT_EXECUTOR_CONNECTION_POOL_MAX_TOTAL));
+    this.connectionManager.setDefaultMaxPerRoute(
+        azkProps.getInt(ConfigurationKeys.EXECUTOR_CONNECTION_POOL_MAX_PER_ROUTE,
+            Constants.DEFAULT_EXECUTOR_CONNECTION_POOL_MAX_PER_ROUTE));
+    final int idleTimeoutSeconds =
+        azkProps.getInt(ConfigurationKeys.EXECUTOR_CONNECTION_POOL_IDLE_TIMEOUT_SECONDS,
+            Constants.DEFAULT_EXECUTOR_CONNECTION_POOL_IDLE_TIMEOUT_SECONDS);
+
+    this.pooledHttpClient = HttpClients.custom()
+        .setConnectionManager(this.connectionManager)
+        .evictExpiredConnections()
+        .evictIdleConnections(idleTimeoutSeconds, TimeUnit.SECONDS)
+        .build();
+
+    if (this.metricsManager != null) {
+      final PoolingHttpClientConnectionManager manager = this.connectionManager;
+      this.metricsManager.addGauge(LEASED_CONNECTIONS_GAUGE_NAME,
+          () -> manager.getTotalStats().getLeased());
+      this.metricsManager.addGauge(AVAILABLE_CONNECTIONS_GAUGE_NAME,
+          () -> manager.getTotalStats().getAvailable());
+      this.metricsManager.addGauge(PENDING_CONNECTIONS_GAUGE_NAME,
+          () -> manager.getTotalStats().getPending());
+    }
+  }
+
+  @VisibleForTesting
+  PoolingHttpClientConnectionManager getConnectionManager() {
+    return this.connectionManager;
+  }
+
   @VisibleForTesting
   SSLConnectionSocketFactory getTlsSocketFactory() {
     return this.tlsSocketFactory;
@@ -186,6 +264,37 @@ public class ExecutorApiClient extends RestfulApiClient<String> {
     return httpClientBuilder.build();
   }
 
+  /**
+   * Returns the pooled http client if the connection pool is enabled.
+   */
+  @Override
+  protected CloseableHttpClient getSharedHttpClient() {
+    return this.pooledHttpClient;
+  }
+
+  /**
+   * Overrides the parent implementation to record the request latency per executor.
+   */
+  @Override
+  protected String sendAndReturn(final HttpUriRequest request) throws IOException {
+    final long startTime = System.currentTimeMillis();
+    try {
+      return super.sendAndReturn(request);
+    } finally {
+      recordRequestLatency(request.getURI(), System.currentTimeMillis() - startTime);
+    }
+  }
+
+  private void recordRequestLatency(final URI uri, final long latencyMs) {
+    if (this.metricsManager == null || uri == null) {
+      return;
+    }
+    final String executor = uri.getHost() + ":" + uri.getPort();
+    this.requestLatencyHistograms.computeIfAbsent(executor,
+        key -> this.metricsManager.addHistogram(REQUEST_LATENCY_HISTOGRAM_PREFIX + key))
+        .update(latencyMs);
+  }
+
   /**
    * Implementing the parseResponse function to return de-serialized Json object.
    *
@@ -53,11 +53,15 @@ public class ExecutorHealthChecker {
   private final ExecutorLoader executorLoader;
   private final ExecutorApiGateway apiGateway;
   private final AlerterHolder alerterHolder;
+  private final ExecutableFlowCache executableFlowCache;
+  private final ExecutionStatusFeed executionStatusFeed;
   private final Map<Integer, Integer> executorFailureCount = new HashMap<>();
 
   @Inject
   public ExecutorHealthChecker(final Props azkProps, final ExecutorLoader executorLoader,
-      final ExecutorApiGateway apiGateway, final AlerterHolder alerterHolder) {
+      final ExecutorApiGateway apiGateway, final AlerterHolder alerterHolder,
+      final ExecutableFlowCache executableFlowCache,
+      final ExecutionStatusFeed executionStatusFeed) {
     this.healthCheckIntervalMin = azkProps
         .getLong(ConfigurationKeys.AZKABAN_EXECUTOR_HEALTHCHECK_INTERVAL_MIN,
             DEFAULT_EXECUTOR_HEALTHCHECK_INTERVAL.toMinutes());
@@ -69,6 +73,8 @@ public class ExecutorHealthChecker {
     this.executorLoader = executorLoader;
     this.apiGateway = apiGateway;
     this.alerterHolder = alerterHolder;
+    this.executableFlowCache = executableFlowCache;
+    this.executionStatusFeed = executionStatusFeed;
   }
 
   public void start() {
@@ -183,8 +189,8 @@ public class ExecutorHealthChecker {
       logger.warn(
           String.format("Finalizing execution %s, %s", flow.getExecutionId(), finalizeReason));
       try {
-        ExecutionControllerUtils
-            .finalizeFlow(this.executorLoader, this.alerterHolder, flow, finalizeReason, null);
+        ExecutionControllerUtils.finalizeFlow(this.executorLoader, this.alerterHolder,
+            this.executableFlowCache, this.executionStatusFeed, flow, finalizeReason, null);
       } catch (RuntimeException e) {
         logger.error("Unchecked exception while finalizing execution: " + flow.getExecutionId(), e);
       }
@@ -34,6 +34,20 @@ public interface ExecutorLoader {
   ExecutableFlow fetchExecutableFlow(int execId)
       throws ExecutorManagerException;
 
+  /**
+   * Fetch the flow data of an execution and the updates appended to it, without decoding them, or
+   * null if the execution doesn't exist.
+   */
+  EncodedExecutableFlow fetchEncodedExecutableFlow(int execId)
+      throws ExecutorManagerException;
+
+  /**
+   * Fetch the update time of an execution, or -1 if it doesn't exist. This is much cheaper than
+   * fetching the whole flow, so it can be used to check if a copy of the flow is up to date.
+   */
+  long fetchExecutableFlowUpdateTime(int execId)
+      throws ExecutorManagerException;
+
   List<ExecutableFlow> fetchRecentlyFinishedFlows(Duration maxAge)
       throws ExecutorManagerException;
 
@@ -240,6 +254,17 @@ public interface ExecutorLoader {
   List<Pair<ExecutionReference, ExecutableFlow>> fetchQueuedFlows(Status status)
       throws ExecutorManagerException;
 
+  /**
+   * Fetch a page of the flows in preparing state that have not been dispatched yet, as compact
+   * descriptors without the flow data.
+   *
+   * @param afterExecId only executions with a higher execution id are fetched
+   * @param limit       max number of executions to fetch
+   * @return the queued executions, in order of execution id
+   */
+  List<QueuedExecution> fetchQueuedExecutions(int afterExecId, int limit)
+      throws ExecutorManagerException;
+
   /**
    * Fetch stale flows. A flow is considered stale if it was started more than {@code
    * executionDuration} ago and is not yet in a final state.
@@ -272,6 +297,19 @@ public interface ExecutorLoader {
   void updateExecutableFlow(ExecutableFlow flow)
       throws ExecutorManagerException;
 
+  /**
+   * Persist only the nodes of the flow that were updated after lastUpdateTime. The full flow is
+   * reconstructed on fetch until the next {@link #compactExecutableFlow(ExecutableFlow)}.
+   */
+  void appendExecutableFlowUpdate(ExecutableFlow flow, long lastUpdateTime)
+      throws ExecutorManagerException;
+
+  /**
+   * Persist the full flow and discard the updates appended since the last compaction.
+   */
+  void compactExecutableFlow(ExecutableFlow flow)
+      throws ExecutorManagerException;
+
   void uploadExecutableNode(ExecutableNode node, Props inputParams)
       throws ExecutorManagerException;
 
@@ -304,17 +342,41 @@ public interface ExecutorLoader {
   Pair<Props, Props> fetchExecutionJobProps(int execId, String jobId)
       throws ExecutorManagerException;
 
-  int removeExecutionLogsByTime(long millis, int recordCleanupLimit)
+  /**
+   * @return the lowest and highest execution id with logs uploaded before millis, or null
+   */
+  Pair<Integer, Integer> fetchExecutionLogsExecIdRange(long millis)
       throws ExecutorManagerException;
 
-  void unsetExecutorIdForExecution(final int executionId) throws ExecutorManagerException;
-
-  int selectAndUpdateExecution(final int executorId, boolean isActive)
+  /**
+   * Deletes the logs of executions in [fromExecId, toExecId) uploaded before millis.
+   *
+   * @return the number of rows and of stored log bytes deleted
+   */
+  Pair<Integer, Long> removeExecutionLogsByRange(int fromExecId, int toExecId, long millis)
       throws ExecutorManagerException;
 
+  /**
+   * Drops the partitions of a range partitioned execution_logs table older than millis.
+   *
+   * @return the estimated number of rows and bytes dropped
+   */
+  Pair<Long, Long> dropExecutionLogsPartitions(long millis) throws ExecutorManagerException;
+
+  void unsetExecutorIdForExecution(final int executionId) throws ExecutorManagerException;
+
   int selectAndUpdateExecutionWithLocking(final int executorId, boolean isActive)
       throws ExecutorManagerException;
 
+  /**
+   * Claims up to limit queued executions for the executor in one round trip.
+   *
+   * @param skipLocked if true, skip executions being claimed by other executors (MySQL 8)
+   * @return ids of the claimed executions, in dispatch order
+   */
+  List<Integer> selectAndUpdateExecutions(final int executorId, boolean isActive, int limit,
+      boolean skipLocked) throws ExecutorManagerException;
+
   /**
    * This method is used to select executions in batch. It will apply lock and fetch executions. It
    * will also update the status of those executions as mentioned in updatedStatus field.
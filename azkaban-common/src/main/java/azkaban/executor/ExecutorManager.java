@@ -27,7 +27,6 @@ import azkaban.utils.FileIOUtils.LogData;
 import azkaban.utils.Pair;
 import azkaban.utils.Props;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.File;
 import java.lang.Thread.State;
@@ -42,9 +41,11 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import javax.inject.Inject;
@@ -62,6 +63,8 @@ import org.apache.log4j.Logger;
 public class ExecutorManager extends AbstractExecutorManagerAdapter {
 
   private static final Logger logger = Logger.getLogger(ExecutorManager.class);
+  // Number of queued executions fetched at a time when the queue is loaded at startup
+  private static final int QUEUED_FLOWS_LOAD_PAGE_SIZE = 1000;
   private final RunningExecutions runningExecutions;
   private final RunningExecutionsUpdaterThread updaterThread;
   private final int maxConcurrentRunsOneFlow;
@@ -73,7 +76,8 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
   QueuedExecutions queuedFlows;
   File cacheDir;
   private QueueProcessorThread queueProcessor;
-  private volatile Pair<ExecutionReference, ExecutableFlow> runningCandidate = null;
+  // Executions taken off the queue that are being dispatched, by execution id
+  private final Map<Integer, QueuedExecution> dispatchingFlows = new ConcurrentHashMap<>();
   private List<String> filterList;
   private Map<String, Integer> comparatorWeightsMap;
   private long lastSuccessfulExecutorInfoRefresh;
@@ -88,8 +92,11 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
       final ActiveExecutors activeExecutors,
       final ExecutorManagerUpdaterStage updaterStage,
       final ExecutionFinalizer executionFinalizer,
-      final RunningExecutionsUpdaterThread updaterThread) {
-    super(azkProps, executorLoader, commonMetrics, apiGateway, null);
+      final RunningExecutionsUpdaterThread updaterThread,
+      final ExecutableFlowCache executableFlowCache) {
+    // Queued flows are finalized by the ExecutionFinalizer, which has its own alerter, cache and
+    // status feed
+    super(azkProps, executorLoader, commonMetrics, apiGateway, null, executableFlowCache, null);
     this.runningExecutions = runningExecutions;
     this.activeExecutors = activeExecutors;
     this.updaterStage = updaterStage;
@@ -108,7 +115,8 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
     this.setupExecutors();
     this.loadRunningExecutions();
     this.queuedFlows = new QueuedExecutions(
-        this.azkProps.getLong(ConfigurationKeys.WEBSERVER_QUEUE_SIZE, 100000));
+        this.azkProps.getLong(ConfigurationKeys.WEBSERVER_QUEUE_SIZE, 100000),
+        getFairShareKey(this.azkProps), getFairShareWeights(this.azkProps));
     this.loadQueuedFlows();
     this.cacheDir = new File(this.azkProps.getString("cache.directory", "cache"));
     // TODO extract QueueProcessor as a separate class, move all of this into it
@@ -133,7 +141,43 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
         this.azkProps.getInt(
             Constants.ConfigurationKeys.MAX_DISPATCHING_ERRORS_PERMITTED,
             this.activeExecutors.getAll().size()),
-        this.sleepAfterDispatchFailure);
+        this.sleepAfterDispatchFailure,
+        this.azkProps.getInt(ConfigurationKeys.WEBSERVER_DISPATCH_THREADS,
+            Constants.DEFAULT_WEBSERVER_DISPATCH_THREADS));
+  }
+
+  @VisibleForTesting
+  static QueuedExecutions.FairShareKey getFairShareKey(final Props azkProps) {
+    final String key = azkProps.getString(ConfigurationKeys.WEBSERVER_QUEUE_FAIR_SHARE_KEY,
+        QueuedExecutions.FairShareKey.NONE.name());
+    try {
+      return QueuedExecutions.FairShareKey.valueOf(key.trim().toUpperCase());
+    } catch (final IllegalArgumentException e) {
+      logger.error("Ignoring invalid " + ConfigurationKeys.WEBSERVER_QUEUE_FAIR_SHARE_KEY + " "
+          + key + ", it must be one of " + Arrays.toString(QueuedExecutions.FairShareKey.values())
+          + ". Queued flows are not shared fairly.");
+      return QueuedExecutions.FairShareKey.NONE;
+    }
+  }
+
+  @VisibleForTesting
+  static Map<String, Integer> getFairShareWeights(final Props azkProps) {
+    final Map<String, Integer> weights = new TreeMap<>();
+    for (final Map.Entry<String, String> entry : azkProps
+        .getMapByPrefix(ConfigurationKeys.WEBSERVER_QUEUE_FAIR_SHARE_WEIGHT_PREFIX).entrySet()) {
+      try {
+        final int weight = Integer.parseInt(entry.getValue().trim());
+        if (weight > 0) {
+          weights.put(entry.getKey(), weight);
+          continue;
+        }
+      } catch (final NumberFormatException e) {
+        // Logged below
+      }
+      logger.error("Ignoring invalid fair share weight " + entry.getValue() + " of "
+          + entry.getKey() + ", the weight must be a positive integer.");
+    }
+    return weights;
   }
 
   private void setupExecutorComparatorWeightsMap() {
@@ -361,16 +405,43 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
 
   /*
    * load queued flows i.e with active_execution_reference and not assigned to
-   * any executor
+   * any executor. Only their descriptors are loaded, a page at a time.
    */
   private void loadQueuedFlows() throws ExecutorManagerException {
-    final List<Pair<ExecutionReference, ExecutableFlow>> retrievedExecutions =
-        this.executorLoader.fetchQueuedFlows();
-    if (retrievedExecutions != null) {
-      for (final Pair<ExecutionReference, ExecutableFlow> pair : retrievedExecutions) {
-        this.queuedFlows.enqueue(pair.getSecond(), pair.getFirst());
+    int lastExecId = Integer.MIN_VALUE;
+    List<QueuedExecution> page;
+    do {
+      page = this.executorLoader.fetchQueuedExecutions(lastExecId, QUEUED_FLOWS_LOAD_PAGE_SIZE);
+      this.queuedFlows.enqueueAll(page);
+      if (!page.isEmpty()) {
+        lastExecId = page.get(page.size() - 1).getExecId();
+      }
+    } while (page.size() == QUEUED_FLOWS_LOAD_PAGE_SIZE);
+    logger.info("Loaded " + this.queuedFlows.size() + " queued flows");
+  }
+
+  /*
+   * Lists the queued executions as flows with only their metadata, built from the descriptors in
+   * the queue. The flows themselves aren't fetched from the db.
+   */
+  private List<Pair<ExecutionReference, ExecutableFlow>> getQueuedFlowsMetadata() {
+    final List<Pair<ExecutionReference, ExecutableFlow>> flows = new ArrayList<>();
+    for (final QueuedExecution queued : this.queuedFlows.getAllEntries()) {
+      flows.add(new Pair<>(queued.getReference(), queued.toFlowMetadata()));
+    }
+    return flows;
+  }
+
+  /* Helper method to get the ids of the queued executions of a flow */
+  private static List<Integer> getQueuedFlowsHelper(final int projectId, final String flowId,
+      final Collection<QueuedExecution> collection) {
+    final List<Integer> executionIds = new ArrayList<>();
+    for (final QueuedExecution queued : collection) {
+      if (queued.getFlowId().equals(flowId) && queued.getProjectId() == projectId) {
+        executionIds.add(queued.getExecId());
       }
     }
+    return executionIds;
   }
 
   /**
@@ -383,16 +454,12 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
   @Override
   public List<Integer> getRunningFlows(final int projectId, final String flowId) {
     final List<Integer> executionIds = new ArrayList<>();
-    executionIds.addAll(ExecutorUtils.getRunningFlowsHelper(projectId, flowId,
+    executionIds.addAll(getQueuedFlowsHelper(projectId, flowId,
         this.queuedFlows.getAllEntries()));
-    // it's possible an execution is runningCandidate, meaning it's in dispatching state neither in queuedFlows nor runningFlows,
-    // so checks the runningCandidate as well.
-    if (this.runningCandidate != null) {
-      executionIds
-          .addAll(
-              ExecutorUtils.getRunningFlowsHelper(projectId, flowId,
-                  Lists.newArrayList(this.runningCandidate)));
-    }
+    // it's possible an execution is being dispatched, meaning it's neither in queuedFlows nor
+    // runningFlows, so checks the dispatching flows as well.
+    executionIds.addAll(getQueuedFlowsHelper(projectId, flowId,
+        this.dispatchingFlows.values()));
     executionIds.addAll(ExecutorUtils.getRunningFlowsHelper(projectId, flowId,
         this.runningExecutions.get().values()));
     Collections.sort(executionIds);
@@ -400,7 +467,8 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
   }
 
   /**
-   * {@inheritDoc}
+   * {@inheritDoc} The queued flows only have their metadata, see
+   * {@link QueuedExecution#toFlowMetadata()}.
    *
    * @see azkaban.executor.ExecutorManagerAdapter#getActiveFlowsWithExecutor()
    */
@@ -408,7 +476,7 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
   public List<Pair<ExecutableFlow, Optional<Executor>>> getActiveFlowsWithExecutor() {
     final List<Pair<ExecutableFlow, Optional<Executor>>> flows =
         new ArrayList<>();
-    getActiveFlowsWithExecutorHelper(flows, this.queuedFlows.getAllEntries());
+    getActiveFlowsWithExecutorHelper(flows, getQueuedFlowsMetadata());
     getActiveFlowsWithExecutorHelper(flows, this.runningExecutions.get().values());
     return flows;
   }
@@ -423,7 +491,8 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
     boolean isRunning = false;
     isRunning =
         isRunning
-            || isFlowRunningHelper(projectId, flowId, this.queuedFlows.getAllEntries());
+            || !getQueuedFlowsHelper(projectId, flowId, this.queuedFlows.getAllEntries())
+            .isEmpty();
     isRunning =
         isRunning
             || isFlowRunningHelper(projectId, flowId, this.runningExecutions.get().values());
@@ -431,7 +500,8 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
   }
 
   /**
-   * Get all active (running, non-dispatched) flows
+   * Get all active (running, non-dispatched) flows. The non-dispatched flows only have their
+   * metadata, see {@link QueuedExecution#toFlowMetadata()}.
    * <p>
    * {@inheritDoc}
    *
@@ -440,11 +510,19 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
   @Override
   public List<ExecutableFlow> getRunningFlows() {
     final ArrayList<ExecutableFlow> flows = new ArrayList<>();
-    getActiveFlowHelper(flows, this.queuedFlows.getAllEntries());
+    getActiveFlowHelper(flows, getQueuedFlowsMetadata());
     getActiveFlowHelper(flows, this.runningExecutions.get().values());
     return flows;
   }
 
+  /**
+   * Counts the queued flows by their descriptors.
+   */
+  @Override
+  public int getNumRunningFlows() {
+    return (int) this.queuedFlows.size() + this.runningExecutions.get().size();
+  }
+
   /*
    * Helper method to get all running flows from a Pair<ExecutionReference,
    * ExecutableFlow collection
@@ -461,7 +539,7 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
    */
   public String getRunningFlowIds() {
     final List<Integer> allIds = new ArrayList<>();
-    getRunningFlowsIdsHelper(allIds, this.queuedFlows.getAllEntries());
+    getQueuedFlowIdsHelper(allIds, this.queuedFlows.getAllEntries());
     getRunningFlowsIdsHelper(allIds, this.runningExecutions.get().values());
     Collections.sort(allIds);
     return allIds.toString();
@@ -472,7 +550,7 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
    */
   public String getQueuedFlowIds() {
     final List<Integer> allIds = new ArrayList<>();
-    getRunningFlowsIdsHelper(allIds, this.queuedFlows.getAllEntries());
+    getQueuedFlowIdsHelper(allIds, this.queuedFlows.getAllEntries());
     Collections.sort(allIds);
     return allIds.toString();
   }
@@ -504,6 +582,14 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
     }
   }
 
+  /* Helper method to flow ids of all queued flows */
+  private void getQueuedFlowIdsHelper(final List<Integer> allIds,
+      final Collection<QueuedExecution> collection) {
+    for (final QueuedExecution queued : collection) {
+      allIds.add(queued.getExecId());
+    }
+  }
+
   @Override
   public LogData getExecutableFlowLog(final ExecutableFlow exFlow, final int offset,
       final int length) throws ExecutorManagerException {
@@ -634,6 +720,8 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
         logger.error(message);
         this.commonMetrics.markSubmitFlowFail();
       } else {
+        // Rejects an invalid useExecutor before the execution is stored
+        QueuedExecution.getUseExecutor(exflow);
         message = uploadExecutableFlow(exflow, userId, flowId, message);
 
         // We create an active flow reference in the datastore. If the upload
@@ -716,6 +804,11 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
     private final long activeExecutorRefreshWindowInMillisec;
     private final int activeExecutorRefreshWindowInFlows;
     private final Duration sleepAfterDispatchFailure;
+    private final int dispatchThreads;
+    // One permit per flow that may be dispatched at the same time
+    private final Semaphore dispatchPermits;
+    // Dispatches the flows when more than one may be in flight, null otherwise
+    private final ExecutorService dispatchService;
 
     private volatile boolean shutdown = false;
     private volatile boolean isActive = true;
@@ -724,7 +817,8 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
         final long activeExecutorRefreshWindowInTime,
         final int activeExecutorRefreshWindowInFlows,
         final int maxDispatchingErrors,
-        final Duration sleepAfterDispatchFailure) {
+        final Duration sleepAfterDispatchFailure,
+        final int dispatchThreads) {
       setActive(isActive);
       this.maxDispatchingErrors = maxDispatchingErrors;
       this.activeExecutorRefreshWindowInFlows =
@@ -732,6 +826,11 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
       this.activeExecutorRefreshWindowInMillisec =
           activeExecutorRefreshWindowInTime;
       this.sleepAfterDispatchFailure = sleepAfterDispatchFailure;
+      this.dispatchThreads = Math.max(1, dispatchThreads);
+      this.dispatchPermits = new Semaphore(this.dispatchThreads);
+      this.dispatchService = this.dispatchThreads > 1 ? Executors.newFixedThreadPool(
+          this.dispatchThreads, new ThreadFactoryBuilder().setDaemon(true)
+              .setNameFormat("azk-dispatch-pool-%d").build()) : null;
       this.setName("AzkabanWebServer-QueueProcessor-Thread");
     }
 
@@ -747,6 +846,9 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
     public void shutdown() {
       this.shutdown = true;
       this.interrupt();
+      if (this.dispatchService != null) {
+        this.dispatchService.shutdownNow();
+      }
     }
 
     @Override
@@ -776,10 +878,17 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
       long lastExecutorRefreshTime = 0;
       int currentContinuousFlowProcessed = 0;
 
-      while (isActive() && (ExecutorManager.this.runningCandidate = ExecutorManager.this.queuedFlows
-          .fetchHead()) != null) {
-        final ExecutionReference reference = ExecutorManager.this.runningCandidate.getFirst();
-        final ExecutableFlow exflow = ExecutorManager.this.runningCandidate.getSecond();
+      while (isActive()) {
+        // wait for a free dispatch slot before taking the next flow off the queue
+        this.dispatchPermits.acquire();
+        final QueuedExecution candidate;
+        try {
+          candidate = ExecutorManager.this.queuedFlows.fetchHead();
+        } catch (final InterruptedException e) {
+          this.dispatchPermits.release();
+          throw e;
+        }
+        ExecutorManager.this.dispatchingFlows.put(candidate.getExecId(), candidate);
         final long currentTime = System.currentTimeMillis();
 
         // if we have dispatched more than maxContinuousFlowProcessed or
@@ -788,6 +897,8 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
 
         if (currentTime - lastExecutorRefreshTime > activeExecutorsRefreshWindow
             || currentContinuousFlowProcessed >= maxContinuousFlowProcessed) {
+          // The flows in flight picked their executors from the current executorInfo
+          awaitInFlightDispatches();
           // Refresh executorInfo for all activeExecutors
           refreshExecutors();
           lastExecutorRefreshTime = currentTime;
@@ -803,52 +914,94 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
          *   2. Implement GlobalSystemState in selector or in a third place to manage system filters. Basically
          *      taking out all the filters which do not depend on the flow but are still being part of Selector.
          * Assumptions:-
-         *   1. no one else except QueueProcessor is updating ExecutableFlow update time
+         *   1. no one else except QueueProcessor is updating QueuedExecution update time
          *   2. re-attempting a flow (which has been tried before) is considered as all executors are busy
          * </pre>
          */
-        if (exflow.getUpdateTime() > lastExecutorRefreshTime) {
+        if (candidate.getUpdateTime() > lastExecutorRefreshTime) {
           // put back in the queue
-          ExecutorManager.this.queuedFlows.enqueue(exflow, reference);
-          ExecutorManager.this.runningCandidate = null;
+          ExecutorManager.this.queuedFlows.enqueue(candidate);
+          finishDispatch(candidate);
           final long sleepInterval =
               activeExecutorsRefreshWindow
                   - (currentTime - lastExecutorRefreshTime);
           // wait till next executor refresh
           Thread.sleep(sleepInterval);
         } else {
-          exflow.setUpdateTime(currentTime);
+          candidate.setUpdateTime(currentTime);
           // process flow with current snapshot of activeExecutors
-          selectExecutorAndDispatchFlow(reference, exflow);
-          ExecutorManager.this.runningCandidate = null;
+          dispatchFlow(candidate);
         }
 
         // do not count failed flow processing (flows still in queue)
-        if (ExecutorManager.this.queuedFlows.getFlow(exflow.getExecutionId()) == null) {
+        if (!ExecutorManager.this.queuedFlows.hasExecution(candidate.getExecId())) {
           currentContinuousFlowProcessed++;
         }
       }
     }
 
+    /* dispatch the flow on this thread, or hand it to the dispatch pool if there is one */
+    private void dispatchFlow(final QueuedExecution queued) throws ExecutorManagerException {
+      if (this.dispatchService == null) {
+        try {
+          selectExecutorAndDispatchFlow(queued);
+        } finally {
+          finishDispatch(queued);
+        }
+        return;
+      }
+      this.dispatchService.submit(() -> {
+        try {
+          selectExecutorAndDispatchFlow(queued);
+        } catch (final Exception e) {
+          ExecutorManager.logger.error(
+              "Failed to dispatch queued execution " + queued.getExecId(), e);
+        } finally {
+          finishDispatch(queued);
+        }
+      });
+    }
+
+    private void finishDispatch(final QueuedExecution queued) {
+      ExecutorManager.this.dispatchingFlows.remove(queued.getExecId());
+      this.dispatchPermits.release();
+    }
+
+    /* waits until the flows handed to the dispatch pool are done, this thread holds one permit */
+    private void awaitInFlightDispatches() throws InterruptedException {
+      this.dispatchPermits.acquire(this.dispatchThreads - 1);
+      this.dispatchPermits.release(this.dispatchThreads - 1);
+    }
+
     /* process flow with a snapshot of available Executors */
-    private void selectExecutorAndDispatchFlow(final ExecutionReference reference,
-        final ExecutableFlow exflow)
+    private void selectExecutorAndDispatchFlow(final QueuedExecution queued)
         throws ExecutorManagerException {
+      final ExecutionReference reference = queued.getReference();
+      // The queue only holds the descriptor, the flow is loaded now that it's dispatched
+      final ExecutableFlow exflow =
+          ExecutorManager.this.executorLoader.fetchExecutableFlow(queued.getExecId());
+      if (exflow == null) {
+        ExecutorManager.logger.error("Dropping queued execution " + queued.getExecId()
+            + " because it doesn't exist in the db");
+        return;
+      }
       final Set<Executor> remainingExecutors = new HashSet<>(
           ExecutorManager.this.activeExecutors.getAll());
       Throwable lastError;
       synchronized (exflow) {
         do {
-          final Executor selectedExecutor = selectExecutor(exflow, remainingExecutors);
+          final Executor selectedExecutor = selectExecutor(queued, exflow, remainingExecutors);
           if (selectedExecutor == null) {
             ExecutorManager.this.commonMetrics.markDispatchFail();
-            handleNoExecutorSelectedCase(reference, exflow);
+            handleNoExecutorSelectedCase(queued);
             // RE-QUEUED - exit
             return;
           } else {
             try {
               dispatch(reference, exflow, selectedExecutor);
               ExecutorManager.this.commonMetrics.markDispatchSuccess();
+              ExecutorManager.this.commonMetrics.addQueueWaitTime(queued.getPriority(),
+                  queued.getProjectName(), System.currentTimeMillis() - queued.getSubmitTime());
               // SUCCESS - exit
               return;
             } catch (final ExecutorManagerException e) {
@@ -899,17 +1052,12 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
     }
 
     /* Helper method to fetch  overriding Executor, if a valid user has specifed otherwise return null */
-    private Executor getUserSpecifiedExecutor(final ExecutionOptions options,
+    private Executor getUserSpecifiedExecutor(final Integer useExecutor,
         final int executionId) {
       Executor executor = null;
-      if (options != null
-          && options.getFlowParameters() != null
-          && options.getFlowParameters().containsKey(
-          ExecutionOptions.USE_EXECUTOR)) {
+      if (useExecutor != null) {
         try {
-          final int executorId =
-              Integer.valueOf(options.getFlowParameters().get(
-                  ExecutionOptions.USE_EXECUTOR));
+          final int executorId = useExecutor;
           executor = fetchExecutor(executorId);
 
           if (executor == null) {
@@ -936,11 +1084,10 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
     }
 
     /* Choose Executor for exflow among the available executors */
-    private Executor selectExecutor(final ExecutableFlow exflow,
+    private Executor selectExecutor(final QueuedExecution queued, final ExecutableFlow exflow,
         final Set<Executor> availableExecutors) {
       Executor choosenExecutor =
-          getUserSpecifiedExecutor(exflow.getExecutionOptions(),
-              exflow.getExecutionId());
+          getUserSpecifiedExecutor(queued.getUseExecutor(), queued.getExecId());
 
       // If no executor was specified by admin
       if (choosenExecutor == null) {
@@ -953,16 +1100,16 @@ public class ExecutorManager extends AbstractExecutorManagerAdapter {
       return choosenExecutor;
     }
 
-    private void handleNoExecutorSelectedCase(final ExecutionReference reference,
-        final ExecutableFlow exflow) throws ExecutorManagerException {
+    private void handleNoExecutorSelectedCase(final QueuedExecution queued)
+        throws ExecutorManagerException {
       ExecutorManager.logger
           .info(String
               .format(
                   "Reached handleNoExecutorSelectedCase stage for exec %d with error count %d",
-                  exflow.getExecutionId(), reference.getNumErrors()));
+                  queued.getExecId(), queued.getReference().getNumErrors()));
       // TODO: handle scenario where a high priority flow failing to get
       // schedule can starve all others
-      ExecutorManager.this.queuedFlows.enqueue(exflow, reference);
+      ExecutorManager.this.queuedFlows.enqueue(queued);
     }
   }
 }
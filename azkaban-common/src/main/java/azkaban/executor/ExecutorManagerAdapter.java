@@ -39,6 +39,12 @@ public interface ExecutorManagerAdapter {
 
   public List<ExecutableFlow> getRunningFlows();
 
+  /**
+   * Returns the number of flows {@link #getRunningFlows()} returns, without fetching them if the
+   * implementation can tell.
+   */
+  public int getNumRunningFlows();
+
   public long getQueuedFlowSize();
 
   public long getAgedQueuedFlowSize();
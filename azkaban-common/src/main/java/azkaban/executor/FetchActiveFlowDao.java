@@ -17,18 +17,16 @@
 package azkaban.executor;
 
 import azkaban.db.DatabaseOperator;
-import azkaban.db.EncodingType;
 import azkaban.flow.Flow;
 import azkaban.project.Project;
-import azkaban.utils.GZIPUtils;
 import azkaban.utils.Pair;
 import com.google.common.annotations.VisibleForTesting;
-import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.stream.Collectors;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import org.apache.commons.dbutils.ResultSetHandler;
@@ -58,14 +56,8 @@ public class FetchActiveFlowDao {
           + "FAILED manually, eg. "
           + "SET status = " + Status.FAILED.getNumVal() + " WHERE id = " + id);
     } else {
-      final EncodingType encType = EncodingType.fromInteger(encodingType);
-      final ExecutableFlow exFlow;
-      try {
-        exFlow = ExecutableFlow.createExecutableFlow(
-            GZIPUtils.transformBytesToObject(data, encType), Status.fromInteger(status));
-      } catch (final IOException e) {
-        throw new SQLException("Error retrieving flow data " + id, e);
-      }
+      final ExecutableFlow exFlow = ExecutionFlowDao.decodeExecutableFlow(id, encodingType, data,
+          Status.fromInteger(status));
       return getPairWithExecutorInfo(rs, exFlow);
     }
     return null;
@@ -104,6 +96,16 @@ public class FetchActiveFlowDao {
     return getPairWithExecutorInfo(rs, exFlow);
   }
 
+  /**
+   * Applies the updates appended to execution_flow_updates to the fetched flows.
+   */
+  private Map<Integer, Pair<ExecutionReference, ExecutableFlow>> applyExecutableFlowUpdates(
+      final Map<Integer, Pair<ExecutionReference, ExecutableFlow>> flows) throws SQLException {
+    ExecutionFlowDao.applyExecutableFlowUpdates(this.dbOperator,
+        flows.values().stream().map(Pair::getSecond).collect(Collectors.toList()));
+    return flows;
+  }
+
   /**
    * Fetch flows that are not in finished status, including both dispatched and non-dispatched
    * flows.
@@ -114,8 +116,9 @@ public class FetchActiveFlowDao {
   Map<Integer, Pair<ExecutionReference, ExecutableFlow>> fetchUnfinishedFlows()
       throws ExecutorManagerException {
     try {
-      return this.dbOperator.query(FetchActiveExecutableFlows.FETCH_UNFINISHED_EXECUTABLE_FLOWS,
-          new FetchActiveExecutableFlows());
+      return applyExecutableFlowUpdates(this.dbOperator.query(
+          FetchActiveExecutableFlows.FETCH_UNFINISHED_EXECUTABLE_FLOWS,
+          new FetchActiveExecutableFlows()));
     } catch (final SQLException e) {
       throw new ExecutorManagerException("Error fetching unfinished flows", e);
     }
@@ -146,8 +149,9 @@ public class FetchActiveFlowDao {
   Map<Integer, Pair<ExecutionReference, ExecutableFlow>> fetchActiveFlows()
       throws ExecutorManagerException {
     try {
-      return this.dbOperator.query(FetchActiveExecutableFlows.FETCH_ACTIVE_EXECUTABLE_FLOWS,
-          new FetchActiveExecutableFlows());
+      return applyExecutableFlowUpdates(this.dbOperator.query(
+          FetchActiveExecutableFlows.FETCH_ACTIVE_EXECUTABLE_FLOWS,
+          new FetchActiveExecutableFlows()));
     } catch (final SQLException e) {
       throw new ExecutorManagerException("Error fetching active flows", e);
     }
@@ -162,9 +166,14 @@ public class FetchActiveFlowDao {
   Pair<ExecutionReference, ExecutableFlow> fetchActiveFlowByExecId(final int execId)
       throws ExecutorManagerException {
     try {
-      return this.dbOperator.query(FetchActiveExecutableFlow
-              .FETCH_ACTIVE_EXECUTABLE_FLOW_BY_EXEC_ID,
+      final Pair<ExecutionReference, ExecutableFlow> activeFlow = this.dbOperator.query(
+          FetchActiveExecutableFlow.FETCH_ACTIVE_EXECUTABLE_FLOW_BY_EXEC_ID,
           new FetchActiveExecutableFlow(), execId);
+      if (activeFlow != null) {
+        ExecutionFlowDao.applyExecutableFlowUpdates(this.dbOperator,
+            Collections.singletonList(activeFlow.getSecond()));
+      }
+      return activeFlow;
     } catch (final SQLException e) {
       throw new ExecutorManagerException("Error fetching active flow by exec id" + execId, e);
     }
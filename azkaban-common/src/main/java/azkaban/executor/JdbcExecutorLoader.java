@@ -76,12 +76,35 @@ public class JdbcExecutorLoader implements ExecutorLoader {
     this.executionFlowDao.updateExecutableFlow(flow);
   }
 
+  @Override
+  public void appendExecutableFlowUpdate(final ExecutableFlow flow, final long lastUpdateTime)
+      throws ExecutorManagerException {
+    this.executionFlowDao.appendExecutableFlowUpdate(flow, lastUpdateTime);
+  }
+
+  @Override
+  public void compactExecutableFlow(final ExecutableFlow flow)
+      throws ExecutorManagerException {
+    this.executionFlowDao.compactExecutableFlow(flow);
+  }
+
   @Override
   public ExecutableFlow fetchExecutableFlow(final int id)
       throws ExecutorManagerException {
     return this.executionFlowDao.fetchExecutableFlow(id);
   }
 
+  @Override
+  public EncodedExecutableFlow fetchEncodedExecutableFlow(final int execId)
+      throws ExecutorManagerException {
+    return this.executionFlowDao.fetchEncodedExecutableFlow(execId);
+  }
+
+  @Override
+  public long fetchExecutableFlowUpdateTime(final int execId) throws ExecutorManagerException {
+    return this.executionFlowDao.fetchExecutableFlowUpdateTime(execId);
+  }
+
   @Override
   public List<Pair<ExecutionReference, ExecutableFlow>> fetchQueuedFlows()
       throws ExecutorManagerException {
@@ -94,6 +117,12 @@ public class JdbcExecutorLoader implements ExecutorLoader {
     return this.executionFlowDao.fetchQueuedFlows(status);
   }
 
+  @Override
+  public List<QueuedExecution> fetchQueuedExecutions(final int afterExecId, final int limit)
+      throws ExecutorManagerException {
+    return this.executionFlowDao.fetchQueuedExecutions(afterExecId, limit);
+  }
+
   @Override
   public List<ExecutableFlow> fetchStaleFlows(Duration executionDuration)
       throws ExecutorManagerException {
@@ -357,20 +386,26 @@ public class JdbcExecutorLoader implements ExecutorLoader {
   }
 
   @Override
-  public int removeExecutionLogsByTime(final long millis, final int recordCleanupLimit)
+  public Pair<Integer, Integer> fetchExecutionLogsExecIdRange(final long millis)
       throws ExecutorManagerException {
-    return this.executionLogsDao.removeExecutionLogsByTime(millis, recordCleanupLimit);
+    return this.executionLogsDao.fetchExecutionLogsExecIdRange(millis);
   }
 
   @Override
-  public void unassignExecutor(final int executionId) throws ExecutorManagerException {
-    this.assignExecutorDao.unassignExecutor(executionId);
+  public Pair<Integer, Long> removeExecutionLogsByRange(final int fromExecId,
+      final int toExecId, final long millis) throws ExecutorManagerException {
+    return this.executionLogsDao.removeExecutionLogsByRange(fromExecId, toExecId, millis);
   }
 
   @Override
-  public int selectAndUpdateExecution(final int executorId, final boolean isActive)
+  public Pair<Long, Long> dropExecutionLogsPartitions(final long millis)
       throws ExecutorManagerException {
-    return this.executionFlowDao.selectAndUpdateExecution(executorId, isActive);
+    return this.executionLogsDao.dropExecutionLogsPartitions(millis);
+  }
+
+  @Override
+  public void unassignExecutor(final int executionId) throws ExecutorManagerException {
+    this.assignExecutorDao.unassignExecutor(executionId);
   }
 
   @Override
@@ -379,6 +414,13 @@ public class JdbcExecutorLoader implements ExecutorLoader {
     return this.executionFlowDao.selectAndUpdateExecutionWithLocking(executorId, isActive);
   }
 
+  @Override
+  public List<Integer> selectAndUpdateExecutions(final int executorId, final boolean isActive,
+      final int limit, final boolean skipLocked) throws ExecutorManagerException {
+    return this.executionFlowDao.selectAndUpdateExecutions(executorId, isActive, limit,
+        skipLocked);
+  }
+
   @Override
   public Set<Integer> selectAndUpdateExecutionWithLocking(final boolean batchEnabled, int limit,
       Status updatedStatus) throws ExecutorManagerException {
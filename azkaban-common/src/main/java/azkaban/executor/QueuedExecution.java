@@ -0,0 +1,164 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package azkaban.executor;
+
+import azkaban.flow.Flow;
+import azkaban.project.Project;
+import java.util.Comparator;
+import javax.annotation.Nullable;
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Compact description of a non-dispatched execution, everything the web server's queue needs to
+ * order and dispatch it. The flow itself is loaded from the DB when the execution is dispatched,
+ * so a deep queue doesn't keep the decoded flows in memory.
+ */
+public class QueuedExecution {
+
+  private static final Logger logger = Logger.getLogger(QueuedExecution.class);
+
+  /**
+   * Order of the queue, the same as {@link ExecutableFlowPriorityComparator}: descending priority,
+   * then ascending update time and execution id.
+   */
+  public static final Comparator<QueuedExecution> PRIORITY_ORDER =
+      Comparator.comparingInt(QueuedExecution::getPriority).reversed()
+          .thenComparingLong(QueuedExecution::getUpdateTime)
+          .thenComparingInt(QueuedExecution::getExecId);
+
+  private final ExecutionReference reference;
+  private final int projectId;
+  private final String projectName;
+  private final String flowId;
+  private final String submitUser;
+  private final long submitTime;
+  private final int priority;
+  // Executor the flow has to run on, set by an admin with the useExecutor flow parameter
+  private final Integer useExecutor;
+  // Set when the queue processor takes the execution, so a retried execution queues up behind
+  // the others of its priority
+  private volatile long updateTime;
+
+  public QueuedExecution(final ExecutionReference reference, final int projectId,
+      final String projectName, final String flowId, final String submitUser,
+      final long submitTime, final long updateTime, final int priority,
+      @Nullable final Integer useExecutor) {
+    this.reference = reference;
+    this.projectId = projectId;
+    this.projectName = projectName;
+    this.flowId = flowId;
+    this.submitUser = submitUser;
+    this.submitTime = submitTime;
+    this.updateTime = updateTime;
+    this.priority = priority;
+    this.useExecutor = useExecutor;
+  }
+
+  /**
+   * Describes a flow that was just submitted.
+   *
+   * @throws ExecutorManagerException if the useExecutor flow parameter isn't an integer
+   */
+  public static QueuedExecution fromFlow(final ExecutableFlow exflow,
+      final ExecutionReference reference) throws ExecutorManagerException {
+    return new QueuedExecution(reference, exflow.getProjectId(), exflow.getProjectName(),
+        exflow.getFlowId(), exflow.getSubmitUser(), exflow.getSubmitTime(),
+        exflow.getUpdateTime(), ExecutableFlowPriorityComparator.getPriority(exflow),
+        getUseExecutor(exflow));
+  }
+
+  /**
+   * @return the executor set by the useExecutor flow parameter, null if there is none
+   * @throws ExecutorManagerException if the parameter isn't an integer
+   */
+  @Nullable
+  static Integer getUseExecutor(final ExecutableFlow exflow) throws ExecutorManagerException {
+    final ExecutionOptions options = exflow.getExecutionOptions();
+    final String useExecutor = options == null || options.getFlowParameters() == null ? null
+        : options.getFlowParameters().get(ExecutionOptions.USE_EXECUTOR);
+    if (StringUtils.isEmpty(useExecutor)) {
+      return null;
+    }
+    try {
+      return Integer.valueOf(useExecutor);
+    } catch (final NumberFormatException e) {
+      logger.error(String.format("Invalid %s flow parameter %s of execution %d",
+          ExecutionOptions.USE_EXECUTOR, useExecutor, exflow.getExecutionId()));
+      throw new ExecutorManagerException(ExecutionOptions.USE_EXECUTOR + " should be an integer");
+    }
+  }
+
+  /**
+   * @return a flow with only the metadata of the execution, enough to list it. The flow data
+   * isn't fetched, so the flow has no nodes, options or proxy users.
+   */
+  public ExecutableFlow toFlowMetadata() {
+    final ExecutableFlow exFlow = new ExecutableFlow(
+        new Project(this.projectId, this.projectName), new Flow(this.flowId));
+    exFlow.setExecutionId(getExecId());
+    exFlow.setStatus(Status.PREPARING);
+    exFlow.setSubmitTime(this.submitTime);
+    exFlow.setSubmitUser(this.submitUser);
+    exFlow.setUpdateTime(this.updateTime);
+    return exFlow;
+  }
+
+  public ExecutionReference getReference() {
+    return this.reference;
+  }
+
+  public int getExecId() {
+    return this.reference.getExecId();
+  }
+
+  public int getProjectId() {
+    return this.projectId;
+  }
+
+  public String getProjectName() {
+    return this.projectName;
+  }
+
+  public String getFlowId() {
+    return this.flowId;
+  }
+
+  public String getSubmitUser() {
+    return this.submitUser;
+  }
+
+  public long getSubmitTime() {
+    return this.submitTime;
+  }
+
+  public int getPriority() {
+    return this.priority;
+  }
+
+  @Nullable
+  public Integer getUseExecutor() {
+    return this.useExecutor;
+  }
+
+  public long getUpdateTime() {
+    return this.updateTime;
+  }
+
+  public void setUpdateTime(final long updateTime) {
+    this.updateTime = updateTime;
+  }
+}
@@ -1,18 +1,31 @@
 package azkaban.executor;
 
-import azkaban.utils.Pair;
+import com.google.common.base.Preconditions;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.concurrent.BlockingQueue;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import org.apache.log4j.Logger;
 
 /**
  * <pre>
  * Composite data structure to represent non-dispatched flows in webserver.
- * This data structure wraps a blocking queue and a concurrent hashmap.
+ * This data structure wraps a multi-level queue and a concurrent hashmap.
  * </pre>
+ *
+ * <p>The queue holds {@link QueuedExecution} descriptors rather than the flows, which are only
+ * loaded when an execution is dispatched.
+ *
+ * <p>Flows of a higher priority are always taken first. Within a priority, flows are queued in
+ * sub-queues by their fair-share key, the project or the submitting user, and the sub-queues take
+ * turns in proportion to their weights, so a project that floods the queue doesn't starve the
+ * others. Each sub-queue is ordered like the whole queue was before, by update time and then
+ * execution id. Without a fair-share key all flows of a priority share one sub-queue.
  */
 public class QueuedExecutions {
 
@@ -20,38 +33,94 @@ public class QueuedExecutions {
   final long capacity;
 
   /* map to easily access queued flows */
-  final private ConcurrentHashMap<Integer, Pair<ExecutionReference, ExecutableFlow>> queuedFlowMap;
-  /* actual queue */
-  final private BlockingQueue<Pair<ExecutionReference, ExecutableFlow>> queuedFlowList;
+  final private ConcurrentHashMap<Integer, QueuedExecution> queuedFlowMap;
+  /* actual queue: sub-queues by priority, highest first */
+  final private TreeMap<Integer, PriorityLevel> queuedFlowLevels =
+      new TreeMap<>(Collections.reverseOrder());
+  private final FairShareKey fairShareKey;
+  private final Map<String, Integer> fairShareWeights;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = this.lock.newCondition();
+  private int size = 0;
 
   public QueuedExecutions(final long capacity) {
+    this(capacity, FairShareKey.NONE, Collections.emptyMap());
+  }
+
+  /**
+   * @param fairShareKey     what the flows of a priority are shared fairly between
+   * @param fairShareWeights weights of the projects or users, by name. The default weight is 1.
+   * @throws IllegalArgumentException if a weight isn't positive
+   */
+  public QueuedExecutions(final long capacity, final FairShareKey fairShareKey,
+      final Map<String, Integer> fairShareWeights) {
     this.capacity = capacity;
+    for (final Map.Entry<String, Integer> weight : fairShareWeights.entrySet()) {
+      Preconditions.checkArgument(weight.getValue() > 0,
+          "Fair share weight %s of %s must be positive", weight.getValue(), weight.getKey());
+    }
+    this.fairShareKey = fairShareKey;
+    this.fairShareWeights = fairShareWeights;
     this.queuedFlowMap =
         new ConcurrentHashMap<>();
-    this.queuedFlowList =
-        new PriorityBlockingQueue<>(10,
-            new ExecutableFlowPriorityComparator());
   }
 
   /**
-   * Wraps BoundedQueue Take method to have a corresponding update in queuedFlowMap lookup table
+   * Takes the next flow, waiting for one if the queue is empty, and removes it from the
+   * queuedFlowMap lookup table.
    */
-  public Pair<ExecutionReference, ExecutableFlow> fetchHead()
-      throws InterruptedException {
-    final Pair<ExecutionReference, ExecutableFlow> pair = this.queuedFlowList.take();
-    if (pair != null && pair.getFirst() != null) {
-      this.queuedFlowMap.remove(pair.getFirst().getExecId());
+  public QueuedExecution fetchHead() throws InterruptedException {
+    this.lock.lockInterruptibly();
+    try {
+      while (this.queuedFlowLevels.isEmpty()) {
+        this.notEmpty.await();
+      }
+      final Map.Entry<Integer, PriorityLevel> levelEntry = this.queuedFlowLevels.firstEntry();
+      final PriorityLevel level = levelEntry.getValue();
+      final SubQueue subQueue = level.selectSubQueue();
+      final QueuedExecution queued = subQueue.flows.poll();
+      // Charge the turn to the sub-queue
+      level.virtualTime = subQueue.pass;
+      subQueue.pass += 1.0 / subQueue.weight;
+      if (subQueue.flows.isEmpty()) {
+        level.subQueues.remove(subQueue.key);
+        if (level.subQueues.isEmpty()) {
+          this.queuedFlowLevels.remove(levelEntry.getKey());
+        }
+      }
+      this.size--;
+      this.queuedFlowMap.remove(queued.getExecId());
+      return queued;
+    } finally {
+      this.lock.unlock();
     }
-    return pair;
   }
 
   /**
    * Helper method to have a single point of deletion in the queued flows
    */
   public void dequeue(final int executionId) {
-    if (this.queuedFlowMap.containsKey(executionId)) {
-      this.queuedFlowList.remove(this.queuedFlowMap.get(executionId));
-      this.queuedFlowMap.remove(executionId);
+    this.lock.lock();
+    try {
+      final QueuedExecution queued = this.queuedFlowMap.remove(executionId);
+      if (queued == null) {
+        return;
+      }
+      final int priority = queued.getPriority();
+      final PriorityLevel level = this.queuedFlowLevels.get(priority);
+      final String key = getFairShareKey(queued);
+      final SubQueue subQueue = level == null ? null : level.subQueues.get(key);
+      if (subQueue != null && subQueue.flows.remove(queued)) {
+        this.size--;
+        if (subQueue.flows.isEmpty()) {
+          level.subQueues.remove(key);
+          if (level.subQueues.isEmpty()) {
+            this.queuedFlowLevels.remove(priority);
+          }
+        }
+      }
+    } finally {
+      this.lock.unlock();
     }
   }
 
@@ -64,28 +133,51 @@ public class QueuedExecutions {
    * @param ref
    *          reference to be enqueued
    * @throws ExecutorManagerException
-   *           case 1: if blocking queue put method fails due to
-   *           InterruptedException
-   *           case 2: if there already an element with
+   *           if there already an element with
    *           same execution Id
    * </pre>
    */
   public void enqueue(final ExecutableFlow exflow, final ExecutionReference ref)
       throws ExecutorManagerException {
-    if (hasExecution(exflow.getExecutionId())) {
-      final String errMsg = "Flow already in queue " + exflow.getExecutionId();
+    enqueue(QueuedExecution.fromFlow(exflow, ref));
+  }
+
+  /**
+   * <pre>
+   * Helper method to have a single point of insertion in the queued flows
+   *
+   * @param queued
+   *          execution to be enqueued
+   * @throws ExecutorManagerException
+   *           if there already an element with
+   *           same execution Id
+   * </pre>
+   */
+  public void enqueue(final QueuedExecution queued) throws ExecutorManagerException {
+    if (hasExecution(queued.getExecId())) {
+      final String errMsg = "Flow already in queue " + queued.getExecId();
       throw new ExecutorManagerException(errMsg);
     }
 
-    final Pair<ExecutionReference, ExecutableFlow> pair =
-        new Pair<>(ref, exflow);
+    this.lock.lock();
     try {
-      this.queuedFlowMap.put(exflow.getExecutionId(), pair);
-      this.queuedFlowList.put(pair);
-    } catch (final InterruptedException e) {
-      final String errMsg = "Failed to insert flow " + exflow.getExecutionId();
-      logger.error(errMsg, e);
-      throw new ExecutorManagerException(errMsg);
+      this.queuedFlowMap.put(queued.getExecId(), queued);
+      final PriorityLevel level = this.queuedFlowLevels.computeIfAbsent(queued.getPriority(),
+          priority -> new PriorityLevel());
+      final String key = getFairShareKey(queued);
+      SubQueue subQueue = level.subQueues.get(key);
+      if (subQueue == null) {
+        // A sub-queue that was empty starts at the current virtual time, it gets no turns for
+        // the time it was idle
+        subQueue = new SubQueue(key, this.fairShareWeights.getOrDefault(key, 1),
+            level.virtualTime);
+        level.subQueues.put(key, subQueue);
+      }
+      subQueue.flows.add(queued);
+      this.size++;
+      this.notEmpty.signal();
+    } finally {
+      this.lock.unlock();
     }
   }
 
@@ -96,24 +188,21 @@ public class QueuedExecutions {
    * @param collection
    *
    * @throws ExecutorManagerException
-   *           case 1: if blocking queue put method fails due to
-   *           InterruptedException
-   *           case 2: if there already an element with
+   *           if there already an element with
    *           same execution Id
    * </pre>
    */
-  public void enqueueAll(
-      final Collection<Pair<ExecutionReference, ExecutableFlow>> collection)
+  public void enqueueAll(final Collection<QueuedExecution> collection)
       throws ExecutorManagerException {
-    for (final Pair<ExecutionReference, ExecutableFlow> pair : collection) {
-      enqueue(pair.getSecond(), pair.getFirst());
+    for (final QueuedExecution queued : collection) {
+      enqueue(queued);
     }
   }
 
   /**
-   * Returns a read only collection of all the queued (flows, reference) pairs
+   * Returns a read only collection of all the queued executions
    */
-  public Collection<Pair<ExecutionReference, ExecutableFlow>> getAllEntries() {
+  public Collection<QueuedExecution> getAllEntries() {
     return Collections.unmodifiableCollection(this.queuedFlowMap.values());
   }
 
@@ -125,30 +214,30 @@ public class QueuedExecutions {
   }
 
   /**
-   * Fetch flow for an execution. Returns null, if execution not in queue
+   * Fetch the queued execution. Returns null, if execution not in queue
    */
-  public ExecutableFlow getFlow(final int executionId) {
-    if (hasExecution(executionId)) {
-      return this.queuedFlowMap.get(executionId).getSecond();
-    }
-    return null;
+  public QueuedExecution getQueuedExecution(final int executionId) {
+    return this.queuedFlowMap.get(executionId);
   }
 
   /**
    * Fetch Activereference for an execution. Returns null, if execution not in queue
    */
   public ExecutionReference getReference(final int executionId) {
-    if (hasExecution(executionId)) {
-      return this.queuedFlowMap.get(executionId).getFirst();
-    }
-    return null;
+    final QueuedExecution queued = this.queuedFlowMap.get(executionId);
+    return queued == null ? null : queued.getReference();
   }
 
   /**
    * Size of the queue
    */
   public long size() {
-    return this.queuedFlowList.size();
+    this.lock.lock();
+    try {
+      return this.size;
+    } finally {
+      this.lock.unlock();
+    }
   }
 
   /**
@@ -162,15 +251,81 @@ public class QueuedExecutions {
    * Verify, if queue is empty or not
    */
   public boolean isEmpty() {
-    return this.queuedFlowList.isEmpty() && this.queuedFlowMap.isEmpty();
+    return size() == 0 && this.queuedFlowMap.isEmpty();
   }
 
   /**
    * Empties queue by dequeuing all the elements
    */
   public void clear() {
-    for (final Pair<ExecutionReference, ExecutableFlow> pair : this.queuedFlowMap.values()) {
-      dequeue(pair.getFirst().getExecId());
+    for (final QueuedExecution queued : this.queuedFlowMap.values()) {
+      dequeue(queued.getExecId());
+    }
+  }
+
+  private String getFairShareKey(final QueuedExecution queued) {
+    switch (this.fairShareKey) {
+      case PROJECT:
+        return queued.getProjectName();
+      case USER:
+        return queued.getSubmitUser();
+      default:
+        return "";
+    }
+  }
+
+  /**
+   * What the flows of a priority are shared fairly between.
+   */
+  public enum FairShareKey {
+    NONE,
+    PROJECT,
+    USER
+  }
+
+  /**
+   * Queued flows of one priority.
+   */
+  private static class PriorityLevel {
+
+    private final Map<String, SubQueue> subQueues = new HashMap<>();
+    // Pass of the sub-queue which took the last turn
+    private double virtualTime = 0;
+
+    /**
+     * Stride scheduling: the sub-queue with the lowest pass takes the next turn. Ties go to the
+     * sub-queue with the oldest head, which is the order of a single queue.
+     */
+    private SubQueue selectSubQueue() {
+      SubQueue selected = null;
+      for (final SubQueue subQueue : this.subQueues.values()) {
+        if (selected == null || subQueue.pass < selected.pass
+            || (subQueue.pass == selected.pass
+            && QueuedExecution.PRIORITY_ORDER
+            .compare(subQueue.flows.peek(), selected.flows.peek()) < 0)) {
+          selected = subQueue;
+        }
+      }
+      return selected;
+    }
+  }
+
+  /**
+   * Queued flows of one priority and fair-share key.
+   */
+  private static class SubQueue {
+
+    private final String key;
+    private final int weight;
+    private final PriorityQueue<QueuedExecution> flows =
+        new PriorityQueue<>(QueuedExecution.PRIORITY_ORDER);
+    // Grows by 1 / weight with every turn the sub-queue takes
+    private double pass;
+
+    SubQueue(final String key, final int weight, final double pass) {
+      this.key = key;
+      this.weight = weight;
+      this.pass = pass;
     }
   }
 }
@@ -16,21 +16,35 @@
 
 package azkaban.executor;
 
+import azkaban.Constants;
+import azkaban.Constants.ConfigurationKeys;
 import azkaban.alert.Alerter;
 import azkaban.metrics.CommonMetrics;
 import azkaban.utils.Pair;
+import azkaban.utils.Props;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
 import org.apache.log4j.Logger;
 import org.joda.time.DateTime;
 
 /**
  * Updates running executions.
+ *
+ * <p>The executors are asked for the status of their executions in parallel, so a slow or hung
+ * executor only delays the updates of its own executions, and at most by the refresh timeout.
  */
 public class RunningExecutionsUpdater {
 
@@ -48,12 +62,24 @@ public class RunningExecutionsUpdater {
   private final RunningExecutions runningExecutions;
   private final ExecutionFinalizer executionFinalizer;
   private final ExecutorLoader executorLoader;
+  private final ExecutableFlowCache executableFlowCache;
+  private final ExecutionStatusFeed executionStatusFeed;
+  private final ExecutorService updateService;
+  private final long updateTimeoutMs;
+  // Update calls by executor id. A call that timed out may still hang, the executor is skipped
+  // until it's done.
+  private final Map<Integer, Future<Map<String, Object>>> updateCalls = new HashMap<>();
+  // Time of the last successful update by executor id
+  private final Map<Integer, Long> lastUpdateTimes = new HashMap<>();
 
   @Inject
-  public RunningExecutionsUpdater(final ExecutorManagerUpdaterStage updaterStage,
+  public RunningExecutionsUpdater(final Props azkProps,
+      final ExecutorManagerUpdaterStage updaterStage,
       final AlerterHolder alerterHolder, final CommonMetrics commonMetrics,
       final ExecutorApiGateway apiGateway, final RunningExecutions runningExecutions,
-      final ExecutionFinalizer executionFinalizer, final ExecutorLoader executorLoader) {
+      final ExecutionFinalizer executionFinalizer, final ExecutorLoader executorLoader,
+      final ExecutableFlowCache executableFlowCache,
+      final ExecutionStatusFeed executionStatusFeed) {
     this.updaterStage = updaterStage;
     this.alerterHolder = alerterHolder;
     this.commonMetrics = commonMetrics;
@@ -61,17 +87,30 @@ public class RunningExecutionsUpdater {
     this.runningExecutions = runningExecutions;
     this.executionFinalizer = executionFinalizer;
     this.executorLoader = executorLoader;
+    this.executableFlowCache = executableFlowCache;
+    this.executionStatusFeed = executionStatusFeed;
+    this.updateService = Executors.newFixedThreadPool(
+        azkProps.getInt(ConfigurationKeys.EXECUTOR_STATUS_REFRESH_THREADS,
+            Constants.DEFAULT_EXECUTOR_STATUS_REFRESH_THREADS),
+        new ThreadFactoryBuilder().setDaemon(true)
+            .setNameFormat("azk-status-refresh-pool-%d").build());
+    this.updateTimeoutMs = azkProps.getLong(ConfigurationKeys.EXECUTOR_STATUS_REFRESH_TIMEOUT_MS,
+        Constants.DEFAULT_EXECUTOR_STATUS_REFRESH_TIMEOUT_MS);
   }
 
   /**
    * Updates running executions.
    */
-  @SuppressWarnings("unchecked")
   public void updateExecutions() {
     this.updaterStage.set("Starting update all flows.");
     final Map<Optional<Executor>, List<ExecutableFlow>> exFlowMap = getFlowToExecutorMap();
     final ArrayList<ExecutableFlow> finalizeFlows =
         new ArrayList<>();
+    final CompletionService<Map<String, Object>> completionService =
+        new ExecutorCompletionService<>(this.updateService);
+    final Map<Future<Map<String, Object>>, Entry<Optional<Executor>, List<ExecutableFlow>>>
+        pendingCalls = new HashMap<>();
+    final long startTime = System.currentTimeMillis();
 
     for (final Map.Entry<Optional<Executor>, List<ExecutableFlow>> entry : exFlowMap
         .entrySet()) {
@@ -86,43 +125,27 @@ public class RunningExecutionsUpdater {
         continue;
       }
       final Executor executor = executorOption.get();
+      this.lastUpdateTimes.putIfAbsent(executor.getId(), startTime);
+
+      final Future<Map<String, Object>> previousCall = this.updateCalls.get(executor.getId());
+      if (previousCall != null && !previousCall.isDone()) {
+        handleException(entry, executor, new ExecutorManagerException(
+            "Previous update call to executor " + executor.getHost() + ":" + executor.getPort()
+                + " hasn't returned yet"), finalizeFlows);
+        recordStaleness(executor);
+        continue;
+      }
 
       this.updaterStage.set("Starting update flows on " + executor.getHost() + ":"
           + executor.getPort());
-
-      Map<String, Object> results = null;
-      try {
-        results = this.apiGateway.updateExecutions(executor, entry.getValue());
-      } catch (final ExecutorManagerException e) {
-        handleException(entry, executor, e, finalizeFlows);
-      }
-
-      if (results != null) {
-        final List<Map<String, Object>> executionUpdates =
-            (List<Map<String, Object>>) results
-                .get(ConnectorParams.RESPONSE_UPDATED_FLOWS);
-        for (final Map<String, Object> updateMap : executionUpdates) {
-          try {
-            final ExecutableFlow flow = updateExecution(updateMap);
-
-            this.updaterStage.set("Updated flow " + flow.getExecutionId());
-
-            if (ExecutionControllerUtils.isFinished(flow)) {
-              finalizeFlows.add(flow);
-            }
-          } catch (final ExecutorManagerException e) {
-            final ExecutableFlow flow = e.getExecutableFlow();
-            logger.error(e);
-
-            if (flow != null) {
-              logger.warn("Finalizing execution " + flow.getExecutionId());
-              finalizeFlows.add(flow);
-            }
-          }
-        }
-      }
+      final Future<Map<String, Object>> call = completionService
+          .submit(() -> this.apiGateway.updateExecutions(executor, entry.getValue()));
+      this.updateCalls.put(executor.getId(), call);
+      pendingCalls.put(call, entry);
     }
 
+    waitForUpdates(completionService, pendingCalls, startTime, finalizeFlows);
+
     this.updaterStage.set("Finalizing " + finalizeFlows.size() + " error flows.");
 
     for (final ExecutableFlow flow : finalizeFlows) {
@@ -133,6 +156,97 @@ public class RunningExecutionsUpdater {
     this.updaterStage.set("Updated all active flows. Waiting for next round.");
   }
 
+  /**
+   * Applies the updates as the executors answer. Executors which don't answer within the timeout
+   * are handled as failed.
+   */
+  private void waitForUpdates(final CompletionService<Map<String, Object>> completionService,
+      final Map<Future<Map<String, Object>>, Entry<Optional<Executor>, List<ExecutableFlow>>>
+          pendingCalls, final long startTime, final ArrayList<ExecutableFlow> finalizeFlows) {
+    final long deadline = startTime + this.updateTimeoutMs;
+    while (!pendingCalls.isEmpty()) {
+      final Future<Map<String, Object>> call;
+      try {
+        call = completionService.poll(deadline - System.currentTimeMillis(),
+            TimeUnit.MILLISECONDS);
+      } catch (final InterruptedException e) {
+        logger.warn("Interrupted while waiting for executors to return updates");
+        Thread.currentThread().interrupt();
+        break;
+      }
+      if (call == null) {
+        break;
+      }
+      final Entry<Optional<Executor>, List<ExecutableFlow>> entry = pendingCalls.remove(call);
+      final Executor executor = entry.getKey().get();
+      this.commonMetrics.addExecutorStatusRefreshLatency(getName(executor),
+          System.currentTimeMillis() - startTime);
+      try {
+        applyUpdates(call.get(), finalizeFlows);
+        this.lastUpdateTimes.put(executor.getId(), System.currentTimeMillis());
+      } catch (final ExecutionException e) {
+        final ExecutorManagerException cause = e.getCause() instanceof ExecutorManagerException
+            ? (ExecutorManagerException) e.getCause() : new ExecutorManagerException(
+            "Failed to get updates from executor " + getName(executor), e.getCause());
+        handleException(entry, executor, cause, finalizeFlows);
+      } catch (final InterruptedException e) {
+        // can't happen, the call is done
+        Thread.currentThread().interrupt();
+      }
+      recordStaleness(executor);
+    }
+
+    for (final Map.Entry<Future<Map<String, Object>>, Entry<Optional<Executor>,
+        List<ExecutableFlow>>> pending : pendingCalls.entrySet()) {
+      // Not cancelled: the executor is skipped until the call returns, see updateCalls
+      final Executor executor = pending.getValue().getKey().get();
+      this.commonMetrics.markExecutorStatusRefreshTimeout();
+      handleException(pending.getValue(), executor, new ExecutorManagerException(
+          "Timed out after " + this.updateTimeoutMs + " ms waiting for updates from executor "
+              + getName(executor)), finalizeFlows);
+      recordStaleness(executor);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void applyUpdates(final Map<String, Object> results,
+      final ArrayList<ExecutableFlow> finalizeFlows) {
+    if (results == null) {
+      return;
+    }
+    final List<Map<String, Object>> executionUpdates =
+        (List<Map<String, Object>>) results
+            .get(ConnectorParams.RESPONSE_UPDATED_FLOWS);
+    for (final Map<String, Object> updateMap : executionUpdates) {
+      try {
+        final ExecutableFlow flow = updateExecution(updateMap);
+
+        this.updaterStage.set("Updated flow " + flow.getExecutionId());
+
+        if (ExecutionControllerUtils.isFinished(flow)) {
+          finalizeFlows.add(flow);
+        }
+      } catch (final ExecutorManagerException e) {
+        final ExecutableFlow flow = e.getExecutableFlow();
+        logger.error(e);
+
+        if (flow != null) {
+          logger.warn("Finalizing execution " + flow.getExecutionId());
+          finalizeFlows.add(flow);
+        }
+      }
+    }
+  }
+
+  private void recordStaleness(final Executor executor) {
+    this.commonMetrics.addExecutorStatusStaleness(getName(executor),
+        System.currentTimeMillis() - this.lastUpdateTimes.get(executor.getId()));
+  }
+
+  private static String getName(final Executor executor) {
+    return executor.getHost() + ":" + executor.getPort();
+  }
+
   private void handleException(final Entry<Optional<Executor>, List<ExecutableFlow>> entry,
       final Executor executor, final ExecutorManagerException e,
       final ArrayList<ExecutableFlow> finalizeFlows) {
@@ -238,8 +352,12 @@ public class RunningExecutionsUpdater {
     ref.setNextCheckTime(0);
     ref.setNumErrors(0);
     final Status oldStatus = flow.getStatus();
+    final long lastUpdateTime = flow.getUpdateTime();
     flow.applyUpdateObject(updateData);
     final Status newStatus = flow.getStatus();
+    // The executor has written the update to the DB, drop the cached copy of the flow right away
+    this.executableFlowCache.invalidate(execId);
+    this.executionStatusFeed.publish(flow, lastUpdateTime);
 
     if (oldStatus != newStatus && newStatus.equals(Status.FAILED_FINISHING)) {
       ExecutionControllerUtils.alertUserOnFirstError(flow, this.alerterHolder);
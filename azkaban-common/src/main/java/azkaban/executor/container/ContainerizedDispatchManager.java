@@ -21,6 +21,8 @@ import azkaban.DispatchMethod;
 import azkaban.executor.AbstractExecutorManagerAdapter;
 import azkaban.executor.AlerterHolder;
 import azkaban.executor.ExecutableFlow;
+import azkaban.executor.ExecutableFlowCache;
+import azkaban.executor.ExecutionStatusFeed;
 import azkaban.executor.Executor;
 import azkaban.executor.ExecutorApiGateway;
 import azkaban.executor.ExecutorLoader;
@@ -67,8 +69,10 @@ public class ContainerizedDispatchManager extends AbstractExecutorManagerAdapter
   public ContainerizedDispatchManager(final Props azkProps, final ExecutorLoader executorLoader,
       final CommonMetrics commonMetrics, final ExecutorApiGateway apiGateway,
       final ContainerizedImpl containerizedImpl,
-      final AlerterHolder alerterHolder) throws ExecutorManagerException {
-    super(azkProps, executorLoader, commonMetrics, apiGateway, alerterHolder);
+      final AlerterHolder alerterHolder, final ExecutableFlowCache executableFlowCache,
+      final ExecutionStatusFeed executionStatusFeed) throws ExecutorManagerException {
+    super(azkProps, executorLoader, commonMetrics, apiGateway, alerterHolder,
+        executableFlowCache, executionStatusFeed);
     rateLimiter =
         RateLimiter.create(azkProps
             .getInt(ContainerizedDispatchManagerProperties.CONTAINERIZED_CREATION_RATE_LIMIT, 20));
@@ -21,18 +21,24 @@ import static azkaban.ServiceProvider.SERVICE_PROVIDER;
 
 import azkaban.Constants;
 import azkaban.Constants.JobProperties;
+import azkaban.executor.ExecutionOptions;
 import azkaban.flow.CommonJobProperties;
 import azkaban.jobExecutor.utils.process.AzkabanProcess;
 import azkaban.jobExecutor.utils.process.AzkabanProcessBuilder;
 import azkaban.metrics.CommonMetrics;
 import azkaban.utils.ExecuteAsUser;
+import azkaban.utils.MemoryAdmissionController;
 import azkaban.utils.Pair;
 import azkaban.utils.Props;
-import azkaban.utils.SystemMemoryInfo;
 import azkaban.utils.Utils;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -58,13 +64,22 @@ public class ProcessJob extends AbstractProcessJob {
   public static final String KRB5CCNAME = "KRB5CCNAME";
   private static final Duration KILL_TIME = Duration.ofSeconds(30);
   private static final String MEMCHECK_ENABLED = "memCheck.enabled";
+  // Memory reserved for a job process on top of its Xmx, in kb
+  private static final String MEMCHECK_OVERHEAD_KB = "memCheck.overhead.kb";
   private static final String CHOWN = "/bin/chown";
   private static final String CREATE_FILE = "touch";
   private static final int SUCCESSFUL_EXECUTION = 0;
   private static final String TEMP_FILE_NAME = "user_can_write";
+  // Working directories the users are known to be able to write in, as (user, directory) to the
+  // file key (inode) of the directory. The jobs of an execution share the directory, so the
+  // user's write access is checked once per execution rather than once per job. A directory
+  // recreated at the same path has another file key and is checked again.
+  private static final Cache<Pair<String, String>, Object> WRITABLE_WORKING_DIRS =
+      CacheBuilder.newBuilder().maximumSize(10000).build();
 
   private final CommonMetrics commonMetrics;
   private volatile AzkabanProcess process;
+  private volatile MemoryAdmissionController.Request memoryRequest;
   private volatile boolean killed = false;
   // For testing only. True if the job process exits successfully.
   private volatile boolean success;
@@ -153,54 +168,54 @@ public class ProcessJob extends AbstractProcessJob {
       final Pair<Long, Long> memPair = getProcMemoryRequirement();
       final long xms = memPair.getFirst();
       final long xmx = memPair.getSecond();
-      // retry backoff in ms
+      final long overhead = this.getSysProps().getLong(MEMCHECK_OVERHEAD_KB, 0L);
       final String oomMsg = String
           .format("Cannot request memory (Xms %d kb, Xmx %d kb) from system for job %s",
               xms, xmx, getId());
-      int attempt;
-      boolean isMemGranted = true;
 
       //todo HappyRay: move to proper Guice after this class is refactored.
-      final SystemMemoryInfo memInfo = SERVICE_PROVIDER.getInstance(SystemMemoryInfo.class);
-      for (attempt = 1; attempt <= Constants.MEMORY_CHECK_RETRY_LIMIT; attempt++) {
-        isMemGranted = memInfo.canSystemGrantMemory(xmx);
-        if (isMemGranted) {
-          info(String.format("Memory granted for job %s", getId()));
-          if (attempt > 1) {
-            this.commonMetrics.decrementOOMJobWaitCount();
-          }
-          break;
-        }
-        if (attempt < Constants.MEMORY_CHECK_RETRY_LIMIT) {
-          info(String.format(oomMsg + ", sleep for %s secs and retry, attempt %s of %s",
-              TimeUnit.MILLISECONDS.toSeconds(
-                  Constants.MEMORY_CHECK_INTERVAL_MS), attempt,
-              Constants.MEMORY_CHECK_RETRY_LIMIT));
-          if (attempt == 1) {
-            this.commonMetrics.incrementOOMJobWaitCount();
-          }
-          synchronized (this) {
-            try {
-              this.wait(Constants.MEMORY_CHECK_INTERVAL_MS);
-            } catch (final InterruptedException e) {
-              info(String
-                  .format("Job %s interrupted while waiting for memory check retry", getId()));
-            }
-          }
-          if (this.killed) {
-            this.commonMetrics.decrementOOMJobWaitCount();
-            info(String.format("Job %s was killed while waiting for memory check retry", getId()));
-            return;
-          }
+      final MemoryAdmissionController admissionController =
+          SERVICE_PROVIDER.getInstance(MemoryAdmissionController.class);
+      synchronized (this) {
+        if (this.killed) {
+          info(String.format("Job %s was killed before requesting memory", getId()));
+          return;
         }
+        this.memoryRequest = admissionController.request(getId(), xmx + overhead,
+            this.getJobProps().getInt(ExecutionOptions.FLOW_PRIORITY,
+                ExecutionOptions.DEFAULT_FLOW_PRIORITY));
+        this.memoryRequest.setProcessId(this::getRunningProcessId);
+      }
+      final boolean isMemGranted;
+      try {
+        isMemGranted = this.memoryRequest.await(
+            Constants.MEMORY_CHECK_INTERVAL_MS * Constants.MEMORY_CHECK_RETRY_LIMIT);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        handleError(String.format("Job %s interrupted while waiting for memory", getId()), e);
+        return;
+      }
+      if (this.killed) {
+        this.memoryRequest.release();
+        info(String.format("Job %s was killed while waiting for memory", getId()));
+        return;
       }
-
       if (!isMemGranted) {
-        this.commonMetrics.decrementOOMJobWaitCount();
         handleError(oomMsg, null);
       }
+      info(String.format("Memory granted for job %s", getId()));
     }
 
+    try {
+      runProcesses();
+    } finally {
+      if (this.memoryRequest != null) {
+        this.memoryRequest.release();
+      }
+    }
+  }
+
+  private void runProcesses() throws Exception {
     List<String> commands = null;
     try {
       commands = getCommandList();
@@ -248,19 +263,30 @@ public class ProcessJob extends AbstractProcessJob {
             String.format("Not permitted to proxy as '%s' through Azkaban", effectiveUser)
         );
       }
+      // Ownership of all the files is changed with one execute-as-user call
+      final List<String> filesToChown = new ArrayList<>();
       // Set parent directory permissions to <uid>:azkaban so user can write in their execution directory
       // if the directory is not permissioned correctly already (should happen once per execution)
-      if (!canWriteInCurrentWorkingDirectory(effectiveUser)) {
+      final Pair<String, String> userDir = new Pair<>(effectiveUser, getWorkingDirectory());
+      final Object dirKey = getFileKey(getWorkingDirectory());
+      final boolean canWrite =
+          dirKey != null && dirKey.equals(WRITABLE_WORKING_DIRS.getIfPresent(userDir));
+      if (!canWrite && !canWriteInCurrentWorkingDirectory(effectiveUser)) {
         info("Changing current working directory ownership");
-        assignUserFileOwnership(effectiveUser, getWorkingDirectory());
+        filesToChown.add(getWorkingDirectory());
       }
       // Set property file permissions to <uid>:azkaban so user can write to their prop files
       // in order to pass properties from one job to another, except the last one
+      info("Changing properties files ownership");
       for (int i = 0; i < 2; i++) {
-        info("Changing properties files ownership");
-        assignUserFileOwnership(effectiveUser, propFiles[i].getAbsolutePath());
+        filesToChown.add(propFiles[i].getAbsolutePath());
+      }
+      assignUserFileOwnership(effectiveUser, filesToChown);
+      if (dirKey != null) {
+        WRITABLE_WORKING_DIRS.put(userDir, dirKey);
       }
     }
+    this.commonMetrics.addJobPrepareTime(System.currentTimeMillis() - startMs);
 
     for (String command : commands) {
       AzkabanProcessBuilder builder = null;
@@ -374,6 +400,17 @@ public class ProcessJob extends AbstractProcessJob {
     return effectiveUser;
   }
 
+  /**
+   * @return the file key of the file, null if the file system has none or the file can't be read
+   */
+  private static Object getFileKey(final String path) {
+    try {
+      return Files.readAttributes(Paths.get(path), BasicFileAttributes.class).fileKey();
+    } catch (final IOException e) {
+      return null;
+    }
+  }
+
   /**
    * Checks to see if user has write access to current working directory which many users need for
    * their jobs to store temporary data/jars on the executor.
@@ -394,22 +431,24 @@ public class ProcessJob extends AbstractProcessJob {
   }
 
   /**
-   * Changes permissions on file/directory so that the file/directory is owned by the user and the
-   * group remains the azkaban service account name.
+   * Changes permissions on files/directories so that they are owned by the user and the group
+   * remains the azkaban service account name.
    *
-   * Leverages execute-as-user with "root" as the user to run the command.
+   * Leverages execute-as-user with "root" as the user to run one command for all the files.
    *
    * @param effectiveUser user/proxy user running the job
-   * @param fileName the name of the file whose permissions will be changed
+   * @param fileNames the names of the files whose permissions will be changed
    */
-  private void assignUserFileOwnership(final String effectiveUser, final String fileName) throws
-      Exception {
+  private void assignUserFileOwnership(final String effectiveUser, final List<String> fileNames)
+      throws Exception {
     final ExecuteAsUser executeAsUser = new ExecuteAsUser(
         this.getSysProps().getString(AZKABAN_SERVER_NATIVE_LIB_FOLDER));
     final String groupName = this.getSysProps().getString(AZKABAN_SERVER_GROUP_NAME, "azkaban");
-    final List<String> changeOwnershipCommand = Arrays
-        .asList(CHOWN, effectiveUser + ":" + groupName, fileName);
-    info("Change ownership of " + fileName + " to " + effectiveUser + ":" + groupName + ".");
+    final List<String> changeOwnershipCommand = new ArrayList<>();
+    changeOwnershipCommand.add(CHOWN);
+    changeOwnershipCommand.add(effectiveUser + ":" + groupName);
+    changeOwnershipCommand.addAll(fileNames);
+    info("Change ownership of " + fileNames + " to " + effectiveUser + ":" + groupName + ".");
     final int result = executeAsUser.execute("root", changeOwnershipCommand);
     if (result != 0) {
       handleError("Failed to change current working directory ownership. Error code: " + Integer
@@ -452,7 +491,9 @@ public class ProcessJob extends AbstractProcessJob {
     // in case the job is waiting
     synchronized (this) {
       this.killed = true;
-      this.notify();
+      if (this.memoryRequest != null) {
+        this.memoryRequest.cancel();
+      }
       if (this.process == null) {
         // The job thread has not checked if the job is killed yet.
         // setting the killed flag should be enough to abort the job.
@@ -478,6 +519,14 @@ public class ProcessJob extends AbstractProcessJob {
     return this.process.getProcessId();
   }
 
+  /**
+   * @return id of the running job process, 0 if there is none
+   */
+  private int getRunningProcessId() {
+    final AzkabanProcess process = this.process;
+    return process != null && process.isRunning() ? process.getProcessId() : 0;
+  }
+
   @VisibleForTesting
   boolean isSuccess() {
     return this.success;
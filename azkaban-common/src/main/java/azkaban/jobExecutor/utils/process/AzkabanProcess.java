@@ -16,13 +16,11 @@
 
 package azkaban.jobExecutor.utils.process;
 
-import azkaban.utils.LogGobbler;
+import azkaban.utils.ProcessOutputPump;
 import com.google.common.base.Joiner;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.lang.reflect.Field;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
@@ -34,7 +32,8 @@ import org.apache.log4j.Logger;
 /**
  * An improved version of java.lang.Process.
  *
- * Output is read by separate threads to avoid deadlock and logged to log4j loggers.
+ * Output is read by the shared {@link ProcessOutputPump} to avoid deadlock and logged to log4j
+ * loggers.
  */
 public class AzkabanProcess {
 
@@ -97,17 +96,9 @@ public class AzkabanProcess {
 
       this.startupLatch.countDown();
 
-      final LogGobbler outputGobbler =
-          new LogGobbler(
-              new InputStreamReader(this.process.getInputStream(), StandardCharsets.UTF_8),
-              this.logger, Level.INFO, 30);
-      final LogGobbler errorGobbler =
-          new LogGobbler(
-              new InputStreamReader(this.process.getErrorStream(), StandardCharsets.UTF_8),
-              this.logger, Level.ERROR, 30);
-
-      outputGobbler.start();
-      errorGobbler.start();
+      // The error stream is redirected to the output stream.
+      final ProcessOutputPump.Output output = ProcessOutputPump.getSharedInstance()
+          .pump(this.process, this.process.getInputStream(), this.logger, Level.INFO);
       int exitCode = -1;
       try {
         exitCode = this.process.waitFor();
@@ -118,8 +109,7 @@ public class AzkabanProcess {
       this.completeLatch.countDown();
 
       // try to wait for everything to get logged out before exiting
-      outputGobbler.awaitCompletion(5000);
-      errorGobbler.awaitCompletion(5000);
+      output.awaitCompletion(5000);
 
       if (exitCode != 0) {
         throw new ProcessFailureException(exitCode);
@@ -17,6 +17,7 @@
 package azkaban.metrics;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -39,6 +40,27 @@ public class CommonMetrics {
   public static final String OOM_WAITING_JOB_COUNT_NAME = "OOM-waiting-job-count";
   public static final String UPLOAD_FAT_PROJECT_METER_NAME = "upload-fat-project-meter";
   public static final String UPLOAD_THIN_PROJECT_METER_NAME = "upload-thin-project-meter";
+  public static final String TRIGGER_FIRE_LAG_HISTOGRAM_NAME = "trigger-fire-lag";
+  public static final String EXECUTABLE_FLOW_CACHE_HIT_METER_NAME =
+      "executable-flow-cache-hit-meter";
+  public static final String EXECUTABLE_FLOW_CACHE_MISS_METER_NAME =
+      "executable-flow-cache-miss-meter";
+  public static final String EXECUTABLE_FLOW_CACHE_EVICTION_METER_NAME =
+      "executable-flow-cache-eviction-meter";
+  public static final String QUEUE_WAIT_TIME_PRIORITY_HISTOGRAM_PREFIX =
+      "queue-wait-time-priority-";
+  public static final String QUEUE_WAIT_TIME_PROJECT_HISTOGRAM_PREFIX = "queue-wait-time-project-";
+  public static final String EXECUTOR_STATUS_REFRESH_LATENCY_HISTOGRAM_PREFIX =
+      "executor-status-refresh-latency-";
+  public static final String EXECUTOR_STATUS_STALENESS_HISTOGRAM_PREFIX =
+      "executor-status-staleness-";
+  public static final String EXECUTOR_STATUS_REFRESH_TIMEOUT_METER_NAME =
+      "executor-status-refresh-timeout-meter";
+  public static final String JOB_PREPARE_TIME_HISTOGRAM_NAME = "job-prepare-time";
+  public static final String MEMORY_ADMISSION_QUEUE_LENGTH_HISTOGRAM_NAME =
+      "memory-admission-queue-length";
+  public static final String MEMORY_ADMISSION_WAIT_TIME_HISTOGRAM_NAME =
+      "memory-admission-wait-time";
 
   private Counter OOMWaitingJobCount;
   private final MetricsManager metricsManager;
@@ -52,6 +74,14 @@ public class CommonMetrics {
   private Meter submitFlowSkipMeter;
   private Meter uploadFatProjectMeter;
   private Meter uploadThinProjectMeter;
+  private Histogram triggerFireLagHistogram;
+  private Meter executorStatusRefreshTimeoutMeter;
+  private Histogram jobPrepareTimeHistogram;
+  private Histogram memoryAdmissionQueueLengthHistogram;
+  private Histogram memoryAdmissionWaitTimeHistogram;
+  private Meter executableFlowCacheHitMeter;
+  private Meter executableFlowCacheMissMeter;
+  private Meter executableFlowCacheEvictionMeter;
 
   @Inject
   public CommonMetrics(final MetricsManager metricsManager) {
@@ -71,6 +101,22 @@ public class CommonMetrics {
     this.OOMWaitingJobCount = this.metricsManager.addCounter(OOM_WAITING_JOB_COUNT_NAME);
     this.uploadFatProjectMeter = this.metricsManager.addMeter(UPLOAD_FAT_PROJECT_METER_NAME);
     this.uploadThinProjectMeter = this.metricsManager.addMeter(UPLOAD_THIN_PROJECT_METER_NAME);
+    this.triggerFireLagHistogram =
+        this.metricsManager.addHistogram(TRIGGER_FIRE_LAG_HISTOGRAM_NAME);
+    this.executorStatusRefreshTimeoutMeter =
+        this.metricsManager.addMeter(EXECUTOR_STATUS_REFRESH_TIMEOUT_METER_NAME);
+    this.jobPrepareTimeHistogram =
+        this.metricsManager.addHistogram(JOB_PREPARE_TIME_HISTOGRAM_NAME);
+    this.memoryAdmissionQueueLengthHistogram =
+        this.metricsManager.addHistogram(MEMORY_ADMISSION_QUEUE_LENGTH_HISTOGRAM_NAME);
+    this.memoryAdmissionWaitTimeHistogram =
+        this.metricsManager.addHistogram(MEMORY_ADMISSION_WAIT_TIME_HISTOGRAM_NAME);
+    this.executableFlowCacheHitMeter =
+        this.metricsManager.addMeter(EXECUTABLE_FLOW_CACHE_HIT_METER_NAME);
+    this.executableFlowCacheMissMeter =
+        this.metricsManager.addMeter(EXECUTABLE_FLOW_CACHE_MISS_METER_NAME);
+    this.executableFlowCacheEvictionMeter =
+        this.metricsManager.addMeter(EXECUTABLE_FLOW_CACHE_EVICTION_METER_NAME);
   }
 
   /**
@@ -140,6 +186,92 @@ public class CommonMetrics {
    */
   public void markUploadThinProject() { this.uploadThinProjectMeter.mark(); }
 
+  /**
+   * Record the time in ms between a trigger becoming due and its condition being evaluated.
+   */
+  public void addTriggerFireLag(final long lagMs) {
+    this.triggerFireLagHistogram.update(lagMs);
+  }
+
+  /**
+   * Mark executableFlowCacheHitMeter when an up to date flow is served from the flow cache.
+   */
+  public void markExecutableFlowCacheHit() {
+    this.executableFlowCacheHitMeter.mark();
+  }
+
+  /**
+   * Mark executableFlowCacheMissMeter when a flow is missing or stale in the flow cache.
+   */
+  public void markExecutableFlowCacheMiss() {
+    this.executableFlowCacheMissMeter.mark();
+  }
+
+  /**
+   * Mark executableFlowCacheEvictionMeter when the flow cache evicts a flow to stay in its bounds.
+   */
+  public void markExecutableFlowCacheEviction() {
+    this.executableFlowCacheEvictionMeter.mark();
+  }
+
+  /**
+   * Record the time in ms a flow of the given priority and project waited in the queue before it
+   * was dispatched.
+   */
+  public void addQueueWaitTime(final int priority, final String projectName, final long timeMs) {
+    this.metricsManager.addHistogram(QUEUE_WAIT_TIME_PRIORITY_HISTOGRAM_PREFIX + priority)
+        .update(timeMs);
+    this.metricsManager.addHistogram(QUEUE_WAIT_TIME_PROJECT_HISTOGRAM_PREFIX + projectName)
+        .update(timeMs);
+  }
+
+  /**
+   * Record the round-trip time in ms of a status refresh call to an executor.
+   */
+  public void addExecutorStatusRefreshLatency(final String executor, final long timeMs) {
+    this.metricsManager.addHistogram(EXECUTOR_STATUS_REFRESH_LATENCY_HISTOGRAM_PREFIX + executor)
+        .update(timeMs);
+  }
+
+  /**
+   * Record the age in ms of the status of the executions running on an executor, the time since
+   * its status was last refreshed successfully.
+   */
+  public void addExecutorStatusStaleness(final String executor, final long timeMs) {
+    this.metricsManager.addHistogram(EXECUTOR_STATUS_STALENESS_HISTOGRAM_PREFIX + executor)
+        .update(timeMs);
+  }
+
+  /**
+   * Mark executorStatusRefreshTimeoutMeter when an executor doesn't answer a status refresh in
+   * time.
+   */
+  public void markExecutorStatusRefreshTimeout() {
+    this.executorStatusRefreshTimeoutMeter.mark();
+  }
+
+  /**
+   * Record the time in ms a process job took to prepare its process, from writing its properties
+   * files and setting their ownership up to starting the process.
+   */
+  public void addJobPrepareTime(final long timeMs) {
+    this.jobPrepareTimeHistogram.update(timeMs);
+  }
+
+  /**
+   * Record the number of job memory requests waiting for admission, including a new request.
+   */
+  public void addMemoryAdmissionQueueLength(final int length) {
+    this.memoryAdmissionQueueLengthHistogram.update(length);
+  }
+
+  /**
+   * Record the time in ms a job waited for its memory request to be admitted.
+   */
+  public void addMemoryAdmissionWaitTime(final long timeMs) {
+    this.memoryAdmissionWaitTimeHistogram.update(timeMs);
+  }
+
   /**
    * Mark the occurrence of a job waiting event due to OOM
    */
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.storage;
+
+import azkaban.utils.JSONUtils;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+
+/**
+ * The content of a project version stored as per-file blobs.
+ *
+ * <p>Each file of the project archive is stored once per project as a blob named by the MD5 hash
+ * of its content. The manifest maps the path of every file to its blob, and lists the directories
+ * of the archive so that empty ones are restored too.
+ */
+public class ProjectManifest {
+
+  // File extension and file type of the manifests in the project_versions table
+  public static final String FILE_TYPE = "manifest";
+
+  private static final String DIRECTORIES = "directories";
+  private static final String FILES = "files";
+  private static final String PATH = "path";
+  private static final String HASH = "hash";
+  private static final String SIZE = "size";
+  private static final String RESOURCE_ID = "resourceId";
+
+  private final SortedSet<String> directories = new TreeSet<>();
+  private final SortedMap<String, Blob> files = new TreeMap<>();
+
+  public static ProjectManifest fromJson(final InputStream input) throws IOException {
+    final Object json = JSONUtils.parseJSONFromReader(
+        new InputStreamReader(input, StandardCharsets.UTF_8));
+    return fromObject(json);
+  }
+
+  public static ProjectManifest fromJson(final File file) throws IOException {
+    return fromObject(JSONUtils.parseJSONFromFile(file));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ProjectManifest fromObject(final Object json) throws IOException {
+    if (!(json instanceof Map)) {
+      throw new IOException("Invalid project manifest: " + json);
+    }
+    final Map<String, Object> map = (Map<String, Object>) json;
+    final ProjectManifest manifest = new ProjectManifest();
+    for (final Object directory : (List<Object>) map.getOrDefault(DIRECTORIES,
+        Collections.emptyList())) {
+      manifest.addDirectory((String) directory);
+    }
+    for (final Object fileObj : (List<Object>) map.getOrDefault(FILES, Collections.emptyList())) {
+      final Map<String, Object> file = (Map<String, Object>) fileObj;
+      manifest.addFile((String) file.get(PATH),
+          new Blob((String) file.get(HASH), JSONUtils.getLongFromObject(file.get(SIZE)),
+              (String) file.get(RESOURCE_ID)));
+    }
+    return manifest;
+  }
+
+  public void addDirectory(final String path) {
+    this.directories.add(path);
+  }
+
+  public void addFile(final String path, final Blob blob) {
+    this.files.put(path, blob);
+  }
+
+  public SortedSet<String> getDirectories() {
+    return Collections.unmodifiableSortedSet(this.directories);
+  }
+
+  /**
+   * @return the blob of each file, by path
+   */
+  public SortedMap<String, Blob> getFiles() {
+    return Collections.unmodifiableSortedMap(this.files);
+  }
+
+  /**
+   * @return the distinct blobs of the files, by hash
+   */
+  public Map<String, Blob> getBlobs() {
+    final Map<String, Blob> blobs = new HashMap<>();
+    for (final Blob blob : this.files.values()) {
+      blobs.put(blob.getHash(), blob);
+    }
+    return blobs;
+  }
+
+  public void writeJson(final File file) throws IOException {
+    final List<Object> fileList = new ArrayList<>();
+    for (final Map.Entry<String, Blob> entry : this.files.entrySet()) {
+      final Map<String, Object> fileObj = new LinkedHashMap<>();
+      fileObj.put(PATH, entry.getKey());
+      fileObj.put(HASH, entry.getValue().getHash());
+      fileObj.put(SIZE, entry.getValue().getSize());
+      fileObj.put(RESOURCE_ID, entry.getValue().getResourceId());
+      fileList.add(fileObj);
+    }
+    final Map<String, Object> json = new LinkedHashMap<>();
+    json.put(DIRECTORIES, new ArrayList<>(this.directories));
+    json.put(FILES, fileList);
+    JSONUtils.toJSON(json, file);
+  }
+
+  /**
+   * @return the resource ids of the given blobs
+   */
+  public static List<String> getResourceIds(final Collection<Blob> blobs) {
+    final List<String> resourceIds = new ArrayList<>();
+    for (final Blob blob : blobs) {
+      resourceIds.add(blob.getResourceId());
+    }
+    return resourceIds;
+  }
+
+  /**
+   * A file content stored in {@link azkaban.spi.Storage}.
+   */
+  public static class Blob {
+
+    private final String hash;
+    private final long size;
+    private final String resourceId;
+
+    public Blob(final String hash, final long size, final String resourceId) {
+      this.hash = hash;
+      this.size = size;
+      this.resourceId = resourceId;
+    }
+
+    /**
+     * @return the MD5 hash of the content, in hex
+     */
+    public String getHash() {
+      return this.hash;
+    }
+
+    public long getSize() {
+      return this.size;
+    }
+
+    /**
+     * @return the key of the blob in storage
+     */
+    public String getResourceId() {
+      return this.resourceId;
+    }
+  }
+}
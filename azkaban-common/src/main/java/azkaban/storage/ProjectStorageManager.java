@@ -21,6 +21,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
+import azkaban.Constants.ConfigurationKeys;
 import azkaban.project.Project;
 import azkaban.project.ProjectFileHandler;
 import azkaban.project.ProjectLoader;
@@ -28,22 +29,45 @@ import azkaban.spi.Storage;
 import azkaban.spi.StorageException;
 import azkaban.spi.ProjectStorageMetadata;
 import azkaban.user.User;
+import azkaban.storage.ProjectManifest.Blob;
+import azkaban.utils.FileIOUtils;
 import azkaban.utils.HashUtils;
+import azkaban.utils.InvalidHashException;
 import azkaban.utils.Props;
+import azkaban.utils.Utils;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.ZipFile;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.apache.log4j.Logger;
 
 
 /**
  * StorageManager manages and coordinates all project related interactions with the Storage layer. This also
  * includes bookkeeping like updating DB with the new versionm, etc
+ *
+ * <p>Project versions stored as blobs are installed from a local blob cache. The hash of a blob is
+ * verified once, when it is fetched into the cache, where it is then kept read-only. The installed
+ * files are copies of the cached blobs rather than hard links, so that jobs modifying them can't
+ * change the blobs installed by other projects. The price is that installing a version still
+ * writes all of its bytes to disk, only the download is saved.
  */
 @Singleton
 public class ProjectStorageManager {
@@ -54,6 +78,11 @@ public class ProjectStorageManager {
   private final Storage storage;
   private final ProjectLoader projectLoader;
   private final File tempDir;
+  // Upload project archives as per-file blobs and a manifest
+  private final boolean contentAddressed;
+  private final File blobCacheDir;
+  private final long blobCacheMaxSizeBytes;
+  private final ReadWriteLock blobCacheLock = new ReentrantReadWriteLock();
 
   @Inject
   public ProjectStorageManager(final Props props, final Storage storage,
@@ -63,6 +92,14 @@ public class ProjectStorageManager {
     this.storage = requireNonNull(storage, "storage is null");
     this.projectLoader = requireNonNull(projectLoader, "projectLoader is null");
     this.storageCleaner = requireNonNull(storageCleaner, "storageCleanUp is null");
+    this.contentAddressed =
+        props.getBoolean(ConfigurationKeys.AZKABAN_STORAGE_CONTENT_ADDRESSED_ENABLED, false)
+            && !(storage instanceof DatabaseStorage);
+    this.blobCacheDir = new File(props.getString(ConfigurationKeys.AZKABAN_STORAGE_BLOB_CACHE_DIR,
+        new File(this.tempDir, "blobs").getPath()));
+    this.blobCacheMaxSizeBytes =
+        props.getLong(ConfigurationKeys.AZKABAN_STORAGE_BLOB_CACHE_MAX_SIZE_MB, 10 * 1024L)
+            * 1024 * 1024;
 
     prepareTempDir();
   }
@@ -72,6 +109,10 @@ public class ProjectStorageManager {
       this.tempDir.mkdirs();
     }
     checkArgument(this.tempDir.isDirectory());
+    if (!this.blobCacheDir.exists()) {
+      this.blobCacheDir.mkdirs();
+    }
+    checkArgument(this.blobCacheDir.isDirectory());
   }
 
   /**
@@ -91,6 +132,11 @@ public class ProjectStorageManager {
       final File startupDependencies,
       final User uploader,
       final String uploaderIPAddr) {
+    if (this.contentAddressed) {
+      uploadProjectBlobs(project, version, localFile, startupDependencies, uploader,
+          uploaderIPAddr);
+      return;
+    }
     byte[] md5 = null;
     if (!(this.storage instanceof DatabaseStorage)) {
       md5 = computeHash(localFile);
@@ -121,6 +167,114 @@ public class ProjectStorageManager {
     }
   }
 
+  /**
+   * Uploads the files of a project archive as blobs named by their hash, then a manifest of the
+   * version. Only the files whose content isn't in the manifest of any stored version are
+   * uploaded, so an upload scales with the size of the change.
+   */
+  private void uploadProjectBlobs(
+      final Project project,
+      final int version,
+      final File localFile,
+      final File startupDependencies,
+      final User uploader,
+      final String uploaderIPAddr) {
+    final File projectDir = new File(this.tempDir,
+        String.format("upload-%d-%d-%d", project.getId(), version, System.currentTimeMillis()));
+    try {
+      projectDir.mkdirs();
+      try (final ZipFile zip = new ZipFile(localFile)) {
+        Utils.unzip(zip, projectDir);
+      }
+
+      final Map<String, Blob> storedBlobs = fetchStoredBlobs(project.getId());
+      final ProjectManifest manifest = new ProjectManifest();
+      int numUploaded = 0;
+      long uploadedSize = 0;
+      for (final File file : FileUtils.listFilesAndDirs(projectDir, TrueFileFilter.INSTANCE,
+          TrueFileFilter.INSTANCE)) {
+        if (file.equals(projectDir)) {
+          continue;
+        }
+        final String path = FilenameUtils.separatorsToUnix(
+            projectDir.toPath().relativize(file.toPath()).toString());
+        if (file.isDirectory()) {
+          manifest.addDirectory(path);
+          continue;
+        }
+        final byte[] hash = computeHash(file);
+        final String hashStr = HashUtils.bytesHashToString(hash).toLowerCase();
+        Blob blob = storedBlobs.get(hashStr);
+        if (blob == null) {
+          final ProjectStorageMetadata blobMetadata = new ProjectStorageMetadata(
+              project.getId(), version, uploader.getUserId(), hash, uploaderIPAddr);
+          blob = new Blob(hashStr, file.length(), this.storage.putProject(blobMetadata, file));
+          storedBlobs.put(hashStr, blob);
+          numUploaded++;
+          uploadedSize += file.length();
+        }
+        manifest.addFile(path, blob);
+      }
+
+      final File manifestFile = new File(projectDir.getParentFile(),
+          FilenameUtils.getBaseName(localFile.getName()) + "-" + version + "."
+              + ProjectManifest.FILE_TYPE);
+      try {
+        manifest.writeJson(manifestFile);
+        final byte[] md5 = computeHash(manifestFile);
+        final ProjectStorageMetadata metadata = new ProjectStorageMetadata(
+            project.getId(), version, uploader.getUserId(), md5, uploaderIPAddr);
+        final String resourceId = this.storage.putProject(metadata, manifestFile);
+        log.info(String.format("Uploaded %d of %d files [%d bytes] of archive %s. Meta:%s",
+            numUploaded, manifest.getFiles().size(), uploadedSize, localFile.getName(),
+            metadata));
+
+        this.projectLoader.addProjectVersion(
+            project.getId(),
+            version,
+            manifestFile,
+            startupDependencies,
+            uploader.getUserId(),
+            md5,
+            requireNonNull(resourceId),
+            uploaderIPAddr
+        );
+        log.info(String.format("Added project metadata to DB. Meta:%s File: %s URI: %s",
+            metadata, manifestFile.getName(), resourceId));
+      } finally {
+        manifestFile.delete();
+      }
+    } catch (final IOException e) {
+      throw new StorageException(e);
+    } finally {
+      FileIOUtils.deleteDirectorySilently(projectDir);
+    }
+  }
+
+  /**
+   * The blobs of the deleted versions may have been deleted by {@link StorageCleaner}, so only the
+   * manifests of the stored versions are read.
+   *
+   * @return the blobs of the stored versions of a project by hash
+   */
+  private Map<String, Blob> fetchStoredBlobs(final int projectId) {
+    final Map<String, Blob> blobs = new HashMap<>();
+    for (final String resourceId : this.storageCleaner.fetchManifestResourceIds(projectId)) {
+      try (final InputStream is = this.storage.getProject(resourceId)) {
+        blobs.putAll(ProjectManifest.fromJson(is).getBlobs());
+      } catch (final IOException | RuntimeException e) {
+        // The files of this manifest are uploaded again then.
+        log.warn(String.format("Failed to fetch the manifest of project ID: %d resource ID: %s",
+            projectId, resourceId), e);
+      }
+    }
+    return blobs;
+  }
+
+  private static boolean isManifest(final ProjectFileHandler pfh) {
+    return ProjectManifest.FILE_TYPE.equalsIgnoreCase(pfh.getFileType());
+  }
+
   /**
    * Clean up project artifacts of a given project id, except those with the project versions
    * provided.
@@ -160,7 +314,187 @@ public class ProjectStorageManager {
 
     /* Fetch meta data from db */
     final ProjectFileHandler pfh = this.projectLoader.fetchProjectMetaData(projectId, version);
+    fetchLocalFile(pfh);
+    if (isManifest(pfh)) {
+      return toProjectZip(pfh);
+    }
+    return pfh;
+  }
 
+  /**
+   * Fetch a project version from storage to install it on an executor. A version stored as blobs
+   * is fetched as its manifest, to be passed to {@link #installProject(ProjectFileHandler, File)}.
+   * Other versions are fetched as a zip file, as by {@link #getProjectFile(int, int)}.
+   *
+   * @param projectId required project ID
+   * @param version version to be fetched
+   * @return Handler object containing hooks to fetched project zip file or manifest
+   */
+  public ProjectFileHandler getProjectFileOrManifest(final int projectId, final int version) {
+    if (this.storage instanceof DatabaseStorage) {
+      return getProjectFile(projectId, version);
+    }
+    log.info(String.format("Fetching project file or manifest. project ID: %d version: %d",
+        projectId, version));
+    final ProjectFileHandler pfh = this.projectLoader.fetchProjectMetaData(projectId, version);
+    fetchLocalFile(pfh);
+    return pfh;
+  }
+
+  /**
+   * Install the files of a project version stored as blobs. Only the blobs missing from the local
+   * blob cache are fetched from storage.
+   *
+   * @param pfh handler of the fetched manifest of the version
+   * @param dest dir to install the project files to
+   */
+  public void installProject(final ProjectFileHandler pfh, final File dest) throws IOException {
+    checkState(isManifest(pfh), "Not a project manifest: " + pfh.getFileName());
+    final ProjectManifest manifest = ProjectManifest.fromJson(requireNonNull(pfh.getLocalFile()));
+    final String destPath = dest.getCanonicalPath();
+    for (final String directory : manifest.getDirectories()) {
+      new File(dest, directory).mkdirs();
+    }
+
+    int numFetched = 0;
+    // Cached blobs aren't evicted while they are copied
+    this.blobCacheLock.readLock().lock();
+    try {
+      final Map<String, File> cachedBlobs = new HashMap<>();
+      for (final Blob blob : manifest.getBlobs().values()) {
+        final File cachedBlob = getCachedBlobFile(blob);
+        if (isCachedBlobValid(blob, cachedBlob)) {
+          cachedBlob.setLastModified(System.currentTimeMillis());
+        } else {
+          fetchBlob(pfh, blob, cachedBlob);
+          numFetched++;
+        }
+        cachedBlobs.put(blob.getHash(), cachedBlob);
+      }
+
+      for (final Map.Entry<String, Blob> file : manifest.getFiles().entrySet()) {
+        final File target = new File(dest, file.getKey());
+        if (!target.getCanonicalPath().startsWith(destPath)) {
+          throw new IOException("Installing project file would have resulted in a file outside "
+              + "the specified destination directory: " + file.getKey());
+        }
+        target.getParentFile().mkdirs();
+        final File cachedBlob = cachedBlobs.get(file.getValue().getHash());
+        Files.copy(cachedBlob.toPath(), target.toPath());
+        // The copy keeps the mode of the read-only blob
+        target.setWritable(true);
+      }
+    } finally {
+      this.blobCacheLock.readLock().unlock();
+    }
+    log.info(String.format("Installed %d files of project ID: %d version: %d, fetched %d of %d "
+            + "blobs", manifest.getFiles().size(), pfh.getProjectId(), pfh.getVersion(),
+        numFetched, manifest.getBlobs().size()));
+
+    if (numFetched > 0) {
+      evictBlobCache();
+    }
+  }
+
+  private File getCachedBlobFile(final Blob blob) throws IOException {
+    try {
+      return new File(this.blobCacheDir, HashUtils.MD5.sanitizeHashStr(blob.getHash()));
+    } catch (final InvalidHashException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * The hash of a cached blob was verified when it was fetched. Rehashing it on every install
+   * would cost as much as reading the whole project, so a blob is only fetched again if it has
+   * been made writable or its size changed.
+   *
+   * @return true if the blob is cached and still read-only with the size of the blob
+   */
+  private boolean isCachedBlobValid(final Blob blob, final File cachedBlob) throws IOException {
+    if (!cachedBlob.exists()) {
+      return false;
+    }
+    if (isReadOnly(cachedBlob) && cachedBlob.length() == blob.getSize()) {
+      return true;
+    }
+    log.warn("Fetching again corrupted cached blob: " + cachedBlob);
+    return false;
+  }
+
+  private static boolean isReadOnly(final File file) throws IOException {
+    try {
+      // File.canWrite() is always true for root
+      return !Files.getPosixFilePermissions(file.toPath())
+          .contains(PosixFilePermission.OWNER_WRITE);
+    } catch (final UnsupportedOperationException e) {
+      return !file.canWrite();
+    }
+  }
+
+  private void fetchBlob(final ProjectFileHandler pfh, final Blob blob, final File cachedBlob)
+      throws IOException {
+    final File tempFile = File.createTempFile(blob.getHash(), ".tmp", this.blobCacheDir);
+    try {
+      try (final InputStream is = this.storage.getProject(blob.getResourceId());
+          final FileOutputStream fos = new FileOutputStream(tempFile)) {
+        IOUtils.copy(is, fos);
+      }
+      final byte[] hash = HashUtils.MD5.getHashBytes(tempFile);
+      checkState(HashUtils.isSameHash(blob.getHash(), hash),
+          String.format("MD5 HASH Failed. project ID: %d version: %d blob: %s Actual: %s",
+              pfh.getProjectId(), pfh.getVersion(), blob.getResourceId(),
+              HashUtils.bytesHashToString(hash)));
+      tempFile.setReadOnly();
+      Files.move(tempFile.toPath(), cachedBlob.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      tempFile.delete();
+    }
+  }
+
+  /**
+   * Delete the least recently used blobs while the blob cache is above its max size. Skipped if
+   * blobs are being installed.
+   */
+  private void evictBlobCache() {
+    if (!this.blobCacheLock.writeLock().tryLock()) {
+      return;
+    }
+    try {
+      final File[] blobs = this.blobCacheDir.listFiles(file -> !file.getName().endsWith(".tmp"));
+      if (blobs == null) {
+        return;
+      }
+      long cacheSize = 0;
+      for (final File blob : blobs) {
+        cacheSize += blob.length();
+      }
+      if (cacheSize <= this.blobCacheMaxSizeBytes) {
+        return;
+      }
+      Arrays.sort(blobs, Comparator.comparingLong(File::lastModified));
+      int numEvicted = 0;
+      for (final File blob : blobs) {
+        if (cacheSize <= this.blobCacheMaxSizeBytes) {
+          break;
+        }
+        final long size = blob.length();
+        if (blob.delete()) {
+          cacheSize -= size;
+          numEvicted++;
+        }
+      }
+      log.info(String.format("Evicted %d blobs from the blob cache, %d bytes left", numEvicted,
+          cacheSize));
+    } finally {
+      this.blobCacheLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Fetch the file of a project version from storage and attach it to its handler.
+   */
+  private void fetchLocalFile(final ProjectFileHandler pfh) {
     /* Fetch project file from storage and copy to local file */
     final String resourceId = requireNonNull(pfh.getResourceId(),
         String.format("URI is null. project ID: %d version: %d",
@@ -179,10 +513,40 @@ public class ProjectStorageManager {
 
       /* Attach file to handler */
       pfh.setLocalFile(file);
+    } catch (final IOException e) {
+      throw new StorageException(e);
+    }
+  }
 
+  /**
+   * Assemble the zip file of a project version stored as blobs.
+   *
+   * @param manifestHandler handler of the fetched manifest of the version
+   * @return handler of the zip file
+   */
+  private ProjectFileHandler toProjectZip(final ProjectFileHandler manifestHandler) {
+    final File projectDir = new File(this.tempDir, String.format("download-%d-%d-%d",
+        manifestHandler.getProjectId(), manifestHandler.getVersion(),
+        System.currentTimeMillis()));
+    try {
+      projectDir.mkdirs();
+      installProject(manifestHandler, projectDir);
+      final String fileName = FilenameUtils.getBaseName(manifestHandler.getFileName()) + ".zip";
+      final File zipFile = File.createTempFile(fileName,
+          String.valueOf(manifestHandler.getVersion()), this.tempDir);
+      Utils.zipFolderContent(projectDir, zipFile);
+      final ProjectFileHandler pfh = new ProjectFileHandler(manifestHandler.getProjectId(),
+          manifestHandler.getVersion(), manifestHandler.getUploadTime(),
+          manifestHandler.getUploader(), "zip", fileName, manifestHandler.getNumChunks(),
+          computeHash(zipFile), manifestHandler.getStartupDependencies(),
+          manifestHandler.getResourceId(), manifestHandler.getUploaderIpAddr());
+      pfh.setLocalFile(zipFile);
       return pfh;
     } catch (final IOException e) {
       throw new StorageException(e);
+    } finally {
+      manifestHandler.deleteLocalFile();
+      FileIOUtils.deleteDirectorySilently(projectDir);
     }
   }
 
@@ -25,6 +25,8 @@ import azkaban.spi.Storage;
 import azkaban.utils.Pair;
 import azkaban.utils.Props;
 import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -51,6 +53,10 @@ public class StorageCleaner {
   static final String SQL_FETCH_PVR = "SELECT resource_id, version FROM project_versions WHERE "
       + "project_id=? AND resource_id IS NOT NULL ORDER BY version DESC";
 
+  static final String SQL_FETCH_MANIFEST_RESOURCE_IDS = "SELECT resource_id FROM project_versions "
+      + "WHERE project_id=? AND resource_id IS NOT NULL AND file_type='"
+      + ProjectManifest.FILE_TYPE + "'";
+
   private static final Logger log = Logger.getLogger(StorageCleaner.class);
   private final DatabaseOperator databaseOperator;
   private final int maxArtifactsPerProject;
@@ -101,18 +107,65 @@ public class StorageCleaner {
     if (!isCleanupPermitted()) {
       return;
     }
-    final Set<String> allResourceIds = findResourceIdsToDelete(projectId, versionsToExclude);
+    final List<Pair<String, Integer>> resourceIdOrderedList = fetchResourceIdOrderedList(projectId);
+    final Set<String> allResourceIds = findResourceIdsToDelete(resourceIdOrderedList,
+        versionsToExclude);
     if (allResourceIds.size() == 0) {
       return;
     }
 
     log.warn(String.format("Deleting project artifacts [id: %d]: %s", projectId, allResourceIds));
-    allResourceIds.forEach(this::delete);
+    final Set<String> manifestResourceIds = fetchManifestResourceIds(projectId);
+    if (manifestResourceIds.isEmpty()) {
+      allResourceIds.forEach(this::delete);
+      return;
+    }
+
+    // The blobs of the deleted manifests are deleted too, unless a kept manifest uses them.
+    final Set<String> resourceIdsToKeep = new HashSet<>();
+    boolean keptBlobsKnown = true;
+    for (final Pair<String, Integer> pair : resourceIdOrderedList) {
+      final String id = pair.getFirst();
+      if (!allResourceIds.contains(id)) {
+        resourceIdsToKeep.add(id);
+        if (manifestResourceIds.contains(id)) {
+          final Set<String> blobResourceIds = fetchBlobResourceIds(id);
+          if (blobResourceIds == null) {
+            keptBlobsKnown = false;
+          } else {
+            resourceIdsToKeep.addAll(blobResourceIds);
+          }
+        }
+      }
+    }
+    final Set<String> blobResourceIdsToDelete = new HashSet<>();
+    for (final String id : allResourceIds) {
+      final Set<String> blobResourceIds =
+          manifestResourceIds.contains(id) ? fetchBlobResourceIds(id) : null;
+      if (delete(id) && blobResourceIds != null) {
+        blobResourceIdsToDelete.addAll(blobResourceIds);
+      }
+    }
+    if (!keptBlobsKnown) {
+      log.warn("Not deleting the blobs of project " + projectId + ": the blobs of the kept "
+          + "manifests are unknown");
+      return;
+    }
+    blobResourceIdsToDelete.removeAll(resourceIdsToKeep);
+    log.warn(String.format("Deleting %d project blobs [id: %d]", blobResourceIdsToDelete.size(),
+        projectId));
+    for (final String id : blobResourceIdsToDelete) {
+      try {
+        this.storage.deleteProject(id);
+      } catch (final RuntimeException e) {
+        log.error("Failed to delete blob resourceId: " + id, e);
+      }
+    }
   }
 
-  private Set<String> findResourceIdsToDelete(final int projectId,
+  private Set<String> findResourceIdsToDelete(
+      final List<Pair<String, Integer>> resourceIdOrderedList,
       final List<Integer> versionsToExclude) {
-    final List<Pair<String, Integer>> resourceIdOrderedList = fetchResourceIdOrderedList(projectId);
     if (resourceIdOrderedList.size() <= this.maxArtifactsPerProject) {
       return Collections.emptySet();
     }
@@ -163,6 +216,42 @@ public class StorageCleaner {
     return false;
   }
 
+  /**
+   * @return the resource ids of the blobs of a manifest, null if the manifest can't be read
+   */
+  private Set<String> fetchBlobResourceIds(final String manifestResourceId) {
+    try (final InputStream is = this.storage.getProject(manifestResourceId)) {
+      return new HashSet<>(ProjectManifest.getResourceIds(
+          ProjectManifest.fromJson(is).getBlobs().values()));
+    } catch (final IOException | RuntimeException e) {
+      log.error("Error reading project manifest resource ID: " + manifestResourceId, e);
+    }
+    return null;
+  }
+
+  /**
+   * @return the resource ids of the manifests of the stored versions of a project, empty if they
+   * can't be fetched
+   */
+  public Set<String> fetchManifestResourceIds(final int projectId) {
+    try {
+      final Set<String> results = this.databaseOperator.query(SQL_FETCH_MANIFEST_RESOURCE_IDS,
+          rs -> {
+            final Set<String> resourceIds = new HashSet<>();
+            while (rs.next()) {
+              resourceIds.add(rs.getString("resource_id"));
+            }
+            return resourceIds;
+          }, projectId);
+      if (results != null) {
+        return results;
+      }
+    } catch (final SQLException e) {
+      log.error("Error fetching project manifests of Project: " + projectId, e);
+    }
+    return Collections.emptySet();
+  }
+
   private List<Pair<String, Integer>> fetchResourceIdOrderedList(final int projectId) {
     try {
       return this.databaseOperator.query(SQL_FETCH_PVR,
@@ -21,17 +21,23 @@ import static java.util.Objects.requireNonNull;
 import azkaban.event.EventHandler;
 import azkaban.executor.ExecutorManagerAdapter;
 import azkaban.executor.ExecutorManagerException;
+import azkaban.metrics.CommonMetrics;
 import azkaban.utils.Props;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import org.apache.log4j.Logger;
@@ -41,6 +47,7 @@ public class TriggerManager extends EventHandler implements
     TriggerManagerAdapter {
 
   public static final long DEFAULT_SCANNER_INTERVAL_MS = 60000;
+  public static final int DEFAULT_NUM_TRIGGER_WORKERS = 4;
   private static final Logger logger = Logger.getLogger(TriggerManager.class);
   private static final Map<Integer, Trigger> triggerIdMap =
       new ConcurrentHashMap<>();
@@ -50,6 +57,7 @@ public class TriggerManager extends EventHandler implements
   private final CheckerTypeLoader checkerTypeLoader;
   private final ActionTypeLoader actionTypeLoader;
   private final TriggerLoader triggerLoader;
+  private final CommonMetrics commonMetrics;
   private final LocalTriggerJMX jmxStats = new LocalTriggerJMX();
   private long lastRunnerThreadCheckTime = -1;
   private long runnerThreadIdleTime = -1;
@@ -57,15 +65,18 @@ public class TriggerManager extends EventHandler implements
 
   @Inject
   public TriggerManager(final Props props, final TriggerLoader triggerLoader,
-      final ExecutorManagerAdapter executorManagerAdapter) throws TriggerManagerException {
+      final ExecutorManagerAdapter executorManagerAdapter, final CommonMetrics commonMetrics)
+      throws TriggerManagerException {
 
     requireNonNull(props);
     requireNonNull(executorManagerAdapter);
     this.triggerLoader = requireNonNull(triggerLoader);
+    this.commonMetrics = requireNonNull(commonMetrics);
 
     final long scannerInterval =
         props.getLong("trigger.scan.interval", DEFAULT_SCANNER_INTERVAL_MS);
-    this.runnerThread = new TriggerScannerThread(scannerInterval);
+    final int numWorkers = props.getInt("trigger.worker.threads", DEFAULT_NUM_TRIGGER_WORKERS);
+    this.runnerThread = new TriggerScannerThread(scannerInterval, numWorkers);
 
     this.checkerTypeLoader = new CheckerTypeLoader();
     this.actionTypeLoader = new ActionTypeLoader();
@@ -257,102 +268,169 @@ public class TriggerManager extends EventHandler implements
   private class TriggerScannerThread extends Thread {
 
     private final long scannerInterval;
-    private final BlockingQueue<Trigger> triggers;
-    private boolean shutdown = false;
-
-    public TriggerScannerThread(final long scannerInterval) {
-      this.triggers = new PriorityBlockingQueue<>(1, new TriggerComparator());
+    // Triggers waiting for their next check, ordered by check time. Guarded by syncObj.
+    private final PriorityQueue<ScheduledTrigger> triggers =
+        new PriorityQueue<>(Comparator.comparingLong(st -> st.checkTime));
+    // The queued entry of each trigger. Deleted triggers are only marked as cancelled and dropped
+    // once they reach the head of the queue. Guarded by syncObj.
+    private final Map<Trigger, ScheduledTrigger> scheduledTriggers = new IdentityHashMap<>();
+    // Triggers being checked by a worker, they are queued again once done. Guarded by syncObj.
+    private final Set<Trigger> inFlightTriggers =
+        Collections.newSetFromMap(new IdentityHashMap<>());
+    private final ThreadPoolExecutor workers;
+    private volatile boolean shutdown = false;
+
+    public TriggerScannerThread(final long scannerInterval, final int numWorkers) {
       this.setName("TriggerRunnerManager-Trigger-Scanner-Thread");
       this.scannerInterval = scannerInterval;
+      // When all workers are busy the scanner checks triggers itself, which keeps it from
+      // dequeuing triggers faster than they can be processed.
+      this.workers = new ThreadPoolExecutor(numWorkers, numWorkers, 0L, TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(numWorkers * 4),
+          new ThreadFactoryBuilder().setNameFormat("azk-trigger-worker-%d").build(),
+          new ThreadPoolExecutor.CallerRunsPolicy());
     }
 
     public void shutdown() {
       logger.error("Shutting down trigger manager thread " + this.getName());
       this.shutdown = true;
       this.interrupt();
+      this.workers.shutdown();
     }
 
     public void addTrigger(final Trigger t) {
       synchronized (TriggerManager.this.syncObj) {
+        if (this.inFlightTriggers.contains(t)) {
+          // the worker checking it queues it again
+          return;
+        }
         t.updateNextCheckTime();
-        this.triggers.add(t);
+        schedule(t, t.getNextCheckTime());
       }
     }
 
     public void deleteTrigger(final Trigger t) {
-      this.triggers.remove(t);
+      synchronized (TriggerManager.this.syncObj) {
+        final ScheduledTrigger scheduled = this.scheduledTriggers.remove(t);
+        if (scheduled != null) {
+          scheduled.cancelled = true;
+        }
+      }
+    }
+
+    private void schedule(final Trigger t, final long checkTime) {
+      final ScheduledTrigger previous = this.scheduledTriggers.remove(t);
+      if (previous != null) {
+        previous.cancelled = true;
+      }
+      final ScheduledTrigger scheduled = new ScheduledTrigger(t, checkTime);
+      this.scheduledTriggers.put(t, scheduled);
+      this.triggers.add(scheduled);
+      if (this.triggers.peek() == scheduled) {
+        // wake up the scanner if this trigger is due before the one it is waiting for
+        TriggerManager.this.syncObj.notifyAll();
+      }
     }
 
     @Override
     public void run() {
       while (!this.shutdown) {
-        synchronized (TriggerManager.this.syncObj) {
-          try {
+        try {
+          final List<ScheduledTrigger> dueTriggers;
+          synchronized (TriggerManager.this.syncObj) {
             TriggerManager.this.lastRunnerThreadCheckTime = System.currentTimeMillis();
-
-            TriggerManager.this.scannerStage =
-                "Ready to start a new scan cycle at "
-                    + TriggerManager.this.lastRunnerThreadCheckTime;
-
-            try {
-              checkAllTriggers();
-            } catch (final Exception e) {
-              e.printStackTrace();
-              logger.error(e.getMessage());
-            } catch (final Throwable t) {
-              t.printStackTrace();
-              logger.error(t.getMessage());
+            dueTriggers = pollDueTriggers(TriggerManager.this.lastRunnerThreadCheckTime);
+            if (dueTriggers.isEmpty()) {
+              final ScheduledTrigger next = this.triggers.peek();
+              TriggerManager.this.runnerThreadIdleTime = next == null ? this.scannerInterval
+                  : Math.min(this.scannerInterval,
+                      next.checkTime - TriggerManager.this.lastRunnerThreadCheckTime + 1);
+              TriggerManager.this.scannerStage = "Waiting for the next due trigger.";
+              TriggerManager.this.syncObj.wait(TriggerManager.this.runnerThreadIdleTime);
+              continue;
             }
+          }
 
-            TriggerManager.this.scannerStage = "Done flipping all triggers.";
+          TriggerManager.this.scannerStage =
+              "Dispatching " + dueTriggers.size() + " due triggers at "
+                  + TriggerManager.this.lastRunnerThreadCheckTime;
+          for (final ScheduledTrigger scheduled : dueTriggers) {
+            this.workers.execute(() -> checkTrigger(scheduled));
+          }
+        } catch (final InterruptedException e) {
+          logger.info("Interrupted. Probably to shut down.");
+        } catch (final Throwable t) {
+          logger.error("Trigger manager thread " + this.getName() + " failed to dispatch triggers",
+              t);
+        }
+      }
+    }
 
-            TriggerManager.this.runnerThreadIdleTime =
-                this.scannerInterval
-                    - (System.currentTimeMillis() - TriggerManager.this.lastRunnerThreadCheckTime);
+    /**
+     * Removes the triggers whose check time has passed from the queue and marks them in flight.
+     * Checkers evaluate to true strictly after their next check time, hence the strict compare.
+     */
+    private List<ScheduledTrigger> pollDueTriggers(final long now) {
+      final List<ScheduledTrigger> dueTriggers = new ArrayList<>();
+      while (!this.triggers.isEmpty() && this.triggers.peek().checkTime < now) {
+        final ScheduledTrigger scheduled = this.triggers.poll();
+        if (!scheduled.cancelled) {
+          this.scheduledTriggers.remove(scheduled.trigger);
+          this.inFlightTriggers.add(scheduled.trigger);
+          dueTriggers.add(scheduled);
+        }
+      }
+      return dueTriggers;
+    }
 
-            if (TriggerManager.this.runnerThreadIdleTime < 0) {
-              logger.error("Trigger manager thread " + this.getName()
-                  + " is too busy!");
-            } else {
-              TriggerManager.this.syncObj.wait(TriggerManager.this.runnerThreadIdleTime);
+    private void checkTrigger(final ScheduledTrigger scheduled) {
+      final Trigger t = scheduled.trigger;
+      try {
+        if (t.getStatus().equals(TriggerStatus.READY)) {
+
+          /**
+           * Prior to this change, expiration condition should never be called though
+           * we have some related code here. ExpireCondition used the same BasicTimeChecker
+           * as triggerCondition do. As a consequence, we need to figure out a way to distinguish
+           * the previous ExpireCondition and this commit's ExpireCondition.
+           */
+          if (t.getExpireCondition().getExpression().contains("EndTimeChecker") && t
+              .expireConditionMet()) {
+            onTriggerPause(t);
+          } else if (t.triggerConditionMet()) {
+            if (t.getNextCheckTime() > 0) {
+              TriggerManager.this.commonMetrics
+                  .addTriggerFireLag(System.currentTimeMillis() - t.getNextCheckTime());
             }
-          } catch (final InterruptedException e) {
-            logger.info("Interrupted. Probably to shut down.");
+            onTriggerTrigger(t);
           }
         }
+        if (t.getStatus().equals(TriggerStatus.EXPIRED) && t.getSource().equals("azkaban")) {
+          removeTrigger(t);
+        }
+      } catch (final Throwable th) {
+        //skip this trigger, moving on to the next one
+        logger.error("Failed to process trigger with id : " + t, th);
+      } finally {
+        reschedule(t);
       }
     }
 
-    private void checkAllTriggers() throws TriggerManagerException {
-      // sweep through the rest of them
-      for (final Trigger t : this.triggers) {
-        try {
-          TriggerManager.this.scannerStage = "Checking for trigger " + t.getTriggerId();
-
-          if (t.getStatus().equals(TriggerStatus.READY)) {
-
-            /**
-             * Prior to this change, expiration condition should never be called though
-             * we have some related code here. ExpireCondition used the same BasicTimeChecker
-             * as triggerCondition do. As a consequence, we need to figure out a way to distinguish
-             * the previous ExpireCondition and this commit's ExpireCondition.
-             */
-            if (t.getExpireCondition().getExpression().contains("EndTimeChecker") && t
-                .expireConditionMet()) {
-              onTriggerPause(t);
-            } else if (t.triggerConditionMet()) {
-              onTriggerTrigger(t);
-            }
-          }
-          if (t.getStatus().equals(TriggerStatus.EXPIRED) && t.getSource().equals("azkaban")) {
-            removeTrigger(t);
-          } else {
-            t.updateNextCheckTime();
-          }
-        } catch (final Throwable th) {
-          //skip this trigger, moving on to the next one
-          logger.error("Failed to process trigger with id : " + t, th);
+    /**
+     * Queues a checked trigger again unless it got removed meanwhile. Triggers without a future
+     * check time, e.g. the ones whose conditions don't depend on time, are checked again after the
+     * scanner interval.
+     */
+    private void reschedule(final Trigger t) {
+      synchronized (TriggerManager.this.syncObj) {
+        this.inFlightTriggers.remove(t);
+        if (triggerIdMap.get(t.getTriggerId()) != t) {
+          return;
         }
+        t.updateNextCheckTime();
+        final long now = System.currentTimeMillis();
+        final long nextCheckTime = t.getNextCheckTime();
+        schedule(t, nextCheckTime >= now ? nextCheckTime : now + this.scannerInterval);
       }
     }
 
@@ -409,21 +487,17 @@ public class TriggerManager extends EventHandler implements
         throw new TriggerManagerException(e);
       }
     }
+  }
 
-    private class TriggerComparator implements Comparator<Trigger> {
+  private static class ScheduledTrigger {
 
-      @Override
-      public int compare(final Trigger arg0, final Trigger arg1) {
-        final long first = arg1.getNextCheckTime();
-        final long second = arg0.getNextCheckTime();
+    private final Trigger trigger;
+    private final long checkTime;
+    private boolean cancelled = false;
 
-        if (first == second) {
-          return 0;
-        } else if (first < second) {
-          return 1;
-        }
-        return -1;
-      }
+    ScheduledTrigger(final Trigger trigger, final long checkTime) {
+      this.trigger = trigger;
+      this.checkTime = checkTime;
     }
   }
 
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package azkaban.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seekable compression of byte arrays: data is split into fixed size blocks which are deflated
+ * independently, preceded by an index of the compressed block lengths. A range of the original
+ * data can then be read by inflating only the blocks it overlaps.
+ *
+ * <p>Layout: block size (int), number of blocks (int), compressed length of each block (int
+ * each), followed by the compressed blocks.
+ */
+public class BlockCompressionUtils {
+
+  public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+  private BlockCompressionUtils() {
+  }
+
+  public static byte[] compress(final byte[] bytes, final int offset, final int length,
+      final int blockSize) {
+    final int numBlocks = (length + blockSize - 1) / blockSize;
+    final List<byte[]> blocks = new ArrayList<>(numBlocks);
+    int compressedLength = 0;
+    for (int i = 0; i < numBlocks; i++) {
+      final int blockStart = i * blockSize;
+      final byte[] block = GZIPUtils.deflateBytes(bytes, offset + blockStart,
+          Math.min(blockSize, length - blockStart));
+      blocks.add(block);
+      compressedLength += block.length;
+    }
+
+    final ByteBuffer out = ByteBuffer.allocate(8 + 4 * numBlocks + compressedLength);
+    out.putInt(blockSize);
+    out.putInt(numBlocks);
+    for (final byte[] block : blocks) {
+      out.putInt(block.length);
+    }
+    for (final byte[] block : blocks) {
+      out.put(block);
+    }
+    return out.array();
+  }
+
+  /**
+   * Writes the bytes in [offset, offset + length) of the original data to the output stream,
+   * inflating only the blocks which overlap the range.
+   */
+  public static void decompressRange(final byte[] data, final int offset, final int length,
+      final OutputStream out) throws IOException {
+    if (length <= 0) {
+      return;
+    }
+    try {
+      final ByteBuffer in = ByteBuffer.wrap(data);
+      final int blockSize = in.getInt();
+      final int numBlocks = in.getInt();
+      final int firstBlock = offset / blockSize;
+      final int lastBlock = (offset + length - 1) / blockSize;
+      if (blockSize <= 0 || lastBlock >= numBlocks) {
+        throw new IOException("Range " + offset + "+" + length + " is out of the data");
+      }
+
+      int blockPosition = 8 + 4 * numBlocks;
+      for (int i = 0; i < firstBlock; i++) {
+        blockPosition += in.getInt(8 + 4 * i);
+      }
+      for (int i = firstBlock; i <= lastBlock; i++) {
+        final int compressedLength = in.getInt(8 + 4 * i);
+        final byte[] block = GZIPUtils.inflateBytes(data, blockPosition, compressedLength);
+        blockPosition += compressedLength;
+        final int blockStart = i * blockSize;
+        final int from = Math.max(offset, blockStart) - blockStart;
+        final int to = Math.min(offset + length, blockStart + block.length) - blockStart;
+        out.write(block, from, to - from);
+      }
+    } catch (final BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw new IOException("Corrupt block compressed data", e);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils;
+
+/**
+ * A circular buffer of bytes of a given capacity. Once full, appended bytes overwrite the oldest
+ * ones, so the buffer holds the last bytes written to it.
+ */
+public class ByteRingBuffer {
+
+  private final byte[] bytes;
+  private int start;
+  private int size;
+
+  public ByteRingBuffer(final int capacity) {
+    this.bytes = new byte[capacity];
+    this.start = 0;
+    this.size = 0;
+  }
+
+  public synchronized void append(final byte[] b, final int off, final int len) {
+    final int capacity = this.bytes.length;
+    if (len >= capacity) {
+      System.arraycopy(b, off + len - capacity, this.bytes, 0, capacity);
+      this.start = 0;
+      this.size = capacity;
+      return;
+    }
+    final int end = (this.start + this.size) % capacity;
+    final int firstPart = Math.min(len, capacity - end);
+    System.arraycopy(b, off, this.bytes, end, firstPart);
+    System.arraycopy(b, off + firstPart, this.bytes, 0, len - firstPart);
+    final int overflow = Math.max(0, this.size + len - capacity);
+    this.start = (this.start + overflow) % capacity;
+    this.size = Math.min(capacity, this.size + len);
+  }
+
+  /**
+   * @return the bytes in the buffer, oldest first
+   */
+  public synchronized byte[] toByteArray() {
+    final byte[] copy = new byte[this.size];
+    final int firstPart = Math.min(this.size, this.bytes.length - this.start);
+    System.arraycopy(this.bytes, this.start, copy, 0, firstPart);
+    System.arraycopy(this.bytes, 0, copy, firstPart, this.size - firstPart);
+    return copy;
+  }
+
+  public int getCapacity() {
+    return this.bytes.length;
+  }
+
+  public synchronized int getSize() {
+    return this.size;
+  }
+}
@@ -25,17 +25,28 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
 import org.apache.commons.fileupload.util.Streams;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -49,6 +60,10 @@ import org.slf4j.LoggerFactory;
 public class FileIOUtils {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(FileIOUtils.class);
+  // First line of the hard link manifests, change it if the format changes
+  private static final String LINK_MANIFEST_HEADER = "azkaban-link-manifest-v1";
+  // Files are linked in parallel only in ranges of at least this many files
+  private static final int MIN_FILES_PER_LINK_TASK = 256;
 
   /**
    * Check if a directory is writable
@@ -274,6 +289,25 @@ public class FileIOUtils {
    */
   public static int createDeepHardlink(final File sourceDir, final File destDir)
       throws IOException {
+    return createDeepHardlink(sourceDir, destDir, null, 1, null);
+  }
+
+  /**
+   * Hard link files and recurse into directories. The directories are created first, then the
+   * files are linked by up to numTasks tasks run by the link service. Each task links a
+   * contiguous range of the files, so the tasks mostly work in different directories.
+   *
+   * <p>If a manifest file is given, the directories and files to link are read from it instead of
+   * walking the source dir. If it doesn't exist yet, the source dir is walked and the manifest is
+   * written for the next call, so it must only be used for a source dir that doesn't change. The
+   * manifest may be kept in the source dir, it isn't linked itself.
+   *
+   * @param linkService runs the link tasks, null to link the files in the calling thread
+   * @return the number of files linked
+   */
+  public static int createDeepHardlink(final File sourceDir, final File destDir,
+      @Nullable final ExecutorService linkService, final int numTasks,
+      @Nullable final File manifestFile) throws IOException {
     if (!sourceDir.exists()) {
       throw new IOException("Source directory " + sourceDir.getPath()
           + " doesn't exist");
@@ -284,45 +318,187 @@ public class FileIOUtils {
       throw new IOException("Source or Destination is not a directory.");
     }
 
-    final Set<String> paths = new HashSet<>();
-    createDirsFindFiles(sourceDir, sourceDir, destDir, paths);
+    final Path sourcePath = sourceDir.toPath().toAbsolutePath();
+    final Path destPath = destDir.toPath();
+    final Path manifestPath = manifestFile == null ? null : manifestFile.toPath().toAbsolutePath();
+    LinkManifest manifest = manifestPath == null ? null : readLinkManifest(manifestPath);
+    final boolean fromManifest = manifest != null;
+    if (!fromManifest) {
+      manifest = walkLinkManifest(sourcePath, manifestPath);
+    }
 
-    int linkCount = 0;
-    for (String path : paths) {
-      final File sourceLink = new File(sourceDir, path);
-      path = destDir + path;
+    for (final String dir : manifest.dirs) {
+      Files.createDirectories(destPath.resolve(dir));
+    }
+    try {
+      linkFiles(sourcePath, destPath, manifest.files, linkService, numTasks);
+    } catch (final NoSuchFileException e) {
+      if (fromManifest) {
+        // The source dir changed after the manifest was written, walk it again next time
+        LOGGER.warn("Deleting stale hard link manifest {}", manifestPath, e);
+        Files.deleteIfExists(manifestPath);
+      }
+      throw e;
+    }
+
+    if (manifestPath != null && !fromManifest) {
+      writeLinkManifest(manifest, manifestPath);
+    }
+    return manifest.files.size();
+  }
 
-      final File[] targetFiles = sourceLink.listFiles();
-      for (final File targetFile : targetFiles) {
-        if (targetFile.isFile()) {
-          final File linkFile = new File(path, targetFile.getName());
-          // NOTE!! If modifying this, you must run this ignored test manually to validate:
-          // FileIOUtilsTest#testHardlinkCopyOfBigDir
-          Files.createLink(linkFile.toPath(), Paths.get(targetFile.getAbsolutePath()));
-          linkCount++;
+  private static LinkManifest walkLinkManifest(final Path sourcePath,
+      @Nullable final Path manifestPath) throws IOException {
+    final LinkManifest manifest = new LinkManifest();
+    // Links to dirs are followed, links to files are linked like regular files
+    Files.walkFileTree(sourcePath, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(final Path dir,
+              final BasicFileAttributes attrs) {
+            if (!dir.equals(sourcePath)) {
+              manifest.dirs.add(sourcePath.relativize(dir).toString());
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+            if (attrs.isRegularFile() && !isLinkManifestFile(file, manifestPath)) {
+              manifest.files.add(sourcePath.relativize(file).toString());
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    return manifest;
+  }
+
+  /**
+   * @return true if the file is the manifest or a temp file it's being written to
+   */
+  private static boolean isLinkManifestFile(final Path file, @Nullable final Path manifestPath) {
+    return manifestPath != null
+        && file.getFileName().toString().startsWith(manifestPath.getFileName().toString())
+        && file.getParent().equals(manifestPath.getParent());
+  }
+
+  private static void linkFiles(final Path sourcePath, final Path destPath,
+      final List<String> files, @Nullable final ExecutorService linkService, final int maxTasks)
+      throws IOException {
+    final int numTasks = Math.min(maxTasks, files.size() / MIN_FILES_PER_LINK_TASK);
+    if (linkService == null || numTasks <= 1) {
+      linkFiles(sourcePath, destPath, files);
+      return;
+    }
+
+    final List<Future<?>> futures = new ArrayList<>(numTasks);
+    try {
+      for (int i = 0; i < numTasks; i++) {
+        final List<String> range = files.subList(i * files.size() / numTasks,
+            (i + 1) * files.size() / numTasks);
+        futures.add(linkService.submit(() -> {
+          linkFiles(sourcePath, destPath, range);
+          return null;
+        }));
+      }
+      for (final Future<?> future : futures) {
+        future.get();
+      }
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Failed to hard link " + sourcePath, e.getCause());
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while hard linking " + sourcePath);
+    } finally {
+      // Don't leave tasks behind linking into a dir the caller deletes on failure
+      for (final Future<?> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private static void linkFiles(final Path sourcePath, final Path destPath,
+      final List<String> files) throws IOException {
+    for (final String file : files) {
+      // NOTE!! If modifying this, you must run this ignored test manually to validate:
+      // FileIOUtilsTest#testHardlinkCopyOfBigDir
+      Files.createLink(destPath.resolve(file), sourcePath.resolve(file));
+    }
+  }
+
+  /**
+   * @return the manifest, or null if it doesn't exist or can't be read
+   */
+  @Nullable
+  private static LinkManifest readLinkManifest(final Path manifestPath) {
+    if (!Files.exists(manifestPath)) {
+      return null;
+    }
+    try (final BufferedReader reader =
+        Files.newBufferedReader(manifestPath, StandardCharsets.UTF_8)) {
+      if (!LINK_MANIFEST_HEADER.equals(reader.readLine())) {
+        LOGGER.warn("Ignoring hard link manifest {} of unknown format", manifestPath);
+        return null;
+      }
+      final LinkManifest manifest = new LinkManifest();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.endsWith("/")) {
+          manifest.dirs.add(line.substring(0, line.length() - 1));
+        } else {
+          manifest.files.add(line);
         }
       }
+      return manifest;
+    } catch (final IOException e) {
+      LOGGER.warn("Failed to read hard link manifest {}", manifestPath, e);
+      return null;
     }
-    return linkCount;
   }
 
-  private static void createDirsFindFiles(final File baseDir, final File sourceDir,
-      final File destDir, final Set<String> paths) {
-    final File[] srcList = sourceDir.listFiles();
-    final String path = getRelativePath(baseDir, sourceDir);
-    paths.add(path);
-
-    for (final File file : srcList) {
-      if (file.isDirectory()) {
-        final File newDestDir = new File(destDir, file.getName());
-        newDestDir.mkdirs();
-        createDirsFindFiles(baseDir, file, newDestDir, paths);
+  /**
+   * Writes the manifest to a temp file first and then moves it in place, so readers never see a
+   * partial manifest. Failures are only logged, the manifest is just an optimization.
+   */
+  private static void writeLinkManifest(final LinkManifest manifest, final Path manifestPath) {
+    if (manifest.dirs.stream().anyMatch(FileIOUtils::hasLineBreak)
+        || manifest.files.stream().anyMatch(FileIOUtils::hasLineBreak)) {
+      LOGGER.info("Not writing hard link manifest {}, a file name has a line break",
+          manifestPath);
+      return;
+    }
+
+    Path tempPath = null;
+    try {
+      tempPath = Files.createTempFile(manifestPath.getParent(),
+          manifestPath.getFileName().toString(), ".tmp");
+      try (final BufferedWriter writer =
+          Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+        writer.write(LINK_MANIFEST_HEADER);
+        writer.write('\n');
+        for (final String dir : manifest.dirs) {
+          writer.write(dir);
+          writer.write("/\n");
+        }
+        for (final String file : manifest.files) {
+          writer.write(file);
+          writer.write('\n');
+        }
+      }
+      Files.move(tempPath, manifestPath, StandardCopyOption.ATOMIC_MOVE);
+    } catch (final IOException e) {
+      LOGGER.warn("Failed to write hard link manifest {}", manifestPath, e);
+      if (tempPath != null) {
+        tempPath.toFile().delete();
       }
     }
   }
 
-  private static String getRelativePath(final File basePath, final File sourceDir) {
-    return sourceDir.getPath().substring(basePath.getPath().length());
+  private static boolean hasLineBreak(final String path) {
+    return path.indexOf('\n') >= 0 || path.indexOf('\r') >= 0;
   }
 
   public static Pair<Integer, Integer> readUtf8File(final File file, final int offset,
@@ -543,6 +719,15 @@ public class FileIOUtils {
     }
   }
 
+  /**
+   * Dirs and files to hard link, as paths relative to the source dir. Parent dirs come first.
+   */
+  private static class LinkManifest {
+
+    private final List<String> dirs = new ArrayList<>();
+    private final List<String> files = new ArrayList<>();
+  }
+
   public static class LogData {
 
     private final int offset;
@@ -20,8 +20,11 @@ import azkaban.db.EncodingType;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 import org.apache.commons.io.IOUtils;
 
 public class GZIPUtils {
@@ -49,6 +52,18 @@ public class GZIPUtils {
     return byteOutputStream.toByteArray();
   }
 
+  /**
+   * Serializes the object to JSON and gzips it. The JSON is streamed into the compressor instead
+   * of being built as a string first.
+   */
+  public static byte[] gzipJSON(final Object obj) throws IOException {
+    final ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream();
+    try (final GZIPOutputStream gzipStream = new GZIPOutputStream(byteOutputStream)) {
+      JSONUtils.writeJSON(obj, gzipStream);
+    }
+    return byteOutputStream.toByteArray();
+  }
+
   public static byte[] unGzipBytes(final byte[] bytes) throws IOException {
     final ByteArrayInputStream byteInputStream = new ByteArrayInputStream(bytes);
     final GZIPInputStream gzipInputStream = new GZIPInputStream(byteInputStream);
@@ -59,6 +74,49 @@ public class GZIPUtils {
     return byteOutputStream.toByteArray();
   }
 
+  /**
+   * Compresses bytes with deflate (zlib format) at the fastest compression level. Several times
+   * faster than {@link #gzipBytes(byte[], int, int)}, at the cost of a lower compression ratio.
+   */
+  public static byte[] deflateBytes(final byte[] bytes, final int offset, final int length) {
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(bytes, offset, length);
+      deflater.finish();
+      final ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream(length / 4 + 64);
+      final byte[] buffer = new byte[8 * 1024];
+      while (!deflater.finished()) {
+        final int size = deflater.deflate(buffer);
+        byteOutputStream.write(buffer, 0, size);
+      }
+      return byteOutputStream.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  public static byte[] inflateBytes(final byte[] bytes, final int offset, final int length)
+      throws IOException {
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(bytes, offset, length);
+      final ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream(length * 4);
+      final byte[] buffer = new byte[8 * 1024];
+      while (!inflater.finished()) {
+        final int size = inflater.inflate(buffer);
+        if (size == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IOException("Truncated or invalid deflate data");
+        }
+        byteOutputStream.write(buffer, 0, size);
+      }
+      return byteOutputStream.toByteArray();
+    } catch (final DataFormatException e) {
+      throw new IOException(e);
+    } finally {
+      inflater.end();
+    }
+  }
+
   public static String unGzipString(final byte[] bytes, final String encType)
       throws IOException {
     final byte[] response = unGzipBytes(bytes);
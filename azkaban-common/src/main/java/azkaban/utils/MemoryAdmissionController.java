@@ -0,0 +1,287 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package azkaban.utils;
+
+import azkaban.Constants;
+import azkaban.metrics.CommonMetrics;
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.IntSupplier;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Executor wide admission control for the memory of job processes.
+ *
+ * <p>A job reserves its memory before it starts its process and releases the reservation when it
+ * ends. Waiting jobs are admitted in order of priority, then of arrival, so a big job in the queue
+ * isn't starved by smaller ones behind it. A job that doesn't fit only holds back the jobs behind
+ * it for a while though, after which the ones that fit are admitted ahead of it.
+ *
+ * <p>Free memory is read from the OS, which only sees the memory of a process once the process
+ * allocates it. Each held reservation is therefore charged against the free memory with the part
+ * its process doesn't use yet, the reserved memory minus the resident memory of the process, for
+ * as long as it is held. A reservation is charged in full until its process is known, or if the
+ * memory of the process can't be read. Waiting jobs are woken when a reservation is released,
+ * and also re-check the free memory periodically since processes grow into their reservations
+ * and other processes may free memory too.
+ *
+ * <p>All the memory sizes are in KB.
+ */
+@Singleton
+public class MemoryAdmissionController {
+
+  private static final Logger logger = LoggerFactory.getLogger(MemoryAdmissionController.class);
+  private static final long DEFAULT_MAX_BLOCKING_TIME_MS = 10 * 60 * 1000L;
+
+  private final SystemMemoryInfo memInfo;
+  private final CommonMetrics commonMetrics;
+  private final long recheckIntervalMs;
+  // How long after it is queued a request that doesn't fit holds back the requests behind it
+  private final long maxBlockingTimeMs;
+
+  // Guarded by this.
+  private final TreeSet<Request> waitingRequests = new TreeSet<>(
+      Comparator.comparingInt((Request r) -> -r.priority).thenComparingLong(r -> r.seq));
+  private final Set<Request> grantedRequests = new HashSet<>();
+  private long nextSeq = 0;
+
+  @Inject
+  public MemoryAdmissionController(final SystemMemoryInfo memInfo,
+      final CommonMetrics commonMetrics) {
+    this(memInfo, commonMetrics, Constants.MEMORY_CHECK_INTERVAL_MS,
+        DEFAULT_MAX_BLOCKING_TIME_MS);
+  }
+
+  @VisibleForTesting
+  MemoryAdmissionController(final SystemMemoryInfo memInfo, final CommonMetrics commonMetrics,
+      final long recheckIntervalMs, final long maxBlockingTimeMs) {
+    this.memInfo = memInfo;
+    this.commonMetrics = commonMetrics;
+    this.recheckIntervalMs = recheckIntervalMs;
+    this.maxBlockingTimeMs = maxBlockingTimeMs;
+  }
+
+  /**
+   * Queues a memory request. The caller must then {@link Request#await(long)} it, and release it
+   * once the memory is no longer used.
+   *
+   * @param name     name of the requester, for logging
+   * @param memKb    memory to reserve
+   * @param priority priority of the request, higher first
+   */
+  public synchronized Request request(final String name, final long memKb, final int priority) {
+    final Request request = new Request(name, memKb, priority, this.nextSeq++);
+    this.waitingRequests.add(request);
+    this.commonMetrics.addMemoryAdmissionQueueLength(this.waitingRequests.size());
+    return request;
+  }
+
+  /**
+   * @return total memory of the reservations currently held
+   */
+  public synchronized long getReservedMemory() {
+    long reservedKb = 0;
+    for (final Request request : this.grantedRequests) {
+      reservedKb += request.memKb;
+    }
+    return reservedKb;
+  }
+
+  /**
+   * @return number of requests waiting to be granted
+   */
+  public synchronized int getNumWaitingRequests() {
+    return this.waitingRequests.size();
+  }
+
+  private synchronized boolean await(final Request request, final long timeoutMs)
+      throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + timeoutMs;
+    boolean waited = false;
+    try {
+      while (request.state == State.WAITING) {
+        final long now = System.currentTimeMillis();
+        if (canGrantInOrder(request, now)) {
+          grant(request, now);
+          return true;
+        }
+        if (now >= deadline) {
+          return false;
+        }
+        if (!waited) {
+          waited = true;
+          this.commonMetrics.incrementOOMJobWaitCount();
+          logger.info("Memory request of {} ({} kb) is waiting, {} requests in the queue",
+              request.name, request.memKb, this.waitingRequests.size());
+        }
+        this.wait(Math.min(deadline - now, timeUntilNextCheck(request, now)));
+      }
+      return request.state == State.GRANTED;
+    } finally {
+      if (waited) {
+        this.commonMetrics.decrementOOMJobWaitCount();
+      }
+      if (request.state == State.WAITING) {
+        // Timed out or interrupted.
+        cancel(request);
+      }
+    }
+  }
+
+  /**
+   * A request is granted if it fits, and none of the requests ahead of it in the queue fits or
+   * still holds back the requests behind it.
+   */
+  private boolean canGrantInOrder(final Request request, final long now) {
+    final long unusedKb = getUnusedReservedMemory();
+    for (final Request ahead : this.waitingRequests) {
+      if (ahead == request) {
+        return canGrant(request, unusedKb);
+      }
+      if (now - ahead.requestTimeMs < this.maxBlockingTimeMs || canGrant(ahead, unusedKb)) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private boolean canGrant(final Request request, final long unusedKb) {
+    return this.memInfo.canSystemGrantMemory(unusedKb + request.memKb);
+  }
+
+  /**
+   * @return memory of the reservations currently held that their processes don't use yet
+   */
+  private long getUnusedReservedMemory() {
+    long unusedKb = 0;
+    for (final Request granted : this.grantedRequests) {
+      final int processId = granted.processId.getAsInt();
+      final long usedKb = processId > 0 ? this.memInfo.getProcessMemorySize(processId) : 0;
+      unusedKb += Math.max(0, granted.memKb - usedKb);
+    }
+    return unusedKb;
+  }
+
+  /**
+   * @return time until a request ahead of the given one stops holding it back, at most the
+   * recheck interval
+   */
+  private long timeUntilNextCheck(final Request request, final long now) {
+    long waitMs = this.recheckIntervalMs;
+    for (final Request ahead : this.waitingRequests.headSet(request)) {
+      final long blockingMs = ahead.requestTimeMs + this.maxBlockingTimeMs - now;
+      if (blockingMs > 0) {
+        waitMs = Math.min(waitMs, blockingMs);
+      }
+    }
+    return waitMs;
+  }
+
+  private void grant(final Request request, final long now) {
+    this.waitingRequests.remove(request);
+    request.state = State.GRANTED;
+    this.grantedRequests.add(request);
+    this.commonMetrics.addMemoryAdmissionWaitTime(now - request.requestTimeMs);
+    // The next request in the queue may fit too.
+    this.notifyAll();
+  }
+
+  private synchronized void cancel(final Request request) {
+    if (request.state == State.WAITING) {
+      this.waitingRequests.remove(request);
+      request.state = State.CANCELLED;
+      this.notifyAll();
+    }
+  }
+
+  private synchronized void release(final Request request) {
+    if (request.state == State.GRANTED) {
+      this.grantedRequests.remove(request);
+      request.state = State.RELEASED;
+      this.notifyAll();
+    }
+  }
+
+  private enum State {
+    WAITING,
+    GRANTED,
+    CANCELLED,
+    RELEASED
+  }
+
+  /**
+   * A memory request, from the time it is queued until its reservation is released.
+   */
+  public class Request {
+
+    private final String name;
+    private final long memKb;
+    private final int priority;
+    private final long seq;
+    private final long requestTimeMs = System.currentTimeMillis();
+    // Guarded by the controller.
+    private State state = State.WAITING;
+    // Id of the process using the reservation, 0 while there is none
+    private volatile IntSupplier processId = () -> 0;
+
+    private Request(final String name, final long memKb, final int priority, final long seq) {
+      this.name = name;
+      this.memKb = memKb;
+      this.priority = priority;
+      this.seq = seq;
+    }
+
+    /**
+     * Waits until the memory is reserved for this request.
+     *
+     * @return true if the memory was reserved, false if the request timed out or was cancelled
+     */
+    public boolean await(final long timeoutMs) throws InterruptedException {
+      return MemoryAdmissionController.this.await(this, timeoutMs);
+    }
+
+    /**
+     * Sets the id of the process using the reservation, so that only the memory the process
+     * doesn't use yet is charged against the free memory. The supplier returns 0 while there is
+     * no process.
+     */
+    public void setProcessId(final IntSupplier processId) {
+      this.processId = processId;
+    }
+
+    /**
+     * Cancels the request if it is still waiting. A granted reservation is kept until it is
+     * released.
+     */
+    public void cancel() {
+      MemoryAdmissionController.this.cancel(this);
+    }
+
+    /**
+     * Releases the reservation of the request, if any, and wakes up the waiting requests.
+     */
+    public void release() {
+      MemoryAdmissionController.this.release(this);
+    }
+  }
+}
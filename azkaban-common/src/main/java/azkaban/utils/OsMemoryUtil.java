@@ -4,6 +4,7 @@ import com.google.common.collect.ImmutableSet;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Set;
@@ -47,6 +48,27 @@ class OsMemoryUtil {
     return getAggregatedFreeMemorySize(MEM_AVAILABLE_KEYS);
   }
 
+  /**
+   * @return the resident set size of a process in kB. 0 if there is an error or the OS doesn't
+   * support this memory check.
+   */
+  long getProcessRssSize(final int pid) {
+    final Path statusFile = Paths.get("/proc", String.valueOf(pid), "status");
+    final List<String> lines;
+    try {
+      lines = Files.readAllLines(statusFile, StandardCharsets.UTF_8);
+    } catch (final IOException e) {
+      // The process may have exited, or the OS doesn't have the file.
+      return 0;
+    }
+    for (final String line : lines) {
+      if (line.startsWith("VmRSS:")) {
+        return parseMemoryLine(line);
+      }
+    }
+    return 0;
+  }
+
   private long getAggregatedFreeMemorySize(final Set<String> memKeysToCombine) {
     if (!Files.isRegularFile(Paths.get(MEM_INFO_FILE))) {
       // Mac doesn't support /proc/meminfo for example.
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+/**
+ * Reads the output of child processes on a few shared threads and logs it to the job loggers.
+ *
+ * <p>Process pipes can't be registered with a selector, so each pump thread polls the streams
+ * assigned to it and only reads the bytes {@link InputStream#available()} reports, which never
+ * blocks. A thread backs off while none of its streams has output. The output is read in chunks
+ * but logged one event per line, so every line gets the layout of the job log. The last bytes of
+ * each stream are kept in a {@link ByteRingBuffer}.
+ */
+public class ProcessOutputPump {
+
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+  // Output without a line break is logged once it reaches this size
+  private static final int MAX_PENDING_LINE_SIZE = 64 * 1024;
+  private static final int RECENT_LOG_SIZE = 8 * 1024;
+  private static final int RECENT_LOG_LINES = 30;
+  private static final long MIN_IDLE_WAIT_MS = 5;
+  private static final long MAX_IDLE_WAIT_MS = 100;
+
+  private static volatile ProcessOutputPump sharedInstance;
+
+  private final List<PumpThread> pumpThreads = new ArrayList<>();
+  private final List<Thread> threads = new ArrayList<>();
+  private final AtomicInteger nextPumpThread = new AtomicInteger();
+
+  @VisibleForTesting
+  ProcessOutputPump(final int numThreads) {
+    final ThreadFactory threadFactory = new ThreadFactoryBuilder().setDaemon(true)
+        .setNameFormat("azk-process-output-pump-%d").build();
+    for (int i = 0; i < numThreads; i++) {
+      final PumpThread pumpThread = new PumpThread();
+      this.pumpThreads.add(pumpThread);
+      final Thread thread = threadFactory.newThread(pumpThread);
+      this.threads.add(thread);
+      thread.start();
+    }
+  }
+
+  /**
+   * @return the pump shared by all the processes of this server
+   */
+  public static ProcessOutputPump getSharedInstance() {
+    if (sharedInstance == null) {
+      synchronized (ProcessOutputPump.class) {
+        if (sharedInstance == null) {
+          sharedInstance = new ProcessOutputPump(
+              Math.max(2, Runtime.getRuntime().availableProcessors() / 8));
+        }
+      }
+    }
+    return sharedInstance;
+  }
+
+  /**
+   * Starts pumping an output stream of a process to a logger. The stream is pumped until its end
+   * or, once the process has exited, until all its buffered output is read.
+   *
+   * @param process the process writing to the stream
+   * @param input   the output stream of the process
+   * @param logger  logger receiving the output
+   * @param level   level the output is logged at
+   */
+  public Output pump(final Process process, final InputStream input, final Logger logger,
+      final Level level) {
+    final Output output = new Output(process, input, logger, level);
+    final int index = Math.floorMod(this.nextPumpThread.getAndIncrement(),
+        this.pumpThreads.size());
+    this.pumpThreads.get(index).newOutputs.add(output);
+    return output;
+  }
+
+  /**
+   * Stops the pump threads. Streams still being pumped are left incomplete.
+   */
+  @VisibleForTesting
+  void shutdown() throws InterruptedException {
+    for (final Thread thread : this.threads) {
+      thread.interrupt();
+    }
+    for (final Thread thread : this.threads) {
+      thread.join();
+    }
+  }
+
+  /**
+   * An output stream being pumped.
+   */
+  public static class Output {
+
+    private final Process process;
+    private final InputStream input;
+    private final Logger logger;
+    private final Level level;
+    private final ByteRingBuffer recentLog = new ByteRingBuffer(RECENT_LOG_SIZE);
+    private final CountDownLatch completeLatch = new CountDownLatch(1);
+    // Output after the last line break. Only accessed by the pump thread.
+    private final ByteArrayOutputStream pendingLine = new ByteArrayOutputStream();
+
+    private Output(final Process process, final InputStream input, final Logger logger,
+        final Level level) {
+      this.process = process;
+      this.input = input;
+      this.logger = logger;
+      this.level = level;
+    }
+
+    /**
+     * Waits for the stream to be pumped completely.
+     *
+     * @return true if the stream was pumped completely in the given time
+     */
+    public boolean awaitCompletion(final long waitMs) {
+      try {
+        return this.completeLatch.await(waitMs, TimeUnit.MILLISECONDS);
+      } catch (final InterruptedException e) {
+        info("I/O thread interrupted.", e);
+        return false;
+      }
+    }
+
+    /**
+     * @return the last lines of the output
+     */
+    public String getRecentLog() {
+      final String recentLog = new String(this.recentLog.toByteArray(), StandardCharsets.UTF_8);
+      final List<String> lines = Arrays.asList(recentLog.split("\r?\n"));
+      return Joiner.on(System.getProperty("line.separator"))
+          .join(lines.subList(Math.max(0, lines.size() - RECENT_LOG_LINES), lines.size()));
+    }
+
+    public boolean isComplete() {
+      return this.completeLatch.getCount() == 0L;
+    }
+
+    /**
+     * Reads the output available without blocking.
+     *
+     * @return true if any output was read
+     */
+    private boolean pump(final byte[] buffer) throws IOException {
+      // Check whether the process exited before checking the available output, so that all the
+      // output the process wrote is read before the stream is considered complete.
+      final boolean exited = !this.process.isAlive();
+      final int available = this.input.available();
+      if (available > 0) {
+        final int read = this.input.read(buffer, 0, Math.min(available, buffer.length));
+        if (read < 0) {
+          complete();
+          return false;
+        }
+        write(buffer, read);
+        return true;
+      }
+      if (exited) {
+        complete();
+      }
+      return false;
+    }
+
+    private void write(final byte[] buffer, final int length) {
+      this.recentLog.append(buffer, 0, length);
+      int lineStart = 0;
+      for (int i = 0; i < length; i++) {
+        if (buffer[i] == '\n') {
+          this.pendingLine.write(buffer, lineStart, i - lineStart);
+          logPendingLine();
+          lineStart = i + 1;
+        }
+      }
+      this.pendingLine.write(buffer, lineStart, length - lineStart);
+      if (this.pendingLine.size() >= MAX_PENDING_LINE_SIZE) {
+        logPendingLine();
+      }
+    }
+
+    private void logPendingLine() {
+      String line = new String(this.pendingLine.toByteArray(), StandardCharsets.UTF_8);
+      this.pendingLine.reset();
+      // Drop the \r of \r\n line breaks, like BufferedReader.readLine()
+      if (line.endsWith("\r")) {
+        line = line.substring(0, line.length() - 1);
+      }
+      if (this.logger != null) {
+        this.logger.log(this.level, line);
+      }
+    }
+
+    private void complete() {
+      if (this.pendingLine.size() > 0) {
+        logPendingLine();
+      }
+      this.completeLatch.countDown();
+    }
+
+    private void fail(final Exception e) {
+      if (this.logger != null) {
+        this.logger.error("Error reading from logging stream:", e);
+      }
+      complete();
+    }
+
+    private void info(final String message, final Exception e) {
+      if (this.logger != null) {
+        this.logger.info(message, e);
+      }
+    }
+  }
+
+  private static class PumpThread implements Runnable {
+
+    private final BlockingQueue<Output> newOutputs = new LinkedBlockingQueue<>();
+    // Only accessed by the pump thread.
+    private final List<Output> outputs = new ArrayList<>();
+    private final byte[] buffer = new byte[READ_BUFFER_SIZE];
+
+    @Override
+    public void run() {
+      long idleWaitMs = MIN_IDLE_WAIT_MS;
+      while (!Thread.currentThread().isInterrupted()) {
+        try {
+          if (this.outputs.isEmpty()) {
+            this.outputs.add(this.newOutputs.take());
+          }
+          this.newOutputs.drainTo(this.outputs);
+
+          boolean read = false;
+          final Iterator<Output> it = this.outputs.iterator();
+          while (it.hasNext()) {
+            final Output output = it.next();
+            try {
+              read |= output.pump(this.buffer);
+            } catch (final IOException | RuntimeException e) {
+              output.fail(e);
+            }
+            if (output.isComplete()) {
+              it.remove();
+            }
+          }
+
+          if (read) {
+            idleWaitMs = MIN_IDLE_WAIT_MS;
+          } else {
+            Thread.sleep(idleWaitMs);
+            idleWaitMs = Math.min(idleWaitMs * 2, MAX_IDLE_WAIT_MS);
+          }
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+}
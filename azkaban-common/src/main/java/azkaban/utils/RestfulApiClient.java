@@ -26,6 +26,7 @@ import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
@@ -137,11 +138,31 @@ public abstract class RestfulApiClient<T> {
     return HttpClients.createDefault();
   }
 
+  /**
+   * For returning a long lived HttpClient shared by all requests of this class. By default no
+   * shared client is available and every request is executed by a new client created through
+   * {@link #createHttpClient()}. Child classes can override this to keep connections alive across
+   * requests, for example by returning a client backed by a connection pool.
+   *
+   * @return the shared http client, or null if a client should be created per request.
+   */
+  protected CloseableHttpClient getSharedHttpClient() {
+    return null;
+  }
+
   /**
    * function to dispatch the request and pass back the response.
    */
   protected T sendAndReturn(final HttpUriRequest request)
       throws IOException {
+    final CloseableHttpClient sharedClient = this.getSharedHttpClient();
+    if (sharedClient != null) {
+      // Closing the response releases the connection back to the shared client. The connection is
+      // only kept alive if parseResponse consumed the response entity.
+      try (final CloseableHttpResponse response = sharedClient.execute(request)) {
+        return this.parseResponse(response);
+      }
+    }
     try (final CloseableHttpClient client = this.createHttpClient()) {
       return this.parseResponse(client.execute(request));
     }
@@ -49,6 +49,14 @@ public class SystemMemoryInfo {
     return true;
   }
 
+  /**
+   * @param pid id of a process
+   * @return the resident memory of the process in kb. 0 if it can't be read.
+   */
+  public long getProcessMemorySize(final int pid) {
+    return this.util.getProcessRssSize(pid);
+  }
+
   /**
    * @param memKb represents a memory value in kb
    * @return true if available physical memory is greater than memKb
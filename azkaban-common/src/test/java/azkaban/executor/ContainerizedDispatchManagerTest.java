@@ -266,7 +266,9 @@ public class ContainerizedDispatchManagerTest {
     this.containerizedDispatchManager =
         new ContainerizedDispatchManager(this.props, this.loader,
         this.commonMetrics,
-        this.apiGateway, this.containerizedImpl, null);
+        this.apiGateway, this.containerizedImpl, null,
+        new ExecutableFlowCache(this.props, this.loader, this.commonMetrics),
+        new ExecutionStatusFeed(this.props));
     this.containerizedDispatchManager.start();
   }
 
@@ -328,7 +330,9 @@ public class ContainerizedDispatchManagerTest {
       Props containerEnabledProps) throws Exception {
     ContainerizedDispatchManager dispatchManager =
         new ContainerizedDispatchManager(containerEnabledProps, this.loader,
-            this.commonMetrics, apiGateway, this.containerizedImpl, null);
+            this.commonMetrics, apiGateway, this.containerizedImpl, null,
+            new ExecutableFlowCache(containerEnabledProps, this.loader, this.commonMetrics),
+            new ExecutionStatusFeed(containerEnabledProps));
     dispatchManager.start();
     return dispatchManager;
   }
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package azkaban.executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import azkaban.Constants.ConfigurationKeys;
+import azkaban.db.EncodingType;
+import azkaban.metrics.CommonMetrics;
+import azkaban.metrics.MetricsManager;
+import azkaban.utils.GZIPUtils;
+import azkaban.utils.Pair;
+import azkaban.utils.Props;
+import azkaban.utils.TestUtils;
+import com.codahale.metrics.MetricRegistry;
+import java.util.Collections;
+import org.apache.commons.lang.RandomStringUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExecutableFlowCacheTest {
+
+  private static final int EXEC_ID = 1;
+
+  private final MetricRegistry metricRegistry = new MetricRegistry();
+  private final CommonMetrics commonMetrics =
+      new CommonMetrics(new MetricsManager(this.metricRegistry));
+  private ExecutorLoader loader;
+  private ExecutableFlow flow;
+
+  @Before
+  public void setUp() throws Exception {
+    this.loader = mock(ExecutorLoader.class);
+    this.flow = TestUtils.createTestExecutableFlow("exectest1", "exec1");
+    this.flow.setExecutionId(EXEC_ID);
+    this.flow.setUpdateTime(100L);
+    when(this.loader.fetchEncodedExecutableFlow(EXEC_ID)).thenReturn(encode(this.flow));
+    when(this.loader.fetchExecutableFlowUpdateTime(EXEC_ID)).thenReturn(100L);
+  }
+
+  @Test
+  public void testUnchangedFlowIsServedFromCache() throws Exception {
+    final ExecutableFlowCache cache = new ExecutableFlowCache(new Props(), this.loader,
+        this.commonMetrics);
+    cache.get(EXEC_ID);
+    final ExecutableFlow cachedFlow = cache.get(EXEC_ID);
+    assertThat(cachedFlow.getExecutionId()).isEqualTo(this.flow.getExecutionId());
+    assertThat(cachedFlow.getFlowId()).isEqualTo(this.flow.getFlowId());
+    assertThat(cachedFlow.getExecutableNodes()).hasSameSizeAs(this.flow.getExecutableNodes());
+
+    verify(this.loader, times(1)).fetchEncodedExecutableFlow(EXEC_ID);
+    // Only the hit checks the update time
+    verify(this.loader, times(1)).fetchExecutableFlowUpdateTime(EXEC_ID);
+    assertThat(getCount(CommonMetrics.EXECUTABLE_FLOW_CACHE_HIT_METER_NAME)).isEqualTo(1);
+    assertThat(getCount(CommonMetrics.EXECUTABLE_FLOW_CACHE_MISS_METER_NAME)).isEqualTo(1);
+  }
+
+  @Test
+  public void testCallersGetTheirOwnFlow() throws Exception {
+    this.flow.setStatus(Status.RUNNING);
+    when(this.loader.fetchEncodedExecutableFlow(EXEC_ID)).thenReturn(encode(this.flow));
+    final ExecutableFlowCache cache = new ExecutableFlowCache(new Props(), this.loader,
+        this.commonMetrics);
+    final ExecutableFlow flow1 = cache.get(EXEC_ID);
+    final ExecutableFlow flow2 = cache.get(EXEC_ID);
+    assertThat(flow1).isNotSameAs(flow2);
+
+    flow1.setStatus(Status.FAILED);
+    flow1.setEndTime(1000L);
+    final ExecutableFlow flow3 = cache.get(EXEC_ID);
+    assertThat(flow3.getStatus()).isEqualTo(Status.RUNNING);
+    assertThat(flow3.getEndTime()).isEqualTo(this.flow.getEndTime());
+    verify(this.loader, times(1)).fetchEncodedExecutableFlow(EXEC_ID);
+  }
+
+  @Test
+  public void testAppendedUpdatesAreApplied() throws Exception {
+    this.flow.setStatus(Status.RUNNING);
+    final EncodedExecutableFlow encodedFlow = encode(this.flow);
+    final ExecutableNode node = this.flow.getExecutableNodes().get(0);
+    node.setStatus(Status.SUCCEEDED);
+    node.setUpdateTime(200L);
+    this.flow.setUpdateTime(200L);
+    final byte[] update = GZIPUtils.gzipJSON(this.flow.toUpdateObject(100L));
+    when(this.loader.fetchEncodedExecutableFlow(EXEC_ID)).thenReturn(encodedFlow.withUpdates(
+        Collections.singletonList(new Pair<>(EncodingType.GZIP, update))));
+    final ExecutableFlowCache cache = new ExecutableFlowCache(new Props(), this.loader,
+        this.commonMetrics);
+
+    assertThat(cache.get(EXEC_ID).getExecutableNode(node.getId()).getStatus())
+        .isEqualTo(Status.SUCCEEDED);
+    assertThat(cache.get(EXEC_ID).getExecutableNode(node.getId()).getStatus())
+        .isEqualTo(Status.SUCCEEDED);
+  }
+
+  @Test
+  public void testUpdatedFlowIsFetchedAgain() throws Exception {
+    final ExecutableFlowCache cache = new ExecutableFlowCache(new Props(), this.loader,
+        this.commonMetrics);
+    cache.get(EXEC_ID);
+    when(this.loader.fetchExecutableFlowUpdateTime(EXEC_ID)).thenReturn(200L);
+    cache.get(EXEC_ID);
+
+    verify(this.loader, times(2)).fetchEncodedExecutableFlow(EXEC_ID);
+  }
+
+  @Test
+  public void testInvalidate() throws Exception {
+    final ExecutableFlowCache cache = new ExecutableFlowCache(new Props(), this.loader,
+        this.commonMetrics);
+    cache.get(EXEC_ID);
+    cache.invalidate(EXEC_ID);
+    cache.get(EXEC_ID);
+
+    verify(this.loader, times(2)).fetchEncodedExecutableFlow(EXEC_ID);
+  }
+
+  @Test
+  public void testFlowsAreEvictedBeyondMaxSize() throws Exception {
+    // A flow parameter that doesn't compress much makes the flow data larger than the cache
+    this.flow.getExecutionOptions().addAllFlowParameters(
+        Collections.singletonMap("large", RandomStringUtils.randomAlphanumeric(2 * 1024 * 1024)));
+    when(this.loader.fetchEncodedExecutableFlow(EXEC_ID)).thenReturn(encode(this.flow));
+    final ExecutableFlow flow2 = TestUtils.createTestExecutableFlow("exectest1", "exec2");
+    when(this.loader.fetchEncodedExecutableFlow(2)).thenReturn(encode(flow2));
+    final Props props = new Props();
+    props.put(ConfigurationKeys.EXECUTABLE_FLOW_CACHE_MAX_SIZE_MB, 1);
+    final ExecutableFlowCache cache = new ExecutableFlowCache(props, this.loader,
+        this.commonMetrics);
+    cache.get(EXEC_ID);
+    cache.get(2);
+
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(getCount(CommonMetrics.EXECUTABLE_FLOW_CACHE_EVICTION_METER_NAME)).isEqualTo(1);
+  }
+
+  @Test
+  public void testDisabledCache() throws Exception {
+    when(this.loader.fetchExecutableFlow(EXEC_ID)).thenReturn(this.flow);
+    final Props props = new Props();
+    props.put(ConfigurationKeys.EXECUTABLE_FLOW_CACHE_MAX_SIZE_MB, 0);
+    final ExecutableFlowCache cache = new ExecutableFlowCache(props, this.loader,
+        this.commonMetrics);
+    assertThat(cache.get(EXEC_ID)).isSameAs(this.flow);
+    cache.get(EXEC_ID);
+
+    verify(this.loader, times(2)).fetchExecutableFlow(EXEC_ID);
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  private static EncodedExecutableFlow encode(final ExecutableFlow flow) throws Exception {
+    return new EncodedExecutableFlow(flow.getExecutionId(), EncodingType.GZIP,
+        GZIPUtils.gzipJSON(flow.toObject()), flow.getStatus(), flow.getUpdateTime(),
+        Collections.emptyList());
+  }
+
+  private long getCount(final String meterName) {
+    return this.metricRegistry.meter(meterName).getCount();
+  }
+}
@@ -82,7 +82,9 @@ public class ExecutionControllerTest {
     this.alertHolder = mock(AlerterHolder.class);
     this.executorHealthChecker = mock(ExecutorHealthChecker.class);
     this.controller = new ExecutionController(this.props, this.loader, this.commonMetrics,
-        this.apiGateway, this.alertHolder, this.executorHealthChecker);
+        this.apiGateway, this.alertHolder, this.executorHealthChecker,
+        new ExecutableFlowCache(this.props, this.loader, this.commonMetrics),
+        new ExecutionStatusFeed(this.props));
 
     final Executor executor1 = new Executor(1, "localhost", 12345, true);
     final Executor executor2 = new Executor(2, "localhost", 12346, true);
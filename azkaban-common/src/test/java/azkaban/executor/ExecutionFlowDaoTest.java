@@ -94,6 +94,7 @@ public class ExecutionFlowDaoTest {
   public void clearDB() {
     try {
       dbOperator.update("DELETE FROM execution_flows");
+      dbOperator.update("DELETE FROM execution_flow_updates");
       dbOperator.update("DELETE FROM executors");
       dbOperator.update("DELETE FROM projects");
     } catch (final SQLException e) {
@@ -147,6 +148,95 @@ public class ExecutionFlowDaoTest {
     assertTwoFlowSame(fetchFlow, fetchFlow2);
   }
 
+  @Test
+  public void testAppendAndCompactExecutableFlowUpdates() throws Exception {
+    final ExecutableFlow flow = createTestFlow();
+    flow.setStatus(Status.RUNNING);
+    flow.setUpdateTime(1000L);
+    this.executionFlowDao.uploadExecutableFlow(flow);
+
+    final ExecutableNode job = flow.getExecutableNode("job1");
+    job.setStatus(Status.SUCCEEDED);
+    job.setUpdateTime(2000L);
+    flow.setUpdateTime(2000L);
+    this.executionFlowDao.appendExecutableFlowUpdate(flow, 1000L);
+
+    final ExecutableFlow fetchFlow =
+        this.executionFlowDao.fetchExecutableFlow(flow.getExecutionId());
+    assertThat(fetchFlow.getStatus()).isEqualTo(Status.RUNNING);
+    assertThat(fetchFlow.getUpdateTime()).isEqualTo(2000L);
+    assertThat(fetchFlow.getExecutableNode("job1").getStatus()).isEqualTo(Status.SUCCEEDED);
+    final EncodedExecutableFlow encodedFlow =
+        this.executionFlowDao.fetchEncodedExecutableFlow(flow.getExecutionId());
+    assertThat(encodedFlow.getUpdateTime()).isEqualTo(2000L);
+    assertThat(encodedFlow.decode().getExecutableNode("job1").getStatus())
+        .isEqualTo(Status.SUCCEEDED);
+
+    flow.setStatus(Status.SUCCEEDED);
+    flow.setUpdateTime(3000L);
+    this.executionFlowDao.compactExecutableFlow(flow);
+
+    assertThat(dbOperator.query("SELECT COUNT(*) FROM execution_flow_updates",
+        rs -> rs.next() ? rs.getInt(1) : 0)).isEqualTo(0);
+    final ExecutableFlow fetchFlow2 =
+        this.executionFlowDao.fetchExecutableFlow(flow.getExecutionId());
+    assertTwoFlowSame(flow, fetchFlow2);
+    assertThat(fetchFlow2.getExecutableNode("job1").getStatus()).isEqualTo(Status.SUCCEEDED);
+  }
+
+  @Test
+  public void testUpdateExecutableFlowDropsAppendedUpdates() throws Exception {
+    final ExecutableFlow flow = createTestFlow();
+    flow.setStatus(Status.RUNNING);
+    flow.setUpdateTime(1000L);
+    this.executionFlowDao.uploadExecutableFlow(flow);
+
+    final ExecutableNode job = flow.getExecutableNode("job1");
+    job.setStatus(Status.RUNNING);
+    job.setUpdateTime(2000L);
+    flow.setUpdateTime(2000L);
+    this.executionFlowDao.appendExecutableFlowUpdate(flow, 1000L);
+
+    // The web server finalizes the flow it fetched by rewriting it in full.
+    final ExecutableFlow fetchFlow =
+        this.executionFlowDao.fetchExecutableFlow(flow.getExecutionId());
+    fetchFlow.getExecutableNode("job1").setStatus(Status.KILLED);
+    fetchFlow.setStatus(Status.KILLED);
+    fetchFlow.setUpdateTime(3000L);
+    this.executionFlowDao.updateExecutableFlow(fetchFlow);
+
+    assertThat(dbOperator.query("SELECT COUNT(*) FROM execution_flow_updates",
+        rs -> rs.next() ? rs.getInt(1) : 0)).isEqualTo(0);
+    final ExecutableFlow fetchFlow2 =
+        this.executionFlowDao.fetchExecutableFlow(flow.getExecutionId());
+    assertThat(fetchFlow2.getExecutableNode("job1").getStatus()).isEqualTo(Status.KILLED);
+  }
+
+  @Test
+  public void testFetchActiveFlowsAppliesAppendedUpdates() throws Exception {
+    final Executor executor = this.executorDao.addExecutor("test", 1);
+    final ExecutableFlow flow = createExecutionAndAssign(Status.RUNNING, executor);
+    final long lastUpdateTime = flow.getUpdateTime();
+
+    final ExecutableNode job = flow.getExecutableNode("job1");
+    job.setStatus(Status.SUCCEEDED);
+    job.setUpdateTime(lastUpdateTime + 1000);
+    flow.setUpdateTime(lastUpdateTime + 1000);
+    this.executionFlowDao.appendExecutableFlowUpdate(flow, lastUpdateTime);
+
+    final ExecutableFlow activeFlow = this.fetchActiveFlowDao.fetchActiveFlows()
+        .get(flow.getExecutionId()).getSecond();
+    assertThat(activeFlow.getExecutableNode("job1").getStatus()).isEqualTo(Status.SUCCEEDED);
+    final ExecutableFlow unfinishedFlow = this.fetchActiveFlowDao.fetchUnfinishedFlows()
+        .get(flow.getExecutionId()).getSecond();
+    assertThat(unfinishedFlow.getExecutableNode("job1").getStatus()).isEqualTo(Status.SUCCEEDED);
+    final ExecutableFlow activeFlowById = this.fetchActiveFlowDao
+        .fetchActiveFlowByExecId(flow.getExecutionId()).getSecond();
+    assertThat(activeFlowById.getExecutableNode("job1").getStatus()).isEqualTo(Status.SUCCEEDED);
+    final ExecutableFlow historyFlow = this.executionFlowDao.fetchFlowHistory(0, 1).get(0);
+    assertThat(historyFlow.getExecutableNode("job1").getStatus()).isEqualTo(Status.SUCCEEDED);
+  }
+
   @Test
   public void fetchFlowHistory() throws Exception {
     final ExecutableFlow flow = createTestFlow();
@@ -252,6 +342,34 @@ public class ExecutionFlowDaoTest {
     assertTwoFlowSame(flow2, fetchedFlow2.getSecond());
   }
 
+  @Test
+  public void testFetchQueuedExecutions() throws Exception {
+    // TestUtils flows belong to project 1 named "flow"
+    dbOperator.update("INSERT INTO projects (id, name, active, modified_time, create_time, "
+        + "last_modified_by) VALUES (1, 'flow', true, 0, 0, 'testUser')");
+    final long submitTime = System.currentTimeMillis();
+    final ExecutableFlow flow1 = submitNewFlow("exectest1", "exec1", submitTime, 3);
+    final ExecutableFlow flow2 = submitNewFlow("exectest1", "exec2", submitTime, 5);
+    final ExecutableFlow flow3 = submitNewFlow("exectest1", "exec1", submitTime, 5);
+
+    final List<QueuedExecution> page1 = this.executionFlowDao.fetchQueuedExecutions(0, 2);
+    assertThat(page1).extracting(QueuedExecution::getExecId)
+        .containsExactly(flow1.getExecutionId(), flow2.getExecutionId());
+    final QueuedExecution queued1 = page1.get(0);
+    assertThat(queued1.getProjectId()).isEqualTo(flow1.getProjectId());
+    assertThat(queued1.getProjectName()).isEqualTo("flow");
+    assertThat(queued1.getFlowId()).isEqualTo(flow1.getFlowId());
+    assertThat(queued1.getSubmitUser()).isEqualTo("testUser");
+    assertThat(queued1.getSubmitTime()).isEqualTo(submitTime);
+    assertThat(queued1.getPriority()).isEqualTo(3);
+    assertThat(queued1.getUseExecutor()).isNull();
+
+    final List<QueuedExecution> page2 =
+        this.executionFlowDao.fetchQueuedExecutions(flow2.getExecutionId(), 2);
+    assertThat(page2).extracting(QueuedExecution::getExecId)
+        .containsExactly(flow3.getExecutionId());
+  }
+
   @Test
   public void testFetchStaleFlows() throws Exception {
     long preThresholdTimeMs = System.currentTimeMillis();
@@ -518,8 +636,8 @@ public class ExecutionFlowDaoTest {
     flow.setSubmitTime(System.currentTimeMillis());
     this.executionFlowDao.uploadExecutableFlow(flow);
     final Executor executor = this.executorDao.addExecutor("localhost", 12345);
-    assertThat(this.executionFlowDao.selectAndUpdateExecution(executor.getId(), true))
-        .isEqualTo(flow.getExecutionId());
+    assertThat(this.executionFlowDao.selectAndUpdateExecutions(executor.getId(), true, 1, false))
+        .containsExactly(flow.getExecutionId());
     assertThat(this.executorDao.fetchExecutorByExecutionId(flow.getExecutionId())).isEqualTo
         (executor);
   }
@@ -639,9 +757,9 @@ public class ExecutionFlowDaoTest {
   @Test
   public void testSelectAndUpdateExecutionWithPriority() throws Exception {
     // Selecting executions when DB is empty
-    assertThat(this.executionFlowDao.selectAndUpdateExecution(-1, true))
+    assertThat(this.executionFlowDao.selectAndUpdateExecutions(-1, true, 1, false))
         .as("Expected no execution selected")
-        .isEqualTo(-1);
+        .isEmpty();
 
     final long currentTime = System.currentTimeMillis();
     final ExecutableFlow lowPriorityFlow1 = submitNewFlow("exectest1", "exec1", currentTime,
@@ -653,30 +771,57 @@ public class ExecutionFlowDaoTest {
     final ExecutableFlow lowPriorityFlow2 = submitNewFlow("exectest1", "exec1", currentTime + 10,
         ExecutionOptions.DEFAULT_FLOW_PRIORITY + 3);
 
-    assertThat(this.executionFlowDao.selectAndUpdateExecution(-1, true))
+    assertThat(this.executionFlowDao.selectAndUpdateExecutions(-1, true, 1, false))
         .as("Expected flow with highest priority")
-        .isEqualTo(highPriorityFlow.getExecutionId());
+        .containsExactly(highPriorityFlow.getExecutionId());
 
-    assertThat(this.executionFlowDao.selectAndUpdateExecution(-1, true))
+    assertThat(this.executionFlowDao.selectAndUpdateExecutions(-1, true, 1, false))
         .as("Expected second flow with highest priority")
-        .isEqualTo(lowPriorityFlow2.getExecutionId());
+        .containsExactly(lowPriorityFlow2.getExecutionId());
 
-    assertThat(this.executionFlowDao.selectAndUpdateExecution(-1, true))
+    assertThat(this.executionFlowDao.selectAndUpdateExecutions(-1, true, 1, false))
         .as("Expected flow with lowest priority")
-        .isEqualTo(lowPriorityFlow1.getExecutionId());
+        .containsExactly(lowPriorityFlow1.getExecutionId());
 
     // Selecting executions when there are no more submitted flows left
-    assertThat(this.executionFlowDao.selectAndUpdateExecution(-1, true))
+    assertThat(this.executionFlowDao.selectAndUpdateExecutions(-1, true, 1, false))
+        .as("Expected no execution selected")
+        .isEmpty();
+  }
+
+  @Test
+  public void testSelectAndUpdateExecutions() throws Exception {
+    final long currentTime = System.currentTimeMillis();
+    final ExecutableFlow lowPriorityFlow = submitNewFlow("exectest1", "exec1", currentTime,
+        ExecutionOptions.DEFAULT_FLOW_PRIORITY);
+    final ExecutableFlow highPriorityFlow = submitNewFlow("exectest1", "exec1", currentTime + 5,
+        ExecutionOptions.DEFAULT_FLOW_PRIORITY + 5);
+    final ExecutableFlow mediumPriorityFlow = submitNewFlow("exectest1", "exec1",
+        currentTime + 10, ExecutionOptions.DEFAULT_FLOW_PRIORITY + 3);
+    final Executor executor = this.executorDao.addExecutor("localhost", 12345);
+
+    assertThat(this.executionFlowDao.selectAndUpdateExecutions(executor.getId(), true, 2, false))
+        .as("Expected the two flows with highest priority")
+        .containsExactly(highPriorityFlow.getExecutionId(), mediumPriorityFlow.getExecutionId());
+    assertThat(this.executorDao.fetchExecutorByExecutionId(highPriorityFlow.getExecutionId()))
+        .isEqualTo(executor);
+    assertThat(this.executorDao.fetchExecutorByExecutionId(mediumPriorityFlow.getExecutionId()))
+        .isEqualTo(executor);
+
+    assertThat(this.executionFlowDao.selectAndUpdateExecutions(executor.getId(), true, 2, false))
+        .as("Expected the remaining flow")
+        .containsExactly(lowPriorityFlow.getExecutionId());
+    assertThat(this.executionFlowDao.selectAndUpdateExecutions(executor.getId(), true, 2, false))
         .as("Expected no execution selected")
-        .isEqualTo(-1);
+        .isEmpty();
   }
 
   @Test
   public void testSelectAndUpdateExecutionWithSamePriority() throws Exception {
     // Selecting executions when DB is empty
-    assertThat(this.executionFlowDao.selectAndUpdateExecution(-1, true))
+    assertThat(this.executionFlowDao.selectAndUpdateExecutions(-1, true, 1, false))
         .as("Expected no execution selected")
-        .isEqualTo(-1);
+        .isEmpty();
 
     final long currentTime = System.currentTimeMillis();
     final ExecutableFlow submittedFlow1 = submitNewFlow("exectest1", "exec1", currentTime,
@@ -688,22 +833,22 @@ public class ExecutionFlowDaoTest {
     final ExecutableFlow submittedFlow3 = submitNewFlow("exectest1", "exec1", currentTime + 10,
         ExecutionOptions.DEFAULT_FLOW_PRIORITY + 3);
 
-    assertThat(this.executionFlowDao.selectAndUpdateExecution(-1, true))
+    assertThat(this.executionFlowDao.selectAndUpdateExecutions(-1, true, 1, false))
         .as("Expected first flow submitted")
-        .isEqualTo(submittedFlow1.getExecutionId());
+        .containsExactly(submittedFlow1.getExecutionId());
 
-    assertThat(this.executionFlowDao.selectAndUpdateExecution(-1, true))
+    assertThat(this.executionFlowDao.selectAndUpdateExecutions(-1, true, 1, false))
         .as("Expected second flow submitted")
-        .isEqualTo(submittedFlow2.getExecutionId());
+        .containsExactly(submittedFlow2.getExecutionId());
 
-    assertThat(this.executionFlowDao.selectAndUpdateExecution(-1, true))
+    assertThat(this.executionFlowDao.selectAndUpdateExecutions(-1, true, 1, false))
         .as("Expected last flow submitted")
-        .isEqualTo(submittedFlow3.getExecutionId());
+        .containsExactly(submittedFlow3.getExecutionId());
 
     // Selecting executions when there are no more submitted flows left
-    assertThat(this.executionFlowDao.selectAndUpdateExecution(-1, true))
+    assertThat(this.executionFlowDao.selectAndUpdateExecutions(-1, true, 1, false))
         .as("Expected no execution selected")
-        .isEqualTo(-1);
+        .isEmpty();
   }
 
   @Test
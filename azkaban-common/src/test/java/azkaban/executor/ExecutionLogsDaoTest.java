@@ -18,10 +18,13 @@ package azkaban.executor;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import azkaban.Constants.ConfigurationKeys;
 import azkaban.db.DatabaseOperator;
 import azkaban.test.Utils;
 import azkaban.test.executions.ExecutionsTestUtil;
 import azkaban.utils.FileIOUtils.LogData;
+import azkaban.utils.Pair;
+import azkaban.utils.Props;
 import java.io.File;
 import java.sql.SQLException;
 import org.junit.After;
@@ -111,42 +114,65 @@ public class ExecutionLogsDaoTest {
   }
 
   @Test
-  public void testLogCleanup() throws ExecutorManagerException {
-    final File logDir = ExecutionsTestUtil.getFlowDir(LOG_TEST_DIR_NAME);
-    // Multiple of 255 for Henry the Eigth
-    final File[] largeLog1 =
-        {new File(logDir, "largeLog1.log")};
-
-    this.executionLogsDao.uploadLogFile(1, "largeFiles", 0, largeLog1);
-
-    final long currentTimeMillis = System.currentTimeMillis() + 1000;
-    int totalRemovedRecords = executionLogsDao.removeExecutionLogsByTime(currentTimeMillis, 2);
-    assertThat(totalRemovedRecords).isEqualTo(3);
-
-    // Multiple of 255 for Henry the Eigth
-    final File[] largeLog2 =
-        {new File(logDir, "largeLog2.log")};
-
-    this.executionLogsDao.uploadLogFile(2, "largeFiles", 0, largeLog2);
+  public void testDeflateUploadLog() throws ExecutorManagerException {
+    testUploadLogWithEncoding("deflate");
+  }
 
-    final long currentTimeMillisSecond = System.currentTimeMillis() + 1000;
-    totalRemovedRecords = executionLogsDao.removeExecutionLogsByTime(currentTimeMillisSecond, 3);
-    assertThat(totalRemovedRecords).isEqualTo(1);
+  @Test
+  public void testDeflateBlocksUploadLog() throws ExecutorManagerException {
+    testUploadLogWithEncoding("deflate_blocks");
+  }
 
-    // Multiple of 255 for Henry the Eigth
-    final File[] largeLogMultiple =
-        {new File(logDir, "largeLog2.log")};
+  private void testUploadLogWithEncoding(final String encodingType)
+      throws ExecutorManagerException {
+    final File logDir = ExecutionsTestUtil.getFlowDir(LOG_TEST_DIR_NAME);
+    final File[] largelog =
+        {new File(logDir, "largeLog1.log"), new File(logDir, "largeLog2.log"),
+            new File(logDir, "largeLog3.log")};
+    final Props props = new Props();
+    props.put(ConfigurationKeys.EXECUTION_LOGS_ENCODING_TYPE, encodingType);
+    props.put(ConfigurationKeys.EXECUTION_LOGS_UPLOAD_THREADS, 2);
+    final ExecutionLogsDao deflateLogsDao = new ExecutionLogsDao(dbOperator, props);
 
-    this.executionLogsDao.uploadLogFile(3, "largeFiles", 0, largeLogMultiple);
+    deflateLogsDao.uploadLogFile(1, "largeFiles", 0, largelog);
 
-    // Multiple of 255 for Henry the Eigth
-    final File[] largeLog4 =
-        {new File(logDir, "largeLog1.log")};
+    final LogData logsResult = deflateLogsDao.fetchLogs(1, "largeFiles", 0, 0, 64000);
+    assertThat(logsResult).isNotNull();
+    assertThat(logsResult.getLength()).isEqualTo(64000);
 
-    this.executionLogsDao.uploadLogFile(4, "largeFiles", 0, largeLog4);
+    final LogData logsResult2 = deflateLogsDao.fetchLogs(1, "largeFiles", 0, 150000, 250000);
+    assertThat(logsResult2).isNotNull();
+    assertThat(logsResult2.getLength()).isEqualTo(185493);
+    // Logs written with either encoding read the same
+    assertThat(this.executionLogsDao.fetchLogs(1, "largeFiles", 0, 1000, 64000).getData())
+        .isEqualTo(deflateLogsDao.fetchLogs(1, "largeFiles", 0, 1000, 64000).getData());
+  }
 
-    final long currentTimeMillis2 = System.currentTimeMillis() + 1000;
-    totalRemovedRecords = executionLogsDao.removeExecutionLogsByTime(currentTimeMillis2, 2);
-    assertThat(totalRemovedRecords).isEqualTo(4);
+  @Test
+  public void testLogCleanupByRange() throws ExecutorManagerException {
+    final File logDir = ExecutionsTestUtil.getFlowDir(LOG_TEST_DIR_NAME);
+    final File[] largeLog1 = {new File(logDir, "largeLog1.log")};
+    final File[] largeLog2 = {new File(logDir, "largeLog2.log")};
+    this.executionLogsDao.uploadLogFile(11, "largeFiles", 0, largeLog1);
+    this.executionLogsDao.uploadLogFile(12, "largeFiles", 0, largeLog2);
+    this.executionLogsDao.uploadLogFile(13, "largeFiles", 0, largeLog2);
+
+    final long cutoff = System.currentTimeMillis() + 1000;
+    final Pair<Integer, Integer> execIds =
+        this.executionLogsDao.fetchExecutionLogsExecIdRange(cutoff);
+    assertThat(execIds.getFirst()).isEqualTo(11);
+    assertThat(execIds.getSecond()).isEqualTo(13);
+    assertThat(this.executionLogsDao.fetchExecutionLogsExecIdRange(0)).isNull();
+
+    final Pair<Integer, Long> removed =
+        this.executionLogsDao.removeExecutionLogsByRange(11, 13, cutoff);
+    assertThat(removed.getFirst()).isEqualTo(4);
+    assertThat(removed.getSecond()).isPositive();
+    assertThat(this.executionLogsDao.fetchLogs(11, "largeFiles", 0, 0, 100)).isNull();
+    assertThat(this.executionLogsDao.fetchLogs(13, "largeFiles", 0, 0, 100)).isNotNull();
+
+    // Logs uploaded after the cutoff are kept
+    assertThat(this.executionLogsDao.removeExecutionLogsByRange(13, 14, 0).getFirst())
+        .isEqualTo(0);
   }
 }
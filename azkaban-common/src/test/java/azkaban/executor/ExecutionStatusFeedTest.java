@@ -0,0 +1,154 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package azkaban.executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import azkaban.Constants.ConfigurationKeys;
+import azkaban.utils.Props;
+import azkaban.utils.TestUtils;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExecutionStatusFeedTest {
+
+  private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+  private ExecutionStatusFeed feed;
+  private ExecutableFlow flow;
+
+  @Before
+  public void setUp() throws Exception {
+    final Props props = new Props();
+    props.put(ConfigurationKeys.EXECUTION_STATUS_PUSH_TIMEOUT_MS, 200);
+    this.feed = new ExecutionStatusFeed(props);
+    this.flow = TestUtils.createTestExecutableFlow("exectest1", "exec1");
+    this.flow.setExecutionId(1);
+    this.flow.setUpdateTime(100);
+  }
+
+  @After
+  public void tearDown() {
+    this.executorService.shutdownNow();
+  }
+
+  @Test
+  public void testUntrackedExecutionNeedsResync() throws Exception {
+    assertThat(this.feed.waitForUpdates(1, 100)).isEmpty();
+  }
+
+  @Test
+  public void testWaitTimesOutWithoutUpdates() throws Exception {
+    this.feed.publish(this.flow, 100);
+    final Optional<List<Map<String, Object>>> updates = this.feed.waitForUpdates(1, 100);
+    assertThat(updates).isPresent();
+    assertThat(updates.get()).isEmpty();
+  }
+
+  @Test
+  public void testWaiterGetsPublishedUpdate() throws Exception {
+    final Props props = new Props();
+    props.put(ConfigurationKeys.EXECUTION_STATUS_PUSH_TIMEOUT_MS, 10000);
+    this.feed = new ExecutionStatusFeed(props);
+    this.feed.publish(this.flow, 100);
+    final Future<Optional<List<Map<String, Object>>>> future =
+        this.executorService.submit(() -> this.feed.waitForUpdates(1, 100));
+
+    final ExecutableNode node = this.flow.getExecutableNodes().get(0);
+    node.setStatus(Status.RUNNING);
+    node.setUpdateTime(200);
+    this.flow.setStatus(Status.RUNNING);
+    this.flow.setUpdateTime(200);
+    this.feed.publish(this.flow, 100);
+
+    final List<Map<String, Object>> updates = future.get(5, TimeUnit.SECONDS).get();
+    assertThat(updates).hasSize(1);
+    final Map<String, Object> update = updates.get(0);
+    assertThat(update.get("status")).isEqualTo(Status.RUNNING);
+    assertThat(update.get("updateTime")).isEqualTo(200L);
+    assertThat((List<?>) update.get("nodes")).hasSize(1);
+  }
+
+  @Test
+  public void testOnlyUpdatesAfterLastUpdateTimeAreReturned() throws Exception {
+    this.feed.publish(this.flow, 100);
+    this.flow.setUpdateTime(200);
+    this.feed.publish(this.flow, 100);
+    this.flow.setUpdateTime(300);
+    this.feed.publish(this.flow, 200);
+
+    final List<Map<String, Object>> updates = this.feed.waitForUpdates(1, 200).get();
+    assertThat(updates).hasSize(1);
+    assertThat(updates.get(0).get("updateTime")).isEqualTo(300L);
+  }
+
+  @Test
+  public void testDroppedUpdatesNeedResync() throws Exception {
+    this.feed.publish(this.flow, 100);
+    long updateTime = 100;
+    for (int i = 0; i < 100; i++) {
+      this.flow.setUpdateTime(updateTime + 1);
+      this.feed.publish(this.flow, updateTime++);
+    }
+
+    assertThat(this.feed.waitForUpdates(1, 100)).isEmpty();
+    assertThat(this.feed.waitForUpdates(1, updateTime - 1).get()).hasSize(1);
+  }
+
+  @Test
+  public void testRemovedExecutionNeedsResync() throws Exception {
+    this.feed.publish(this.flow, 100);
+    this.feed.remove(1);
+    assertThat(this.feed.waitForUpdates(1, 100)).isEmpty();
+  }
+
+  @Test
+  public void testProjectIdOfTrackedExecution() {
+    assertThat(this.feed.getProjectId(1)).isEmpty();
+    this.feed.publish(this.flow, 100);
+    assertThat(this.feed.getProjectId(1)).hasValue(this.flow.getProjectId());
+    this.feed.remove(1);
+    assertThat(this.feed.getProjectId(1)).isEmpty();
+  }
+
+  @Test
+  public void testTooManyWaitersNeedResync() throws Exception {
+    final Props props = new Props();
+    props.put(ConfigurationKeys.EXECUTION_STATUS_PUSH_MAX_WAITERS, 0);
+    this.feed = new ExecutionStatusFeed(props);
+    this.feed.publish(this.flow, 100);
+    assertThat(this.feed.waitForUpdates(1, 100)).isEmpty();
+  }
+
+  @Test
+  public void testMaxWaitersDefaultsToAShareOfTheJettyThreads() {
+    final Props props = new Props();
+    assertThat(ExecutionStatusFeed.getMaxWaiters(props)).isEqualTo(5);
+    props.put("jetty.maxThreads", 200);
+    assertThat(ExecutionStatusFeed.getMaxWaiters(props)).isEqualTo(50);
+    props.put("jetty.maxThreads", 2);
+    assertThat(ExecutionStatusFeed.getMaxWaiters(props)).isEqualTo(1);
+    props.put(ConfigurationKeys.EXECUTION_STATUS_PUSH_MAX_WAITERS, 8);
+    assertThat(ExecutionStatusFeed.getMaxWaiters(props)).isEqualTo(8);
+  }
+}
@@ -18,13 +18,16 @@ package azkaban.executor;
 import static azkaban.Constants.ConfigurationKeys.AZKABAN_EXECUTOR_REVERSE_PROXY_ENABLED;
 import static azkaban.Constants.ConfigurationKeys.AZKABAN_EXECUTOR_REVERSE_PROXY_HOSTNAME;
 import static azkaban.Constants.ConfigurationKeys.AZKABAN_EXECUTOR_REVERSE_PROXY_PORT;
+import static azkaban.Constants.ConfigurationKeys.EXECUTOR_CONNECTION_POOL_ENABLED;
 import static azkaban.Constants.ConfigurationKeys.EXECUTOR_CONNECTION_TLS_ENABLED;
 import static azkaban.Constants.JETTY_TRUSTSTORE_PASSWORD;
 import static azkaban.Constants.JETTY_TRUSTSTORE_PATH;
 
+import azkaban.metrics.MetricsManager;
 import azkaban.utils.Pair;
 import azkaban.utils.Props;
 import azkaban.utils.UndefinedPropertyException;
+import com.codahale.metrics.MetricRegistry;
 import java.io.IOException;
 import java.net.URI;
 import javax.net.ssl.SSLHandshakeException;
@@ -145,6 +148,35 @@ public class ExecutorApiClientTest {
     Assert.assertEquals(SimpleServlet.GET_RESPONSE_STRING, getResponse);
   }
 
+  @Test
+  public void testPooledConnectionsAndMetrics() throws Exception {
+    final MetricRegistry registry = new MetricRegistry();
+    final ExecutorApiClient tlsEnabledClient =
+        new ExecutorApiClient(this.tlsEnabledProps, new MetricsManager(registry));
+    Assert.assertNotNull(tlsEnabledClient.getConnectionManager());
+
+    for (int i = 0; i < 2; i++) {
+      final String postResponse = tlsEnabledClient
+          .httpPost(new URI(SimpleServlet.TLS_ENABLED_URI), null);
+      Assert.assertEquals(SimpleServlet.POST_RESPONSE_STRING, postResponse);
+    }
+
+    // connections are released back to the pool once the response is consumed
+    Assert.assertEquals(0,
+        tlsEnabledClient.getConnectionManager().getTotalStats().getLeased());
+    Assert.assertEquals(2,
+        registry.histogram("executor-api-latency-localhost:" + JETTY_TLS_PORT).getCount());
+  }
+
+  @Test
+  public void testConnectionPoolDisabled() {
+    final Props props = new Props();
+    props.put(EXECUTOR_CONNECTION_POOL_ENABLED, "false");
+    final ExecutorApiClient client = new ExecutorApiClient(props);
+    Assert.assertNull(client.getConnectionManager());
+    Assert.assertNull(client.getSharedHttpClient());
+  }
+
   @Test
   public void testCreateDefaultExecutorApiClient() {
     final ExecutorApiClient tlsDisabledClient = new ExecutorApiClient(new Props());
@@ -53,6 +53,7 @@ public class ExecutorHealthCheckerTest {
   private ExecutorApiGateway apiGateway;
   private Alerter mailAlerter;
   private AlerterHolder alerterHolder;
+  private ExecutableFlowCache executableFlowCache;
   private ExecutableFlow flow1;
   private ExecutableFlow flow2;
   private Executor executor1;
@@ -67,8 +68,10 @@ public class ExecutorHealthCheckerTest {
     this.mailAlerter = mock(Alerter.class);
     this.alerterHolder = mock(AlerterHolder.class);
     this.apiGateway = mock(ExecutorApiGateway.class);
+    this.executableFlowCache = mock(ExecutableFlowCache.class);
     this.executorHealthChecker = new ExecutorHealthChecker(this.props, this.loader, this
-        .apiGateway, this.alerterHolder);
+        .apiGateway, this.alerterHolder, this.executableFlowCache,
+        new ExecutionStatusFeed(this.props));
     this.flow1 = TestUtils.createTestExecutableFlow("exectest1", "exec1");
     this.flow1.getExecutionOptions().setFailureEmails(Arrays.asList(FLOW_ADMIN_EMAIL.split(",")));
     this.flow1.setExecutionId(EXECUTION_ID_11);
@@ -106,9 +109,13 @@ public class ExecutorHealthCheckerTest {
     this.activeFlows.put(EXECUTION_ID_11, new Pair<>(
         new ExecutionReference(EXECUTION_ID_11, null), this.flow1));
     when(this.loader.fetchExecutableFlow(EXECUTION_ID_11)).thenReturn(this.flow1);
+    this.flow1.setUpdateTime(1L);
     this.executorHealthChecker.checkExecutorHealth();
     verify(this.loader).updateExecutableFlow(this.flow1);
     assertThat(this.flow1.getStatus()).isEqualTo(Status.FAILED);
+    // The finalized flow must not be served from the flow cache anymore
+    assertThat(this.flow1.getUpdateTime()).isGreaterThan(1L);
+    verify(this.executableFlowCache).invalidate(EXECUTION_ID_11);
   }
 
   /**
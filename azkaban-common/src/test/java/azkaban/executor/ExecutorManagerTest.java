@@ -18,6 +18,7 @@ package azkaban.executor;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.any;
@@ -150,17 +151,23 @@ public class ExecutorManagerTest {
       throws ExecutorManagerException {
     // TODO rename this test to ExecutorManagerIntegrationTest & create separate unit tests as well?
     final ActiveExecutors activeExecutors = new ActiveExecutors(this.loader);
+    final ExecutableFlowCache executableFlowCache = new ExecutableFlowCache(this.props,
+        this.loader, this.commonMetrics);
+    final ExecutionStatusFeed executionStatusFeed = new ExecutionStatusFeed(this.props);
     final ExecutionFinalizer executionFinalizer = new ExecutionFinalizer(this.loader,
-        this.updaterStage, this.alertHolder, this.runningExecutions);
+        this.updaterStage, this.alertHolder, this.runningExecutions, executableFlowCache,
+        executionStatusFeed);
     final RunningExecutionsUpdaterThread updaterThread = new RunningExecutionsUpdaterThread(
-        new RunningExecutionsUpdater(
+        new RunningExecutionsUpdater(this.props,
             this.updaterStage, this.alertHolder, this.commonMetrics, this.apiGateway,
-            this.runningExecutions, executionFinalizer, this.loader), this.runningExecutions);
+            this.runningExecutions, executionFinalizer, this.loader, executableFlowCache,
+            executionStatusFeed),
+        this.runningExecutions);
     updaterThread.waitTimeIdleMs = 0;
     updaterThread.waitTimeMs = 0;
     final ExecutorManager executorManager = new ExecutorManager(this.props, this.loader,
         this.commonMetrics, this.apiGateway, this.runningExecutions, activeExecutors,
-        this.updaterStage, executionFinalizer, updaterThread);
+        this.updaterStage, executionFinalizer, updaterThread, executableFlowCache);
     executorManager.setSleepAfterDispatchFailure(Duration.ZERO);
     executorManager.initialize();
     return executorManager;
@@ -256,6 +263,7 @@ public class ExecutorManagerTest {
         .stream().map(ExecutableFlow::getExecutionId).collect(Collectors.toList());
     Assert.assertTrue(managerActiveFlows.containsAll(testFlows)
         && testFlows.containsAll(managerActiveFlows));
+    Assert.assertEquals(testFlows.size(), manager.getNumRunningFlows());
 
     // Verify getQueuedFlowIds method
     Assert.assertEquals("[1, 2]", manager.getQueuedFlowIds());
@@ -627,6 +635,28 @@ public class ExecutorManagerTest {
     when(this.loader.fetchActiveFlows()).thenReturn(this.activeFlows);
   }
 
+  @Test
+  public void testFairShareConfig() {
+    final Props props = new Props();
+    props.put(ConfigurationKeys.WEBSERVER_QUEUE_FAIR_SHARE_KEY, "project");
+    props.put(ConfigurationKeys.WEBSERVER_QUEUE_FAIR_SHARE_WEIGHT_PREFIX + "a", "3");
+    assertThat(ExecutorManager.getFairShareKey(props))
+        .isEqualTo(QueuedExecutions.FairShareKey.PROJECT);
+    assertThat(ExecutorManager.getFairShareWeights(props)).containsOnly(entry("a", 3));
+  }
+
+  @Test
+  public void testInvalidFairShareConfigFallsBackToDefaults() {
+    final Props props = new Props();
+    props.put(ConfigurationKeys.WEBSERVER_QUEUE_FAIR_SHARE_KEY, "team");
+    props.put(ConfigurationKeys.WEBSERVER_QUEUE_FAIR_SHARE_WEIGHT_PREFIX + "a", "high");
+    props.put(ConfigurationKeys.WEBSERVER_QUEUE_FAIR_SHARE_WEIGHT_PREFIX + "b", "0");
+    props.put(ConfigurationKeys.WEBSERVER_QUEUE_FAIR_SHARE_WEIGHT_PREFIX + "c", "2");
+    assertThat(ExecutorManager.getFairShareKey(props))
+        .isEqualTo(QueuedExecutions.FairShareKey.NONE);
+    assertThat(ExecutorManager.getFairShareWeights(props)).containsOnly(entry("c", 2));
+  }
+
   private ExecutableFlow waitFlowFinished(final ExecutableFlow flow) throws Exception {
     azkaban.test.TestUtils.await().untilAsserted(() -> assertThat(getFlowStatus(flow))
         .isNotNull().matches(Status::isStatusFinished, "isStatusFinished"));
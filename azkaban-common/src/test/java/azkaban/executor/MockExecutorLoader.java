@@ -15,16 +15,21 @@
  */
 package azkaban.executor;
 
+import azkaban.db.EncodingType;
 import azkaban.executor.ExecutorLogEvent.EventType;
 import azkaban.flow.Flow;
 import azkaban.project.Project;
 import azkaban.utils.FileIOUtils.LogData;
+import azkaban.utils.JSONUtils;
 import azkaban.utils.Pair;
 import azkaban.utils.Props;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -75,6 +80,24 @@ public class MockExecutorLoader implements ExecutorLoader {
     return ExecutableFlow.createExecutableFlow(flow.toObject(), flow.getStatus());
   }
 
+  @Override
+  public EncodedExecutableFlow fetchEncodedExecutableFlow(final int execId)
+      throws ExecutorManagerException {
+    final ExecutableFlow flow = this.flows.get(execId);
+    if (flow == null) {
+      return null;
+    }
+    return new EncodedExecutableFlow(execId, EncodingType.PLAIN,
+        JSONUtils.toJSON(flow.toObject()).getBytes(StandardCharsets.UTF_8), flow.getStatus(),
+        flow.getUpdateTime(), Collections.emptyList());
+  }
+
+  @Override
+  public long fetchExecutableFlowUpdateTime(final int execId) throws ExecutorManagerException {
+    final ExecutableFlow flow = this.flows.get(execId);
+    return flow == null ? -1 : flow.getUpdateTime();
+  }
+
   @Override
   public Map<Integer, Pair<ExecutionReference, ExecutableFlow>> fetchActiveFlows()
       throws ExecutorManagerException {
@@ -159,6 +182,21 @@ public class MockExecutorLoader implements ExecutorLoader {
     this.flowUpdateCount++;
   }
 
+  @Override
+  public void appendExecutableFlowUpdate(final ExecutableFlow flow, final long lastUpdateTime)
+      throws ExecutorManagerException {
+    final ExecutableFlow toUpdate = this.flows.get(flow.getExecutionId());
+
+    toUpdate.applyUpdateObject(flow.toUpdateObject(lastUpdateTime));
+    this.flowUpdateCount++;
+  }
+
+  @Override
+  public void compactExecutableFlow(final ExecutableFlow flow)
+      throws ExecutorManagerException {
+    updateExecutableFlow(flow);
+  }
+
   @Override
   public void uploadExecutableNode(final ExecutableNode node, final Props inputParams)
       throws ExecutorManagerException {
@@ -295,10 +333,21 @@ public class MockExecutorLoader implements ExecutorLoader {
   }
 
   @Override
-  public int removeExecutionLogsByTime(final long millis, final int recordCleanupLimit)
+  public Pair<Integer, Integer> fetchExecutionLogsExecIdRange(final long millis)
       throws ExecutorManagerException {
-    // TODO Auto-generated method stub
-    return 0;
+    return null;
+  }
+
+  @Override
+  public Pair<Integer, Long> removeExecutionLogsByRange(final int fromExecId,
+      final int toExecId, final long millis) throws ExecutorManagerException {
+    return new Pair<>(0, 0L);
+  }
+
+  @Override
+  public Pair<Long, Long> dropExecutionLogsPartitions(final long millis)
+      throws ExecutorManagerException {
+    return new Pair<>(0L, 0L);
   }
 
   @Override
@@ -448,6 +497,20 @@ public class MockExecutorLoader implements ExecutorLoader {
     return queuedFlows;
   }
 
+  @Override
+  public List<QueuedExecution> fetchQueuedExecutions(final int afterExecId, final int limit)
+      throws ExecutorManagerException {
+    final List<QueuedExecution> queuedExecutions = new ArrayList<>();
+    for (final Pair<ExecutionReference, ExecutableFlow> pair : fetchQueuedFlows().stream()
+        .filter(pair -> pair.getFirst().getExecId() > afterExecId)
+        .sorted(Comparator.comparingInt(pair -> pair.getFirst().getExecId()))
+        .limit(limit)
+        .collect(Collectors.toList())) {
+      queuedExecutions.add(QueuedExecution.fromFlow(pair.getSecond(), pair.getFirst()));
+    }
+    return queuedExecutions;
+  }
+
   @Override
   public List<ExecutableFlow> fetchStaleFlows(Duration executionDuration)
       throws ExecutorManagerException {
@@ -486,15 +549,15 @@ public class MockExecutorLoader implements ExecutorLoader {
   }
 
   @Override
-  public int selectAndUpdateExecution(final int executorId, final boolean isActive)
+  public int selectAndUpdateExecutionWithLocking(final int executorId, final boolean isActive)
       throws ExecutorManagerException {
     return 1;
   }
 
   @Override
-  public int selectAndUpdateExecutionWithLocking(final int executorId, final boolean isActive)
-      throws ExecutorManagerException {
-    return 1;
+  public List<Integer> selectAndUpdateExecutions(final int executorId, final boolean isActive,
+      final int limit, final boolean skipLocked) throws ExecutorManagerException {
+    return Collections.singletonList(1);
   }
 
   @Override
@@ -16,10 +16,11 @@
 
 package azkaban.executor;
 
-import azkaban.utils.Pair;
 import azkaban.utils.TestUtils;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import org.junit.Assert;
 import org.junit.Test;
@@ -27,23 +28,43 @@ import org.junit.Test;
 public class QueuedExecutionsTest {
 
   /*
-   * Helper method to create an (ExecutionReference, ExecutableFlow) from
-   * serialized description
+   * Helper method to create a QueuedExecution from serialized description
    */
-  private Pair<ExecutionReference, ExecutableFlow> createExecutablePair(
-      final String flowName, final int execId) throws IOException {
+  private QueuedExecution createQueuedExecution(final String flowName, final int execId)
+      throws IOException, ExecutorManagerException {
     final ExecutableFlow execFlow = TestUtils.createTestExecutableFlow("exectest1", flowName);
     execFlow.setExecutionId(execId);
     final ExecutionReference ref = new ExecutionReference(execId);
-    return new Pair<>(ref, execFlow);
+    return QueuedExecution.fromFlow(execFlow, ref);
   }
 
-  public List<Pair<ExecutionReference, ExecutableFlow>> getDummyData()
-      throws IOException {
-    final List<Pair<ExecutionReference, ExecutableFlow>> dataList =
-        new ArrayList<>();
-    dataList.add(createExecutablePair("exec1", 1));
-    dataList.add(createExecutablePair("exec2", 2));
+  private QueuedExecution createQueuedExecution(final String submitUser, final int execId,
+      final int priority) throws IOException, ExecutorManagerException {
+    final ExecutableFlow execFlow = TestUtils.createTestExecutableFlow("exectest1", "exec1");
+    execFlow.setExecutionId(execId);
+    execFlow.setSubmitUser(submitUser);
+    execFlow.getExecutionOptions().getFlowParameters()
+        .put(ExecutionOptions.FLOW_PRIORITY, String.valueOf(priority));
+    return QueuedExecution.fromFlow(execFlow, new ExecutionReference(execId));
+  }
+
+  /* Enqueues 4 flows of user a and then 2 flows of user b, returns the order they are fetched */
+  private List<Integer> getFetchOrder(final QueuedExecutions queue)
+      throws IOException, ExecutorManagerException, InterruptedException {
+    for (int execId = 1; execId <= 6; execId++) {
+      queue.enqueue(createQueuedExecution(execId <= 4 ? "a" : "b", execId, 0));
+    }
+    final List<Integer> order = new ArrayList<>();
+    while (!queue.isEmpty()) {
+      order.add(queue.fetchHead().getExecId());
+    }
+    return order;
+  }
+
+  public List<QueuedExecution> getDummyData() throws IOException, ExecutorManagerException {
+    final List<QueuedExecution> dataList = new ArrayList<>();
+    dataList.add(createQueuedExecution("exec1", 1));
+    dataList.add(createQueuedExecution("exec2", 2));
     return dataList;
   }
 
@@ -52,9 +73,9 @@ public class QueuedExecutionsTest {
   public void testEnqueueHappyCase() throws IOException,
       ExecutorManagerException {
     final QueuedExecutions queue = new QueuedExecutions(5);
-    final List<Pair<ExecutionReference, ExecutableFlow>> dataList = getDummyData();
-    for (final Pair<ExecutionReference, ExecutableFlow> pair : dataList) {
-      queue.enqueue(pair.getSecond(), pair.getFirst());
+    final List<QueuedExecution> dataList = getDummyData();
+    for (final QueuedExecution queued : dataList) {
+      queue.enqueue(queued);
     }
 
     Assert.assertTrue(queue.getAllEntries().containsAll(dataList));
@@ -65,29 +86,27 @@ public class QueuedExecutionsTest {
   @Test(expected = ExecutorManagerException.class)
   public void testEnqueueDuplicateExecution() throws IOException,
       ExecutorManagerException {
-    final Pair<ExecutionReference, ExecutableFlow> pair1 =
-        createExecutablePair("exec1", 1);
+    final QueuedExecution queued1 = createQueuedExecution("exec1", 1);
     final QueuedExecutions queue = new QueuedExecutions(5);
-    queue.enqueue(pair1.getSecond(), pair1.getFirst());
-    queue.enqueue(pair1.getSecond(), pair1.getFirst());
+    queue.enqueue(queued1);
+    queue.enqueue(queued1);
   }
 
   /* Test enqueue more than capacity */
   @Test(expected = ExecutorManagerException.class)
   public void testEnqueueOverflow() throws IOException,
       ExecutorManagerException {
-    final Pair<ExecutionReference, ExecutableFlow> pair1 =
-        createExecutablePair("exec1", 1);
+    final QueuedExecution queued1 = createQueuedExecution("exec1", 1);
     final QueuedExecutions queue = new QueuedExecutions(1);
-    queue.enqueue(pair1.getSecond(), pair1.getFirst());
-    queue.enqueue(pair1.getSecond(), pair1.getFirst());
+    queue.enqueue(queued1);
+    queue.enqueue(queued1);
   }
 
   /* Test EnqueueAll method */
   @Test
   public void testEnqueueAll() throws IOException, ExecutorManagerException {
     final QueuedExecutions queue = new QueuedExecutions(5);
-    final List<Pair<ExecutionReference, ExecutableFlow>> dataList = getDummyData();
+    final List<QueuedExecution> dataList = getDummyData();
     queue.enqueueAll(dataList);
     Assert.assertTrue(queue.getAllEntries().containsAll(dataList));
     Assert.assertTrue(dataList.containsAll(queue.getAllEntries()));
@@ -97,7 +116,7 @@ public class QueuedExecutionsTest {
   @Test
   public void testSize() throws IOException, ExecutorManagerException {
     final QueuedExecutions queue = new QueuedExecutions(5);
-    final List<Pair<ExecutionReference, ExecutableFlow>> dataList = getDummyData();
+    final List<QueuedExecution> dataList = getDummyData();
     queue.enqueueAll(dataList);
     Assert.assertEquals(queue.size(), 2);
   }
@@ -106,9 +125,9 @@ public class QueuedExecutionsTest {
   @Test
   public void testDequeue() throws IOException, ExecutorManagerException {
     final QueuedExecutions queue = new QueuedExecutions(5);
-    final List<Pair<ExecutionReference, ExecutableFlow>> dataList = getDummyData();
+    final List<QueuedExecution> dataList = getDummyData();
     queue.enqueueAll(dataList);
-    queue.dequeue(dataList.get(0).getFirst().getExecId());
+    queue.dequeue(dataList.get(0).getExecId());
     Assert.assertEquals(queue.size(), 1);
     Assert.assertTrue(queue.getAllEntries().contains(dataList.get(1)));
   }
@@ -117,7 +136,7 @@ public class QueuedExecutionsTest {
   @Test
   public void testClear() throws IOException, ExecutorManagerException {
     final QueuedExecutions queue = new QueuedExecutions(5);
-    final List<Pair<ExecutionReference, ExecutableFlow>> dataList = getDummyData();
+    final List<QueuedExecution> dataList = getDummyData();
     queue.enqueueAll(dataList);
     Assert.assertEquals(queue.size(), 2);
     queue.clear();
@@ -128,7 +147,7 @@ public class QueuedExecutionsTest {
   @Test
   public void testIsEmpty() throws IOException, ExecutorManagerException {
     final QueuedExecutions queue = new QueuedExecutions(5);
-    final List<Pair<ExecutionReference, ExecutableFlow>> dataList = getDummyData();
+    final List<QueuedExecution> dataList = getDummyData();
     Assert.assertTrue(queue.isEmpty());
     queue.enqueueAll(dataList);
     Assert.assertEquals(queue.size(), 2);
@@ -141,7 +160,7 @@ public class QueuedExecutionsTest {
   public void testFetchHead() throws IOException, ExecutorManagerException,
       InterruptedException {
     final QueuedExecutions queue = new QueuedExecutions(5);
-    final List<Pair<ExecutionReference, ExecutableFlow>> dataList = getDummyData();
+    final List<QueuedExecution> dataList = getDummyData();
     Assert.assertTrue(queue.isEmpty());
     queue.enqueueAll(dataList);
     Assert.assertEquals(queue.fetchHead(), dataList.get(0));
@@ -153,7 +172,7 @@ public class QueuedExecutionsTest {
   public void testIsFull() throws IOException, ExecutorManagerException,
       InterruptedException {
     final QueuedExecutions queue = new QueuedExecutions(2);
-    final List<Pair<ExecutionReference, ExecutableFlow>> dataList = getDummyData();
+    final List<QueuedExecution> dataList = getDummyData();
     queue.enqueueAll(dataList);
     Assert.assertTrue(queue.isFull());
   }
@@ -163,27 +182,27 @@ public class QueuedExecutionsTest {
   public void testHasExecution() throws IOException, ExecutorManagerException,
       InterruptedException {
     final QueuedExecutions queue = new QueuedExecutions(2);
-    final List<Pair<ExecutionReference, ExecutableFlow>> dataList = getDummyData();
+    final List<QueuedExecution> dataList = getDummyData();
     queue.enqueueAll(dataList);
-    for (final Pair<ExecutionReference, ExecutableFlow> pair : dataList) {
-      Assert.assertTrue(queue.hasExecution(pair.getFirst().getExecId()));
+    for (final QueuedExecution queued : dataList) {
+      Assert.assertTrue(queue.hasExecution(queued.getExecId()));
     }
     Assert.assertFalse(queue.hasExecution(5));
     Assert.assertFalse(queue.hasExecution(7));
     Assert.assertFalse(queue.hasExecution(15));
   }
 
-  /* Test getFlow method */
+  /* Test getQueuedExecution method */
   @Test
-  public void testGetFlow() throws IOException, ExecutorManagerException,
+  public void testGetQueuedExecution() throws IOException, ExecutorManagerException,
       InterruptedException {
     final QueuedExecutions queue = new QueuedExecutions(2);
-    final List<Pair<ExecutionReference, ExecutableFlow>> dataList = getDummyData();
+    final List<QueuedExecution> dataList = getDummyData();
     queue.enqueueAll(dataList);
-    for (final Pair<ExecutionReference, ExecutableFlow> pair : dataList) {
-      Assert.assertEquals(pair.getSecond(),
-          queue.getFlow(pair.getFirst().getExecId()));
+    for (final QueuedExecution queued : dataList) {
+      Assert.assertEquals(queued, queue.getQueuedExecution(queued.getExecId()));
     }
+    Assert.assertNull(queue.getQueuedExecution(5));
   }
 
   /* Test getReferences method */
@@ -191,11 +210,125 @@ public class QueuedExecutionsTest {
   public void testGetReferences() throws IOException, ExecutorManagerException,
       InterruptedException {
     final QueuedExecutions queue = new QueuedExecutions(2);
-    final List<Pair<ExecutionReference, ExecutableFlow>> dataList = getDummyData();
+    final List<QueuedExecution> dataList = getDummyData();
     queue.enqueueAll(dataList);
-    for (final Pair<ExecutionReference, ExecutableFlow> pair : dataList) {
-      Assert.assertEquals(pair.getFirst(),
-          queue.getReference(pair.getFirst().getExecId()));
+    for (final QueuedExecution queued : dataList) {
+      Assert.assertEquals(queued.getReference(), queue.getReference(queued.getExecId()));
     }
   }
+
+  /* Test fetchHead takes flows in queue order without a fair-share key */
+  @Test
+  public void testFetchHeadWithoutFairShare() throws IOException, ExecutorManagerException,
+      InterruptedException {
+    final QueuedExecutions queue = new QueuedExecutions(10);
+    Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), getFetchOrder(queue));
+  }
+
+  /* Test fetchHead alternates between the users */
+  @Test
+  public void testFetchHeadWithFairShare() throws IOException, ExecutorManagerException,
+      InterruptedException {
+    final QueuedExecutions queue = new QueuedExecutions(10,
+        QueuedExecutions.FairShareKey.USER, Collections.emptyMap());
+    Assert.assertEquals(Arrays.asList(1, 5, 2, 6, 3, 4), getFetchOrder(queue));
+  }
+
+  /* Test fetchHead gives user a two turns for each turn of user b */
+  @Test
+  public void testFetchHeadWithFairShareWeights() throws IOException, ExecutorManagerException,
+      InterruptedException {
+    final QueuedExecutions queue = new QueuedExecutions(10,
+        QueuedExecutions.FairShareKey.USER, Collections.singletonMap("a", 2));
+    Assert.assertEquals(Arrays.asList(1, 5, 2, 3, 6, 4), getFetchOrder(queue));
+  }
+
+  /* Test weights that aren't positive are rejected */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidFairShareWeight() {
+    new QueuedExecutions(10, QueuedExecutions.FairShareKey.USER, Collections.singletonMap("a", 0));
+  }
+
+  /* Test higher priority flows are fetched first regardless of the fair share */
+  @Test
+  public void testFetchHeadWithFairSharePriority() throws IOException,
+      ExecutorManagerException, InterruptedException {
+    final QueuedExecutions queue = new QueuedExecutions(10,
+        QueuedExecutions.FairShareKey.USER, Collections.emptyMap());
+    queue.enqueueAll(Arrays.asList(
+        createQueuedExecution("a", 1, 0), createQueuedExecution("a", 2, 5),
+        createQueuedExecution("b", 3, 0), createQueuedExecution("a", 4, 5)));
+    final List<Integer> order = new ArrayList<>();
+    while (!queue.isEmpty()) {
+      order.add(queue.fetchHead().getExecId());
+    }
+    Assert.assertEquals(Arrays.asList(2, 4, 1, 3), order);
+  }
+
+  /* Test dequeue removes a flow from its sub-queue */
+  @Test
+  public void testDequeueWithFairShare() throws IOException, ExecutorManagerException,
+      InterruptedException {
+    final QueuedExecutions queue = new QueuedExecutions(10,
+        QueuedExecutions.FairShareKey.USER, Collections.emptyMap());
+    final List<QueuedExecution> dataList = Arrays.asList(
+        createQueuedExecution("a", 1, 0), createQueuedExecution("b", 2, 0));
+    queue.enqueueAll(dataList);
+    queue.dequeue(1);
+    Assert.assertEquals(1, queue.size());
+    Assert.assertEquals(dataList.get(1), queue.fetchHead());
+    Assert.assertTrue(queue.isEmpty());
+  }
+
+  /* Test enqueueing a flow queues its descriptor */
+  @Test
+  public void testEnqueueFlow() throws IOException, ExecutorManagerException,
+      InterruptedException {
+    final QueuedExecutions queue = new QueuedExecutions(2);
+    final ExecutableFlow flow = TestUtils.createTestExecutableFlow("exectest1", "exec1");
+    flow.setExecutionId(1);
+    flow.setSubmitUser("testUser");
+    flow.getExecutionOptions().getFlowParameters().put(ExecutionOptions.USE_EXECUTOR, "3");
+    final ExecutionReference ref = new ExecutionReference(1);
+    queue.enqueue(flow, ref);
+
+    final QueuedExecution queued = queue.fetchHead();
+    Assert.assertEquals(ref, queued.getReference());
+    Assert.assertEquals(flow.getProjectId(), queued.getProjectId());
+    Assert.assertEquals(flow.getProjectName(), queued.getProjectName());
+    Assert.assertEquals(flow.getFlowId(), queued.getFlowId());
+    Assert.assertEquals("testUser", queued.getSubmitUser());
+    Assert.assertEquals(ExecutionOptions.DEFAULT_FLOW_PRIORITY, queued.getPriority());
+    Assert.assertEquals(Integer.valueOf(3), queued.getUseExecutor());
+  }
+
+  /* Test a non-numeric useExecutor is rejected */
+  @Test(expected = ExecutorManagerException.class)
+  public void testEnqueueFlowWithInvalidUseExecutor() throws IOException,
+      ExecutorManagerException {
+    final QueuedExecutions queue = new QueuedExecutions(2);
+    final ExecutableFlow flow = TestUtils.createTestExecutableFlow("exectest1", "exec1");
+    flow.setExecutionId(1);
+    flow.getExecutionOptions().getFlowParameters().put(ExecutionOptions.USE_EXECUTOR, "exec3");
+    queue.enqueue(flow, new ExecutionReference(1));
+  }
+
+  /* Test the metadata of a queued execution is listed without its flow */
+  @Test
+  public void testToFlowMetadata() throws IOException, ExecutorManagerException {
+    final ExecutableFlow flow = TestUtils.createTestExecutableFlow("exectest1", "exec1");
+    flow.setExecutionId(1);
+    flow.setSubmitUser("testUser");
+    flow.setSubmitTime(1000L);
+    final ExecutableFlow metadata =
+        QueuedExecution.fromFlow(flow, new ExecutionReference(1)).toFlowMetadata();
+    Assert.assertEquals(1, metadata.getExecutionId());
+    Assert.assertEquals(flow.getProjectId(), metadata.getProjectId());
+    Assert.assertEquals(flow.getProjectName(), metadata.getProjectName());
+    Assert.assertEquals(flow.getFlowId(), metadata.getFlowId());
+    Assert.assertEquals("testUser", metadata.getSubmitUser());
+    Assert.assertEquals(1000L, metadata.getSubmitTime());
+    Assert.assertEquals(Status.PREPARING, metadata.getStatus());
+    Assert.assertTrue(metadata.getExecutableNodes().isEmpty());
+  }
 }
@@ -1,21 +1,27 @@
 package azkaban.executor;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import azkaban.Constants.ConfigurationKeys;
 import azkaban.alert.Alerter;
 import azkaban.metrics.CommonMetrics;
 import azkaban.utils.Pair;
+import azkaban.utils.Props;
 import com.google.common.collect.ImmutableMap;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import org.joda.time.DateTimeUtils;
 import org.junit.After;
 import org.junit.Before;
@@ -26,6 +32,7 @@ import org.mockito.MockitoAnnotations;
 public class RunningExecutionsUpdaterTest {
 
   private static final int EXECUTION_ID_77 = 77;
+  private static final int EXECUTION_ID_78 = 78;
   private static final ExecutorManagerException API_CALL_EXCEPTION =
       new ExecutorManagerException("Mocked API timeout");
 
@@ -43,6 +50,10 @@ public class RunningExecutionsUpdaterTest {
   private Alerter mailAlerter;
   @Mock
   private ExecutorLoader executorLoader;
+  @Mock
+  private ExecutableFlowCache executableFlowCache;
+  @Mock
+  private ExecutionStatusFeed executionStatusFeed;
 
   private ExecutableFlow execution;
   private RunningExecutions runningExecutions;
@@ -59,9 +70,11 @@ public class RunningExecutionsUpdaterTest {
     this.runningExecutions = new RunningExecutions();
     this.runningExecutions.get().put(EXECUTION_ID_77, new Pair<>(
         new ExecutionReference(EXECUTION_ID_77, this.activeExecutor), this.execution));
-    this.updater = new RunningExecutionsUpdater(this.updaterStage, this.alerterHolder,
+    final Props props = new Props();
+    props.put(ConfigurationKeys.EXECUTOR_STATUS_REFRESH_TIMEOUT_MS, 500);
+    this.updater = new RunningExecutionsUpdater(props, this.updaterStage, this.alerterHolder,
         this.commonMetrics, this.apiGateway, this.runningExecutions, this.executionFinalizer,
-        this.executorLoader);
+        this.executorLoader, this.executableFlowCache, this.executionStatusFeed);
     when(this.alerterHolder.get("email")).thenReturn(this.mailAlerter);
   }
 
@@ -142,6 +155,42 @@ public class RunningExecutionsUpdaterTest {
     verifyZeroInteractions(this.executionFinalizer);
   }
 
+  /**
+   * An executor that doesn't answer shouldn't hold up the updates from the others.
+   */
+  @Test
+  public void updateExecutionsUpdateCallHangs() throws Exception {
+    final Executor hangingExecutor = new Executor(2, "hangingExecutor-2", 9999, true);
+    final ExecutableFlow hangingExecution = new ExecutableFlow();
+    hangingExecution.setExecutionId(EXECUTION_ID_78);
+    final ExecutionReference hangingReference =
+        new ExecutionReference(EXECUTION_ID_78, hangingExecutor);
+    this.runningExecutions.get().put(EXECUTION_ID_78,
+        new Pair<>(hangingReference, hangingExecution));
+    mockFlowSucceeded();
+    final CountDownLatch hangingCall = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      hangingCall.await();
+      return null;
+    }).when(this.apiGateway).updateExecutions(eq(hangingExecutor), any());
+    when(this.executorLoader.fetchExecutor(anyInt())).thenReturn(hangingExecutor);
+
+    try {
+      this.updater.updateExecutions();
+      verifyFinalizeFlow();
+      assertThat(hangingReference.getNumErrors()).isEqualTo(1);
+      verify(this.commonMetrics).markExecutorStatusRefreshTimeout();
+
+      // The executor is skipped while the call still hangs
+      hangingReference.setNextCheckTime(0);
+      this.updater.updateExecutions();
+      verify(this.apiGateway).updateExecutions(eq(hangingExecutor), any());
+      assertThat(hangingReference.getNumErrors()).isEqualTo(2);
+    } finally {
+      hangingCall.countDown();
+    }
+  }
+
   private void mockFlowStillRunning() throws Exception {
     mockUpdateResponse();
   }
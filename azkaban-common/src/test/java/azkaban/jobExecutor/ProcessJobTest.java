@@ -18,15 +18,19 @@ package azkaban.jobExecutor;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import azkaban.Constants.ConfigurationKeys;
 import azkaban.Constants.JobProperties;
 import azkaban.flow.CommonJobProperties;
 import azkaban.utils.Props;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 import org.junit.After;
 import org.junit.Assert;
@@ -160,6 +164,62 @@ public class ProcessJobTest {
     this.job.run();
   }
 
+  /**
+   * The working directory and the property files are chowned with one execute-as-user call. The
+   * write access of the user is only checked again for another directory.
+   */
+  @Test
+  public void testExecuteAsUserChownsOnceAndCachesWritableDir() throws Exception {
+    final File workingDir = new File(this.props.getString(AbstractProcessJob.WORKING_DIR));
+    final File nativeLibDir = this.temp.newFolder("native");
+    final File commandLog = new File(nativeLibDir, "commands.log");
+    final File denyWrite = new File(nativeLibDir, "deny-write");
+    // Logs its arguments, fails the write check if denied and runs the job commands
+    final File executeAsUser = new File(nativeLibDir, "execute-as-user");
+    FileUtils.writeStringToFile(executeAsUser, "#!/bin/sh\n"
+        + "echo \"$@\" >> " + commandLog.getAbsolutePath() + "\n"
+        + "if [ \"$2\" = touch ]; then [ ! -e " + denyWrite.getAbsolutePath() + " ]; exit $?; fi\n"
+        + "if [ \"$2\" = /bin/chown ]; then exit 0; fi\n"
+        + "shift\n"
+        + "exec \"$@\"\n", StandardCharsets.UTF_8);
+    assertThat(executeAsUser.setExecutable(true)).isTrue();
+    this.props.put(ProcessJob.EXECUTE_AS_USER, "true");
+    this.props.put(ConfigurationKeys.AZKABAN_SERVER_NATIVE_LIB_FOLDER,
+        nativeLibDir.getAbsolutePath());
+    this.props.put(ProcessJob.COMMAND, "ls -al");
+    final String touch = "test_user touch " + workingDir.getPath() + "/user_can_write";
+    final String chown = "root /bin/chown test_user:azkaban ";
+
+    // The user can't write in the directory, which is chowned with the property files
+    assertThat(denyWrite.createNewFile()).isTrue();
+    new ProcessJob("TestProcess", this.props, this.props, this.log).run();
+    List<String> commands = FileUtils.readLines(commandLog, StandardCharsets.UTF_8);
+    assertThat(commands).hasSize(3);
+    assertThat(commands.get(0)).isEqualTo(touch);
+    assertThat(commands.get(1)).startsWith(chown + workingDir.getPath() + " ");
+    assertThat(commands.get(1).split(" ")).hasSize(6);
+    assertThat(commands.get(2)).isEqualTo("test_user ls -al");
+
+    // Cache hit: the next job of the directory only chowns its property files
+    assertThat(commandLog.delete()).isTrue();
+    new ProcessJob("TestProcess", this.props, this.props, this.log).run();
+    commands = FileUtils.readLines(commandLog, StandardCharsets.UTF_8);
+    assertThat(commands).hasSize(2);
+    assertThat(commands.get(0)).startsWith(chown).doesNotContain(workingDir.getPath() + " ");
+    assertThat(commands.get(0).split(" ")).hasSize(5);
+
+    // Cache miss: a directory recreated at the same path is checked again
+    assertThat(workingDir.renameTo(new File(this.temp.getRoot(), "OldTestProcess"))).isTrue();
+    assertThat(workingDir.mkdir()).isTrue();
+    assertThat(denyWrite.delete()).isTrue();
+    assertThat(commandLog.delete()).isTrue();
+    new ProcessJob("TestProcess", this.props, this.props, this.log).run();
+    commands = FileUtils.readLines(commandLog, StandardCharsets.UTF_8);
+    assertThat(commands).hasSize(3);
+    assertThat(commands.get(0)).isEqualTo(touch);
+    assertThat(commands.get(1).split(" ")).hasSize(5);
+  }
+
   @Test
   public void testPartitionCommand() throws Exception {
     final String test1 = "a b c";
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import azkaban.Constants.ConfigurationKeys;
+import azkaban.project.Project;
+import azkaban.project.ProjectFileHandler;
+import azkaban.project.ProjectLoader;
+import azkaban.spi.ProjectStorageMetadata;
+import azkaban.spi.Storage;
+import azkaban.user.User;
+import azkaban.utils.HashUtils;
+import azkaban.utils.Pair;
+import azkaban.utils.Props;
+import azkaban.utils.Utils;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProjectStorageManagerTest {
+
+  private static final int PROJECT_ID = 14;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  // Stored objects by key
+  private final Map<String, byte[]> storedObjects = new HashMap<>();
+  // Keys of the objects put into the storage, in order
+  private final List<String> putKeys = new ArrayList<>();
+  private final Map<Integer, ProjectFileHandler> projectVersions = new HashMap<>();
+  private final Project project = new Project(PROJECT_ID, "project");
+  private final User user = new User("user");
+  private ProjectStorageManager projectStorageManager;
+
+  @Before
+  public void setUp() throws Exception {
+    final Storage storage = mock(Storage.class);
+    when(storage.putProject(any(), any())).thenAnswer(invocation -> {
+      final ProjectStorageMetadata metadata = invocation.getArgument(0);
+      final File file = invocation.getArgument(1);
+      final String key = metadata.getProjectId() + "/"
+          + HashUtils.bytesHashToString(metadata.getHash());
+      this.storedObjects.put(key, Files.readAllBytes(file.toPath()));
+      this.putKeys.add(key);
+      return key;
+    });
+    when(storage.getProject(anyString())).thenAnswer(
+        invocation -> new ByteArrayInputStream(this.storedObjects.get(invocation.getArgument(0))));
+
+    final ProjectLoader projectLoader = mock(ProjectLoader.class);
+    doAnswer(invocation -> {
+      final int version = invocation.getArgument(1);
+      final File file = invocation.getArgument(2);
+      this.projectVersions.put(version, new ProjectFileHandler(PROJECT_ID, version, 0L,
+          invocation.getArgument(4), FilenameUtils.getExtension(file.getName()), file.getName(),
+          0, invocation.getArgument(5), Collections.emptySet(), invocation.getArgument(6),
+          invocation.getArgument(7)));
+      return null;
+    }).when(projectLoader).addProjectVersion(anyInt(), anyInt(), any(), any(), anyString(), any(),
+        anyString(), any());
+    when(projectLoader.fetchProjectMetaData(anyInt(), anyInt())).thenAnswer(
+        invocation -> this.projectVersions.get((int) invocation.getArgument(1)));
+
+    final Props props = new Props();
+    props.put("project.temp.dir", this.temp.newFolder("temp").getPath());
+    props.put(ConfigurationKeys.AZKABAN_STORAGE_CONTENT_ADDRESSED_ENABLED, true);
+    final StorageCleaner storageCleaner = mock(StorageCleaner.class);
+    when(storageCleaner.fetchManifestResourceIds(PROJECT_ID)).thenAnswer(
+        invocation -> this.projectVersions.values().stream()
+            .map(ProjectFileHandler::getResourceId)
+            .collect(Collectors.toSet()));
+    this.projectStorageManager = new ProjectStorageManager(props, storage, projectLoader,
+        storageCleaner);
+  }
+
+  @Test
+  public void testUploadOnlyChangedFiles() throws Exception {
+    final File projectDir = this.temp.newFolder("project");
+    writeFile(projectDir, "basic.flow", "flow");
+    writeFile(projectDir, "lib/a.jar", "jar a");
+    writeFile(projectDir, "lib/b.jar", "jar b");
+    writeFile(projectDir, "lib/copy-of-b.jar", "jar b");
+    uploadVersion(projectDir, 1);
+    // 3 distinct blobs and the manifest
+    assertThat(this.putKeys).hasSize(4);
+
+    this.putKeys.clear();
+    writeFile(projectDir, "basic.flow", "flow v2");
+    uploadVersion(projectDir, 2);
+    // The changed file and the manifest
+    assertThat(this.putKeys).hasSize(2);
+    assertThat(this.projectVersions.get(2).getFileType()).isEqualTo(ProjectManifest.FILE_TYPE);
+  }
+
+  @Test
+  public void testRestoredFileIsNotUploadedAgain() throws Exception {
+    final File projectDir = this.temp.newFolder("project");
+    writeFile(projectDir, "basic.flow", "flow");
+    uploadVersion(projectDir, 1);
+    writeFile(projectDir, "basic.flow", "flow v2");
+    uploadVersion(projectDir, 2);
+
+    // The content of version 1 is still stored
+    this.putKeys.clear();
+    writeFile(projectDir, "basic.flow", "flow");
+    uploadVersion(projectDir, 3);
+    assertThat(this.putKeys).hasSize(1);
+  }
+
+  @Test
+  public void testInstallProject() throws Exception {
+    final File projectDir = this.temp.newFolder("project");
+    writeFile(projectDir, "basic.flow", "flow");
+    writeFile(projectDir, "lib/a.jar", "jar a");
+    uploadVersion(projectDir, 1);
+
+    final ProjectFileHandler manifest =
+        this.projectStorageManager.getProjectFileOrManifest(PROJECT_ID, 1);
+    assertThat(manifest.getFileType()).isEqualTo(ProjectManifest.FILE_TYPE);
+    final File installDir = this.temp.newFolder("install");
+    this.projectStorageManager.installProject(manifest, installDir);
+    assertSameFiles(projectDir, installDir);
+
+    // The blobs are served from the blob cache the second time.
+    this.storedObjects.keySet().removeIf(key -> !key.equals(manifest.getResourceId()));
+    final ProjectFileHandler manifest2 =
+        this.projectStorageManager.getProjectFileOrManifest(PROJECT_ID, 1);
+    final File installDir2 = this.temp.newFolder("install2");
+    this.projectStorageManager.installProject(manifest2, installDir2);
+    assertSameFiles(projectDir, installDir2);
+  }
+
+  @Test
+  public void testModifiedInstalledFileDoesNotChangeOtherInstalls() throws Exception {
+    final File projectDir = this.temp.newFolder("project");
+    writeFile(projectDir, "basic.flow", "flow");
+    writeFile(projectDir, "lib/a.jar", "jar a");
+    uploadVersion(projectDir, 1);
+
+    final File installDir = this.temp.newFolder("install");
+    this.projectStorageManager.installProject(
+        this.projectStorageManager.getProjectFileOrManifest(PROJECT_ID, 1), installDir);
+    // A job appends to an installed file
+    final File installedJar = new File(installDir, "lib/a.jar");
+    assertThat(installedJar.canWrite()).isTrue();
+    FileUtils.writeStringToFile(installedJar, " modified", StandardCharsets.UTF_8, true);
+
+    final File installDir2 = this.temp.newFolder("install2");
+    this.projectStorageManager.installProject(
+        this.projectStorageManager.getProjectFileOrManifest(PROJECT_ID, 1), installDir2);
+    assertSameFiles(projectDir, installDir2);
+    assertThat(FileUtils.readFileToString(installedJar, StandardCharsets.UTF_8))
+        .isEqualTo("jar a modified");
+  }
+
+  @Test
+  public void testModifiedCachedBlobIsFetchedAgain() throws Exception {
+    final File projectDir = this.temp.newFolder("project");
+    writeFile(projectDir, "lib/a.jar", "jar a");
+    uploadVersion(projectDir, 1);
+    this.projectStorageManager.installProject(
+        this.projectStorageManager.getProjectFileOrManifest(PROJECT_ID, 1),
+        this.temp.newFolder("install"));
+
+    // The cached blob is read-only, changing it needs to make it writable first
+    final File cachedBlob = new File(this.temp.getRoot(), "temp/blobs/"
+        + HashUtils.MD5.getHashStr(new File(projectDir, "lib/a.jar")));
+    assertThat(cachedBlob.exists()).isTrue();
+    cachedBlob.setWritable(true);
+    writeFile(cachedBlob.getParentFile(), cachedBlob.getName(), "jar b");
+
+    final File installDir2 = this.temp.newFolder("install2");
+    this.projectStorageManager.installProject(
+        this.projectStorageManager.getProjectFileOrManifest(PROJECT_ID, 1), installDir2);
+    assertSameFiles(projectDir, installDir2);
+  }
+
+  @Test
+  public void testGetProjectFileAsZip() throws Exception {
+    final File projectDir = this.temp.newFolder("project");
+    writeFile(projectDir, "basic.flow", "flow");
+    writeFile(projectDir, "lib/a.jar", "jar a");
+    uploadVersion(projectDir, 1);
+
+    final ProjectFileHandler pfh = this.projectStorageManager.getProjectFile(PROJECT_ID, 1);
+    assertThat(pfh.getFileType()).isEqualTo("zip");
+    final File unzipDir = this.temp.newFolder("unzip");
+    try (final ZipFile zip = new ZipFile(pfh.getLocalFile())) {
+      Utils.unzip(zip, unzipDir);
+    }
+    assertSameFiles(projectDir, unzipDir);
+  }
+
+  private void uploadVersion(final File projectDir, final int version) throws Exception {
+    final File zipFile = new File(this.temp.getRoot(), "project-" + version + ".zip");
+    Utils.zipFolderContent(projectDir, zipFile);
+    this.projectStorageManager.uploadProject(this.project, version, zipFile, null, this.user,
+        "127.0.0.1");
+  }
+
+  private static void writeFile(final File dir, final String path, final String content)
+      throws Exception {
+    FileUtils.writeStringToFile(new File(dir, path), content, StandardCharsets.UTF_8);
+  }
+
+  private static void assertSameFiles(final File expectedDir, final File actualDir)
+      throws Exception {
+    final List<Pair<String, String>> expected = listFiles(expectedDir);
+    assertThat(listFiles(actualDir)).containsExactlyInAnyOrderElementsOf(expected);
+  }
+
+  private static List<Pair<String, String>> listFiles(final File dir) throws Exception {
+    final List<Pair<String, String>> files = new ArrayList<>();
+    for (final File file : FileUtils.listFilesAndDirs(dir, TrueFileFilter.INSTANCE,
+        TrueFileFilter.INSTANCE)) {
+      final String path = dir.toPath().relativize(file.toPath()).toString();
+      files.add(new Pair<>(path, file.isDirectory() ? null
+          : FileUtils.readFileToString(file, StandardCharsets.UTF_8)));
+    }
+    return files;
+  }
+}
@@ -36,8 +36,12 @@ import azkaban.db.DatabaseOperator;
 import azkaban.spi.Storage;
 import azkaban.utils.Pair;
 import azkaban.utils.Props;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
@@ -120,4 +124,91 @@ public class StorageCleanerTest {
     // Verify there was no db update due to previous deletion failure
     verify(this.databaseOperator, never()).update(SQL_DELETE_RESOURCE_ID, "14/14-7.zip");
   }
+
+  @Test
+  public void testBlobSharedWithKeptManifestIsNotDeleted() throws Exception {
+    setUpManifests();
+
+    createCleaner().cleanupProjectArtifacts(TEST_PROJECT_ID, new ArrayList<>());
+
+    verify(this.storage, times(1)).deleteProject("14/m2.manifest");
+    verify(this.storage, times(1)).deleteProject("14/m1.manifest");
+    verify(this.storage, times(1)).deleteProject("14/old2");
+    verify(this.storage, times(1)).deleteProject("14/old1");
+    verify(this.storage, never()).deleteProject("14/shared");
+    verify(this.storage, never()).deleteProject("14/new3");
+    verify(this.storage, never()).deleteProject("14/m3.manifest");
+  }
+
+  @Test
+  public void testUnreadableKeptManifestBlocksBlobDeletion() throws Exception {
+    setUpManifests();
+    when(this.storage.getProject("14/m3.manifest")).thenThrow(IOException.class);
+
+    createCleaner().cleanupProjectArtifacts(TEST_PROJECT_ID, new ArrayList<>());
+
+    // The old manifests are still deleted, but none of the blobs
+    verify(this.storage, times(1)).deleteProject("14/m2.manifest");
+    verify(this.storage, times(1)).deleteProject("14/m1.manifest");
+    verify(this.storage, never()).deleteProject("14/old2");
+    verify(this.storage, never()).deleteProject("14/old1");
+    verify(this.storage, never()).deleteProject("14/shared");
+    verify(this.storage, never()).deleteProject("14/new3");
+  }
+
+  @Test
+  public void testBlobsOfManifestFailingToDeleteAreKept() throws Exception {
+    setUpManifests();
+    when(this.storage.deleteProject("14/m1.manifest")).thenReturn(false);
+
+    createCleaner().cleanupProjectArtifacts(TEST_PROJECT_ID, new ArrayList<>());
+
+    verify(this.storage, times(1)).deleteProject("14/m2.manifest");
+    verify(this.storage, times(1)).deleteProject("14/old2");
+    verify(this.storage, never()).deleteProject("14/old1");
+    verify(this.storage, never()).deleteProject("14/shared");
+    verify(this.databaseOperator, never()).update(SQL_DELETE_RESOURCE_ID, "14/m1.manifest");
+  }
+
+  private StorageCleaner createCleaner() {
+    final Props props = new Props();
+    props.put(AZKABAN_STORAGE_ARTIFACT_MAX_RETENTION, 1);
+    return new StorageCleaner(props, this.storage, this.databaseOperator);
+  }
+
+  /**
+   * Three manifest versions, of which only the latest is kept. Its blob 14/shared is also used by
+   * the deleted version 2.
+   */
+  private void setUpManifests() throws Exception {
+    when(this.databaseOperator.query(
+        eq(StorageCleaner.SQL_FETCH_PVR), anyObject(), eq(TEST_PROJECT_ID)))
+        .thenReturn(Arrays.asList(
+            new Pair<>("14/m3.manifest", 3),
+            new Pair<>("14/m2.manifest", 2),
+            new Pair<>("14/m1.manifest", 1)));
+    when(this.databaseOperator.query(
+        eq(StorageCleaner.SQL_FETCH_MANIFEST_RESOURCE_IDS), anyObject(), eq(TEST_PROJECT_ID)))
+        .thenReturn(new HashSet<>(
+            Arrays.asList("14/m3.manifest", "14/m2.manifest", "14/m1.manifest")));
+    mockManifest("14/m3.manifest", "14/shared", "14/new3");
+    mockManifest("14/m2.manifest", "14/shared", "14/old2");
+    mockManifest("14/m1.manifest", "14/old1");
+    when(this.storage.deleteProject("14/m2.manifest")).thenReturn(true);
+    when(this.storage.deleteProject("14/m1.manifest")).thenReturn(true);
+  }
+
+  private void mockManifest(final String resourceId, final String... blobResourceIds)
+      throws Exception {
+    final StringBuilder json = new StringBuilder("{\"directories\": [], \"files\": [");
+    for (int i = 0; i < blobResourceIds.length; i++) {
+      json.append(i == 0 ? "" : ", ")
+          .append(String.format("{\"path\": \"file%d\", \"hash\": \"%s\", \"size\": 1, "
+              + "\"resourceId\": \"%s\"}", i, blobResourceIds[i], blobResourceIds[i]));
+    }
+    json.append("]}");
+    final byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+    when(this.storage.getProject(resourceId)).thenAnswer(
+        invocation -> new ByteArrayInputStream(bytes));
+  }
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package azkaban.trigger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import azkaban.executor.ExecutorManagerAdapter;
+import azkaban.metrics.CommonMetrics;
+import azkaban.metrics.MetricsManager;
+import azkaban.trigger.builtin.BasicTimeChecker;
+import azkaban.utils.Props;
+import com.codahale.metrics.MetricRegistry;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TriggerManagerSchedulingTest {
+
+  private final MetricRegistry metricRegistry = new MetricRegistry();
+  private TriggerManager triggerManager;
+
+  @Before
+  public void setUp() throws Exception {
+    final Props props = new Props();
+    // Far longer than the test, triggers must fire because they are due, not because of a scan
+    props.put("trigger.scan.interval", 600000);
+    this.triggerManager = new TriggerManager(props, new MockTriggerLoader(),
+        mock(ExecutorManagerAdapter.class),
+        new CommonMetrics(new MetricsManager(this.metricRegistry)));
+    this.triggerManager.start();
+  }
+
+  @After
+  public void tearDown() {
+    this.triggerManager.shutdown();
+  }
+
+  @Test
+  public void testTriggerFiresWhenDue() throws Exception {
+    final CountDownLatch fired = new CountDownLatch(1);
+    final Trigger t = createOneTimeTrigger(System.currentTimeMillis() + 500, fired);
+    this.triggerManager.insertTrigger(t);
+
+    assertThat(fired.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(this.metricRegistry.histogram(CommonMetrics.TRIGGER_FIRE_LAG_HISTOGRAM_NAME)
+        .getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testTriggersFireInCheckTimeOrder() throws Exception {
+    final CountDownLatch laterFired = new CountDownLatch(1);
+    final CountDownLatch earlierFired = new CountDownLatch(1);
+    final long now = System.currentTimeMillis();
+    this.triggerManager.insertTrigger(createOneTimeTrigger(now + 60000, laterFired));
+    this.triggerManager.insertTrigger(createOneTimeTrigger(now + 500, earlierFired));
+
+    assertThat(earlierFired.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(laterFired.getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testRemovedTriggerDoesNotFire() throws Exception {
+    final CountDownLatch fired = new CountDownLatch(1);
+    final Trigger t = createOneTimeTrigger(System.currentTimeMillis() + 500, fired);
+    this.triggerManager.insertTrigger(t);
+    this.triggerManager.removeTrigger(t);
+
+    assertThat(fired.await(2, TimeUnit.SECONDS)).isFalse();
+  }
+
+  private static Trigger createOneTimeTrigger(final long checkTime, final CountDownLatch fired) {
+    final ConditionChecker triggerChecker = new BasicTimeChecker("BasicTimeChecker_1", checkTime,
+        DateTimeZone.UTC, false, false, null, null);
+    final ConditionChecker endTimeChecker = new BasicTimeChecker("EndTimeChecker_1", 111L,
+        DateTimeZone.UTC, 2536871155000L, false, false, null, null);
+    final Map<String, ConditionChecker> triggerCheckers = new HashMap<>();
+    triggerCheckers.put(triggerChecker.getId(), triggerChecker);
+    final Map<String, ConditionChecker> expireCheckers = new HashMap<>();
+    expireCheckers.put(endTimeChecker.getId(), endTimeChecker);
+
+    final Trigger t = new Trigger.TriggerBuilder("azkaban", "azkaban",
+        new Condition(triggerCheckers, triggerChecker.getId() + ".eval()"),
+        new Condition(expireCheckers, endTimeChecker.getId() + ".eval()"),
+        Collections.singletonList(new LatchAction(fired))).build();
+    t.setResetOnTrigger(false);
+    return t;
+  }
+
+  private static class LatchAction implements TriggerAction {
+
+    private final CountDownLatch latch;
+
+    LatchAction(final CountDownLatch latch) {
+      this.latch = latch;
+    }
+
+    @Override
+    public String getId() {
+      return "latch";
+    }
+
+    @Override
+    public String getType() {
+      return "LatchAction";
+    }
+
+    @Override
+    public TriggerAction fromJson(final Object obj) {
+      return null;
+    }
+
+    @Override
+    public Object toJson() {
+      return null;
+    }
+
+    @Override
+    public void doAction() {
+      this.latch.countDown();
+    }
+
+    @Override
+    public void setContext(final Map<String, Object> context) {
+    }
+
+    @Override
+    public String getDescription() {
+      return "counts down a latch";
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package azkaban.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class BlockCompressionUtilsTest {
+
+  private static final int BLOCK_SIZE = 1000;
+
+  @Test
+  public void testDecompressRanges() throws IOException {
+    final byte[] data = new byte[10500];
+    new Random(1).nextBytes(data);
+    final byte[] compressed = BlockCompressionUtils.compress(data, 0, data.length, BLOCK_SIZE);
+
+    assertRange(compressed, data, 0, data.length);
+    assertRange(compressed, data, 0, 1);
+    assertRange(compressed, data, 999, 2);
+    assertRange(compressed, data, 2000, 1000);
+    assertRange(compressed, data, 10000, 500);
+    assertRange(compressed, data, 4321, 5000);
+  }
+
+  @Test
+  public void testCompressSlice() throws IOException {
+    final byte[] data = "some log line\nanother log line\n".getBytes();
+    final byte[] compressed = BlockCompressionUtils.compress(data, 5, 20, 8);
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BlockCompressionUtils.decompressRange(compressed, 0, 20, out);
+    assertThat(out.toByteArray()).isEqualTo(Arrays.copyOfRange(data, 5, 25));
+  }
+
+  @Test(expected = IOException.class)
+  public void testRangeOutOfData() throws IOException {
+    final byte[] compressed = BlockCompressionUtils.compress(new byte[100], 0, 100, BLOCK_SIZE);
+    BlockCompressionUtils.decompressRange(compressed, 1000, 10, new ByteArrayOutputStream());
+  }
+
+  private static void assertRange(final byte[] compressed, final byte[] data, final int offset,
+      final int length) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BlockCompressionUtils.decompressRange(compressed, offset, length, out);
+    assertThat(out.toByteArray()).isEqualTo(Arrays.copyOfRange(data, offset, offset + length));
+  }
+}
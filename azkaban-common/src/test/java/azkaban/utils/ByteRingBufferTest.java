@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class ByteRingBufferTest {
+
+  private static final byte[] BYTES = "0123456789abc".getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  public void testEmptyBuffer() {
+    final ByteRingBuffer buffer = new ByteRingBuffer(8);
+    assertThat(buffer.getSize()).isEqualTo(0);
+    assertThat(buffer.getCapacity()).isEqualTo(8);
+    assertThat(buffer.toByteArray()).isEmpty();
+  }
+
+  @Test
+  public void testKeepsLastBytes() {
+    final ByteRingBuffer buffer = new ByteRingBuffer(8);
+    buffer.append(BYTES, 0, 5);
+    assertThat(toString(buffer)).isEqualTo("01234");
+    buffer.append(BYTES, 5, 5);
+    assertThat(toString(buffer)).isEqualTo("23456789");
+    assertThat(buffer.getSize()).isEqualTo(8);
+    buffer.append(BYTES, 0, 13);
+    assertThat(toString(buffer)).isEqualTo("56789abc");
+  }
+
+  @Test
+  public void testWrapsAroundSeveralTimes() {
+    final ByteRingBuffer buffer = new ByteRingBuffer(8);
+    for (int i = 0; i < 5; i++) {
+      buffer.append(BYTES, 0, 3);
+    }
+    // 15 bytes "012012012012012", of which the last 8 are kept
+    assertThat(toString(buffer)).isEqualTo("12012012");
+    buffer.append(BYTES, 10, 1);
+    assertThat(toString(buffer)).isEqualTo("2012012a");
+  }
+
+  private static String toString(final ByteRingBuffer buffer) {
+    return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -28,6 +28,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.comparator.NameFileComparator;
 import org.junit.After;
@@ -159,6 +161,62 @@ public class FileIOUtilsTest {
 
   }
 
+  @Test
+  public void testHardlinkCopyWithThreads() throws IOException {
+    final File manyFilesDir = new File(this.sourceDir, "manyfiles");
+    for (int i = 0; i < 20; i++) {
+      final File dir = new File(manyFilesDir, "dir" + i);
+      dir.mkdirs();
+      for (int j = 0; j < 50; j++) {
+        Files.write(new File(dir, String.valueOf(j)).toPath(), new byte[]{(byte) j});
+      }
+    }
+
+    final ExecutorService linkService = Executors.newFixedThreadPool(4);
+    try {
+      final int hardLinkCount =
+          FileIOUtils.createDeepHardlink(this.sourceDir, this.destDir, linkService, 4, null);
+      assertThat(hardLinkCount).isEqualTo(1005);
+      assertThat(areDirsEqual(this.sourceDir, this.destDir, true)).isTrue();
+    } finally {
+      linkService.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testHardlinkCopyWithManifest() throws IOException {
+    final File manifestFile = new File(this.sourceDir, "manifest");
+    int hardLinkCount =
+        FileIOUtils.createDeepHardlink(this.sourceDir, this.destDir, null, 1, manifestFile);
+    assertThat(hardLinkCount).isEqualTo(5);
+    assertThat(manifestFile).exists();
+    assertThat(new File(this.destDir, "manifest")).doesNotExist();
+    assertThat(areDirsEqual(this.baseDir, this.destDir, true)).isTrue();
+
+    // The manifest is replayed without walking the source dir, so a new file isn't linked
+    new File(this.sourceDir, "new.out").createNewFile();
+    final File destDir2 = this.temp.newFolder("dest2");
+    hardLinkCount =
+        FileIOUtils.createDeepHardlink(this.sourceDir, destDir2, null, 1, manifestFile);
+    assertThat(hardLinkCount).isEqualTo(5);
+    assertThat(areDirsEqual(this.baseDir, destDir2, true)).isTrue();
+  }
+
+  @Test
+  public void testHardlinkCopyWithStaleManifest() throws IOException {
+    final File manifestFile = new File(this.sourceDir, "manifest");
+    FileIOUtils.createDeepHardlink(this.sourceDir, this.destDir, null, 1, manifestFile);
+
+    new File(this.sourceDir, "a.out").delete();
+    assertThatThrownBy(() -> FileIOUtils.createDeepHardlink(this.sourceDir,
+        this.temp.newFolder("dest2"), null, 1, manifestFile)).isInstanceOf(IOException.class);
+    // The stale manifest is deleted, so the source dir is walked again
+    assertThat(manifestFile).doesNotExist();
+    final int hardLinkCount = FileIOUtils.createDeepHardlink(this.sourceDir,
+        this.temp.newFolder("dest3"), null, 1, manifestFile);
+    assertThat(hardLinkCount).isEqualTo(4);
+  }
+
   @Test
   public void testHardlinkCopyNonSource() {
     assertThatThrownBy(() -> {
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package azkaban.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import azkaban.metrics.CommonMetrics;
+import azkaban.utils.MemoryAdmissionController.Request;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class MemoryAdmissionControllerTest {
+
+  private static final long TIMEOUT_MS = 10_000L;
+
+  private SystemMemoryInfo memInfo;
+  private MemoryAdmissionController controller;
+
+  @Before
+  public void setUp() {
+    this.memInfo = mock(SystemMemoryInfo.class);
+    // 10 GB can be granted
+    when(this.memInfo.canSystemGrantMemory(anyLong()))
+        .thenAnswer(invocation -> (long) invocation.getArgument(0) <= 10L * 1024 * 1024);
+    this.controller = new MemoryAdmissionController(this.memInfo, mock(CommonMetrics.class),
+        TIMEOUT_MS * 10, TIMEOUT_MS * 10);
+  }
+
+  @Test
+  public void grantedIfMemoryAvailable() throws Exception {
+    final Request request = this.controller.request("job1", 4L * 1024 * 1024, 5);
+    assertThat(request.await(0)).isTrue();
+    assertThat(this.controller.getReservedMemory()).isEqualTo(4L * 1024 * 1024);
+    request.release();
+    assertThat(this.controller.getReservedMemory()).isEqualTo(0);
+  }
+
+  @Test
+  public void reservationsWithoutProcessAreCharged() throws Exception {
+    final Request first = this.controller.request("job1", 6L * 1024 * 1024, 5);
+    assertThat(first.await(0)).isTrue();
+    final Request second = this.controller.request("job2", 6L * 1024 * 1024, 5);
+    assertThat(second.await(0)).isFalse();
+    assertThat(this.controller.getNumWaitingRequests()).isEqualTo(0);
+  }
+
+  @Test
+  public void memoryNotUsedByProcessIsCharged() throws Exception {
+    final Request first = this.controller.request("job1", 6L * 1024 * 1024, 5);
+    assertThat(first.await(0)).isTrue();
+    first.setProcessId(() -> 42);
+    // The process uses 2 of its 6 GB, the 4 GB left are charged for as long as it runs
+    when(this.memInfo.getProcessMemorySize(42)).thenReturn(2L * 1024 * 1024);
+    final Request second = this.controller.request("job2", 7L * 1024 * 1024, 5);
+    assertThat(second.await(0)).isFalse();
+
+    when(this.memInfo.getProcessMemorySize(42)).thenReturn(5L * 1024 * 1024);
+    final Request third = this.controller.request("job3", 7L * 1024 * 1024, 5);
+    assertThat(third.await(0)).isTrue();
+  }
+
+  @Test
+  public void releaseWakesUpWaitingRequest() throws Exception {
+    final Request first = this.controller.request("job1", 6L * 1024 * 1024, 5);
+    assertThat(first.await(0)).isTrue();
+    final Request second = this.controller.request("job2", 6L * 1024 * 1024, 5);
+    final CompletableFuture<Boolean> granted = CompletableFuture.supplyAsync(() -> {
+      try {
+        return second.await(TIMEOUT_MS);
+      } catch (final InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    first.release();
+    assertThat(granted.get(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+  }
+
+  @Test
+  public void higherPriorityIsGrantedFirst() throws Exception {
+    final Request first = this.controller.request("job1", 6L * 1024 * 1024, 5);
+    assertThat(first.await(0)).isTrue();
+    final Request low = this.controller.request("low", 6L * 1024 * 1024, 1);
+    final Request high = this.controller.request("high", 6L * 1024 * 1024, 9);
+    // The low priority request is not at the head of the queue, even with memory available.
+    first.release();
+    assertThat(low.await(0)).isFalse();
+    assertThat(high.await(0)).isTrue();
+  }
+
+  @Test
+  public void requestThatDoesNotFitOnlyBlocksForAWhile() throws Exception {
+    this.controller = new MemoryAdmissionController(this.memInfo, mock(CommonMetrics.class),
+        TIMEOUT_MS * 10, 200);
+    final Request first = this.controller.request("job1", 6L * 1024 * 1024, 5);
+    assertThat(first.await(0)).isTrue();
+    final Request big = this.controller.request("big", 8L * 1024 * 1024, 5);
+    final Request small = this.controller.request("small", 2L * 1024 * 1024, 5);
+    // The big request is ahead in the queue, so the small one waits for it at first
+    assertThat(small.await(0)).isFalse();
+
+    final Request small2 = this.controller.request("small2", 2L * 1024 * 1024, 5);
+    final long startMs = System.currentTimeMillis();
+    assertThat(small2.await(TIMEOUT_MS)).isTrue();
+    assertThat(System.currentTimeMillis() - startMs).isLessThan(TIMEOUT_MS);
+    // The big request still waits at the head of the queue
+    assertThat(this.controller.getNumWaitingRequests()).isEqualTo(1);
+    assertThat(big.await(0)).isFalse();
+  }
+
+  @Test
+  public void cancelStopsWaiting() throws Exception {
+    final Request first = this.controller.request("job1", 6L * 1024 * 1024, 5);
+    assertThat(first.await(0)).isTrue();
+    final Request second = this.controller.request("job2", 6L * 1024 * 1024, 5);
+    final CompletableFuture<Boolean> granted = CompletableFuture.supplyAsync(() -> {
+      try {
+        return second.await(TIMEOUT_MS);
+      } catch (final InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    second.cancel();
+    assertThat(granted.get(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isFalse();
+    assertThat(this.controller.getNumWaitingRequests()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProcessOutputPumpTest {
+
+  private final List<String> messages = new ArrayList<>();
+  private Logger logger;
+  private ProcessOutputPump pump;
+
+  @Before
+  public void setUp() {
+    this.logger = Logger.getLogger("ProcessOutputPumpTest");
+    this.logger.removeAllAppenders();
+    this.logger.setLevel(Level.INFO);
+    this.logger.addAppender(new AppenderSkeleton() {
+      @Override
+      protected void append(final LoggingEvent event) {
+        synchronized (ProcessOutputPumpTest.this.messages) {
+          ProcessOutputPumpTest.this.messages.add(event.getRenderedMessage());
+        }
+      }
+
+      @Override
+      public void close() {
+      }
+
+      @Override
+      public boolean requiresLayout() {
+        return false;
+      }
+    });
+    this.pump = new ProcessOutputPump(1);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    this.pump.shutdown();
+  }
+
+  @Test
+  public void testPumpsAllOutput() throws Exception {
+    final Process process = new ProcessBuilder("sh", "-c",
+        "for i in 1 2 3 4 5; do echo line$i; done; printf last").start();
+    final ProcessOutputPump.Output output =
+        this.pump.pump(process, process.getInputStream(), this.logger, Level.INFO);
+    process.waitFor();
+    assertThat(output.awaitCompletion(5000)).isTrue();
+
+    // Each line is logged on its own
+    assertThat(this.messages)
+        .containsExactly("line1", "line2", "line3", "line4", "line5", "last");
+    assertThat(output.getRecentLog()).isEqualTo(
+        String.join(System.getProperty("line.separator"), "line1", "line2", "line3", "line4",
+            "line5", "last"));
+  }
+
+  @Test
+  public void testPumpsSeveralProcesses() throws Exception {
+    final List<Process> processes = new ArrayList<>();
+    final List<ProcessOutputPump.Output> outputs = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      final Process process = new ProcessBuilder("echo", "process" + i).start();
+      processes.add(process);
+      outputs.add(this.pump.pump(process, process.getInputStream(), this.logger, Level.INFO));
+    }
+    for (int i = 0; i < 10; i++) {
+      processes.get(i).waitFor();
+      assertThat(outputs.get(i).awaitCompletion(5000)).isTrue();
+      assertThat(outputs.get(i).getRecentLog()).isEqualTo("process" + i);
+    }
+    assertThat(this.messages).hasSize(10);
+  }
+}
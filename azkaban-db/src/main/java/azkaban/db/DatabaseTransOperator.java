@@ -107,6 +107,21 @@ public class DatabaseTransOperator {
     }
   }
 
+  /**
+   * Execute a batch operation on the connection of this operator.
+   *
+   * @param sqlCommand sqlCommand template
+   * @param params parameters of each statement in the batch
+   * @return the number of rows updated per statement
+   */
+  public int[] batch(final String sqlCommand, final Object[][] params) throws SQLException {
+    try {
+      return this.queryRunner.batch(this.conn, sqlCommand, params);
+    } finally {
+      // Note: CAN NOT CLOSE CONNECTION HERE.
+    }
+  }
+
   /**
    * @return the JDBC connection associated with this operator.
    */
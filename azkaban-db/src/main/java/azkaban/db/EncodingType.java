@@ -22,7 +22,10 @@ package azkaban.db;
 // TODO kunkun-tang: This class needs to move to azkaban-db module, as database module should be
 // Deprecated soon.
 public enum EncodingType {
-  PLAIN(1), GZIP(2);
+  // DEFLATE is a zlib stream compressed at the fastest level. DEFLATE_BLOCKS is the same
+  // compression in independently compressed blocks, see BlockCompressionUtils. Both are only used
+  // for execution logs.
+  PLAIN(1), GZIP(2), DEFLATE(3), DEFLATE_BLOCKS(4);
 
   private final int numVal;
 
@@ -36,6 +39,10 @@ public enum EncodingType {
         return PLAIN;
       case 2:
         return GZIP;
+      case 3:
+        return DEFLATE;
+      case 4:
+        return DEFLATE_BLOCKS;
       default:
         return PLAIN;
     }
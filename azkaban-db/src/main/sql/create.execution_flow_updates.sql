@@ -0,0 +1,13 @@
+-- Append-only log of node level status changes of running executions. Rows are applied on top of
+-- execution_flows.flow_data when a flow is fetched, and are removed when the flow is compacted.
+CREATE TABLE execution_flow_updates (
+  update_id   BIGINT NOT NULL AUTO_INCREMENT,
+  exec_id     INT    NOT NULL,
+  update_time BIGINT NOT NULL,
+  enc_type    TINYINT,
+  update_data LONGBLOB,
+  PRIMARY KEY (update_id)
+);
+
+CREATE INDEX ex_flow_updates_exec_id
+  ON execution_flow_updates (exec_id, update_id);
@@ -0,0 +1,13 @@
+-- DB Migration from release 3.105.0 to 3.106.0
+-- Adding execution_flow_updates table for delta encoded flow state persistence
+CREATE TABLE execution_flow_updates (
+  update_id   BIGINT NOT NULL AUTO_INCREMENT,
+  exec_id     INT    NOT NULL,
+  update_time BIGINT NOT NULL,
+  enc_type    TINYINT,
+  update_data LONGBLOB,
+  PRIMARY KEY (update_id)
+);
+
+CREATE INDEX ex_flow_updates_exec_id
+  ON execution_flow_updates (exec_id, update_id);
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package azkaban.dag;
+
+import azkaban.utils.ExecutorServiceUtils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs synthetic DAGs built with {@link DagBuilder} through {@link DagService}, to show how the
+ * throughput scales with the number of service threads. Each DAG is layered: every node depends
+ * on two nodes of the previous layer, and the node processor marks a node successful as soon as
+ * it runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DagServiceBenchmark {
+
+  private static final int LAYER_WIDTH = 20;
+
+  @Param({"1", "2", "4", "8"})
+  private int numThreads;
+
+  @Param({"64"})
+  private int numDags;
+
+  @Param({"500"})
+  private int nodesPerDag;
+
+  private DagService dagService;
+  private List<Dag> dags;
+  private CountDownLatch dagsFinishedLatch;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() {
+    this.dagService = new DagService(new ExecutorServiceUtils(), this.numThreads);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownTrial() throws InterruptedException {
+    this.dagService.shutdownAndAwaitTermination();
+  }
+
+  @Setup(Level.Invocation)
+  public void setUpInvocation() {
+    this.dagsFinishedLatch = new CountDownLatch(this.numDags);
+    final DagProcessor dagProcessor = (dag, status) -> {
+      if (status.isTerminal()) {
+        this.dagsFinishedLatch.countDown();
+      }
+    };
+    final NodeProcessor nodeProcessor = (node, status) -> {
+      if (status == Status.RUNNING) {
+        this.dagService.markNodeSuccess(node);
+      }
+    };
+    this.dags = new ArrayList<>(this.numDags);
+    for (int i = 0; i < this.numDags; i++) {
+      final DagBuilder builder = new DagBuilder("dag" + i, dagProcessor);
+      for (int j = 0; j < this.nodesPerDag; j++) {
+        builder.createNode("node" + j, nodeProcessor);
+        if (j >= LAYER_WIDTH) {
+          final int layerStart = j - j % LAYER_WIDTH;
+          builder.addParentNode("node" + j, "node" + (j - LAYER_WIDTH));
+          builder.addParentNode("node" + j,
+              "node" + (layerStart - LAYER_WIDTH + (j + 1) % LAYER_WIDTH));
+        }
+      }
+      this.dags.add(builder.build());
+    }
+  }
+
+  @Benchmark
+  public long runDags() throws InterruptedException {
+    for (final Dag dag : this.dags) {
+      this.dagService.startDag(dag);
+    }
+    this.dagsFinishedLatch.await();
+    return this.dagsFinishedLatch.getCount();
+  }
+}
@@ -34,6 +34,9 @@ public class Dag {
   private final DagProcessor dagProcessor;
   private final List<Node> nodes = new ArrayList<>();
   private Status status = Status.READY;
+  // The number of nodes which haven't reached a terminal state, and of failed nodes
+  private int unfinishedNodes = 0;
+  private int failedNodes = 0;
 
   Dag(final String name, final DagProcessor dagProcessor) {
     requireNonNull(name, "The name of the Dag can't be null");
@@ -58,6 +61,23 @@ public class Dag {
   void addNode(final Node node) {
     assert (node.getDag() == this);
     this.nodes.add(node);
+    // A new node is ready to run.
+    this.unfinishedNodes++;
+  }
+
+  /**
+   * Keeps count of the unfinished and failed nodes as a node changes status.
+   */
+  void updateNodeCounts(final Status oldStatus, final Status newStatus) {
+    if (oldStatus.isTerminal() != newStatus.isTerminal()) {
+      this.unfinishedNodes += newStatus.isTerminal() ? -1 : 1;
+    }
+    if (oldStatus == Status.FAILURE) {
+      this.failedNodes--;
+    }
+    if (newStatus == Status.FAILURE) {
+      this.failedNodes++;
+    }
   }
 
   void start() {
@@ -91,21 +111,14 @@ public class Dag {
    * <p>If any node has not reached its terminal state, this method will simply return.
    */
   void updateDagStatus() {
-    // A dag may have nodes that are disabled. It's safer to scan all the nodes.
-    // Assume the overhead is minimal. If it is not the case, we can optimize later.
-    boolean failed = false;
-    for (final Node node : this.nodes) {
-      final Status nodeStatus = node.getStatus();
-      if (!nodeStatus.isTerminal()) {
-        return;
-      }
-      if (nodeStatus == Status.FAILURE) {
-        failed = true;
-      }
+    // The nodes keep the counts up to date as they change status, so this doesn't need to scan
+    // all the nodes on every transition.
+    if (this.unfinishedNodes > 0) {
+      return;
     }
 
     // Update the dag status only after all nodes have reached terminal states.
-    updateDagStatusInternal(failed);
+    updateDagStatusInternal(this.failedNodes > 0);
   }
 
   /**
@@ -16,10 +16,14 @@
 
 package azkaban.dag;
 
+import azkaban.Constants.ConfigurationKeys;
 import azkaban.utils.ExecutorServiceUtils;
+import azkaban.utils.Props;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -32,7 +36,9 @@ import org.slf4j.LoggerFactory;
  * Thread safe and non blocking service for DAG processing.
  *
  * <p>Allow external inputs to be given to a dag or node to allow the dag to transition states
- * . Since only one thread is used to progress the DAG, thread synchronization is avoided.
+ * . Each DAG is progressed by one thread only, picked by the DAG from a fixed set of single
+ * threaded executors. Thus the transitions of a DAG are processed in order and thread
+ * synchronization is avoided, while different DAGs are processed in parallel.
  */
 @SuppressWarnings("FutureReturnValueIgnored")
 @Singleton
@@ -42,47 +48,61 @@ public class DagService {
   private static final Logger logger = LoggerFactory.getLogger(DagService.class);
 
   private final ExecutorServiceUtils executorServiceUtils;
-  private final ExecutorService executorService;
+  private final List<ExecutorService> executorServices;
 
   @Inject
+  public DagService(final ExecutorServiceUtils executorServiceUtils, final Props azkProps) {
+    this(executorServiceUtils, azkProps.getInt(ConfigurationKeys.DAG_SERVICE_THREADS,
+        Runtime.getRuntime().availableProcessors()));
+  }
+
   public DagService(final ExecutorServiceUtils executorServiceUtils) {
-    // Give the thread a name to make debugging easier.
+    this(executorServiceUtils, Runtime.getRuntime().availableProcessors());
+  }
+
+  @VisibleForTesting
+  DagService(final ExecutorServiceUtils executorServiceUtils, final int numThreads) {
+    // Give the threads a name to make debugging easier.
     this.executorServiceUtils = executorServiceUtils;
     final ThreadFactory namedThreadFactory = new ThreadFactoryBuilder()
-        .setNameFormat("azk-dag-service").build();
-    this.executorService = Executors.newSingleThreadExecutor(namedThreadFactory);
+        .setNameFormat("azk-dag-service-%d").build();
+    final ImmutableList.Builder<ExecutorService> executorServices = ImmutableList.builder();
+    for (int i = 0; i < Math.max(1, numThreads); i++) {
+      executorServices.add(Executors.newSingleThreadExecutor(namedThreadFactory));
+    }
+    this.executorServices = executorServices.build();
   }
 
   public void startDag(final Dag dag) {
-    this.executorService.submit(dag::start);
+    getExecutorService(dag).submit(dag::start);
   }
 
   /**
    * Transitions the node to the success state.
    */
   public void markNodeSuccess(final Node node) {
-    this.executorService.submit(node::markSuccess);
+    getExecutorService(node.getDag()).submit(node::markSuccess);
   }
 
   /**
    * Transitions the node from the killing state to the killed state.
    */
   public void markNodeKilled(final Node node) {
-    this.executorService.submit(node::markKilled);
+    getExecutorService(node.getDag()).submit(node::markKilled);
   }
 
   /**
    * Transitions the node to the failure state.
    */
   public void markNodeFailed(final Node node) {
-    this.executorService.submit(node::markFailed);
+    getExecutorService(node.getDag()).submit(node::markFailed);
   }
 
   /**
    * Kills a DAG.
    */
   public void killDag(final Dag dag) {
-    this.executorService.submit(dag::kill);
+    getExecutorService(dag).submit(dag::kill);
   }
 
   /**
@@ -90,11 +110,25 @@ public class DagService {
    */
   public void shutdownAndAwaitTermination() throws InterruptedException {
     logger.info("DagService is shutting down.");
-    this.executorServiceUtils.gracefulShutdown(this.executorService, SHUTDOWN_WAIT_TIMEOUT);
+    for (final ExecutorService executorService : this.executorServices) {
+      // Disable new tasks on all the threads before waiting for any of them
+      executorService.shutdown();
+    }
+    for (final ExecutorService executorService : this.executorServices) {
+      this.executorServiceUtils.gracefulShutdown(executorService, SHUTDOWN_WAIT_TIMEOUT);
+    }
+  }
+
+  /**
+   * Returns the executor service which processes all the transitions of the DAG.
+   */
+  private ExecutorService getExecutorService(final Dag dag) {
+    return this.executorServices.get(
+        Math.floorMod(dag.hashCode(), this.executorServices.size()));
   }
 
   @VisibleForTesting
-  ExecutorService getExecutorService() {
-    return this.executorService;
+  List<ExecutorService> getExecutorServices() {
+    return this.executorServices;
   }
 }
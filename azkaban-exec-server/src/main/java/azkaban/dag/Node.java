@@ -39,6 +39,9 @@ public class Node {
 
   private Status status = Status.READY;
 
+  // The number of parents that haven't succeeded effectively. The node can run when it drops to 0.
+  private int pendingParents = 0;
+
   private final Dag dag;
 
   Node(final String name, final NodeProcessor nodeProcessor, final Dag dag) {
@@ -64,6 +67,9 @@ public class Node {
   void addParent(final Node node) {
     this.parents.add(node);
     node.addChild(this);
+    if (!node.status.isSuccessEffectively()) {
+      this.pendingParents++;
+    }
   }
 
   private void addChild(final Node node) {
@@ -80,16 +86,8 @@ public class Node {
    * @return true if the node is ready to run
    */
   private boolean isReady() {
-    if (this.status != Status.READY) {
-      // e.g. if the node is disabled, it is not ready to run.
-      return false;
-    }
-    for (final Node parent : this.parents) {
-      if (!parent.status.isSuccessEffectively()) {
-        return false;
-      }
-    }
-    return true;
+    // e.g. if the node is disabled, it is not ready to run.
+    return this.status == Status.READY && this.pendingParents == 0;
   }
 
   /**
@@ -129,6 +127,10 @@ public class Node {
   }
 
   private void cancel() {
+    if (this.status == Status.CANCELED) {
+      // Canceled through another parent already, and so are its children.
+      return;
+    }
     // The node shouldn't have started.
     assert (this.status.isPreRunState());
     if (this.status != Status.DISABLED) {
@@ -147,10 +149,25 @@ public class Node {
   }
 
   private void changeStatus(final Status status) {
-    this.status = status;
+    updateStatus(status);
     this.nodeProcessor.changeStatus(this, this.status);
   }
 
+  /**
+   * Sets the status and updates the counters of the children and the dag that depend on it.
+   */
+  private void updateStatus(final Status status) {
+    final Status oldStatus = this.status;
+    this.status = status;
+    if (oldStatus.isSuccessEffectively() != status.isSuccessEffectively()) {
+      final int delta = status.isSuccessEffectively() ? -1 : 1;
+      for (final Node child : this.children) {
+        child.pendingParents += delta;
+      }
+    }
+    this.dag.updateNodeCounts(oldStatus, status);
+  }
+
   /**
    * Kills a node.
    *
@@ -189,7 +206,7 @@ public class Node {
 
   @VisibleForTesting
   void setStatus(final Status status) {
-    this.status = status;
+    updateStatus(status);
   }
 
   String getName() {
@@ -25,9 +25,10 @@ public interface NodeProcessor {
    * starting or killing a unit of work and call the {@link DagService} to transition the node
    * to the next status.
    *
-   * <p>The call will be made in the context of the DagService's one and only thread. Thus a
-   * processor should limit the time it takes to process the call. For lengthy operations such as
-   * I/O operations, consider offloading them to other threads.
+   * <p>The call will be made in the context of the DagService thread that processes the node's
+   * DAG, which other DAGs share. Thus a processor should limit the time it takes to process the
+   * call. For lengthy operations such as I/O operations, consider offloading them to other
+   * threads.
    *
    * @param node the node to change
    * @param status the new status
@@ -22,6 +22,7 @@ import azkaban.executor.ExecutorManagerException;
 import azkaban.project.ProjectFileHandler;
 import azkaban.spi.Dependency;
 import azkaban.spi.DependencyFile;
+import azkaban.storage.ProjectManifest;
 import azkaban.storage.ProjectStorageManager;
 import azkaban.utils.DependencyTransferException;
 import azkaban.utils.DependencyTransferManager;
@@ -110,17 +111,47 @@ public abstract class AbstractFlowPreparer {
   @VisibleForTesting
   public void downloadAndUnzipProject(final ProjectDirectoryMetadata proj, final int execId,
       final File dest) throws IOException {
+    unzipProject(proj, execId, downloadProjectFile(proj, execId), dest);
+  }
+
+  /**
+   * Download the project zip file, or the manifest of the project if it is stored as blobs.
+   *
+   * @param proj project to download
+   * @param execId execution id number
+   * @return handler of the downloaded file, to pass to {@link #unzipProject}
+   */
+  protected ProjectFileHandler downloadProjectFile(final ProjectDirectoryMetadata proj,
+      final int execId) {
     final long start = System.currentTimeMillis();
     final ProjectFileHandler projectFileHandler = requireNonNull(this.projectStorageManager
-            .getProjectFile(proj.getProjectId(), proj.getVersion()));
+            .getProjectFileOrManifest(proj.getProjectId(), proj.getVersion()));
     LOGGER.info("Downloading zip file for project {} when preparing execution [execid {}] " +
             "completed in {} second(s)", proj, execId, (System.currentTimeMillis() - start) / 1000);
+    return projectFileHandler;
+  }
 
+  /**
+   * Unzip the downloaded project zip file, or install the project files of the downloaded manifest,
+   * download the startup dependencies of the project and save the size of the project dir. The
+   * downloaded file is deleted afterwards.
+   *
+   * @param proj project to unzip
+   * @param execId execution id number
+   * @param projectFileHandler handler of the downloaded project zip file
+   * @param dest dir to unzip the project to
+   */
+  protected void unzipProject(final ProjectDirectoryMetadata proj, final int execId,
+      final ProjectFileHandler projectFileHandler, final File dest) throws IOException {
     try {
-      checkState("zip".equalsIgnoreCase(projectFileHandler.getFileType()));
-      final File zipFile = requireNonNull(projectFileHandler.getLocalFile());
-      final ZipFile zip = new ZipFile(zipFile);
-      Utils.unzip(zip, dest);
+      if (ProjectManifest.FILE_TYPE.equalsIgnoreCase(projectFileHandler.getFileType())) {
+        this.projectStorageManager.installProject(projectFileHandler, dest);
+      } else {
+        checkState("zip".equalsIgnoreCase(projectFileHandler.getFileType()));
+        final File zipFile = requireNonNull(projectFileHandler.getLocalFile());
+        final ZipFile zip = new ZipFile(zipFile);
+        Utils.unzip(zip, dest);
+      }
 
       // Download all startup dependencies. If this is a fat archive, it will be an empty set (so we won't download
       // anything). Note that we are getting our list of startup dependencies from the DB, NOT from the
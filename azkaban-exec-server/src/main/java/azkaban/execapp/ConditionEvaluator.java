@@ -0,0 +1,227 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package azkaban.execapp;
+
+import static azkaban.project.DirectoryYamlFlowLoader.CONDITION_ON_JOB_STATUS_PATTERN;
+import static azkaban.project.DirectoryYamlFlowLoader.CONDITION_VARIABLE_REPLACEMENT_PATTERN;
+
+import azkaban.executor.ExecutableFlowBase;
+import azkaban.executor.ExecutableNode;
+import java.security.AccessControlContext;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+/**
+ * Evaluates the runtime variable part of node conditions for a single flow.
+ *
+ * <p>Conditions are compiled once into scripts in which every ${jobName:variable} reference is a
+ * script binding, so that evaluating a condition only binds the job output values and runs the
+ * compiled script. Results are cached by condition and bound values for the lifetime of the flow.
+ * Scripts run with no permissions.
+ */
+public class ConditionEvaluator {
+
+  private static final ScriptEngineManager SCRIPT_ENGINE_MANAGER = new ScriptEngineManager();
+  private static final String BINDING_PREFIX = "azkabanConditionVar";
+  // Restrict permission using the two-argument form of doPrivileged()
+  private static final AccessControlContext NO_PERMISSIONS_CONTEXT = new AccessControlContext(
+      new ProtectionDomain[]{new ProtectionDomain(null, null)});
+
+  private final ScriptEngine scriptEngine;
+  // Only accessed while holding the lock of the evaluator
+  private final Bindings bindings;
+  private final Map<String, PreparedCondition> preparedConditions = new ConcurrentHashMap<>();
+  private final Map<String, Boolean> results = new ConcurrentHashMap<>();
+
+  public ConditionEvaluator() {
+    this.scriptEngine = SCRIPT_ENGINE_MANAGER.getEngineByName("JavaScript");
+    this.bindings = this.scriptEngine.createBindings();
+  }
+
+  /**
+   * Compiles the conditions of all nodes in the flow, including the nodes of embedded flows.
+   */
+  public void prepare(final ExecutableFlowBase flow) {
+    for (final ExecutableNode node : flow.getExecutableNodes()) {
+      if (node.getCondition() != null) {
+        getPreparedCondition(node.getCondition());
+      }
+      if (node instanceof ExecutableFlowBase) {
+        prepare((ExecutableFlowBase) node);
+      }
+    }
+  }
+
+  public PreparedCondition getPreparedCondition(final String condition) {
+    return this.preparedConditions.computeIfAbsent(condition, this::compile);
+  }
+
+  /**
+   * Evaluates a prepared condition.
+   *
+   * @param condition the prepared condition
+   * @param values values of {@link PreparedCondition#getVariables()}, in the same order
+   * @return the result of the condition, false if it doesn't evaluate to a boolean
+   * @throws ScriptException if the condition can't be compiled or evaluated
+   */
+  public boolean evaluate(final PreparedCondition condition, final List<String> values)
+      throws ScriptException {
+    if (condition.compileException != null) {
+      throw condition.compileException;
+    }
+    final String cacheKey = condition.expression + '\u0000' + String.join("\u0000", values);
+    final Boolean cached = this.results.get(cacheKey);
+    if (cached != null) {
+      return cached;
+    }
+
+    final boolean result = execute(condition, values);
+    this.results.put(cacheKey, result);
+    return result;
+  }
+
+  private synchronized boolean execute(final PreparedCondition condition,
+      final List<String> values) throws ScriptException {
+    // The engine creates a new global for bindings it didn't create itself, so the same engine
+    // bindings are reused for every evaluation and the variables are removed afterwards.
+    for (int i = 0; i < values.size(); i++) {
+      this.bindings.put(BINDING_PREFIX + i, values.get(i));
+    }
+
+    final Object object;
+    try {
+      object = AccessController.doPrivileged(
+          (PrivilegedExceptionAction<Object>) () -> condition.script != null
+              ? condition.script.eval(this.bindings)
+              : this.scriptEngine.eval(condition.expression, this.bindings),
+          NO_PERMISSIONS_CONTEXT);
+    } catch (final PrivilegedActionException e) {
+      throw (ScriptException) e.getException();
+    } finally {
+      for (int i = 0; i < values.size(); i++) {
+        this.bindings.remove(BINDING_PREFIX + i);
+      }
+    }
+    return object instanceof Boolean && (Boolean) object;
+  }
+
+  private PreparedCondition compile(final String condition) {
+    String expression = condition;
+    // Replace the condition on job status macro with "true" to skip the evaluation by Script
+    // Engine since it has already been evaluated.
+    final Matcher jobStatusMatcher = CONDITION_ON_JOB_STATUS_PATTERN.matcher(condition);
+    if (jobStatusMatcher.find()) {
+      expression = condition.replace(jobStatusMatcher.group(1), "true");
+    }
+
+    // Replace every distinct job variable reference with a binding
+    final Map<String, String> bindingNames = new LinkedHashMap<>();
+    final List<JobVariable> variables = new ArrayList<>();
+    final Matcher variableMatcher = CONDITION_VARIABLE_REPLACEMENT_PATTERN.matcher(expression);
+    final StringBuffer sb = new StringBuffer();
+    while (variableMatcher.find()) {
+      String bindingName = bindingNames.get(variableMatcher.group());
+      if (bindingName == null) {
+        bindingName = BINDING_PREFIX + variables.size();
+        bindingNames.put(variableMatcher.group(), bindingName);
+        variables.add(new JobVariable(variableMatcher.group(1), variableMatcher.group(2)));
+      }
+      variableMatcher.appendReplacement(sb, bindingName);
+    }
+    variableMatcher.appendTail(sb);
+    expression = sb.toString();
+
+    CompiledScript script = null;
+    ScriptException compileException = null;
+    if (this.scriptEngine instanceof Compilable) {
+      try {
+        script = ((Compilable) this.scriptEngine).compile(expression);
+      } catch (final ScriptException e) {
+        compileException = e;
+      }
+    }
+    return new PreparedCondition(expression, variables, script, compileException);
+  }
+
+  /**
+   * A ${jobName:variable} reference in a condition.
+   */
+  public static class JobVariable {
+
+    private final String jobName;
+    private final String variable;
+
+    JobVariable(final String jobName, final String variable) {
+      this.jobName = jobName;
+      this.variable = variable;
+    }
+
+    public String getJobName() {
+      return this.jobName;
+    }
+
+    public String getVariable() {
+      return this.variable;
+    }
+
+    @Override
+    public String toString() {
+      return "${" + this.jobName + ":" + this.variable + "}";
+    }
+  }
+
+  /**
+   * A condition compiled into a script, along with the job variables it binds.
+   */
+  public static class PreparedCondition {
+
+    private final String expression;
+    private final List<JobVariable> variables;
+    private final CompiledScript script;
+    private final ScriptException compileException;
+
+    PreparedCondition(final String expression, final List<JobVariable> variables,
+        final CompiledScript script, final ScriptException compileException) {
+      this.expression = expression;
+      this.variables = Collections.unmodifiableList(variables);
+      this.script = script;
+      this.compileException = compileException;
+    }
+
+    public String getExpression() {
+      return this.expression;
+    }
+
+    public List<JobVariable> getVariables() {
+      return this.variables;
+    }
+  }
+}
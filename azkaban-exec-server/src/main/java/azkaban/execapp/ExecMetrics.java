@@ -34,7 +34,15 @@ public class ExecMetrics {
   public static final String NUM_RUNNING_FLOWS_NAME = "EXEC-NumRunningFlows";
   public static final String NUM_QUEUED_FLOWS_NAME = "EXEC-NumQueuedFlows";
   public static final String PROJECT_DIR_CACHE_HIT_RATIO_NAME = "project-dir-cache-hit-ratio";
+  public static final String PROJECT_CACHE_SIZE_NAME = "EXEC-ProjectCacheSizeInBytes";
+  public static final String PROJECT_CACHE_EVICTION_METER_NAME = "project-cache-eviction-meter";
+  public static final String PROJECT_CACHE_EVICTED_BYTES_METER_NAME =
+      "project-cache-evicted-bytes-meter";
   public static final String FLOW_SETUP_TIMER_NAME = "flow-setup-timer";
+  public static final String FLOW_SETUP_DOWNLOAD_TIMER_NAME = "flow-setup-download-timer";
+  public static final String FLOW_SETUP_UNZIP_TIMER_NAME = "flow-setup-unzip-timer";
+  public static final String FLOW_SETUP_HARDLINK_TIMER_NAME = "flow-setup-hardlink-timer";
+  public static final String FLOW_RAMP_CONFIGURE_TIMER_NAME = "flow-ramp-configure-timer";
   public static final String FLOW_STARTUP_DELAY_TIMER_NAME = "flow-startup-delay-timer";
   public static final String FLOW_KILLING_COUNTER_NAME = "flow-killing-counter";
   public static final String FLOW_TIME_TO_KILL_HISTOGRAM_NAME = "flow-time-to-kill-histogram";
@@ -44,11 +52,23 @@ public class ExecMetrics {
   public static final String JOB_SUCCESS_METER_NAME = "job-success-meter";
   public static final String JOB_KILLED_METER_NAME = "job-killed-meter";
   public static final String POLLING_FREQUENCY_METER_NAME = "polling-frequency-meter";
+  public static final String POLLING_CLAIM_TIMER_NAME = "polling-claim-timer";
+  public static final String POLLING_CLAIM_BATCH_SIZE_HISTOGRAM_NAME =
+      "polling-claim-batch-size-histogram";
+  public static final String NUM_QUEUED_JOBS_NAME = "EXEC-NumQueuedJobs";
+  public static final String NUM_RUNNING_JOBS_NAME = "EXEC-NumRunningJobs";
+  public static final String JOB_QUEUE_WAIT_TIME_HISTOGRAM_NAME = "job-queue-wait-time-histogram";
 
   private final MetricsManager metricsManager;
   private final Timer flowSetupTimer;
+  private final Timer flowSetupDownloadTimer;
+  private final Timer flowSetupUnzipTimer;
+  private final Timer flowSetupHardlinkTimer;
+  private final Timer flowRampConfigureTimer;
   private final Timer flowStartupDelayTimer;
   private final ProjectCacheHitRatio projectCacheHitRatio;
+  private final Meter projectCacheEvictionMeter;
+  private final Meter projectCacheEvictedBytesMeter;
   private final Counter flowKillingCounter;
   private final Histogram flowTimeToKillHistogram;
   private final Meter flowKilledMeter;
@@ -57,6 +77,9 @@ public class ExecMetrics {
   private final Meter jobSuccessMeter;
   private final Meter jobKilledMeter;
   private final Meter pollingFrequencyMeter;
+  private final Timer pollingClaimTimer;
+  private final Histogram pollingClaimBatchSizeHistogram;
+  private final Histogram jobQueueWaitTimeHistogram;
   // TODO ypadron-in: add metrics to measure the time between flow submission and flow execution
   // preparation/start after clock skew issues in execution times are resolved.
 
@@ -67,7 +90,15 @@ public class ExecMetrics {
     this.projectCacheHitRatio = new ProjectCacheHitRatio();
     this.metricsManager.addGauge(PROJECT_DIR_CACHE_HIT_RATIO_NAME,
         this.projectCacheHitRatio::getValue);
+    this.projectCacheEvictionMeter =
+        this.metricsManager.addMeter(PROJECT_CACHE_EVICTION_METER_NAME);
+    this.projectCacheEvictedBytesMeter =
+        this.metricsManager.addMeter(PROJECT_CACHE_EVICTED_BYTES_METER_NAME);
     this.flowSetupTimer = this.metricsManager.addTimer(FLOW_SETUP_TIMER_NAME);
+    this.flowSetupDownloadTimer = this.metricsManager.addTimer(FLOW_SETUP_DOWNLOAD_TIMER_NAME);
+    this.flowSetupUnzipTimer = this.metricsManager.addTimer(FLOW_SETUP_UNZIP_TIMER_NAME);
+    this.flowSetupHardlinkTimer = this.metricsManager.addTimer(FLOW_SETUP_HARDLINK_TIMER_NAME);
+    this.flowRampConfigureTimer = this.metricsManager.addTimer(FLOW_RAMP_CONFIGURE_TIMER_NAME);
     this.flowStartupDelayTimer = this.metricsManager.addTimer(FLOW_STARTUP_DELAY_TIMER_NAME);
     this.flowKillingCounter = this.metricsManager.addCounter(FLOW_KILLING_COUNTER_NAME);
     this.flowTimeToKillHistogram =
@@ -78,6 +109,11 @@ public class ExecMetrics {
     this.jobSuccessMeter = this.metricsManager.addMeter(JOB_SUCCESS_METER_NAME);
     this.jobKilledMeter = this.metricsManager.addMeter(JOB_KILLED_METER_NAME);
     this.pollingFrequencyMeter = this.metricsManager.addMeter(POLLING_FREQUENCY_METER_NAME);
+    this.pollingClaimTimer = this.metricsManager.addTimer(POLLING_CLAIM_TIMER_NAME);
+    this.pollingClaimBatchSizeHistogram =
+        this.metricsManager.addHistogram(POLLING_CLAIM_BATCH_SIZE_HISTOGRAM_NAME);
+    this.jobQueueWaitTimeHistogram =
+        this.metricsManager.addHistogram(JOB_QUEUE_WAIT_TIME_HISTOGRAM_NAME);
   }
 
   ProjectCacheHitRatio getProjectCacheHitRatio() {
@@ -91,6 +127,26 @@ public class ExecMetrics {
         .addGauge(NUM_QUEUED_FLOWS_NAME, flowRunnerManager::getNumQueuedFlows);
   }
 
+  void addProjectCacheCleanerMetrics(final ProjectCacheCleaner projectCacheCleaner) {
+    this.metricsManager.addGauge(PROJECT_CACHE_SIZE_NAME,
+        projectCacheCleaner::getProjectDirsTotalSizeInBytes);
+  }
+
+  public void addJobSchedulerMetrics(final JobScheduler jobScheduler) {
+    this.metricsManager.addGauge(NUM_QUEUED_JOBS_NAME, jobScheduler::getNumQueuedJobs);
+    this.metricsManager.addGauge(NUM_RUNNING_JOBS_NAME, jobScheduler::getNumRunningJobs);
+  }
+
+  /**
+   * Record the eviction of a project dir from the project cache.
+   *
+   * @param dirSizeInBytes size of the evicted project dir
+   */
+  public void markProjectCacheEviction(final long dirSizeInBytes) {
+    this.projectCacheEvictionMeter.mark();
+    this.projectCacheEvictedBytesMeter.mark(dirSizeInBytes);
+  }
+
   /**
    * @return the {@link Timer.Context} for the timer.
    */
@@ -98,6 +154,35 @@ public class ExecMetrics {
     return this.flowSetupTimer.time();
   }
 
+  /**
+   * @return the {@link Timer.Context} for the timer of downloading the project zip.
+   */
+  public Timer.Context getFlowSetupDownloadTimerContext() {
+    return this.flowSetupDownloadTimer.time();
+  }
+
+  /**
+   * @return the {@link Timer.Context} for the timer of unzipping the project, including the
+   * download of its startup dependencies.
+   */
+  public Timer.Context getFlowSetupUnzipTimerContext() {
+    return this.flowSetupUnzipTimer.time();
+  }
+
+  /**
+   * @return the {@link Timer.Context} for the timer of hard-linking the execution dir.
+   */
+  public Timer.Context getFlowSetupHardlinkTimerContext() {
+    return this.flowSetupHardlinkTimer.time();
+  }
+
+  /**
+   * @return the {@link Timer.Context} for the timer of configuring the ramps of a flow.
+   */
+  public Timer.Context getFlowRampConfigureTimerContext() {
+    return this.flowRampConfigureTimer.time();
+  }
+
   /**
    * @return the {@link Timer.Context} for the flow-startup-delay timer.
    */
@@ -163,6 +248,15 @@ public class ExecMetrics {
     this.jobKilledMeter.mark();
   }
 
+  /**
+   * Add the time a job waited in the shared job thread pool queue before it started.
+   *
+   * @param time queue wait time in milliseconds
+   */
+  public void addJobQueueWaitTime(final long time) {
+    this.jobQueueWaitTimeHistogram.update(time);
+  }
+
   /**
    * Record an execution poll event.
    */
@@ -170,4 +264,20 @@ public class ExecMetrics {
     this.pollingFrequencyMeter.mark();
   }
 
+  /**
+   * @return the {@link Timer.Context} for the timer of claiming polled executions in the DB.
+   */
+  public Timer.Context getPollingClaimTimerContext() {
+    return this.pollingClaimTimer.time();
+  }
+
+  /**
+   * Add the number of executions claimed by one poll.
+   *
+   * @param batchSize number of claimed executions
+   */
+  public void addPollingClaimBatchSize(final int batchSize) {
+    this.pollingClaimBatchSizeHistogram.update(batchSize);
+  }
+
 }
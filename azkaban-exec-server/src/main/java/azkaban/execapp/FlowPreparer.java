@@ -16,14 +16,19 @@
  */
 package azkaban.execapp;
 
+import azkaban.Constants;
 import azkaban.execapp.metric.ProjectCacheHitRatio;
 import azkaban.executor.ExecutableFlow;
 import azkaban.executor.ExecutorManagerException;
+import azkaban.project.ProjectFileHandler;
 import azkaban.storage.ProjectStorageManager;
 import azkaban.utils.DependencyTransferManager;
 import azkaban.utils.FileIOUtils;
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -31,6 +36,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.FileTime;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,6 +51,11 @@ import org.slf4j.LoggerFactory;
 public class FlowPreparer extends AbstractFlowPreparer {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(FlowPreparer.class);
+  // Number of locks the project versions are striped over
+  private static final int NUM_PROJECT_LOCK_STRIPES = 256;
+  // Name of the file in a project dir which lists the files to hard link into execution dirs
+  static final String PROJECT_DIR_LINK_MANIFEST_FILE_NAME =
+      "___azkaban_project_dir_link_manifest___";
 
   // TODO spyne: move to config class
   private final File executionsDir;
@@ -49,16 +64,35 @@ public class FlowPreparer extends AbstractFlowPreparer {
   // Null if cache clean-up is disabled
   private final Optional<ProjectCacheCleaner> projectCacheCleaner;
   private final ProjectCacheHitRatio projectCacheHitRatio;
+  private final ExecMetrics execMetrics;
+  private final int hardlinkThreads;
+  // Hard links the files of execution dirs, shared by all executions. Null with a single thread.
+  private final ExecutorService hardlinkService;
+  private final boolean hardlinkManifestEnabled;
+  // Serializes the download and installation of the same project version, so that it's downloaded
+  // once. Different project versions are set up concurrently, unless their locks collide.
+  private final Striped<Lock> projectLocks = Striped.lock(NUM_PROJECT_LOCK_STRIPES);
+  // Installing a project may delete other project dirs to free up space in the cache, so it's
+  // done under the write lock. Execution dirs are hard-linked under the read lock.
+  private final ReadWriteLock projectCacheLock = new ReentrantReadWriteLock();
 
   FlowPreparer(final ProjectStorageManager projectStorageManager,
       final DependencyTransferManager dependencyTransferManager, final File projectsDir,
-      final ProjectCacheCleaner cleaner, final ProjectCacheHitRatio projectCacheHitRatio,
+      final ProjectCacheCleaner cleaner, final ExecMetrics execMetrics,
       final File executionsDir) {
+    this(projectStorageManager, dependencyTransferManager, projectsDir, cleaner, execMetrics,
+        executionsDir, Constants.DEFAULT_EXECUTION_DIR_HARDLINK_THREADS, false);
+  }
+
+  FlowPreparer(final ProjectStorageManager projectStorageManager,
+      final DependencyTransferManager dependencyTransferManager, final File projectsDir,
+      final ProjectCacheCleaner cleaner, final ExecMetrics execMetrics,
+      final File executionsDir, final int hardlinkThreads, final boolean hardlinkManifestEnabled) {
     super(projectStorageManager, dependencyTransferManager);
 
     Preconditions.checkNotNull(executionsDir);
     Preconditions.checkNotNull(projectsDir);
-    Preconditions.checkNotNull(projectCacheHitRatio);
+    Preconditions.checkNotNull(execMetrics);
 
     Preconditions.checkArgument(projectsDir.exists());
     Preconditions.checkArgument(executionsDir.exists());
@@ -66,13 +100,24 @@ public class FlowPreparer extends AbstractFlowPreparer {
     this.executionsDir = executionsDir;
     this.projectCacheDir = projectsDir;
     this.projectCacheCleaner = Optional.ofNullable(cleaner);
-    this.projectCacheHitRatio = projectCacheHitRatio;
+    this.projectCacheHitRatio = execMetrics.getProjectCacheHitRatio();
+    this.execMetrics = execMetrics;
+    this.hardlinkThreads = hardlinkThreads;
+    this.hardlinkService = hardlinkThreads > 1 ? Executors.newFixedThreadPool(hardlinkThreads,
+        new ThreadFactoryBuilder().setNameFormat("azk-hardlink-%d").setDaemon(true).build())
+        : null;
+    this.hardlinkManifestEnabled = hardlinkManifestEnabled;
   }
 
 
   /**
    * Prepare the flow directory for execution.
    *
+   * <p>Only the setup of the same project version is serialized. But it doesn't prevent multiple
+   * executor processes interfering with each other triggering race conditions. So it's important
+   * to operationally make sure that only one executor process is setting up flow execution
+   * against the shared project directory.
+   *
    * @param flow Executable Flow instance.
    */
   @Override
@@ -82,43 +127,55 @@ public class FlowPreparer extends AbstractFlowPreparer {
       final ProjectDirectoryMetadata project = new ProjectDirectoryMetadata(
           flow.getProjectId(),
           flow.getVersion());
+      project.setInstalledDir(new File(this.projectCacheDir, generateProjectDirName(project)));
 
       final long flowPrepStartTime = System.currentTimeMillis();
+      long lockWaitTime = 0;
+      final File execDir;
 
-      tempDir = downloadProjectIfNotExists(project, flow.getExecutionId());
-
-      LOGGER.info("Project is setup for execution {}", flow.getExecutionId());
-      // With synchronization, only one thread is allowed to proceed to avoid complicated race
-      // conditions which could arise when multiple threads are downloading/deleting/hard-linking
-      // the same project. But it doesn't prevent multiple executor processes interfering with each
-      // other triggering race conditions. So it's important to operationally make sure that only
-      // one executor process is setting up flow execution against the shared project directory.
-      long criticalSectionStartTime = -1;
-      File execDir = null;
+      final Lock projectLock = this.projectLocks.get(project.getInstalledDir().getName());
+      long lockStartTime = System.currentTimeMillis();
+      projectLock.lock();
+      try {
+        lockWaitTime += System.currentTimeMillis() - lockStartTime;
+        // Another flow may have installed the project while this one waited for the lock
+        tempDir = downloadProjectIfNotExists(project, flow.getExecutionId());
+        LOGGER.info("Project is setup for execution {}", flow.getExecutionId());
 
-      synchronized (this) {
-        LOGGER.info("Setting up execution dir for {}", flow.getExecutionId());
-        criticalSectionStartTime = System.currentTimeMillis();
-        if (!project.getInstalledDir().exists() && tempDir != null) {
-          // If new project is downloaded and project dir cache clean-up feature is enabled, then
-          // perform clean-up if size of all project dirs exceeds the cache size.
-          this.projectCacheCleaner.ifPresent(cacheCleaner -> cacheCleaner
-                  .deleteProjectDirsIfNecessary(project.getDirSizeInByte()));
-          // Rename temp dir to a proper project directory name.
-          Files.move(tempDir.toPath(), project.getInstalledDir().toPath());
+        lockStartTime = System.currentTimeMillis();
+        if (tempDir != null) {
+          this.projectCacheLock.writeLock().lock();
+          try {
+            lockWaitTime += System.currentTimeMillis() - lockStartTime;
+            installProject(project, tempDir);
+            tempDir = null;
+            // Downgrade, so that the new project can't be cleaned up before it's hard-linked
+            this.projectCacheLock.readLock().lock();
+          } finally {
+            this.projectCacheLock.writeLock().unlock();
+          }
+        } else {
+          this.projectCacheLock.readLock().lock();
+          lockWaitTime += System.currentTimeMillis() - lockStartTime;
         }
+      } finally {
+        projectLock.unlock();
+      }
 
+      try {
+        LOGGER.info("Setting up execution dir for {}", flow.getExecutionId());
         final long start = System.currentTimeMillis();
         execDir = setupExecutionDir(project.getInstalledDir().toPath(), flow);
         final long end = System.currentTimeMillis();
         LOGGER.info("Setting up execution dir {} took {} sec(s)", execDir, (end - start) / 1000);
+      } finally {
+        this.projectCacheLock.readLock().unlock();
       }
 
       final long flowPrepCompletionTime = System.currentTimeMillis();
-      LOGGER.info("Flow preparation completed in {} sec(s), out of which {} sec(s) was spent inside "
-              + "critical section. [execid: {}, path: {}]",
-          (flowPrepCompletionTime - flowPrepStartTime) / 1000,
-          (flowPrepCompletionTime - criticalSectionStartTime) / 1000,
+      LOGGER.info("Flow preparation completed in {} sec(s), out of which {} sec(s) was spent "
+              + "waiting for locks. [execid: {}, path: {}]",
+          (flowPrepCompletionTime - flowPrepStartTime) / 1000, lockWaitTime / 1000,
           flow.getExecutionId(), execDir.getPath());
     } catch (final Exception ex) {
       FileIOUtils.deleteDirectorySilently(tempDir);
@@ -127,6 +184,20 @@ public class FlowPreparer extends AbstractFlowPreparer {
     }
   }
 
+  /**
+   * Move a downloaded project into the project cache. If the project dir cache clean-up feature
+   * is enabled, clean up first if size of all project dirs would exceed the cache size.
+   * Must be called holding the write lock of the project cache.
+   */
+  private void installProject(final ProjectDirectoryMetadata project, final File tempDir)
+      throws IOException {
+    this.projectCacheCleaner.ifPresent(cacheCleaner -> cacheCleaner
+        .deleteProjectDirsIfNecessary(project.getDirSizeInByte()));
+    // Rename temp dir to a proper project directory name.
+    Files.move(tempDir.toPath(), project.getInstalledDir().toPath());
+    this.projectCacheCleaner.ifPresent(cacheCleaner -> cacheCleaner.addProjectDir(project));
+  }
+
   @Override
   protected File setupExecutionDir(final Path dir, final ExecutableFlow flow)
       throws ExecutorManagerException {
@@ -134,7 +205,13 @@ public class FlowPreparer extends AbstractFlowPreparer {
     try {
       execDir = createExecDir(flow);
       // Create hardlinks from the project
-      FileIOUtils.createDeepHardlink(dir.toFile(), execDir);
+      try (final Timer.Context context = this.execMetrics.getFlowSetupHardlinkTimerContext()) {
+        final File manifestFile = this.hardlinkManifestEnabled
+            ? new File(dir.toFile(), PROJECT_DIR_LINK_MANIFEST_FILE_NAME) : null;
+        final int linkCount = FileIOUtils.createDeepHardlink(dir.toFile(), execDir,
+            this.hardlinkService, this.hardlinkThreads, manifestFile);
+        LOGGER.info("Hard-linked {} files into execution dir {}", linkCount, execDir);
+      }
       return execDir;
     } catch (final Exception ex) {
       FileIOUtils.deleteDirectorySilently(execDir);
@@ -197,6 +274,7 @@ public class FlowPreparer extends AbstractFlowPreparer {
       // projects when performing project directory clean-up.
       updateLastModifiedTime(
           Paths.get(proj.getInstalledDir().getPath(), PROJECT_DIR_SIZE_FILE_NAME));
+      this.projectCacheCleaner.ifPresent(cacheCleaner -> cacheCleaner.markProjectDirAccessed(proj));
       return null;
     }
 
@@ -204,7 +282,18 @@ public class FlowPreparer extends AbstractFlowPreparer {
 
     // Download project to a temp dir if not exists in local cache.
     final File tempDir = createTempDir(proj);
-    downloadAndUnzipProject(proj, execId, tempDir);
+    try {
+      final ProjectFileHandler projectFileHandler;
+      try (final Timer.Context context = this.execMetrics.getFlowSetupDownloadTimerContext()) {
+        projectFileHandler = downloadProjectFile(proj, execId);
+      }
+      try (final Timer.Context context = this.execMetrics.getFlowSetupUnzipTimerContext()) {
+        unzipProject(proj, execId, projectFileHandler, tempDir);
+      }
+    } catch (final IOException | RuntimeException e) {
+      FileIOUtils.deleteDirectorySilently(tempDir);
+      throw e;
+    }
 
     return tempDir;
   }
@@ -221,5 +310,8 @@ public class FlowPreparer extends AbstractFlowPreparer {
     if (projectCacheCleaner.isPresent()) {
       this.projectCacheCleaner.get().shutdown();
     }
+    if (this.hardlinkService != null) {
+      this.hardlinkService.shutdown();
+    }
   }
 }
@@ -47,6 +47,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -375,10 +376,13 @@ public class FlowRampManager implements EventListener<Event>, ThreadPoolExecutin
   /**
    * Call to set Executable Ramp Metadata into ExecutableFlow
    */
-  synchronized public void configure(ExecutableFlow executableFlow, File flowDirectory) {
+  public void configure(ExecutableFlow executableFlow, File flowDirectory) {
 
-    if (!isRampFeatureActivated()) return;
+    final List<String> excludedJarRegExps = setRampMetadata(executableFlow);
+    if (excludedJarRegExps == null) return;
 
+    // The flow directory belongs to this execution, so the jar files are moved without holding
+    // the lock on the ramp settings.
     // To be safe, check if there is any jar files in ./excluded folder
     // and move them back to the place in original location of the package
     moveFiles(
@@ -392,6 +396,33 @@ public class FlowRampManager implements EventListener<Event>, ThreadPoolExecutin
         ALL_LIB_JAR_REG_EXP
     );
 
+    for (String regExpression : excludedJarRegExps) {
+      // Move those selected jar dependencies in ./ and ./lib folders
+      // into the ./excluded and ./excluded/lib folder
+      moveFiles(
+          flowDirectory,
+          FileIOUtils.getDirectory(flowDirectory, EXCLUDED_SUB_FOLDER_NAME),
+          regExpression
+      );
+      moveFiles(
+          FileIOUtils.getDirectory(flowDirectory, LIB_SUB_FOLDER_NAME),
+          FileIOUtils.getDirectory(flowDirectory, EXCLUDED_LIB_SUB_FOLDER_NAME),
+          regExpression
+      );
+    }
+  }
+
+  /**
+   * Set Executable Ramp Metadata into ExecutableFlow
+   *
+   * @return reg exps of the jar dependencies to exclude from the flow directory, null if the ramp
+   * feature is not activated
+   */
+  synchronized private List<String> setRampMetadata(ExecutableFlow executableFlow) {
+
+    if (!isRampFeatureActivated()) return null;
+
+    final List<String> excludedJarRegExps = new ArrayList<>();
     String flowName = executableFlow.getFlowName();
 
     ExecutableFlowRampMetadata executableFlowRampMetadata =
@@ -523,18 +554,7 @@ public class FlowRampManager implements EventListener<Event>, ThreadPoolExecutin
         String regExpression = String.format(LIB_JAR_REG_EXP_FORMATTER, String.join("|", removableDependencies));
 
         if (!removableDependencies.isEmpty()) {
-           // Move those selected jar dependencies in ./ and ./lib folders
-           // into the ./excluded and ./excluded/lib folder
-           moveFiles(
-               flowDirectory,
-               FileIOUtils.getDirectory(flowDirectory, EXCLUDED_SUB_FOLDER_NAME),
-               regExpression
-           );
-           moveFiles(
-               FileIOUtils.getDirectory(flowDirectory, LIB_SUB_FOLDER_NAME),
-               FileIOUtils.getDirectory(flowDirectory, EXCLUDED_LIB_SUB_FOLDER_NAME),
-               regExpression
-           );
+           excludedJarRegExps.add(regExpression);
         }
 
       } catch (Exception e) {
@@ -544,6 +564,7 @@ public class FlowRampManager implements EventListener<Event>, ThreadPoolExecutin
 
     // Append the result into the executable flow
     executableFlow.setExecutableFlowRampMetadata(executableFlowRampMetadata);
+    return excludedJarRegExps;
   }
 
   private void moveFiles(File sourceDir, File destinationDir, String regExpression) {
@@ -21,8 +21,6 @@ import static azkaban.Constants.ConfigurationKeys.AZKABAN_WEBSERVER_EXTERNAL_HOS
 import static azkaban.execapp.ConditionalWorkflowUtils.FAILED;
 import static azkaban.execapp.ConditionalWorkflowUtils.PENDING;
 import static azkaban.execapp.ConditionalWorkflowUtils.checkConditionOnJobStatus;
-import static azkaban.project.DirectoryYamlFlowLoader.CONDITION_ON_JOB_STATUS_PATTERN;
-import static azkaban.project.DirectoryYamlFlowLoader.CONDITION_VARIABLE_REPLACEMENT_PATTERN;
 
 import azkaban.Constants;
 import azkaban.Constants.ConfigurationKeys;
@@ -32,6 +30,8 @@ import azkaban.event.Event;
 import azkaban.event.EventData;
 import azkaban.event.EventHandler;
 import azkaban.event.EventListener;
+import azkaban.execapp.ConditionEvaluator.JobVariable;
+import azkaban.execapp.ConditionEvaluator.PreparedCondition;
 import azkaban.execapp.event.FlowWatcher;
 import azkaban.execapp.event.JobCallbackManager;
 import azkaban.execapp.jmx.JmxJobMBeanManager;
@@ -62,7 +62,6 @@ import azkaban.sla.SlaOption;
 import azkaban.spi.AzkabanEventReporter;
 import azkaban.spi.EventType;
 import azkaban.utils.Props;
-import azkaban.utils.SwapQueue;
 import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Splitter;
@@ -73,10 +72,6 @@ import com.google.common.io.Files;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.File;
 import java.io.IOException;
-import java.security.AccessControlContext;
-import java.security.AccessController;
-import java.security.PrivilegedExceptionAction;
-import java.security.ProtectionDomain;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -85,15 +80,15 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.regex.Matcher;
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
-import javax.script.ScriptException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Appender;
 import org.apache.log4j.FileAppender;
@@ -114,7 +109,7 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
   // most part, we'll be idling.
   private static final long CHECK_WAIT_MS = 5 * 60 * 1000;
   private final ExecutableFlow flow;
-  // Sync object for queuing
+  // Sync object for flow state changes (pause, resume, kill, retry)
   private final Object mainSyncObj = new Object();
   private final JobTypeManager jobtypeManager;
   private final Layout loggerLayout = DEFAULT_LAYOUT;
@@ -130,10 +125,15 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
   private final FlowRunnerEventListener flowListener = new FlowRunnerEventListener();
   private final Set<JobRunner> activeJobRunners = Collections
       .newSetFromMap(new ConcurrentHashMap<>());
-  // Thread safe swap queue for finishedExecutions.
-  private final SwapQueue<ExecutableNode> finishedNodes;
+  // Lock-free queue of finished nodes. Job threads add to it, the flow runner thread drains it.
+  private final Queue<ExecutableNode> finishedNodes = new ConcurrentLinkedQueue<>();
+  // Number of in nodes of each node that haven't been processed as finished yet. Only accessed
+  // by the flow runner thread.
+  private final Map<ExecutableNode, Integer> pendingInNodes = new HashMap<>();
+  private final Set<ExecutableNode> processedFinishedNodes = new HashSet<>();
   private final AzkabanEventReporter azkabanEventReporter;
   private final AlerterHolder alerterHolder;
+  private final ConditionEvaluator conditionEvaluator = new ConditionEvaluator();
   private Logger logger;
   private Appender flowAppender;
   private File logFile;
@@ -205,6 +205,13 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
   // Project upload data for events
   private final ProjectFileHandler projectFileHandler;
 
+  // Delta persistence of the flow. Only nodes updated after the last successful write are
+  // appended, and the full flow is compacted every flowUpdatesCompactionInterval writes.
+  private final boolean flowDeltaUpdatesEnabled;
+  private final int flowUpdatesCompactionInterval;
+  private long lastPersistedUpdateTime = -1;
+  private int numFlowUpdatesSinceCompaction = 0;
+
   /**
    * Constructor. This will create its own ExecutorService for thread pools
    */
@@ -240,11 +247,15 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
     this.failureAction = options.getFailureAction();
     this.proxyUsers = flow.getProxyUsers();
     this.executorService = executorService;
-    this.finishedNodes = new SwapQueue<>();
     this.azkabanProps = azkabanProps;
     this.alerterHolder = alerterHolder;
     this.commonMetrics = commonMetrics;
     this.execMetrics = execMetrics;
+    this.flowDeltaUpdatesEnabled = azkabanProps.getBoolean(
+        ConfigurationKeys.AZKABAN_EXECUTION_FLOW_DELTA_UPDATES_ENABLED, false);
+    this.flowUpdatesCompactionInterval = azkabanProps.getInt(
+        ConfigurationKeys.AZKABAN_EXECUTION_FLOW_UPDATES_COMPACTION_INTERVAL,
+        Constants.DEFAULT_AZKABAN_EXECUTION_FLOW_UPDATES_COMPACTION_INTERVAL);
 
     // Add the flow listener only if a non-null eventReporter is available.
     if (azkabanEventReporter != null) {
@@ -336,6 +347,11 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
         closeLogger();
         updateFlow();
       } finally {
+        // Jobs can't be submitted anymore. This also releases the flow's share of the executor's
+        // job thread pool if the flow failed before running.
+        if (this.executorService != null) {
+          this.executorService.shutdown();
+        }
         reportFlowFinishedMetrics();
 
         this.fireEventListeners(
@@ -412,6 +428,10 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
     }
     this.flow.setInputProps(commonFlowProps);
 
+    // Compile node conditions up front so that progressing the graph only evaluates them
+    this.conditionEvaluator.prepare(this.flow);
+    resetPendingInNodes();
+
     if (this.watcher != null) {
       this.watcher.setLogger(this.logger);
     }
@@ -428,7 +448,7 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
           + ". Pipelining level " + this.pipelineLevel);
     }
 
-    // The current thread is used for interrupting blocks
+    // The current thread is parked while waiting for finished jobs
     this.flowRunnerThread = Thread.currentThread();
     this.flowRunnerThread.setName("FlowRunner-exec-" + this.flow.getExecutionId());
   }
@@ -440,7 +460,20 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
   private synchronized void updateFlow(final long time) {
     try {
       this.flow.setUpdateTime(time);
-      this.executorLoader.updateExecutableFlow(this.flow);
+      if (this.flowDeltaUpdatesEnabled && this.lastPersistedUpdateTime > 0 && !this.flowFinished
+          && this.numFlowUpdatesSinceCompaction < this.flowUpdatesCompactionInterval) {
+        // Nodes can be updated by job threads within the same millisecond as the previous write,
+        // so the boundary is included. Applying an update twice is harmless.
+        this.executorLoader
+            .appendExecutableFlowUpdate(this.flow, this.lastPersistedUpdateTime - 1);
+        this.numFlowUpdatesSinceCompaction++;
+      } else if (this.numFlowUpdatesSinceCompaction > 0) {
+        this.executorLoader.compactExecutableFlow(this.flow);
+        this.numFlowUpdatesSinceCompaction = 0;
+      } else {
+        this.executorLoader.updateExecutableFlow(this.flow);
+      }
+      this.lastPersistedUpdateTime = time;
     } catch (final ExecutorManagerException e) {
       this.logger.error("Error updating flow.", e);
     }
@@ -513,25 +546,23 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
     updateFlow();
 
     while (!this.flowFinished) {
+      boolean progressed = false;
       synchronized (this.mainSyncObj) {
-        if (this.flowPaused) {
-          try {
-            this.mainSyncObj.wait(CHECK_WAIT_MS);
-          } catch (final InterruptedException e) {
-          }
-
-          continue;
-        } else {
+        if (!this.flowPaused) {
           if (this.retryFailedJobs) {
             retryAllFailures();
-          } else if (!progressGraph()) {
-            try {
-              this.mainSyncObj.wait(CHECK_WAIT_MS);
-            } catch (final InterruptedException e) {
-            }
+            progressed = true;
+          } else {
+            progressed = progressGraph();
           }
         }
       }
+
+      if (!progressed) {
+        // Finished jobs and flow state changes unpark this thread. The wait is bounded just in
+        // case things get stuck.
+        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(CHECK_WAIT_MS));
+      }
     }
 
     this.logger.info("Finishing up flow. Awaiting Termination");
@@ -551,6 +582,7 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
 
     final ArrayList<ExecutableNode> retryJobs = new ArrayList<>();
     resetFailedState(this.flow, retryJobs);
+    resetPendingInNodes();
 
     for (final ExecutableNode node : retryJobs) {
       if (node.getStatus() == Status.READY
@@ -570,12 +602,17 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
   }
 
   private boolean progressGraph() throws IOException {
-    this.finishedNodes.swap();
+    // Nodes finished while processing this batch are picked up by the next call.
+    final List<ExecutableNode> finished = new ArrayList<>();
+    ExecutableNode finishedNode;
+    while ((finishedNode = this.finishedNodes.poll()) != null) {
+      finished.add(finishedNode);
+    }
 
     // The following nodes are finished, so we'll collect a list of outnodes
     // that are candidates for running next.
     final HashSet<ExecutableNode> nodesToCheck = new HashSet<>();
-    for (final ExecutableNode node : this.finishedNodes) {
+    for (final ExecutableNode node : finished) {
       Set<String> outNodeIds = node.getOutNodes();
       ExecutableFlowBase parentFlow = node.getParentFlow();
 
@@ -597,6 +634,7 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
         }
       }
 
+      markNodeFinished(node);
       if (outNodeIds.isEmpty() && isFlowReadytoFinalize(parentFlow)) {
         // Todo jamiesjc: For conditional workflows, if conditionOnJobStatus is ONE_SUCCESS or
         // ONE_FAILED, some jobs might still be running when the end nodes have finished. In this
@@ -605,17 +643,19 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
         finishExecutableNode(parentFlow);
         // If the parent has a parent, then we process
         if (!(parentFlow instanceof ExecutableFlow)) {
+          markNodeFinished(parentFlow);
           outNodeIds = parentFlow.getOutNodes();
           parentFlow = parentFlow.getParentFlow();
         }
       }
 
-      // Add all out nodes from the finished job. We'll check against this set
-      // to
-      // see if any are candidates for running.
+      // Add the out nodes from the finished job whose in nodes have all finished. They are the
+      // candidates for running.
       for (final String nodeId : outNodeIds) {
         final ExecutableNode outNode = parentFlow.getExecutableNode(nodeId);
-        nodesToCheck.add(outNode);
+        if (this.pendingInNodes.getOrDefault(outNode, 0) == 0) {
+          nodesToCheck.add(outNode);
+        }
       }
     }
 
@@ -632,7 +672,7 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
       jobsRun |= runReadyJob(node);
     }
 
-    if (jobsRun || this.finishedNodes.getSize() > 0) {
+    if (jobsRun || !finished.isEmpty()) {
       updateFlow();
       return true;
     }
@@ -640,6 +680,48 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
     return false;
   }
 
+  /**
+   * Recomputes the number of unfinished in nodes of every node, including the nodes of embedded
+   * flows. Needed whenever node statuses are reset.
+   */
+  private void resetPendingInNodes() {
+    this.pendingInNodes.clear();
+    this.processedFinishedNodes.clear();
+    resetPendingInNodes(this.flow);
+  }
+
+  private void resetPendingInNodes(final ExecutableFlowBase flow) {
+    for (final ExecutableNode node : flow.getExecutableNodes()) {
+      int pending = 0;
+      for (final String inNodeId : node.getInNodes()) {
+        if (!Status.isStatusFinished(flow.getExecutableNode(inNodeId).getStatus())) {
+          pending++;
+        }
+      }
+      this.pendingInNodes.put(node, pending);
+      if (Status.isStatusFinished(node.getStatus())) {
+        this.processedFinishedNodes.add(node);
+      }
+      if (node instanceof ExecutableFlowBase) {
+        resetPendingInNodes((ExecutableFlowBase) node);
+      }
+    }
+  }
+
+  /**
+   * Decrements the pending in node count of the node's out nodes, once per finished node.
+   */
+  private void markNodeFinished(final ExecutableNode node) {
+    final ExecutableFlowBase parentFlow = node.getParentFlow();
+    if (parentFlow == null || !this.processedFinishedNodes.add(node)) {
+      return;
+    }
+    for (final String outNodeId : node.getOutNodes()) {
+      this.pendingInNodes.computeIfPresent(parentFlow.getExecutableNode(outNodeId),
+          (outNode, pending) -> pending - 1);
+    }
+  }
+
   private void setFlowFailed(final ExecutableNode node) {
     boolean shouldFail = true;
     // As long as there is no outNodes or at least one outNode has conditionOnJobStatus of
@@ -1037,7 +1119,16 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
     try {
       // Job starts to queue
       runner.setTimeInQueue(System.currentTimeMillis());
-      this.executorService.submit(runner);
+      if (runner.getDelayStart() > 0 && this.executorService instanceof JobScheduler.FlowExecutor) {
+        // Wait for the retry backoff on the scheduler's timer instead of on a shared job thread
+        this.logger.info("Delaying start of job '" + node.getNestedId() + "' for "
+            + runner.getDelayStart() + " milliseconds.");
+        ((JobScheduler.FlowExecutor) this.executorService)
+            .submitAfter(runner, runner.getDelayStart());
+        runner.setDelayStart(0);
+      } else {
+        this.executorService.submit(runner);
+      }
       this.activeJobRunners.add(runner);
     } catch (final RejectedExecutionException e) {
       this.logger.error(e);
@@ -1105,28 +1196,33 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
       return true;
     }
 
-    String replaced = condition;
-    // Replace the condition on job status macro with "true" to skip the evaluation by Script
-    // Engine since it has already been evaluated.
-    final Matcher jobStatusMatcher = CONDITION_ON_JOB_STATUS_PATTERN.matcher
-        (condition);
-    if (jobStatusMatcher.find()) {
-      replaced = condition.replace(jobStatusMatcher.group(1), "true");
+    final PreparedCondition preparedCondition =
+        this.conditionEvaluator.getPreparedCondition(condition);
+    final List<String> values = new ArrayList<>();
+    for (final JobVariable variable : preparedCondition.getVariables()) {
+      final String value = findValueForJobVariable(node, variable.getJobName(),
+          variable.getVariable());
+      if (value == null) {
+        this.logger.error("Failed to evaluate the condition of " + node.getId() + ", "
+            + variable + " can't be resolved.");
+        this.logger.info("Condition is evaluated to false");
+        return false;
+      }
+      values.add(value);
     }
+    this.logger.info("Resolved condition of " + node.getId() + " is "
+        + preparedCondition.getExpression() + " with values " + values);
 
-    final Matcher variableMatcher = CONDITION_VARIABLE_REPLACEMENT_PATTERN.matcher(replaced);
-
-    while (variableMatcher.find()) {
-      final String value = findValueForJobVariable(node, variableMatcher.group(1),
-          variableMatcher.group(2));
-      if (value != null) {
-        replaced = replaced.replace(variableMatcher.group(), "'" + value + "'");
-      }
-      this.logger.info("Resolved condition of " + node.getId() + " is " + replaced);
+    // Evaluate the precompiled condition using script engine
+    boolean result = false;
+    try {
+      result = this.conditionEvaluator.evaluate(preparedCondition, values);
+    } catch (final Exception e) {
+      this.logger.error("Failed to evaluate the condition.", e);
     }
 
-    // Evaluate string expression using script engine
-    return evaluateExpression(replaced);
+    this.logger.info("Condition is evaluated to " + result);
+    return result;
   }
 
   private String findValueForJobVariable(final ExecutableNode node, final String jobName, final
@@ -1147,34 +1243,6 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
     return null;
   }
 
-  private boolean evaluateExpression(final String expression) {
-    boolean result = false;
-    final ScriptEngineManager sem = new ScriptEngineManager();
-    final ScriptEngine se = sem.getEngineByName("JavaScript");
-
-    // Restrict permission using the two-argument form of doPrivileged()
-    try {
-      final Object object = AccessController.doPrivileged(
-          new PrivilegedExceptionAction<Object>() {
-            @Override
-            public Object run() throws ScriptException {
-              return se.eval(expression);
-            }
-          },
-          new AccessControlContext(
-              new ProtectionDomain[]{new ProtectionDomain(null, null)}) // no permissions
-      );
-      if (object != null) {
-        result = (boolean) object;
-      }
-    } catch (final Exception e) {
-      this.logger.error("Failed to evaluate the condition.", e);
-    }
-
-    this.logger.info("Condition is evaluated to " + result);
-    return result;
-  }
-
   private Props collectOutputProps(final ExecutableNode node) {
     Props previousOutput = null;
     // Iterate the in nodes again and create the dependencies
@@ -1327,6 +1395,10 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
         runner.getNode().setModifiedBy(this.getExecutableFlow().getModifiedBy());
         runner.kill();
       }
+      // Killed jobs waiting for their retry backoff finish right away once they run
+      if (this.executorService instanceof JobScheduler.FlowExecutor) {
+        ((JobScheduler.FlowExecutor) this.executorService).releaseDelayedJobs();
+      }
       updateFlow();
     }
     interrupt();
@@ -1440,9 +1512,12 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
         + oldFlowState + " to " + flow.getStatus());
   }
 
+  /**
+   * Wakes up the flow runner thread if it's waiting for finished jobs or flow state changes.
+   */
   private void interrupt() {
     if (this.flowRunnerThread != null) {
-      this.flowRunnerThread.interrupt();
+      LockSupport.unpark(this.flowRunnerThread);
     }
   }
 
@@ -1677,24 +1752,24 @@ public class FlowRunner extends EventHandler<Event> implements Runnable {
           FlowRunner.this.azkabanEventReporter.report(event.getType(), jobMetadata);
         }
         final long seconds = (node.getEndTime() - node.getStartTime()) / 1000;
-        synchronized (FlowRunner.this.mainSyncObj) {
-          FlowRunner.this.logger.info("Job " + eventData.getNestedId() + " finished with status "
-              + eventData.getStatus() + " in " + seconds + " seconds");
-
-          // Cancellation is handled in the main thread, but if the flow is
-          // paused, the main thread is paused too.
-          // This unpauses the flow for cancellation.
-          if (FlowRunner.this.flowPaused && eventData.getStatus() == Status.FAILED
-              && FlowRunner.this.failureAction == FailureAction.CANCEL_ALL) {
+        FlowRunner.this.logger.info("Job " + eventData.getNestedId() + " finished with status "
+            + eventData.getStatus() + " in " + seconds + " seconds");
+
+        // Cancellation is handled in the main thread, but if the flow is
+        // paused, the main thread is paused too.
+        // This unpauses the flow for cancellation.
+        if (FlowRunner.this.flowPaused && eventData.getStatus() == Status.FAILED
+            && FlowRunner.this.failureAction == FailureAction.CANCEL_ALL) {
+          synchronized (FlowRunner.this.mainSyncObj) {
             FlowRunner.this.flowPaused = false;
           }
-
-          FlowRunner.this.finishedNodes.add(node);
-          FlowRunner.this.activeJobRunners.remove(jobRunner);
-          node.getParentFlow().setUpdateTime(System.currentTimeMillis());
-          interrupt();
-          fireEventListeners(event);
         }
+
+        FlowRunner.this.finishedNodes.add(node);
+        FlowRunner.this.activeJobRunners.remove(jobRunner);
+        node.getParentFlow().setUpdateTime(System.currentTimeMillis());
+        interrupt();
+        fireEventListeners(event);
       } else if (event.getType() == EventType.JOB_STARTED) {
         final EventData eventData = event.getData();
         FlowRunner.this.logger.info("Job Started: " + eventData.getNestedId());
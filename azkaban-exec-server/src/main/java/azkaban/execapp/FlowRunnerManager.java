@@ -70,10 +70,12 @@ import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -116,6 +118,16 @@ public class FlowRunnerManager implements EventListener<Event>,
   private static final String EXECUTOR_USE_BOUNDED_THREADPOOL_QUEUE = "executor.use.bounded.threadpool.queue";
   private static final String EXECUTOR_THREADPOOL_WORKQUEUE_SIZE = "executor.threadpool.workqueue.size";
   private static final String EXECUTOR_FLOW_THREADS = "executor.flow.threads";
+  private static final String EXECUTOR_SHARED_JOB_THREADPOOL_ENABLED =
+      "executor.shared.job.threadpool.enabled";
+  private static final String EXECUTOR_SHARED_JOB_THREADPOOL_SIZE =
+      "executor.shared.job.threadpool.size";
+  private static final String EXECUTOR_MAX_RUNNING_JOBS_PER_PROJECT =
+      "executor.max.running.jobs.per.project";
+  // Relative share of the shared job thread pool the flows of a project get, e.g.
+  // executor.shared.job.threadpool.weight.foo=2. The default weight is 1.
+  private static final String EXECUTOR_SHARED_JOB_THREADPOOL_WEIGHT_PREFIX =
+      "executor.shared.job.threadpool.weight.";
   private static final String FLOW_NUM_JOB_THREADS = "flow.num.job.threads";
 
   // recently finished secs to clean up. 1 minute
@@ -123,6 +135,7 @@ public class FlowRunnerManager implements EventListener<Event>,
 
   private static final int DEFAULT_NUM_EXECUTING_FLOWS = 30;
   private static final int DEFAULT_FLOW_NUM_JOB_TREADS = 10;
+  private static final int DEFAULT_SHARED_JOB_THREADPOOL_SIZE = 100;
 
   // this map is used to store the flows that have been submitted to
   // the executor service. Once a flow has been submitted, it is either
@@ -133,6 +146,10 @@ public class FlowRunnerManager implements EventListener<Event>,
   private final AtomicInteger preparingFlowCount = new AtomicInteger(0);
   private final Map<Integer, ExecutableFlow> recentlyFinishedFlows = new ConcurrentHashMap<>();
   private final TrackingThreadPool executorService;
+  // Shared by the jobs of all flows if enabled, otherwise each flow has its own job thread pool
+  private final JobScheduler jobScheduler;
+  // Weights of the projects in the shared job thread pool, by project name
+  private final Map<String, Integer> jobSchedulerWeights;
   private final CleanerThread cleanerThread;
   private final ExecutorLoader executorLoader;
   private final ProjectLoader projectLoader;
@@ -211,6 +228,20 @@ public class FlowRunnerManager implements EventListener<Event>,
     this.storage = storage;
     this.clusterRouter = clusterRouter;
 
+    if (props.getBoolean(EXECUTOR_SHARED_JOB_THREADPOOL_ENABLED, false)) {
+      final int jobThreadPoolSize = props.getInt(EXECUTOR_SHARED_JOB_THREADPOOL_SIZE,
+          DEFAULT_SHARED_JOB_THREADPOOL_SIZE);
+      // By default a single project can use at most half of the pool
+      this.jobScheduler = new JobScheduler(jobThreadPoolSize,
+          props.getInt(EXECUTOR_MAX_RUNNING_JOBS_PER_PROJECT, Math.max(1, jobThreadPoolSize / 2)),
+          this.execMetrics::addJobQueueWaitTime);
+      this.execMetrics.addJobSchedulerMetrics(this.jobScheduler);
+      this.jobSchedulerWeights = getJobSchedulerWeights(props);
+    } else {
+      this.jobScheduler = null;
+      this.jobSchedulerWeights = Collections.emptyMap();
+    }
+
     this.flowRampManager = flowRampManager;
 
     this.jobLogChunkSize = this.azkabanProps.getString("job.log.chunk.size", "5MB");
@@ -244,7 +275,7 @@ public class FlowRunnerManager implements EventListener<Event>,
           .info("Configuring Cache Cleaner with {} % as threshold", projectCacheSizePercentage);
       cleaner = new ProjectCacheCleaner(this.projectDirectory,
           projectCacheSizePercentage,
-          projectCacheThrottlePercentage);
+          projectCacheThrottlePercentage, this.execMetrics);
       this.LOGGER.info("ProjectCacheCleaner configured.");
     } catch (final UndefinedPropertyException ex) {
       if (projectCacheSizePercentage == 0.0) {
@@ -257,14 +288,21 @@ public class FlowRunnerManager implements EventListener<Event>,
         this.LOGGER
             .info("Property {} not set. Initializing with default value of Throttle Percentage",
                 ConfigurationKeys.PROJECT_CACHE_THROTTLE_PERCENTAGE);
-        cleaner = new ProjectCacheCleaner(this.projectDirectory, projectCacheSizePercentage);
+        cleaner = new ProjectCacheCleaner(this.projectDirectory, projectCacheSizePercentage,
+            this.execMetrics);
       }
     }
 
+    if (cleaner != null) {
+      this.execMetrics.addProjectCacheCleanerMetrics(cleaner);
+    }
+
     // Create a flow preparer
     this.flowPreparer = new FlowPreparer(projectStorageManager, this.dependencyTransferManager,
-        this.projectDirectory, cleaner, this.execMetrics.getProjectCacheHitRatio(),
-        this.executionDirectory);
+        this.projectDirectory, cleaner, this.execMetrics, this.executionDirectory,
+        props.getInt(ConfigurationKeys.EXECUTION_DIR_HARDLINK_THREADS,
+            Constants.DEFAULT_EXECUTION_DIR_HARDLINK_THREADS),
+        props.getBoolean(ConfigurationKeys.EXECUTION_DIR_HARDLINK_MANIFEST_ENABLED, false));
 
     this.execMetrics.addFlowRunnerManagerMetrics(this);
 
@@ -363,6 +401,29 @@ public class FlowRunnerManager implements EventListener<Event>,
     }
   }
 
+  /**
+   * Reads the weights of the projects in the shared job thread pool. Invalid weights are logged
+   * and ignored, so the project keeps the default weight.
+   */
+  private static Map<String, Integer> getJobSchedulerWeights(final Props props) {
+    final Map<String, Integer> weights = new HashMap<>();
+    for (final Map.Entry<String, String> entry : props
+        .getMapByPrefix(EXECUTOR_SHARED_JOB_THREADPOOL_WEIGHT_PREFIX).entrySet()) {
+      try {
+        final int weight = Integer.parseInt(entry.getValue().trim());
+        if (weight > 0) {
+          weights.put(entry.getKey(), weight);
+          continue;
+        }
+      } catch (final NumberFormatException e) {
+        // Logged below
+      }
+      LOGGER.error("Ignoring invalid weight " + entry.getValue() + " of project " + entry.getKey()
+          + " in the shared job thread pool, the weight must be a positive integer.");
+    }
+    return weights;
+  }
+
   public void setExecutorActive(final boolean isActive, final String host, final int port)
       throws ExecutorManagerException, InterruptedException {
     final Executor executor = this.executorLoader.fetchExecutor(host, port);
@@ -518,13 +579,18 @@ public class FlowRunnerManager implements EventListener<Event>,
     }
 
     //Contact Flow Global Configuration Manager to re-configure Flow Runner if there is any ramp-up configuration
-    this.flowRampManager
-        .configure(flow, FileIOUtils.getDirectory(this.projectDirectory, flow.getDirectory()));
+    try (final Timer.Context context = this.execMetrics.getFlowRampConfigureTimerContext()) {
+      this.flowRampManager
+          .configure(flow, FileIOUtils.getDirectory(this.projectDirectory, flow.getDirectory()));
+    }
 
+    final ExecutorService jobExecutorService = this.jobScheduler == null ? null
+        : this.jobScheduler.createFlowExecutor(execId, flow.getProjectId(), numJobThreads,
+            this.jobSchedulerWeights.getOrDefault(flow.getProjectName(), 1));
     final FlowRunner runner =
         new FlowRunner(flow, this.executorLoader, this.projectLoader, this.jobtypeManager,
-            this.azkabanProps, this.azkabanEventReporter, this.alerterHolder, this.commonMetrics,
-            this.execMetrics);
+            jobExecutorService, this.azkabanProps, this.azkabanEventReporter, this.alerterHolder,
+            this.commonMetrics, this.execMetrics);
     runner.setFlowWatcher(watcher)
         .setJobLogSettings(this.jobLogChunkSize, this.jobLogNumFiles)
         .setValidateProxyUser(this.validateProxyUser)
@@ -937,6 +1003,9 @@ public class FlowRunnerManager implements EventListener<Event>,
         LOGGER.error(e.getMessage());
       }
     }
+    if (this.jobScheduler != null) {
+      this.jobScheduler.shutdown();
+    }
     this.flowPreparer.shutdown();
     LOGGER.warn("Shutdown FlowRunnerManager complete.");
   }
@@ -951,6 +1020,9 @@ public class FlowRunnerManager implements EventListener<Event>,
       this.pollingService.shutdown();
     }
     this.executorService.shutdownNow();
+    if (this.jobScheduler != null) {
+      this.jobScheduler.shutdownNow();
+    }
     this.triggerManager.shutdown();
   }
 
@@ -1146,31 +1218,14 @@ public class FlowRunnerManager implements EventListener<Event>,
         }
       } else if (this.pollingCriteria.shouldPoll()) {
         try {
-          final int execId;
-          if (FlowRunnerManager.this.azkabanProps
-              .getBoolean(ConfigurationKeys.AZKABAN_POLLING_LOCK_ENABLED, false)) {
-            execId = FlowRunnerManager.this.executorLoader.selectAndUpdateExecutionWithLocking(
-                this.executorId, FlowRunnerManager.this.active);
-          } else {
-            execId = FlowRunnerManager.this.executorLoader.selectAndUpdateExecution(this.executorId,
-                FlowRunnerManager.this.active);
-          }
+          final List<Integer> execIds = claimExecutions();
           FlowRunnerManager.this.execMetrics.markOnePoll();
-          if (execId == -1) {
+          if (execIds.isEmpty()) {
             FlowRunnerManager.LOGGER.info("Polling found no flow in the queue.");
           } else {
-            FlowRunnerManager.LOGGER.info("Polling found a flow. Submitting flow " + execId);
-            try {
-              submitFlow(execId);
-              FlowRunnerManager.this.commonMetrics.markDispatchSuccess();
-              this.numRetries = 0;
-            } catch (final ExecutorManagerException e) {
-              // If the flow fails to be submitted, then unset its executor id in DB so that other
-              // executors can pick up this flow and submit again.
-              FlowRunnerManager.this.executorLoader.unsetExecutorIdForExecution(execId);
-              throw new ExecutorManagerException(
-                  "Unset executor id " + this.executorId + " for execution " + execId, e);
-            }
+            FlowRunnerManager.LOGGER.info("Polling found flows. Submitting flows " + execIds);
+            submitClaimedFlows(execIds);
+            this.numRetries = 0;
           }
         } catch (final Exception e) {
           FlowRunnerManager.LOGGER.error("Failed to submit flow ", e);
@@ -1188,6 +1243,70 @@ public class FlowRunnerManager implements EventListener<Event>,
       }
     }
 
+    /**
+     * Claims queued executions for this executor, as many as it has free flow threads for, up to
+     * the polling batch size. With the polling lock enabled (and skip locked disabled) executors
+     * claim one execution at a time under the lock instead. So do executors polling on free memory
+     * or cpu load, since those criteria only tell whether one more flow fits.
+     */
+    private List<Integer> claimExecutions() throws ExecutorManagerException {
+      final Props props = FlowRunnerManager.this.azkabanProps;
+      final boolean skipLocked =
+          props.getBoolean(ConfigurationKeys.AZKABAN_POLLING_SKIP_LOCKED_ENABLED, false);
+      final List<Integer> execIds;
+      try (final Timer.Context context =
+          FlowRunnerManager.this.execMetrics.getPollingClaimTimerContext()) {
+        if (!skipLocked
+            && props.getBoolean(ConfigurationKeys.AZKABAN_POLLING_LOCK_ENABLED, false)) {
+          final int execId = FlowRunnerManager.this.executorLoader
+              .selectAndUpdateExecutionWithLocking(this.executorId, FlowRunnerManager.this.active);
+          execIds = execId == -1 ? Collections.emptyList() : Collections.singletonList(execId);
+        } else {
+          execIds = FlowRunnerManager.this.executorLoader.selectAndUpdateExecutions(
+              this.executorId, FlowRunnerManager.this.active, getClaimBatchSize(), skipLocked);
+        }
+      }
+      FlowRunnerManager.this.execMetrics.addPollingClaimBatchSize(execIds.size());
+      return execIds;
+    }
+
+    private int getClaimBatchSize() {
+      if (this.pollingCriteria.checksResourceUsage()) {
+        return 1;
+      }
+      final int batchSize = FlowRunnerManager.this.azkabanProps.getInt(
+          ConfigurationKeys.AZKABAN_POLLING_BATCH_SIZE,
+          Constants.DEFAULT_AZKABAN_POLLING_BATCH_SIZE);
+      final int freeFlowThreads = getMaxNumRunningFlows() - getNumRunningFlows()
+          - getNumQueuedFlows();
+      // Always claim at least one, as before batching, the polling criteria decide whether to poll
+      return Math.max(1, Math.min(batchSize, freeFlowThreads));
+    }
+
+    /**
+     * Submits the claimed executions. The ones that fail to be submitted are released so that
+     * other executors can pick them up. Throws if any failed.
+     */
+    private void submitClaimedFlows(final List<Integer> execIds) throws ExecutorManagerException {
+      ExecutorManagerException submitException = null;
+      for (final int execId : execIds) {
+        try {
+          submitFlow(execId);
+          FlowRunnerManager.this.commonMetrics.markDispatchSuccess();
+        } catch (final ExecutorManagerException e) {
+          // If the flow fails to be submitted, then unset its executor id in DB so that other
+          // executors can pick up this flow and submit again.
+          FlowRunnerManager.this.executorLoader.unsetExecutorIdForExecution(execId);
+          submitException = new ExecutorManagerException(
+              "Unset executor id " + this.executorId + " for execution " + execId, e);
+          FlowRunnerManager.LOGGER.error("Failed to submit flow " + execId, e);
+        }
+      }
+      if (submitException != null) {
+        throw submitException;
+      }
+    }
+
     public void shutdown() {
       this.scheduler.shutdown();
       this.scheduler.shutdownNow();
@@ -1217,6 +1336,17 @@ public class FlowRunnerManager implements EventListener<Event>,
       return false;
     }
 
+    /**
+     * @return true if polling depends on the free memory or the cpu load of the host
+     */
+    public boolean checksResourceUsage() {
+      final double maxCpuUtilizationConfig = this.azkabanProps.
+          getDouble(ConfigurationKeys.AZKABAN_POLLING_CRITERIA_MAX_CPU_UTILIZATION_PCT, 100);
+      return this.azkabanProps.
+          getInt(ConfigurationKeys.AZKABAN_POLLING_CRITERIA_MIN_FREE_MEMORY_GB, 0) > 0
+          || (maxCpuUtilizationConfig > 0 && maxCpuUtilizationConfig < 100);
+    }
+
     private boolean satisfiesFlowThreadsAvailableCriteria() {
       final boolean flowThreadsAvailableConfig = this.azkabanProps.
           getBoolean(ConfigurationKeys.AZKABAN_POLLING_CRITERIA_FLOW_THREADS_AVAILABLE, false);
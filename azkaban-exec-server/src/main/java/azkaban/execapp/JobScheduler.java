@@ -0,0 +1,394 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package azkaban.execapp;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executor wide scheduler that runs the jobs of all flows on one bounded thread pool.
+ *
+ * <p>Each flow submits jobs through its own {@link ExecutorService} view, obtained from
+ * {@link #createFlowExecutor(int, int, int, int)}. Queued jobs are dispatched to the pool by
+ * weighted fair queuing across flows: every flow has a pass that grows by 1 / weight with each
+ * dispatched job, and the dispatchable flow with the lowest pass goes next. A wide flow can't
+ * starve the others, while the number of concurrently running jobs is capped per flow and per
+ * project.
+ *
+ * <p>Jobs that must wait before they start, like retries with a backoff, wait on a timer instead
+ * of holding a pool thread.
+ */
+public class JobScheduler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(JobScheduler.class);
+
+  private final ExecutorService threadPool;
+  private final ScheduledExecutorService delayTimer;
+  private final int numThreads;
+  private final int maxRunningJobsPerProject;
+  private final LongConsumer queueWaitTimeListener;
+
+  // Flows with queued or running jobs, in dispatch order. Guarded by this.
+  private final Set<FlowExecutor> activeFlowExecutors = new LinkedHashSet<>();
+  private final Map<Integer, Integer> runningJobsPerProject = new HashMap<>();
+  private int numRunningJobs = 0;
+  private int numQueuedJobs = 0;
+  // Pass of the flow that got the last job dispatched. Flows becoming active start from it, so
+  // they get no extra turns for the time they were idle.
+  private double virtualTime = 0;
+  private boolean shutdown = false;
+
+  /**
+   * @param numThreads               size of the shared job thread pool
+   * @param maxRunningJobsPerProject max number of jobs of a single project running at once
+   * @param queueWaitTimeListener    receives the time in ms each job waited to be dispatched
+   */
+  public JobScheduler(final int numThreads, final int maxRunningJobsPerProject,
+      final LongConsumer queueWaitTimeListener) {
+    this.numThreads = numThreads;
+    this.maxRunningJobsPerProject = maxRunningJobsPerProject;
+    this.queueWaitTimeListener = queueWaitTimeListener;
+    this.threadPool = Executors.newFixedThreadPool(numThreads,
+        new ThreadFactoryBuilder().setNameFormat("azk-shared-job-pool-%d").build());
+    this.delayTimer = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("azk-shared-job-delay-timer")
+            .build());
+    LOGGER.info("Created shared job thread pool with {} threads, at most {} running jobs per "
+        + "project", numThreads, maxRunningJobsPerProject);
+  }
+
+  /**
+   * Creates the executor service through which a flow submits its jobs, with the default weight.
+   */
+  public ExecutorService createFlowExecutor(final int execId, final int projectId,
+      final int maxRunningJobs) {
+    return createFlowExecutor(execId, projectId, maxRunningJobs, 1);
+  }
+
+  /**
+   * Creates the executor service through which a flow submits its jobs.
+   *
+   * @param execId         execution id of the flow
+   * @param projectId      project id of the flow
+   * @param maxRunningJobs max number of jobs of the flow running at once
+   * @param weight         share of the pool the flow gets relative to the other flows
+   */
+  public ExecutorService createFlowExecutor(final int execId, final int projectId,
+      final int maxRunningJobs, final int weight) {
+    return new FlowExecutor(execId, projectId, maxRunningJobs, weight);
+  }
+
+  public synchronized int getNumQueuedJobs() {
+    return this.numQueuedJobs;
+  }
+
+  public synchronized int getNumRunningJobs() {
+    return this.numRunningJobs;
+  }
+
+  public int getNumThreads() {
+    return this.numThreads;
+  }
+
+  public void shutdown() {
+    synchronized (this) {
+      this.shutdown = true;
+    }
+    this.threadPool.shutdown();
+    this.delayTimer.shutdown();
+  }
+
+  public void shutdownNow() {
+    synchronized (this) {
+      this.shutdown = true;
+      for (final FlowExecutor flowExecutor : this.activeFlowExecutors) {
+        this.numQueuedJobs -= flowExecutor.queue.size();
+        flowExecutor.queue.clear();
+      }
+    }
+    this.threadPool.shutdownNow();
+    this.delayTimer.shutdownNow();
+  }
+
+  private synchronized void enqueue(final FlowExecutor flowExecutor, final Runnable job) {
+    checkAcceptsJobs(flowExecutor);
+    addToQueue(flowExecutor, job);
+    dispatch();
+  }
+
+  private synchronized void enqueueAfter(final FlowExecutor flowExecutor, final Runnable job,
+      final long delayMs) {
+    checkAcceptsJobs(flowExecutor);
+    final DelayedJob delayedJob = new DelayedJob(job);
+    // The timer task can't run before the job is registered since it needs the lock held here
+    delayedJob.future = this.delayTimer
+        .schedule(() -> enqueueDelayed(flowExecutor, delayedJob), delayMs, TimeUnit.MILLISECONDS);
+    flowExecutor.delayedJobs.add(delayedJob);
+  }
+
+  private synchronized void enqueueDelayed(final FlowExecutor flowExecutor,
+      final DelayedJob delayedJob) {
+    // The job was already released or dropped otherwise
+    if (flowExecutor.delayedJobs.remove(delayedJob)) {
+      addToQueue(flowExecutor, delayedJob.job);
+      dispatch();
+    }
+  }
+
+  private void checkAcceptsJobs(final FlowExecutor flowExecutor) {
+    if (flowExecutor.shutdown || this.shutdown) {
+      throw new RejectedExecutionException(
+          "Job executor of execution " + flowExecutor.execId + " is shut down.");
+    }
+  }
+
+  private void addToQueue(final FlowExecutor flowExecutor, final Runnable job) {
+    flowExecutor.queue.add(new QueuedJob(job));
+    this.numQueuedJobs++;
+    if (this.activeFlowExecutors.add(flowExecutor)) {
+      flowExecutor.pass = Math.max(flowExecutor.pass, this.virtualTime);
+    }
+  }
+
+  /**
+   * Hands queued jobs to the thread pool while it has idle threads. The dispatchable flow with the
+   * lowest pass goes next, ties are broken by the order the flows last got a job dispatched.
+   */
+  private void dispatch() {
+    while (this.numRunningJobs < this.numThreads && this.numQueuedJobs > 0) {
+      final FlowExecutor next = nextDispatchableFlow();
+      if (next == null) {
+        return;
+      }
+      final QueuedJob job = next.queue.poll();
+      this.numQueuedJobs--;
+      this.numRunningJobs++;
+      next.numRunningJobs++;
+      this.runningJobsPerProject.merge(next.projectId, 1, Integer::sum);
+      // Charge the job to the flow
+      this.virtualTime = next.pass;
+      next.pass += 1.0 / next.weight;
+      // Move the flow to the back of the dispatch order
+      this.activeFlowExecutors.remove(next);
+      this.activeFlowExecutors.add(next);
+
+      this.queueWaitTimeListener.accept(System.currentTimeMillis() - job.queueTime);
+      try {
+        this.threadPool.execute(() -> runJob(next, job.job));
+      } catch (final RejectedExecutionException e) {
+        LOGGER.error("Shared job thread pool rejected a job of execution " + next.execId, e);
+        onJobFinished(next);
+      }
+    }
+  }
+
+  private FlowExecutor nextDispatchableFlow() {
+    FlowExecutor next = null;
+    for (final FlowExecutor flowExecutor : this.activeFlowExecutors) {
+      if (!flowExecutor.queue.isEmpty()
+          && flowExecutor.numRunningJobs < flowExecutor.maxRunningJobs
+          && this.runningJobsPerProject.getOrDefault(flowExecutor.projectId, 0)
+          < this.maxRunningJobsPerProject
+          && (next == null || flowExecutor.pass < next.pass)) {
+        next = flowExecutor;
+      }
+    }
+    return next;
+  }
+
+  private void runJob(final FlowExecutor flowExecutor, final Runnable job) {
+    try {
+      job.run();
+    } finally {
+      synchronized (this) {
+        onJobFinished(flowExecutor);
+        dispatch();
+      }
+    }
+  }
+
+  private void onJobFinished(final FlowExecutor flowExecutor) {
+    this.numRunningJobs--;
+    flowExecutor.numRunningJobs--;
+    this.runningJobsPerProject.computeIfPresent(flowExecutor.projectId,
+        (projectId, running) -> running > 1 ? running - 1 : null);
+    removeIfIdle(flowExecutor);
+    notifyAll();
+  }
+
+  private void removeIfIdle(final FlowExecutor flowExecutor) {
+    if (flowExecutor.queue.isEmpty() && flowExecutor.numRunningJobs == 0) {
+      this.activeFlowExecutors.remove(flowExecutor);
+    }
+  }
+
+  private static class QueuedJob {
+
+    private final Runnable job;
+    private final long queueTime = System.currentTimeMillis();
+
+    QueuedJob(final Runnable job) {
+      this.job = job;
+    }
+  }
+
+  private static class DelayedJob {
+
+    private final Runnable job;
+    private ScheduledFuture<?> future;
+
+    DelayedJob(final Runnable job) {
+      this.job = job;
+    }
+  }
+
+  /**
+   * The view of the scheduler used by a single flow. Shutting it down only stops the flow from
+   * submitting more jobs, the shared thread pool keeps running.
+   */
+  class FlowExecutor extends AbstractExecutorService {
+
+    private final int execId;
+    private final int projectId;
+    private final int maxRunningJobs;
+    private final int weight;
+    private final ArrayDeque<QueuedJob> queue = new ArrayDeque<>();
+    // Jobs waiting on the timer before they are queued
+    private final Set<DelayedJob> delayedJobs = new LinkedHashSet<>();
+    private int numRunningJobs = 0;
+    private double pass = 0;
+    private boolean shutdown = false;
+
+    FlowExecutor(final int execId, final int projectId, final int maxRunningJobs,
+        final int weight) {
+      this.execId = execId;
+      this.projectId = projectId;
+      this.maxRunningJobs = Math.max(1, maxRunningJobs);
+      this.weight = Math.max(1, weight);
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+      enqueue(this, command);
+    }
+
+    /**
+     * Submits a job that is queued once the delay has passed. The job doesn't hold a thread of the
+     * pool while it waits.
+     */
+    public void submitAfter(final Runnable job, final long delayMs) {
+      final RunnableFuture<Void> task = newTaskFor(job, null);
+      enqueueAfter(this, task, delayMs);
+    }
+
+    /**
+     * Queues the delayed jobs of the flow right away, e.g. because the flow was killed and they
+     * only need to finish.
+     */
+    public void releaseDelayedJobs() {
+      synchronized (JobScheduler.this) {
+        for (final DelayedJob delayedJob : this.delayedJobs) {
+          delayedJob.future.cancel(false);
+          addToQueue(this, delayedJob.job);
+        }
+        this.delayedJobs.clear();
+        dispatch();
+      }
+    }
+
+    @Override
+    public void shutdown() {
+      synchronized (JobScheduler.this) {
+        this.shutdown = true;
+        JobScheduler.this.notifyAll();
+      }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      synchronized (JobScheduler.this) {
+        final List<Runnable> notStarted = new ArrayList<>(this.queue.size());
+        final Iterator<QueuedJob> it = this.queue.iterator();
+        while (it.hasNext()) {
+          notStarted.add(it.next().job);
+          it.remove();
+        }
+        JobScheduler.this.numQueuedJobs -= notStarted.size();
+        for (final DelayedJob delayedJob : this.delayedJobs) {
+          delayedJob.future.cancel(false);
+          notStarted.add(delayedJob.job);
+        }
+        this.delayedJobs.clear();
+        removeIfIdle(this);
+        shutdown();
+        return notStarted;
+      }
+    }
+
+    @Override
+    public boolean isShutdown() {
+      synchronized (JobScheduler.this) {
+        return this.shutdown;
+      }
+    }
+
+    @Override
+    public boolean isTerminated() {
+      synchronized (JobScheduler.this) {
+        return isTerminatedLocked();
+      }
+    }
+
+    private boolean isTerminatedLocked() {
+      return this.shutdown && this.queue.isEmpty() && this.delayedJobs.isEmpty()
+          && this.numRunningJobs == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit)
+        throws InterruptedException {
+      final long deadline = System.nanoTime() + unit.toNanos(timeout);
+      synchronized (JobScheduler.this) {
+        while (!isTerminatedLocked()) {
+          final long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+          if (remainingMs <= 0) {
+            return false;
+          }
+          JobScheduler.this.wait(remainingMs);
+        }
+        return true;
+      }
+    }
+  }
+}
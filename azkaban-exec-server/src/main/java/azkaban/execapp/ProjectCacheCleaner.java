@@ -23,15 +23,17 @@ import com.google.common.base.Preconditions;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -47,6 +49,13 @@ import org.slf4j.LoggerFactory;
 /**
  * This class is responsible for deleting least recently accessed projects in the shared project
  * cache when there's no room to accommodate a new project.
+ *
+ * <p>The cached project dirs are indexed in memory, from the least to the most recently used
+ * one, together with their total size. The cache dir is only scanned once when the cleaner is
+ * created. After that, {@link FlowPreparer} reports the projects it installs and accesses, so
+ * checking the watermarks and picking the projects to evict don't touch the disk. The last access
+ * time is still persisted as the last modified time of the file keeping the size of a project
+ * dir, so the order survives restarts.
  */
 class ProjectCacheCleaner {
 
@@ -63,12 +72,19 @@ class ProjectCacheCleaner {
 
   private static final double DEFAULT_THROTTLE_PERCENTAGE = 0.92; // 92%
 
+  // Evicted project dirs are renamed with this prefix before they are deleted
+  private static final String DELETING_DIR_PREFIX = "_deleting.";
+
   // If space in Cache partition goes above this Percentage, incoming request must wait
   // till the current cache cleanup cycle is done
   private double throttlePercentage;
 
-  // Currently cached projects
-  private final Map<Path, ProjectDirectoryMetadata> cachedProjects = new HashMap<>();
+  // Currently cached projects, from the least to the most recently accessed one
+  private final LinkedHashMap<Path, ProjectDirectoryMetadata> cachedProjects =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  // Sum of the sizes of the currently cached projects
+  private long cachedProjectsSizeInBytes = 0;
 
   // A record of projects under deletion
   private final ConcurrentMap<Path, File> projectsUnderDeletion = new ConcurrentHashMap<>();
@@ -76,6 +92,8 @@ class ProjectCacheCleaner {
   // Executor service responsible for cache cleanup
   private final ExecutorService deletionService;
 
+  private final ExecMetrics execMetrics;
+
   // This is leveraged as a barrier mechanism to stall an incoming
   // request until ongoing cache cleanup cycle is done. This is only necessary if new projects
   // get added very rapidly driving cache space above throttlePercentage
@@ -85,18 +103,21 @@ class ProjectCacheCleaner {
   public static final String STATE_AVAILABLE = "CACHE_AVAILABLE";
   public static final String STATE_CLEANING = "CACHE_CLEANING";
 
-  public ProjectCacheCleaner(final File projectCacheDir, final double percentageOfDisk) {
-    this(projectCacheDir, percentageOfDisk, DEFAULT_THROTTLE_PERCENTAGE);
+  public ProjectCacheCleaner(final File projectCacheDir, final double percentageOfDisk,
+      final ExecMetrics execMetrics) {
+    this(projectCacheDir, percentageOfDisk, DEFAULT_THROTTLE_PERCENTAGE, execMetrics);
   }
 
   public ProjectCacheCleaner(final File projectCacheDir, final double percentageOfDisk,
-      final double throttlePercentage) {
+      final double throttlePercentage, final ExecMetrics execMetrics) {
     Preconditions.checkNotNull(projectCacheDir);
+    Preconditions.checkNotNull(execMetrics);
     Preconditions.checkArgument(projectCacheDir.exists());
     Preconditions.checkArgument(percentageOfDisk > 0 && percentageOfDisk <= 1);
     this.projectCacheDir = projectCacheDir;
     this.percentageOfDisk = percentageOfDisk;
     this.throttlePercentage = throttlePercentage;
+    this.execMetrics = execMetrics;
 
     log.info("ProjectCacheCleaner constructor called. ProjectCacheDir = {}, thresh-hold = {} %, throttle at {} %",
         projectCacheDir.toPath(), this.percentageOfDisk, this.throttlePercentage);
@@ -104,81 +125,124 @@ class ProjectCacheCleaner {
     emptyQCond = barrier.newCondition();
     deletionService = Executors.newFixedThreadPool(CLEANING_SERVICE_THREAD_NUM,
         new ThreadFactoryBuilder().setNameFormat("azk-cleaner-pool-%d").build());
+
+    loadAllProjects();
   }
 
   /**
-   * Get metadata from the OS for the underlying path, lastAccessTime is fetched from the OS
-   * regardless of whether the given project already exists, but the space calculation for a
-   * project directory is only performed one-time.
+   * Get metadata from the OS for the underlying path. The space calculation for a project
+   * directory is only performed one-time, it is saved in the project directory.
    *
    * @param project path for the project cache. Project filepath encodes projectID & version
    *                within the filename
    *
-   * @return OS Metadata for the given path
+   * @return OS Metadata for the given path, null if it can't be loaded
    */
   private ProjectDirectoryMetadata fetchProjectMetadata(final Path project) {
-    ProjectDirectoryMetadata projectDirectoryMetadata = this.cachedProjects.get(project);
-
     try {
-      if (projectDirectoryMetadata == null) {
-        final String fileName = project.getFileName().toString();
-        final int projectId = Integer.parseInt(fileName.split("\\.")[0]);
-        final int versionNum = Integer.parseInt(fileName.split("\\.")[1]);
-        projectDirectoryMetadata = new ProjectDirectoryMetadata(projectId, versionNum, project.toFile());
-
-        /*
-         * Calculate used-space (Equivalent of du command) only if the metadata for
-         * this project was never fetched before. This optimization is important as
-         * recursive space calculation is a very expensive operation.
-         */
-        projectDirectoryMetadata.setDirSizeInByte(
-            AbstractFlowPreparer.calculateDirSizeAndSave(projectDirectoryMetadata.getInstalledDir()));
-      }
+      final String fileName = project.getFileName().toString();
+      final int projectId = Integer.parseInt(fileName.split("\\.")[0]);
+      final int versionNum = Integer.parseInt(fileName.split("\\.")[1]);
+      final ProjectDirectoryMetadata projectDirectoryMetadata =
+          new ProjectDirectoryMetadata(projectId, versionNum, project.toFile());
+
+      /*
+       * Calculate used-space (Equivalent of du command) only if it was never saved before. This
+       * optimization is important as recursive space calculation is a very expensive operation.
+       */
+      projectDirectoryMetadata.setDirSizeInByte(
+          AbstractFlowPreparer.calculateDirSizeAndSave(projectDirectoryMetadata.getInstalledDir()));
 
       projectDirectoryMetadata.setLastAccessTime(
           Files.getLastModifiedTime(Paths.get(projectDirectoryMetadata.getInstalledDir().toString(),
               AbstractFlowPreparer.PROJECT_DIR_SIZE_FILE_NAME)));
-
+      return projectDirectoryMetadata;
     } catch (final Exception e) {
       log.warn("Error while loading project dir metadata for project {}",
           project.getFileName(), e);
+      return null;
     }
-    return projectDirectoryMetadata;
   }
 
   /**
-   * Browse Cache root directory to fetch all valid projects and unclean files. If a project
-   * already exists in the cache, don't bother to re-fetch the OS metadata again.
+   * Browse Cache root directory to index all valid projects in the order they were last
+   * accessed. Project dirs left behind by an unfinished deletion are deleted.
    */
-  private void loadAllProjects() {
-    final List<Path> projects = new ArrayList<>();
+  private synchronized void loadAllProjects() {
+    final long start = System.currentTimeMillis();
+    final List<ProjectDirectoryMetadata> projects = new ArrayList<>();
     for (final File project : Objects
         .requireNonNull(this.projectCacheDir.listFiles(new FilenameFilter() {
           String pattern = "[0-9]+\\.[0-9]+";
           @Override
           public boolean accept(final File dir, final String name) {
-            return name.matches(this.pattern);
+            return name.matches(this.pattern) || name.startsWith(DELETING_DIR_PREFIX);
           }
         }))) {
-      if (project.exists() && project.isDirectory() &&
-          !projectsUnderDeletion.containsKey(project.toPath())) {
-        ProjectDirectoryMetadata projectDirectoryMetadata = fetchProjectMetadata(project.toPath());
+      if (project.getName().startsWith(DELETING_DIR_PREFIX)) {
+        submitDirForDeletion(project);
+      } else if (project.isDirectory()) {
+        final ProjectDirectoryMetadata projectDirectoryMetadata =
+            fetchProjectMetadata(project.toPath());
         if (projectDirectoryMetadata != null) {
-            cachedProjects.put(project.toPath(), projectDirectoryMetadata);
+          projects.add(projectDirectoryMetadata);
         }
       }
     } // end of for loop
+
+    projects.sort(Comparator.comparing(ProjectDirectoryMetadata::getLastAccessTime));
+    for (final ProjectDirectoryMetadata project : projects) {
+      addToIndex(project);
+    }
+    log.info("Loading {} project dirs metadata ({} MB) completed in {} msecs",
+        this.cachedProjects.size(), bytesToMB(this.cachedProjectsSizeInBytes),
+        System.currentTimeMillis() - start);
+  }
+
+  private void addToIndex(final ProjectDirectoryMetadata project) {
+    final ProjectDirectoryMetadata replaced =
+        this.cachedProjects.put(project.getInstalledDir().toPath(), project);
+    if (replaced != null) {
+      this.cachedProjectsSizeInBytes -= replaced.getDirSizeInByte();
+    }
+    this.cachedProjectsSizeInBytes += project.getDirSizeInByte();
   }
 
   /**
-   * @return sum of the size of all project dirs
+   * Adds a project dir that was just installed in the cache, as the most recently used project.
+   *
+   * @param project the project, with its installed dir and size set
    */
-  private long getProjectDirsTotalSizeInBytes() {
-    long totalSizeInBytes = 0;
-    for (ProjectDirectoryMetadata metadata : cachedProjects.values()) {
-      totalSizeInBytes += metadata.getDirSizeInByte();
+  public synchronized void addProjectDir(final ProjectDirectoryMetadata project) {
+    project.setLastAccessTime(FileTime.fromMillis(System.currentTimeMillis()));
+    addToIndex(project);
+  }
+
+  /**
+   * Marks a cached project dir as the most recently used project. A project dir that isn't
+   * indexed yet, e.g. because it was added to the cache dir by hand, is indexed now.
+   *
+   * @param project the project, with its installed dir set
+   */
+  public synchronized void markProjectDirAccessed(final ProjectDirectoryMetadata project) {
+    final Path projectDir = project.getInstalledDir().toPath();
+    final ProjectDirectoryMetadata cachedProject = this.cachedProjects.get(projectDir);
+    if (cachedProject != null) {
+      cachedProject.setLastAccessTime(FileTime.fromMillis(System.currentTimeMillis()));
+      return;
+    }
+    final ProjectDirectoryMetadata projectDirectoryMetadata = fetchProjectMetadata(projectDir);
+    if (projectDirectoryMetadata != null) {
+      projectDirectoryMetadata.setLastAccessTime(FileTime.fromMillis(System.currentTimeMillis()));
+      addToIndex(projectDirectoryMetadata);
     }
-    return totalSizeInBytes;
+  }
+
+  /**
+   * @return sum of the size of all project dirs
+   */
+  synchronized long getProjectDirsTotalSizeInBytes() {
+    return this.cachedProjectsSizeInBytes;
   }
 
   private void addToDeletionQueue(final File toDelete) {
@@ -201,12 +265,25 @@ class ProjectCacheCleaner {
   }
 
   /**
-   * Submit a project directory for deletion
+   * Submit a project directory for deletion. It's renamed first, so it's gone from the cache
+   * right away and can't be mistaken for a cached project while it's being deleted.
    *
-   * @param toDelete project dir for deletion
+   * @param projectDir project dir for deletion
    */
+  private void submitProjectForDeletion(final File projectDir) {
+    File toDelete = new File(this.projectCacheDir,
+        DELETING_DIR_PREFIX + projectDir.getName() + "." + System.currentTimeMillis());
+    try {
+      Files.move(projectDir.toPath(), toDelete.toPath());
+    } catch (final IOException e) {
+      log.warn("Error when renaming project dir {} for deletion", projectDir, e);
+      toDelete = projectDir;
+    }
+    submitDirForDeletion(toDelete);
+  }
+
   @SuppressWarnings("FutureReturnValueIgnored")
-  private void submitProjectForDeletion(final File toDelete) {
+  private void submitDirForDeletion(final File toDelete) {
       addToDeletionQueue(toDelete);
       deletionService.submit(() -> {
         log.info("Deleting project dir {} from project cache to free up space", toDelete);
@@ -225,19 +302,17 @@ class ProjectCacheCleaner {
    * @param sizeToFreeInBytes space to free up
    */
   private void deleteLeastRecentlyUsedProjects(long sizeToFreeInBytes) {
-
-    final List<ProjectDirectoryMetadata> lruList = new ArrayList<>(cachedProjects.values());
-    lruList.sort(Comparator.comparing(ProjectDirectoryMetadata::getLastAccessTime));
-    for (ProjectDirectoryMetadata lruEntry : lruList) {
-      if (sizeToFreeInBytes > 0) {
-        if (lruEntry.getInstalledDir() != null) {
-          cachedProjects.remove(lruEntry.getInstalledDir().toPath());
-          submitProjectForDeletion(lruEntry.getInstalledDir());
-          sizeToFreeInBytes -= lruEntry.getDirSizeInByte();
-        }
-      } else {
-        break;
-      }
+    // Iterating doesn't change the access order
+    final Iterator<ProjectDirectoryMetadata> lruIterator =
+        this.cachedProjects.values().iterator();
+    while (sizeToFreeInBytes > 0 && lruIterator.hasNext()) {
+      final ProjectDirectoryMetadata lruEntry = lruIterator.next();
+      lruIterator.remove();
+      final long dirSizeInBytes = lruEntry.getDirSizeInByte();
+      this.cachedProjectsSizeInBytes -= dirSizeInBytes;
+      sizeToFreeInBytes -= dirSizeInBytes;
+      this.execMetrics.markProjectCacheEviction(dirSizeInBytes);
+      submitProjectForDeletion(lruEntry.getInstalledDir());
     }
   }
 
@@ -284,37 +359,35 @@ class ProjectCacheCleaner {
   public void deleteProjectDirsIfNecessary(final long newProjectSizeInBytes) {
     final long cachePartitionSize = this.projectCacheDir.getTotalSpace();
     final long availablePartitionSize = this.projectCacheDir.getUsableSpace();
-
-    final long start = System.currentTimeMillis();
-    loadAllProjects();
-    log.info("Loading {} project dirs metadata completed in {} msecs",
-        cachedProjects.size(), System.currentTimeMillis() - start);
-
-    final long currentCacheSize = getProjectDirsTotalSizeInBytes();
-    final long projectCacheDirCapacity = currentCacheSize + availablePartitionSize;
     boolean throttleAfterDeletion = false;
 
-    final long highWatermark = (long) (projectCacheDirCapacity * this.percentageOfDisk);
-    final long throttleWatermark = (long) (projectCacheDirCapacity * this.throttlePercentage);
+    synchronized (this) {
+      final long currentCacheSize = this.cachedProjectsSizeInBytes;
+      final long projectCacheDirCapacity = currentCacheSize + availablePartitionSize;
 
-    long projectedCacheSize = currentCacheSize + newProjectSizeInBytes;
+      final long highWatermark = (long) (projectCacheDirCapacity * this.percentageOfDisk);
+      final long throttleWatermark = (long) (projectCacheDirCapacity * this.throttlePercentage);
 
-    log.info("Partition = {} MB, Total Capacity = {} MB, Cache Size = {} MB, Projected Size = {} MB",
-        bytesToMB(cachePartitionSize),
-        bytesToMB(projectCacheDirCapacity),
-        bytesToMB(currentCacheSize),
-        bytesToMB(projectedCacheSize));
-    log.info("High Watermark = {} MB, Throttle Watermark = {} MB",
-        bytesToMB(highWatermark),
-        bytesToMB(throttleWatermark));
+      final long projectedCacheSize = currentCacheSize + newProjectSizeInBytes;
 
-    if (projectedCacheSize >= throttleWatermark) {
-      throttleAfterDeletion = true;
-    }
+      log.info("Partition = {} MB, Total Capacity = {} MB, Cache Size = {} MB, "
+              + "Projected Size = {} MB",
+          bytesToMB(cachePartitionSize),
+          bytesToMB(projectCacheDirCapacity),
+          bytesToMB(currentCacheSize),
+          bytesToMB(projectedCacheSize));
+      log.info("High Watermark = {} MB, Throttle Watermark = {} MB",
+          bytesToMB(highWatermark),
+          bytesToMB(throttleWatermark));
 
-    if (projectedCacheSize >= highWatermark) {
-      log.info("Projected cache size exceeds High Watermark. LRU Eviction will kick in");
-      deleteLeastRecentlyUsedProjects(projectedCacheSize - highWatermark);
+      if (projectedCacheSize >= throttleWatermark) {
+        throttleAfterDeletion = true;
+      }
+
+      if (projectedCacheSize >= highWatermark) {
+        log.info("Projected cache size exceeds High Watermark. LRU Eviction will kick in");
+        deleteLeastRecentlyUsedProjects(projectedCacheSize - highWatermark);
+      }
     }
 
     if (throttleAfterDeletion) {
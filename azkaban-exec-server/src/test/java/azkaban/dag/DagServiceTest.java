@@ -25,7 +25,9 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -71,8 +73,51 @@ public class DagServiceTest {
     testDagService.shutdownAndAwaitTermination();
 
     // then
-    final ExecutorService exService = testDagService.getExecutorService();
-    verify(serviceUtils).gracefulShutdown(exService, Duration.ofSeconds(10));
+    for (final ExecutorService exService : testDagService.getExecutorServices()) {
+      verify(serviceUtils).gracefulShutdown(exService, Duration.ofSeconds(10));
+    }
+  }
+
+  /**
+   * Tests that DAGs spread over several threads all run to completion.
+   */
+  @Test
+  public void many_dags_success_on_several_threads() throws Exception {
+    final DagService testDagService = new DagService(new ExecutorServiceUtils(), 4);
+    final int numDags = 50;
+    final CountDownLatch dagsFinishedLatch = new CountDownLatch(numDags);
+    final Map<String, Status> dagStatuses = new ConcurrentHashMap<>();
+    final DagProcessor dagProcessor = (dag, status) -> {
+      if (status.isTerminal()) {
+        dagStatuses.put(dag.getName(), status);
+        dagsFinishedLatch.countDown();
+      }
+    };
+    final NodeProcessor nodeProcessor = (node, status) -> {
+      if (status == Status.RUNNING) {
+        testDagService.markNodeSuccess(node);
+      }
+    };
+    try {
+      for (int i = 0; i < numDags; i++) {
+        // a diamond: a -> b, c -> d
+        final DagBuilder builder = new DagBuilder("f" + i, dagProcessor);
+        for (final String name : new String[]{"a", "b", "c", "d"}) {
+          builder.createNode(name, nodeProcessor);
+        }
+        builder.addParentNode("b", "a");
+        builder.addParentNode("c", "a");
+        builder.addParentNode("d", "b");
+        builder.addParentNode("d", "c");
+        testDagService.startDag(builder.build());
+      }
+
+      assertThat(dagsFinishedLatch.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(dagStatuses).hasSize(numDags);
+      assertThat(dagStatuses.values()).containsOnly(Status.SUCCESS);
+    } finally {
+      testDagService.shutdownAndAwaitTermination();
+    }
   }
 
   /**
@@ -212,6 +257,40 @@ public class DagServiceTest {
 
   }
 
+  /**
+   * Tests a DAG where a node with two paths to it is canceled once only.
+   *
+   * <pre>
+   *    a (fail)
+   *  /  \
+   * b    c
+   *  \  /
+   *    d
+   * </pre>
+   */
+  @Test
+  public void diamondFailFirst() throws Exception {
+    createNodeInTestDag("a");
+    createNodeInTestDag("b");
+    createNodeInTestDag("c");
+    createNodeInTestDag("d");
+    this.dagBuilder.addParentNode("b", "a");
+    this.dagBuilder.addParentNode("c", "a");
+    this.dagBuilder.addParentNode("d", "b");
+    this.dagBuilder.addParentNode("d", "c");
+    this.nodesToFail.add("a");
+
+    addToExpectedSequence("fa", Status.RUNNING);
+    addToExpectedSequence("a", Status.RUNNING);
+    addToExpectedSequence("a", Status.FAILURE);
+    addToExpectedSequence("b", Status.CANCELED);
+    addToExpectedSequence("d", Status.CANCELED);
+    addToExpectedSequence("c", Status.CANCELED);
+    addToExpectedSequence("fa", Status.FAILURE);
+
+    buildDagRunAndVerify();
+  }
+
   /**
    * Tests a DAG with one subDag, all successful.
    *
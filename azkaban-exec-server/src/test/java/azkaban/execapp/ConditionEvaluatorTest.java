@@ -0,0 +1,78 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import azkaban.execapp.ConditionEvaluator.PreparedCondition;
+import java.util.Arrays;
+import java.util.Collections;
+import javax.script.ScriptException;
+import org.junit.Test;
+
+public class ConditionEvaluatorTest {
+
+  private final ConditionEvaluator evaluator = new ConditionEvaluator();
+
+  @Test
+  public void testJobVariablesAreBound() throws Exception {
+    final PreparedCondition condition = this.evaluator
+        .getPreparedCondition("one_success && ${jobA:key1} == 'foo' && ${jobB:key2} > 2 "
+            + "&& ${jobA:key1} != 'bar'");
+    assertThat(condition.getVariables()).hasSize(2);
+    assertThat(condition.getVariables().get(0).getJobName()).isEqualTo("jobA");
+    assertThat(condition.getVariables().get(0).getVariable()).isEqualTo("key1");
+    assertThat(condition.getVariables().get(1).getJobName()).isEqualTo("jobB");
+    assertThat(condition.getVariables().get(1).getVariable()).isEqualTo("key2");
+
+    assertThat(this.evaluator.evaluate(condition, Arrays.asList("foo", "3"))).isTrue();
+    assertThat(this.evaluator.evaluate(condition, Arrays.asList("foo", "1"))).isFalse();
+    assertThat(this.evaluator.evaluate(condition, Arrays.asList("bar", "3"))).isFalse();
+  }
+
+  @Test
+  public void testConditionIsCompiledOnce() {
+    final PreparedCondition condition = this.evaluator.getPreparedCondition("all_done");
+    assertThat(this.evaluator.getPreparedCondition("all_done")).isSameAs(condition);
+  }
+
+  @Test
+  public void testValuesAreNotEvaluatedAsCode() throws Exception {
+    final PreparedCondition condition = this.evaluator
+        .getPreparedCondition("${jobA:key1} == 'foo'");
+    assertThat(this.evaluator.evaluate(condition, Collections.singletonList("foo' || 'a")))
+        .isFalse();
+  }
+
+  @Test
+  public void testVariablesAreClearedBetweenEvaluations() throws Exception {
+    final PreparedCondition withVariable = this.evaluator
+        .getPreparedCondition("${jobA:key1} == 'foo'");
+    assertThat(this.evaluator.evaluate(withVariable, Collections.singletonList("foo"))).isTrue();
+
+    // The binding of the previous evaluation must not be visible anymore.
+    final PreparedCondition checksBinding = this.evaluator
+        .getPreparedCondition("typeof azkabanConditionVar0 == 'undefined'");
+    assertThat(this.evaluator.evaluate(checksBinding, Collections.emptyList())).isTrue();
+  }
+
+  @Test(expected = ScriptException.class)
+  public void testInvalidCondition() throws Exception {
+    final PreparedCondition condition = this.evaluator.getPreparedCondition("${jobA:key1} ==");
+    this.evaluator.evaluate(condition, Collections.singletonList("foo"));
+  }
+}
@@ -17,9 +17,9 @@
 
 package azkaban.execapp;
 
-import azkaban.execapp.metric.ProjectCacheHitRatio;
 import azkaban.executor.ExecutableFlow;
 import azkaban.executor.ExecutorManagerException;
+import azkaban.metrics.MetricsManager;
 import azkaban.project.ProjectFileHandler;
 import azkaban.spi.Dependency;
 import azkaban.storage.ProjectStorageManager;
@@ -27,6 +27,7 @@ import azkaban.test.executions.ThinArchiveTestUtils;
 import azkaban.utils.DependencyTransferManager;
 import azkaban.utils.FileIOUtils;
 import azkaban.utils.Utils;
+import com.codahale.metrics.MetricRegistry;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -55,6 +56,7 @@ public class FlowPreparerTest extends FlowPreparerTestBase {
 
   private File executionsDir;
   private File projectsDir;
+  private ProjectStorageManager projectStorageManager;
   private FlowPreparer instance;
 
   @Before
@@ -63,10 +65,12 @@ public class FlowPreparerTest extends FlowPreparerTestBase {
     this.projectsDir = this.temporaryFolder.newFolder("projects");
 
     this.dependencyTransferManager = mock(DependencyTransferManager.class);
+    this.projectStorageManager = createMockStorageManager();
 
     this.instance = spy(
-            new FlowPreparer(createMockStorageManager(), this.dependencyTransferManager, this.projectsDir, null,
-                    new ProjectCacheHitRatio(), this.executionsDir));
+            new FlowPreparer(this.projectStorageManager, this.dependencyTransferManager,
+                    this.projectsDir, null, new ExecMetrics(new MetricsManager(new MetricRegistry())),
+                    this.executionsDir));
     doNothing().when(this.instance).updateLastModifiedTime(any());
   }
 
@@ -118,14 +122,36 @@ public class FlowPreparerTest extends FlowPreparerTestBase {
 
   @Test
   public void testSetupFlowByMultipleThreads() {
-    final int threadNum = 4;
-
     final ExecutableFlow[] executableFlows = new ExecutableFlow[]{
         mockExecutableFlow(1, FAT_PROJECT_ID, 34),
         mockExecutableFlow(2, FAT_PROJECT_ID, 34),
         mockExecutableFlow(3, FAT_PROJECT_ID, 34),
         mockExecutableFlow(4, FAT_PROJECT_ID, 34)
     };
+    setupFlowsConcurrently(executableFlows);
+
+    // The same project version is downloaded once
+    verify(this.projectStorageManager, times(1)).getProjectFileOrManifest(FAT_PROJECT_ID, 34);
+  }
+
+  @Test
+  public void testSetupFlowsOfDifferentProjectVersionsByMultipleThreads() {
+    final ExecutableFlow[] executableFlows = new ExecutableFlow[]{
+        mockExecutableFlow(1, FAT_PROJECT_ID, 34),
+        mockExecutableFlow(2, FAT_PROJECT_ID, 35),
+        mockExecutableFlow(3, FAT_PROJECT_ID, 34),
+        mockExecutableFlow(4, FAT_PROJECT_ID, 35)
+    };
+    setupFlowsConcurrently(executableFlows);
+
+    verify(this.projectStorageManager, times(1)).getProjectFileOrManifest(FAT_PROJECT_ID, 34);
+    verify(this.projectStorageManager, times(1)).getProjectFileOrManifest(FAT_PROJECT_ID, 35);
+    assertTrue(new File(this.projectsDir, FAT_PROJECT_ID + ".34").exists());
+    assertTrue(new File(this.projectsDir, FAT_PROJECT_ID + ".35").exists());
+  }
+
+  private void setupFlowsConcurrently(final ExecutableFlow[] executableFlows) {
+    final int threadNum = executableFlows.length;
 
     final ExecutorService service = Executors.newFixedThreadPool(threadNum);
 
@@ -163,6 +189,26 @@ public class FlowPreparerTest extends FlowPreparerTestBase {
     assertTrue(new File(execDir, SAMPLE_FLOW_01).exists());
   }
 
+  @Test
+  public void testSetupFlowWithHardlinkManifest() throws ExecutorManagerException {
+    this.instance = spy(
+        new FlowPreparer(this.projectStorageManager, this.dependencyTransferManager,
+            this.projectsDir, null, new ExecMetrics(new MetricsManager(new MetricRegistry())),
+            this.executionsDir, 2, true));
+    doNothing().when(this.instance).updateLastModifiedTime(any());
+
+    this.instance.setup(mockExecutableFlow(1, FAT_PROJECT_ID, 34));
+    this.instance.setup(mockExecutableFlow(2, FAT_PROJECT_ID, 34));
+
+    assertTrue(new File(new File(this.projectsDir, FAT_PROJECT_ID + ".34"),
+        FlowPreparer.PROJECT_DIR_LINK_MANIFEST_FILE_NAME).exists());
+    for (final int execId : new int[]{1, 2}) {
+      final File execDir = new File(this.executionsDir, String.valueOf(execId));
+      assertTrue(new File(execDir, SAMPLE_FLOW_01).exists());
+      assertFalse(new File(execDir, FlowPreparer.PROJECT_DIR_LINK_MANIFEST_FILE_NAME).exists());
+    }
+  }
+
   @Test
   public void testDownloadAndUnzipProjectFAT() throws Exception {
     final ProjectDirectoryMetadata proj = new ProjectDirectoryMetadata(FAT_PROJECT_ID, 34,
@@ -62,8 +62,8 @@ public class FlowPreparerTestBase {
     when(projectFileHandlerTHIN.getStartupDependencies()).thenReturn(ThinArchiveTestUtils.getDepSetAB());
 
     final ProjectStorageManager projectStorageManager = mock(ProjectStorageManager.class);
-    when(projectStorageManager.getProjectFile(eq(FAT_PROJECT_ID), anyInt())).thenReturn(projectFileHandlerFAT);
-    when(projectStorageManager.getProjectFile(eq(THIN_PROJECT_ID), anyInt())).thenReturn(projectFileHandlerTHIN);
+    when(projectStorageManager.getProjectFileOrManifest(eq(FAT_PROJECT_ID), anyInt())).thenReturn(projectFileHandlerFAT);
+    when(projectStorageManager.getProjectFileOrManifest(eq(THIN_PROJECT_ID), anyInt())).thenReturn(projectFileHandlerTHIN);
     return projectStorageManager;
   }
 
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2021 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Test;
+
+public class JobSchedulerTest {
+
+  private final AtomicLong numQueueWaitTimes = new AtomicLong();
+  private JobScheduler scheduler;
+
+  @After
+  public void tearDown() {
+    if (this.scheduler != null) {
+      this.scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testPerFlowCap() throws Exception {
+    this.scheduler = new JobScheduler(4, 4, time -> this.numQueueWaitTimes.incrementAndGet());
+    final ExecutorService flow = this.scheduler.createFlowExecutor(1, 1, 2);
+    final CountDownLatch release = new CountDownLatch(1);
+    for (int i = 0; i < 3; i++) {
+      flow.submit(() -> await(release));
+    }
+
+    assertThat(this.scheduler.getNumRunningJobs()).isEqualTo(2);
+    assertThat(this.scheduler.getNumQueuedJobs()).isEqualTo(1);
+
+    release.countDown();
+    flow.shutdown();
+    assertThat(flow.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(this.scheduler.getNumRunningJobs()).isEqualTo(0);
+    assertThat(this.scheduler.getNumQueuedJobs()).isEqualTo(0);
+    assertThat(this.numQueueWaitTimes.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void testPerProjectCap() throws Exception {
+    this.scheduler = new JobScheduler(4, 1, time -> {
+    });
+    final ExecutorService flow1 = this.scheduler.createFlowExecutor(1, 1, 2);
+    final ExecutorService flow2 = this.scheduler.createFlowExecutor(2, 1, 2);
+    final ExecutorService flow3 = this.scheduler.createFlowExecutor(3, 2, 2);
+    final CountDownLatch release = new CountDownLatch(1);
+    flow1.submit(() -> await(release));
+    flow2.submit(() -> await(release));
+    flow3.submit(() -> await(release));
+
+    // flow2 is in the same project as flow1
+    assertThat(this.scheduler.getNumRunningJobs()).isEqualTo(2);
+    assertThat(this.scheduler.getNumQueuedJobs()).isEqualTo(1);
+    release.countDown();
+  }
+
+  @Test
+  public void testRoundRobinAcrossFlows() throws Exception {
+    this.scheduler = new JobScheduler(1, 1, time -> {
+    });
+    final ExecutorService blocker = this.scheduler.createFlowExecutor(0, 0, 1);
+    final ExecutorService flow1 = this.scheduler.createFlowExecutor(1, 1, 10);
+    final ExecutorService flow2 = this.scheduler.createFlowExecutor(2, 2, 10);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<Integer> order = new CopyOnWriteArrayList<>();
+    blocker.submit(() -> await(release));
+    for (int i = 0; i < 3; i++) {
+      flow1.submit(() -> order.add(1));
+    }
+    for (int i = 0; i < 3; i++) {
+      flow2.submit(() -> order.add(2));
+    }
+
+    release.countDown();
+    flow1.shutdown();
+    flow2.shutdown();
+    assertThat(flow1.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(flow2.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(order).containsExactly(1, 2, 1, 2, 1, 2);
+  }
+
+  @Test
+  public void testWeightedFairQueuing() throws Exception {
+    this.scheduler = new JobScheduler(1, 1, time -> {
+    });
+    final ExecutorService blocker = this.scheduler.createFlowExecutor(0, 0, 1);
+    final ExecutorService flow1 = this.scheduler.createFlowExecutor(1, 1, 10, 2);
+    final ExecutorService flow2 = this.scheduler.createFlowExecutor(2, 2, 10, 1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<Integer> order = new CopyOnWriteArrayList<>();
+    blocker.submit(() -> await(release));
+    for (int i = 0; i < 6; i++) {
+      flow1.submit(() -> order.add(1));
+    }
+    for (int i = 0; i < 3; i++) {
+      flow2.submit(() -> order.add(2));
+    }
+
+    release.countDown();
+    flow1.shutdown();
+    flow2.shutdown();
+    assertThat(flow1.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(flow2.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    // flow1 gets two turns for every turn of flow2
+    assertThat(order).containsExactly(1, 2, 1, 2, 1, 1, 2, 1, 1);
+  }
+
+  @Test
+  public void testDelayedJobDoesNotHoldThread() throws Exception {
+    this.scheduler = new JobScheduler(1, 1, time -> {
+    });
+    final JobScheduler.FlowExecutor flow1 =
+        (JobScheduler.FlowExecutor) this.scheduler.createFlowExecutor(1, 1, 1);
+    final ExecutorService flow2 = this.scheduler.createFlowExecutor(2, 2, 1);
+    final CountDownLatch delayedJobRan = new CountDownLatch(1);
+    flow1.submitAfter(delayedJobRan::countDown, TimeUnit.MINUTES.toMillis(10));
+
+    // The only thread of the pool is free while the job of flow1 waits
+    final CountDownLatch jobRan = new CountDownLatch(1);
+    flow2.submit(jobRan::countDown);
+    assertThat(jobRan.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(delayedJobRan.getCount()).isEqualTo(1);
+
+    flow1.shutdown();
+    assertThat(flow1.isTerminated()).isFalse();
+    flow1.releaseDelayedJobs();
+    assertThat(delayedJobRan.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(flow1.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void testDelayedJobIsQueuedAfterDelay() throws Exception {
+    this.scheduler = new JobScheduler(1, 1, time -> {
+    });
+    final JobScheduler.FlowExecutor flow =
+        (JobScheduler.FlowExecutor) this.scheduler.createFlowExecutor(1, 1, 1);
+    final CountDownLatch delayedJobRan = new CountDownLatch(1);
+    flow.submitAfter(delayedJobRan::countDown, 100);
+    assertThat(delayedJobRan.await(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test(expected = RejectedExecutionException.class)
+  public void testSubmitAfterFlowShutdown() {
+    this.scheduler = new JobScheduler(1, 1, time -> {
+    });
+    final ExecutorService flow = this.scheduler.createFlowExecutor(1, 1, 1);
+    flow.shutdown();
+    flow.submit(() -> {
+    });
+  }
+
+  private static void await(final CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -21,7 +21,9 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
+import azkaban.metrics.MetricsManager;
 import azkaban.utils.Utils;
+import com.codahale.metrics.MetricRegistry;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -40,6 +42,8 @@ public class ProjectCacheCleanerTest {
   @Rule
   public TemporaryFolder temporaryFolder = new TemporaryFolder();
   private File cacheDir;
+  private MetricRegistry metricRegistry;
+  private ExecMetrics execMetrics;
 
   private void unzip(final Path srcZipFile, final Path dest) throws IOException {
     final ZipFile zip = new ZipFile(srcZipFile.toFile());
@@ -49,6 +53,8 @@ public class ProjectCacheCleanerTest {
   @Before
   public void setUp() throws Exception {
     this.cacheDir = spy(this.temporaryFolder.newFolder("projects"));
+    this.metricRegistry = new MetricRegistry();
+    this.execMetrics = new ExecMetrics(new MetricsManager(this.metricRegistry));
 
     final long TEN_MB_IN_BYTE = 10 * 1024 * 1024;
     when(this.cacheDir.getTotalSpace()).thenReturn(TEN_MB_IN_BYTE);
@@ -79,7 +85,7 @@ public class ProjectCacheCleanerTest {
    */
   public void testNotDeleting() {
     final ProjectCacheCleaner cleaner = new ProjectCacheCleaner(this.cacheDir,
-        0.7);
+        0.7, this.execMetrics);
     cleaner.deleteProjectDirsIfNecessary(1);
 
     assertThat(this.cacheDir.list()).hasSize(3);
@@ -90,7 +96,8 @@ public class ProjectCacheCleanerTest {
    * Deleting everything in the cache to accommodate new item.
    */
   public void testDeletingAll() {
-    final ProjectCacheCleaner cleaner = new ProjectCacheCleaner(this.cacheDir, 0.3);
+    final ProjectCacheCleaner cleaner = new ProjectCacheCleaner(this.cacheDir, 0.3,
+        this.execMetrics);
     cleaner.deleteProjectDirsIfNecessary(7000000);
     cleaner.finishPendingCleanup();
 
@@ -102,7 +109,8 @@ public class ProjectCacheCleanerTest {
    * Deleting two least recently used items in the cache to accommodate new item.
    */
   public void testDeletingTwoLRUItems() {
-    final ProjectCacheCleaner cleaner = new ProjectCacheCleaner(this.cacheDir, 0.7);
+    final ProjectCacheCleaner cleaner = new ProjectCacheCleaner(this.cacheDir, 0.7,
+        this.execMetrics);
     cleaner.deleteProjectDirsIfNecessary(3000000);
     cleaner.finishPendingCleanup();
     assertThat(this.cacheDir.list()).hasSize(1);
@@ -114,7 +122,8 @@ public class ProjectCacheCleanerTest {
    * Deleting the least recently used item in the cache to accommodate new item.
    */
   public void testDeletingOneLRUItem() {
-    final ProjectCacheCleaner cleaner = new ProjectCacheCleaner(this.cacheDir, 0.7);
+    final ProjectCacheCleaner cleaner = new ProjectCacheCleaner(this.cacheDir, 0.7,
+        this.execMetrics);
     cleaner.deleteProjectDirsIfNecessary(2000000);
     cleaner.finishPendingCleanup();
     assertThat(this.cacheDir.list()).hasSize(2);
@@ -127,9 +136,53 @@ public class ProjectCacheCleanerTest {
    * Put enough items in the cache to invoke throttle condition.
    */
   public void testThrottleCondition() {
-    final ProjectCacheCleaner cleaner = new ProjectCacheCleaner(this.cacheDir, 0.65, 0.7);
+    final ProjectCacheCleaner cleaner = new ProjectCacheCleaner(this.cacheDir, 0.65, 0.7,
+        this.execMetrics);
     cleaner.deleteProjectDirsIfNecessary(3000000);
     assertThat(this.cacheDir.list()).hasSize(1);
     assertThat(this.cacheDir.list()).contains("3.1");
   }
+
+  @Test
+  /**
+   * The project accessed last is kept, even if its dir was modified before the others.
+   */
+  public void testDeletingLRUItemAfterAccess() {
+    final ProjectCacheCleaner cleaner = new ProjectCacheCleaner(this.cacheDir, 0.7,
+        this.execMetrics);
+    cleaner.markProjectDirAccessed(
+        new ProjectDirectoryMetadata(1, 1, new File(this.cacheDir, "1.1")));
+    cleaner.deleteProjectDirsIfNecessary(2000000);
+    cleaner.finishPendingCleanup();
+    assertThat(this.cacheDir.list()).hasSize(2);
+    assertThat(this.cacheDir.list()).contains("1.1");
+    assertThat(this.cacheDir.list()).contains("3.1");
+    assertThat(this.metricRegistry.meter(ExecMetrics.PROJECT_CACHE_EVICTION_METER_NAME)
+        .getCount()).isEqualTo(1);
+  }
+
+  @Test
+  /**
+   * Added and evicted projects are accounted without scanning the cache dir again.
+   */
+  public void testProjectDirsTotalSize() {
+    final ProjectCacheCleaner cleaner = new ProjectCacheCleaner(this.cacheDir, 0.3,
+        this.execMetrics);
+    assertThat(cleaner.getProjectDirsTotalSizeInBytes()).isEqualTo(6000000);
+
+    final File newProjectDir = new File(this.cacheDir, "4.1");
+    newProjectDir.mkdir();
+    final ProjectDirectoryMetadata newProject =
+        new ProjectDirectoryMetadata(4, 1, newProjectDir);
+    newProject.setDirSizeInByte(1000L);
+    cleaner.addProjectDir(newProject);
+    assertThat(cleaner.getProjectDirsTotalSizeInBytes()).isEqualTo(6001000);
+
+    cleaner.deleteProjectDirsIfNecessary(7000000);
+    cleaner.finishPendingCleanup();
+    assertThat(this.cacheDir.list()).isEmpty();
+    assertThat(cleaner.getProjectDirsTotalSizeInBytes()).isZero();
+    assertThat(this.metricRegistry.meter(ExecMetrics.PROJECT_CACHE_EVICTED_BYTES_METER_NAME)
+        .getCount()).isEqualTo(6001000);
+  }
 }
@@ -2,17 +2,33 @@ package azkaban.webapp;
 
 import azkaban.Constants.ConfigurationKeys;
 import azkaban.executor.ExecutorLoader;
+import azkaban.executor.ExecutorManagerException;
+import azkaban.utils.Pair;
 import azkaban.utils.Props;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Deletes execution logs older than the retention time.
+ *
+ * <p>Logs are deleted by ranges of execution ids, which only lock a range of the primary key of
+ * execution_logs. The ranges are sized on the observed latency of the deletes, so that a delete
+ * takes about the target time and, if a record limit is set, deletes at most about that many rows.
+ * Each delete is followed by a pause as long as the delete took.
+ */
 @Singleton
 @SuppressWarnings("FutureReturnValueIgnored")
 public class ExecutionLogsCleaner {
@@ -30,8 +46,16 @@ public class ExecutionLogsCleaner {
    private static final long DEFAULT_LOG_CLEANUP_INTERVAL_SECONDS = 60 * 60;
    private long cleanupIntervalInSeconds;
 
-   private static final int DEFAULT_LOG_CLEANUP_RECORD_LIMIT = 1000;
-   private int executionLogCleanupRecordLimit;
+   private static final int DEFAULT_LOG_CLEANUP_THREADS = 1;
+   private static final long DEFAULT_LOG_CLEANUP_TARGET_BATCH_MS = 500;
+   private static final int MAX_BATCH_EXECUTIONS = 100000;
+   private final int cleanupThreads;
+   private final long targetBatchMs;
+   // Max rows deleted by a batch, no limit if 0
+   private final int recordLimit;
+   private final boolean dropPartitions;
+   // Null if the logs are deleted by the scheduler thread only
+   private final ExecutorService deleteService;
 
    @Inject
    public ExecutionLogsCleaner(final Props azkProps, final ExecutorLoader executorLoader) {
@@ -46,9 +70,22 @@ public class ExecutionLogsCleaner {
       this.cleanupIntervalInSeconds = this.azkProps.getLong(
           ConfigurationKeys.EXECUTION_LOGS_CLEANUP_INTERVAL_SECONDS,
           DEFAULT_LOG_CLEANUP_INTERVAL_SECONDS);
-      this.executionLogCleanupRecordLimit =
-          this.azkProps.getInt(ConfigurationKeys.EXECUTION_LOGS_CLEANUP_RECORD_LIMIT,
-              DEFAULT_LOG_CLEANUP_RECORD_LIMIT);
+      this.cleanupThreads = Math.max(1, this.azkProps.getInt(
+          ConfigurationKeys.EXECUTION_LOGS_CLEANUP_THREADS, DEFAULT_LOG_CLEANUP_THREADS));
+      this.targetBatchMs = this.azkProps.getLong(
+          ConfigurationKeys.EXECUTION_LOGS_CLEANUP_TARGET_BATCH_MS,
+          DEFAULT_LOG_CLEANUP_TARGET_BATCH_MS);
+      this.recordLimit = Math.max(0, this.azkProps.getInt(
+          ConfigurationKeys.EXECUTION_LOGS_CLEANUP_RECORD_LIMIT, 0));
+      this.dropPartitions = this.azkProps.getBoolean(
+          ConfigurationKeys.EXECUTION_LOGS_CLEANUP_DROP_PARTITIONS, false);
+      if (this.cleanupThreads > 1) {
+         this.deleteService = Executors.newFixedThreadPool(this.cleanupThreads,
+             new ThreadFactoryBuilder().setDaemon(true).setNameFormat("azk-execlog-delete-%d")
+                 .build());
+      } else {
+         this.deleteService = null;
+      }
    }
 
    public void start() {
@@ -65,17 +102,106 @@ public class ExecutionLogsCleaner {
       cleanOldExecutionLogs(cutoff);
    }
 
-
-   private void cleanOldExecutionLogs(final long millis) {
+   void cleanOldExecutionLogs(final long millis) {
       final long beforeDeleteLogsTimestamp = System.currentTimeMillis();
+      final LongAdder rows = new LongAdder();
+      final LongAdder bytes = new LongAdder();
       try {
-         final int count = this.executorLoader.removeExecutionLogsByTime(millis, this.executionLogCleanupRecordLimit);
-         logger.info("Cleaned up " + count + " log entries.");
+         if (this.dropPartitions) {
+            final Pair<Long, Long> dropped =
+                this.executorLoader.dropExecutionLogsPartitions(millis);
+            rows.add(dropped.getFirst());
+            bytes.add(dropped.getSecond());
+         }
+         final Pair<Integer, Integer> execIds =
+             this.executorLoader.fetchExecutionLogsExecIdRange(millis);
+         if (execIds != null) {
+            removeExecutionLogs(execIds.getFirst(), execIds.getSecond() + 1, millis, rows, bytes);
+         }
+      } catch (final InterruptedException e) {
+         logger.warn("log clean up was interrupted.");
+         Thread.currentThread().interrupt();
       } catch (final Exception e) {
          logger.error("log clean up failed. ", e);
       }
+      logger.info("Cleaned up " + rows.sum() + " log entries, " + bytes.sum() + " bytes.");
       logger.info(
           "log clean up time: " + (System.currentTimeMillis() - beforeDeleteLogsTimestamp)
               + " ms.");
    }
+
+   /**
+    * Deletes the old logs of executions [fromExecId, toExecId), split in contiguous slices that
+    * are deleted in parallel.
+    */
+   private void removeExecutionLogs(final int fromExecId, final int toExecId, final long millis,
+       final LongAdder rows, final LongAdder bytes)
+       throws ExecutorManagerException, InterruptedException, ExecutionException {
+      if (this.deleteService == null) {
+         removeExecutionLogsSlice(fromExecId, toExecId, millis, rows, bytes);
+         return;
+      }
+      final long sliceSize =
+          ((long) toExecId - fromExecId + this.cleanupThreads - 1) / this.cleanupThreads;
+      final List<Future<Void>> slices = new ArrayList<>();
+      for (long start = fromExecId; start < toExecId; start += sliceSize) {
+         final int sliceStart = (int) start;
+         final int sliceEnd = (int) Math.min(toExecId, start + sliceSize);
+         slices.add(this.deleteService.submit(() -> {
+            removeExecutionLogsSlice(sliceStart, sliceEnd, millis, rows, bytes);
+            return null;
+         }));
+      }
+      try {
+         for (final Future<Void> slice : slices) {
+            slice.get();
+         }
+      } finally {
+         for (final Future<Void> slice : slices) {
+            slice.cancel(true);
+         }
+      }
+   }
+
+   private void removeExecutionLogsSlice(final int fromExecId, final int toExecId,
+       final long millis, final LongAdder rows, final LongAdder bytes)
+       throws ExecutorManagerException, InterruptedException {
+      int batchSize = 1;
+      int start = fromExecId;
+      while (start < toExecId) {
+         final int end = (int) Math.min(toExecId, (long) start + batchSize);
+         final long batchStartTime = System.currentTimeMillis();
+         final Pair<Integer, Long> removed =
+             this.executorLoader.removeExecutionLogsByRange(start, end, millis);
+         final long latency = System.currentTimeMillis() - batchStartTime;
+         logger.debug("Removed " + removed.getFirst() + " log entries of executions " + start
+             + " to " + end + " in " + latency + " ms.");
+         rows.add(removed.getFirst());
+         bytes.add(removed.getSecond());
+         batchSize = nextBatchSize(batchSize, removed.getFirst(), latency, this.targetBatchMs,
+             this.recordLimit);
+         start = end;
+         // Leave the DB at least as much time for other work as the delete took
+         Thread.sleep(latency);
+      }
+   }
+
+   /**
+    * Returns the number of executions to delete the logs of in the next batch: twice as many if
+    * the last batch was fast, half as many if it was slow, but not more than about recordLimit
+    * rows, going by the rows per execution of the last batch. A recordLimit of 0 means no limit.
+    */
+   static int nextBatchSize(final int batchSize, final int removedRows, final long latencyMs,
+       final long targetMs, final int recordLimit) {
+      long next = batchSize;
+      if (latencyMs > targetMs) {
+         next = batchSize / 2;
+      } else if (latencyMs < targetMs / 2) {
+         next = batchSize * 2L;
+      }
+      if (recordLimit > 0 && removedRows > 0) {
+         next = Math.min(next, (long) recordLimit * batchSize / removedRows);
+      }
+      return (int) Math.max(1, Math.min(MAX_BATCH_EXECUTIONS, next));
+   }
 }
@@ -15,6 +15,8 @@
  */
 package azkaban.webapp.servlet;
 
+import static azkaban.ServiceProvider.SERVICE_PROVIDER;
+
 import azkaban.Constants;
 import azkaban.executor.ClusterInfo;
 import azkaban.executor.ConnectorParams;
@@ -23,6 +25,7 @@ import azkaban.executor.ExecutableFlowBase;
 import azkaban.executor.ExecutableNode;
 import azkaban.executor.ExecutionOptions;
 import azkaban.executor.ExecutionOptions.FailureAction;
+import azkaban.executor.ExecutionStatusFeed;
 import azkaban.executor.Executor;
 import azkaban.executor.ExecutorManagerAdapter;
 import azkaban.executor.ExecutorManagerException;
@@ -56,6 +59,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -69,6 +73,7 @@ public class ExecutorServlet extends LoginAbstractAzkabanServlet {
 
   private static final String API_FETCH_EXEC_FLOW = "fetchexecflow";
   private static final String API_FETCH_EXEC_FLOW_UPDATE = "fetchexecflowupdate";
+  private static final String API_WAIT_EXEC_FLOW_UPDATE = "waitexecflowupdate";
   private static final String API_CANCEL_FLOW = "cancelFlow";
   private static final String API_PAUSE_FLOW = "pauseFlow";
   private static final String API_RESUME_FLOW = "resumeFlow";
@@ -90,6 +95,7 @@ public class ExecutorServlet extends LoginAbstractAzkabanServlet {
   private ProjectManager projectManager;
   private FlowTriggerService flowTriggerService;
   private ExecutorManagerAdapter executorManagerAdapter;
+  private ExecutionStatusFeed executionStatusFeed;
   private ScheduleManager scheduleManager;
   private UserManager userManager;
 
@@ -104,6 +110,7 @@ public class ExecutorServlet extends LoginAbstractAzkabanServlet {
     this.userManager = server.getUserManager();
     this.projectManager = server.getProjectManager();
     this.executorManagerAdapter = server.getExecutorManager();
+    this.executionStatusFeed = SERVICE_PROVIDER.getInstance(ExecutionStatusFeed.class);
     this.scheduleManager = server.getScheduleManager();
     this.flowTriggerService = server.getFlowTriggerService();
   }
@@ -112,6 +119,7 @@ public class ExecutorServlet extends LoginAbstractAzkabanServlet {
     final List<AzkabanAPI> apiEndpoints = new ArrayList<>();
     apiEndpoints.add(new AzkabanAPI("ajax", API_FETCH_EXEC_FLOW));
     apiEndpoints.add(new AzkabanAPI("ajax", API_FETCH_EXEC_FLOW_UPDATE));
+    apiEndpoints.add(new AzkabanAPI("ajax", API_WAIT_EXEC_FLOW_UPDATE));
     apiEndpoints.add(new AzkabanAPI("ajax", API_CANCEL_FLOW));
     apiEndpoints.add(new AzkabanAPI("ajax", API_PAUSE_FLOW));
     apiEndpoints.add(new AzkabanAPI("ajax", API_RESUME_FLOW));
@@ -153,7 +161,10 @@ public class ExecutorServlet extends LoginAbstractAzkabanServlet {
     final HashMap<String, Object> ret = new HashMap<>();
     final String ajaxName = getParam(req, "ajax");
 
-    if (hasParam(req, "execid")) {
+    if (hasParam(req, "execid") && API_WAIT_EXEC_FLOW_UPDATE.equals(ajaxName)) {
+      // Served from the status feed, without fetching the flow
+      ajaxWaitExecutableFlowUpdate(req, ret, session.getUser(), getIntParam(req, "execid"));
+    } else if (hasParam(req, "execid")) {
       final int execid = getIntParam(req, "execid");
       ExecutableFlow exFlow = null;
 
@@ -829,44 +840,6 @@ public class ExecutorServlet extends LoginAbstractAzkabanServlet {
     }
   }
 
-  private Map<String, Object> getExecutableFlowUpdateInfo(final ExecutableNode node,
-      final long lastUpdateTime) {
-    final HashMap<String, Object> nodeObj = new HashMap<>();
-    if (node instanceof ExecutableFlowBase) {
-      final ExecutableFlowBase base = (ExecutableFlowBase) node;
-      final ArrayList<Map<String, Object>> nodeList =
-          new ArrayList<>();
-
-      for (final ExecutableNode subNode : base.getExecutableNodes()) {
-        final Map<String, Object> subNodeObj =
-            getExecutableFlowUpdateInfo(subNode, lastUpdateTime);
-        if (!subNodeObj.isEmpty()) {
-          nodeList.add(subNodeObj);
-        }
-      }
-
-      if (!nodeList.isEmpty()) {
-        nodeObj.put("flow", base.getFlowId());
-        nodeObj.put("nodes", nodeList);
-      }
-    }
-
-    if (node.getUpdateTime() > lastUpdateTime || !nodeObj.isEmpty()) {
-      nodeObj.put("id", node.getId());
-      nodeObj.put("status", node.getStatus());
-      nodeObj.put("startTime", node.getStartTime());
-      nodeObj.put("endTime", node.getEndTime());
-      nodeObj.put("updateTime", node.getUpdateTime());
-
-      nodeObj.put("attempt", node.getAttempt());
-      if (node.getAttempt() > 0) {
-        nodeObj.put("pastAttempts", node.getAttemptObjects());
-      }
-    }
-
-    return nodeObj;
-  }
-
   private Map<String, Object> getExecutableNodeInfo(final ExecutableNode node) {
     final HashMap<String, Object> nodeObj = new HashMap<>();
     nodeObj.put("id", node.getId());
@@ -926,13 +899,57 @@ public class ExecutorServlet extends LoginAbstractAzkabanServlet {
       return;
     }
 
-    final Map<String, Object> map =
-        getExecutableFlowUpdateInfo(exFlow, lastUpdateTime);
-    map.put("status", exFlow.getStatus());
-    map.put("startTime", exFlow.getStartTime());
-    map.put("endTime", exFlow.getEndTime());
-    map.put("updateTime", exFlow.getUpdateTime());
-    ret.putAll(map);
+    ret.putAll(ExecutionStatusFeed.getFlowUpdate(exFlow, lastUpdateTime));
+  }
+
+  /**
+   * Long-polls the updates of a running flow after lastUpdateTime. Responds with the updates once
+   * there are any or the wait times out. If the status feed can't tell, responds with resync and
+   * the flow update of the fetched flow, like fetchexecflowupdate. The permission check of a
+   * tracked execution uses the project id known to the feed, so the flow is only fetched to
+   * resync.
+   */
+  private void ajaxWaitExecutableFlowUpdate(final HttpServletRequest req,
+      final HashMap<String, Object> ret, final User user, final int execId)
+      throws ServletException {
+    final long lastUpdateTime = getLongParam(req, "lastUpdateTime");
+
+    final OptionalInt projectId = this.executionStatusFeed.getProjectId(execId);
+    if (projectId.isPresent()) {
+      if (getProjectAjaxByPermission(ret, projectId.getAsInt(), user, Type.READ) == null) {
+        return;
+      }
+      final Optional<List<Map<String, Object>>> updates;
+      try {
+        updates = this.executionStatusFeed.waitForUpdates(execId, lastUpdateTime);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        ret.put("resync", true);
+        return;
+      }
+      if (updates.isPresent()) {
+        ret.put("updates", updates.get());
+        return;
+      }
+    }
+
+    final ExecutableFlow exFlow;
+    try {
+      exFlow = this.executorManagerAdapter.getExecutableFlow(execId);
+    } catch (final ExecutorManagerException e) {
+      ret.put("error", "Error fetching execution '" + execId + "': " + e.getMessage());
+      return;
+    }
+    if (exFlow == null) {
+      ret.put("error", "Cannot find execution '" + execId + "'");
+      return;
+    }
+    if (!projectId.isPresent()
+        && getProjectAjaxByPermission(ret, exFlow.getProjectId(), user, Type.READ) == null) {
+      return;
+    }
+    ret.put("resync", true);
+    ret.put("update", ExecutionStatusFeed.getFlowUpdate(exFlow, lastUpdateTime));
   }
 
   private void ajaxFetchExecutableFlow(final HttpServletRequest req,
@@ -1,13 +1,19 @@
 package azkaban.webapp;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import azkaban.Constants.ConfigurationKeys;
 import azkaban.executor.ExecutorLoader;
+import azkaban.utils.Pair;
 import azkaban.utils.Props;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Test;
@@ -31,6 +37,41 @@ public class ExecutionLogsCleanerTest {
   public void checkIfExecutionCleanerGetsTriggered() throws Exception {
     executionLogsCleaner.start();
     TimeUnit.SECONDS.sleep(5);
-    Mockito.verify(this.loader, atLeast(2)).removeExecutionLogsByTime(anyLong(), anyInt());
+    Mockito.verify(this.loader, atLeast(2)).fetchExecutionLogsExecIdRange(anyLong());
+  }
+
+  @Test
+  public void testRangesCoverAllExecutions() throws Exception {
+    this.props.put(ConfigurationKeys.EXECUTION_LOGS_CLEANUP_THREADS, 3);
+    this.executionLogsCleaner = new ExecutionLogsCleaner(this.props, this.loader);
+    when(this.loader.fetchExecutionLogsExecIdRange(100L)).thenReturn(new Pair<>(5, 104));
+    final List<Integer> deletedExecIds = Collections.synchronizedList(new ArrayList<>());
+    when(this.loader.removeExecutionLogsByRange(anyInt(), anyInt(), anyLong()))
+        .thenAnswer(invocation -> {
+          final int from = invocation.getArgument(0);
+          final int to = invocation.getArgument(1);
+          for (int execId = from; execId < to; execId++) {
+            deletedExecIds.add(execId);
+          }
+          return new Pair<>(to - from, 10L * (to - from));
+        });
+
+    this.executionLogsCleaner.cleanOldExecutionLogs(100L);
+
+    assertThat(deletedExecIds).hasSize(100).doesNotHaveDuplicates();
+    assertThat(deletedExecIds).allMatch(execId -> execId >= 5 && execId <= 104);
+  }
+
+  @Test
+  public void testNextBatchSize() {
+    // Fast batches grow, slow ones shrink
+    assertThat(ExecutionLogsCleaner.nextBatchSize(10, 10, 10, 500, 0)).isEqualTo(20);
+    assertThat(ExecutionLogsCleaner.nextBatchSize(10, 10, 300, 500, 0)).isEqualTo(10);
+    assertThat(ExecutionLogsCleaner.nextBatchSize(10, 10, 900, 500, 0)).isEqualTo(5);
+    assertThat(ExecutionLogsCleaner.nextBatchSize(1, 10, 900, 500, 0)).isEqualTo(1);
+    assertThat(ExecutionLogsCleaner.nextBatchSize(100000, 10, 10, 500, 0)).isEqualTo(100000);
+    // Batches stay within about the record limit, if one is set
+    assertThat(ExecutionLogsCleaner.nextBatchSize(10, 5000, 10, 500, 1000)).isEqualTo(2);
+    assertThat(ExecutionLogsCleaner.nextBatchSize(10, 5000, 10, 500, 0)).isEqualTo(20);
   }
 }
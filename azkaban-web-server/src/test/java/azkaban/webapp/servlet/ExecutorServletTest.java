@@ -16,11 +16,19 @@
 package azkaban.webapp.servlet;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import azkaban.Constants.ConfigurationKeys;
+import azkaban.executor.ExecutableFlow;
+import azkaban.executor.ExecutionStatusFeed;
+import azkaban.executor.Status;
+import azkaban.project.Project;
 import azkaban.sla.SlaAction;
 import azkaban.sla.SlaOption;
 import azkaban.sla.SlaType;
+import azkaban.utils.Props;
+import azkaban.utils.TestUtils;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import java.time.Duration;
@@ -31,15 +39,22 @@ import org.codehaus.jackson.JsonNode;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Mockito;
 
 public class ExecutorServletTest extends LoginAbstractAzkabanServletTestBase {
 
   private ExecutorServlet executorServlet;
+  private ExecutionStatusFeed executionStatusFeed;
 
   @Override
   @Before
   public void setUp() throws Exception {
     super.setUp();
+    // Waits for updates time out right away
+    this.executionStatusFeed = new ExecutionStatusFeed(
+        Props.of(ConfigurationKeys.EXECUTION_STATUS_PUSH_TIMEOUT_MS, "0"));
+    Mockito.when(this.injector.getInstance(ExecutionStatusFeed.class))
+        .thenReturn(this.executionStatusFeed);
     this.executorServlet = new ExecutorServlet();
     this.executorServlet.init(this.servletConfig);
   }
@@ -122,4 +137,54 @@ public class ExecutorServletTest extends LoginAbstractAzkabanServletTestBase {
     assertEquals("Cannot find execution '123'", this.res.getResponseJson().path("error").asText());
   }
 
+  /**
+   * Waiting for the updates of a tracked execution is served from the status feed, without
+   * fetching the flow.
+   */
+  @Test
+  public void postAjaxWaitExecFlowUpdateOfTrackedExecution() throws Exception {
+    final ExecutableFlow flow = createRunningFlow();
+    this.executionStatusFeed.publish(flow, 100);
+    flow.setUpdateTime(200);
+    this.executionStatusFeed.publish(flow, 100);
+    this.req.addParameter("ajax", "waitexecflowupdate");
+    this.req.addParameter("execid", "1");
+    this.req.addParameter("lastUpdateTime", "100");
+
+    this.executorServlet.handlePost(this.req, this.res, this.session);
+
+    final JsonNode json = this.res.getResponseJson();
+    assertEquals(1, json.path("updates").size());
+    assertEquals(200, json.path("updates").get(0).path("updateTime").asLong());
+    Mockito.verify(this.executorManager, Mockito.never()).getExecutableFlow(Mockito.anyInt());
+  }
+
+  /**
+   * An execution unknown to the status feed is resynced with the update of the fetched flow.
+   */
+  @Test
+  public void postAjaxWaitExecFlowUpdateOfUntrackedExecution() throws Exception {
+    final ExecutableFlow flow = createRunningFlow();
+    Mockito.when(this.executorManager.getExecutableFlow(1)).thenReturn(flow);
+    this.req.addParameter("ajax", "waitexecflowupdate");
+    this.req.addParameter("execid", "1");
+    this.req.addParameter("lastUpdateTime", "50");
+
+    this.executorServlet.handlePost(this.req, this.res, this.session);
+
+    final JsonNode json = this.res.getResponseJson();
+    assertTrue(json.path("resync").asBoolean());
+    assertEquals(100, json.path("update").path("updateTime").asLong());
+  }
+
+  private ExecutableFlow createRunningFlow() throws Exception {
+    final ExecutableFlow flow = TestUtils.createTestExecutableFlow("exectest1", "exec1");
+    flow.setExecutionId(1);
+    flow.setStatus(Status.RUNNING);
+    flow.setUpdateTime(100);
+    Mockito.when(this.projectManager.getProject(flow.getProjectId()))
+        .thenReturn(new Project(flow.getProjectId(), "flow"));
+    return flow;
+  }
+
 }
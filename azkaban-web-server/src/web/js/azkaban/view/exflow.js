@@ -491,6 +491,79 @@ var updateGraph = function (data, update) {
   }
 }
 
+// Waits for the server to push the next status updates of the running flow. Falls back to
+// updaterFunction polling if the server asks to resync, applying the flow update sent along, or
+// if the request fails.
+// Delay before waiting for the next status update, grows while no updates come back
+var statusUpdateDelay = 0;
+var waitForStatusUpdate = function () {
+  var requestURL = contextURL + "/executor";
+  var data = graphModel.get("data");
+
+  var requestData = {
+    "execid": execId,
+    "ajax": "waitexecflowupdate",
+    "lastUpdateTime": data.updateTime ? data.updateTime : 0
+  };
+
+  var pollLater = function () {
+    setTimeout(function () {
+      updaterFunction();
+    }, 2 * 60 * 1000);
+  };
+
+  var successHandler = function (response) {
+    if (response.resync && response.update) {
+      if (response.update.updateTime) {
+        updateGraph(data, response.update);
+        graphModel.set({"update": response.update});
+        graphModel.trigger("change:update");
+      }
+      pollLater();
+      return;
+    }
+    if (response.error || response.resync) {
+      updateStatus();
+      pollLater();
+      return;
+    }
+
+    for (var i = 0; i < response.updates.length; ++i) {
+      var update = response.updates[i];
+      updateGraph(data, update);
+
+      graphModel.set({"update": update});
+      graphModel.trigger("change:update");
+    }
+
+    if (data.status != "SUCCEEDED" &&
+        data.status != "FAILED" &&
+        data.status != "KILLED") {
+      // The server may answer right away without updates, e.g. if its wait timeout is 0, so back
+      // off instead of sending the next request at once.
+      if (response.updates.length > 0) {
+        statusUpdateDelay = 0;
+      } else {
+        statusUpdateDelay = Math.min(Math.max(1000, statusUpdateDelay * 2), 60 * 1000);
+      }
+      setTimeout(function () {
+        waitForStatusUpdate();
+      }, statusUpdateDelay);
+    } else {
+      console.log("Flow finished, so no more updates");
+    }
+  };
+
+  $.ajax({
+    url: requestURL,
+    type: "get",
+    data: requestData,
+    dataType: "json",
+    success: successHandler,
+    error: pollLater
+  });
+}
+
 var updateTime = -1;
 var updaterFunction = function () {
   var oldData = graphModel.get("data");
@@ -516,10 +589,8 @@ var updaterFunction = function () {
         updaterFunction();
       }, 30 * 1000);
     } else if (data.status != "SUCCEEDED" && data.status != "FAILED") {
-      // 2 min updates
-      setTimeout(function () {
-        updaterFunction();
-      }, 2 * 60 * 1000);
+      // pushed updates, or 2 min updates if the server can't push them
+      waitForStatusUpdate();
     } else {
       console.log("Flow finished, so no more updates");
       setTimeout(function () {